@@ -49,6 +49,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.Method;
 import java.util.Enumeration;
 import java.util.Locale;
@@ -345,6 +346,8 @@ public class App {
         }
 
         new LauncherFrame(open); // Open the Launcher
+        LogManager.info("Launcher opened " + (System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean()
+                .getStartTime()) + " ms after Java started");
     }
 
     /**
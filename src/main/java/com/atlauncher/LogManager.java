@@ -18,16 +18,49 @@
 
 package com.atlauncher;
 
+import com.atlauncher.evnt.LauncherEvent;
 import com.atlauncher.evnt.LogEvent;
 import com.atlauncher.evnt.LogEvent.LogType;
+import com.atlauncher.thread.EventLoggingThread;
 import com.atlauncher.thread.LoggingThread;
+import com.atlauncher.utils.ErrorLimiter;
+import com.atlauncher.utils.LogIndex;
+import com.atlauncher.utils.MinecraftLogClassifier;
+import com.atlauncher.utils.Redactor;
+import com.atlauncher.utils.RingBuffer;
 import com.atlauncher.utils.Utils;
 
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 public final class LogManager {
-    private static final BlockingQueue<LogEvent> queue = new ArrayBlockingQueue<LogEvent>(128);
+    /**
+     * Events waiting to be written by the logging thread. Large enough to soak up a burst of game output, and what
+     * happens once it's full is up to the overflow policy the user has set.
+     */
+    private static final RingBuffer<LogEvent> queue = new RingBuffer<LogEvent>(8192, RingBuffer.OverflowPolicy
+            .BLOCK);
+
+    /**
+     * Events waiting to be written to the event log. Whatever emits them is never held up, so the oldest are thrown
+     * away if it ever fills up.
+     */
+    private static final RingBuffer<LauncherEvent> events = new RingBuffer<LauncherEvent>(4096, RingBuffer
+            .OverflowPolicy.DROP_OLDEST);
+
+    /**
+     * Keeps the same stack trace from being logged over and over, allowing 5 a minute from each place.
+     */
+    private static final ErrorLimiter errorLimiter = new ErrorLimiter(5, TimeUnit.MINUTES.toMillis(1));
+    private static final Map<String, String> secrets = new LinkedHashMap<String, String>(); // Guarded by itself
+    private static volatile Redactor redactor = Redactor.NONE;
+    private static volatile List<LogIndex> logIndexes = Collections.emptyList();
     public static boolean showDebug = false;
 
     /**
@@ -39,7 +72,97 @@ public final class LogManager {
     }
 
     public static void start() {
-        new LoggingThread(queue).start();
+        List<LogIndex> indexes = new ArrayList<LogIndex>();
+        LogIndex.Budget budget = new LogIndex.Budget(); // One budget for everything in the Logs folder
+        LogIndex logIndex = new LogIndex(App.settings.getLogsDir(), Utils.getLogsFileFilter(), budget);
+        indexes.add(logIndex);
+        new LoggingThread(queue, logIndex).start();
+
+        File eventsDir = new File(App.settings.getLogsDir(), "events");
+        eventsDir.mkdirs();
+        LogIndex eventIndex = new LogIndex(eventsDir, EventLoggingThread.getFileFilter(), budget);
+        try {
+            new EventLoggingThread(events, eventsDir, eventIndex).start();
+            indexes.add(eventIndex);
+        } catch (IOException e) {
+            error("Couldn't start the event log: " + e.getMessage());
+        }
+        logIndexes = Collections.unmodifiableList(indexes);
+    }
+
+    /**
+     * Gets the indexes of the launcher's log files and event log files, to clear out old ones.
+     *
+     * @return the indexes, which is empty if logging hasn't started
+     */
+    public static List<LogIndex> getLogIndexes() {
+        return logIndexes;
+    }
+
+    /**
+     * Sets what happens to events logged faster than they can be written.
+     *
+     * @param policy the policy to use once the queue of events is full
+     */
+    public static void setOverflowPolicy(RingBuffer.OverflowPolicy policy) {
+        queue.setOverflowPolicy(policy);
+    }
+
+    /**
+     * Gets the number of events which weren't logged because they came in faster than they could be written.
+     *
+     * @return the number of events dropped since the launcher started
+     */
+    public static long getDroppedEvents() {
+        return queue.getDropped();
+    }
+
+    /**
+     * Adds something which should never show up in the console, log files or anything uploaded, such as an access
+     * token, along with what to show in its place.
+     *
+     * @param secret      the secret
+     * @param replacement what to replace it with
+     */
+    public static void addSecret(String secret, String replacement) {
+        if (secret == null || secret.isEmpty()) {
+            return;
+        }
+        synchronized (secrets) {
+            if (!replacement.equals(secrets.get(secret))) {
+                secrets.put(secret, replacement);
+                redactor = new Redactor(secrets);
+            }
+        }
+    }
+
+    /**
+     * Replaces any secrets in the text, unless debug is being shown.
+     *
+     * @param text the text
+     * @return the text with secrets replaced, or the same string if there weren't any
+     */
+    public static String redact(String text) {
+        return showDebug ? text : redactor.redact(text);
+    }
+
+    /**
+     * Replaces any secrets in the text even if debug is being shown, for anything kept on disk such as game logs.
+     *
+     * @param text the text
+     * @return the text with secrets replaced, or the same string if there weren't any
+     */
+    public static String redactAlways(String text) {
+        return redactor.redact(text);
+    }
+
+    /**
+     * Adds an event to the queue to be written to the event log, throwing away the oldest waiting if it's full.
+     *
+     * @param event the event
+     */
+    public static void event(LauncherEvent event) {
+        events.offer(event);
     }
 
     public static void log(LogEvent event) {
@@ -74,8 +197,46 @@ public final class LogManager {
         queue.offer(new LogEvent(LogType.ERROR, message));
     }
 
+    /**
+     * Logs an error with the stack trace of the exception which caused it. The stack trace is only formatted when it's
+     * written, and is left out if the same one has just been logged from the same place, or too many have been logged
+     * from there lately, leaving just the message.
+     *
+     * @param message what went wrong, or null to log just the stack trace
+     * @param thrown  the exception
+     */
+    public static void logStackTrace(String message, Throwable thrown) {
+        String note = errorLimiter.check(thrown, System.currentTimeMillis());
+        if (note == null) {
+            if (message != null) {
+                queue.offer(new LogEvent(LogType.ERROR, message));
+            }
+            return;
+        }
+        if (message == null) {
+            message = note;
+        } else if (!note.isEmpty()) {
+            message = message + " " + note;
+        }
+        queue.offer(new LogEvent(LogType.ERROR, message, thrown, LogEvent.CONSOLE | LogEvent.FILE));
+    }
+
     public static void minecraft(String message) {
-        Object[] value = Utils.prepareMessageForMinecraftLog(message);
-        queue.offer(new LogEvent((LogType) value[0], (String) value[1], 10));
+        minecraft(MinecraftLogClassifier.DEFAULT.classify(message, new MinecraftLogClassifier.Result()), false);
+    }
+
+    /**
+     * Logs a line of Minecraft's output to the console, already classified by the instance's classifier. Lines written
+     * to stderr without a tag saying otherwise are logged as warnings.
+     * <p/>
+     * This never waits for the logging thread to make space, as it's called from the one thread reading the output of
+     * every running instance. If the queue's full and the overflow policy is to block, lines are sampled instead.
+     *
+     * @param line   the classified line
+     * @param stderr if the line was written to stderr rather than stdout
+     */
+    public static void minecraft(MinecraftLogClassifier.Result line, boolean stderr) {
+        LogType type = stderr && !line.isTagged() ? LogType.WARN : line.getType();
+        queue.offerWithoutWaiting(new LogEvent(type, line.getMessage(), LogEvent.CONSOLE));
     }
 }
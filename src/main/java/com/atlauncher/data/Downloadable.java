@@ -19,23 +19,63 @@ package com.atlauncher.data;
 
 import com.atlauncher.App;
 import com.atlauncher.LogManager;
+import com.atlauncher.evnt.LauncherEvent;
+import com.atlauncher.network.ConnectionPool;
+import com.atlauncher.network.DownloadCache;
+import com.atlauncher.network.MirrorScoreboard;
+import com.atlauncher.network.PartialDownload;
+import com.atlauncher.utils.DigestIndex;
+import com.atlauncher.utils.SharedFiles;
 import com.atlauncher.utils.Utils;
 import com.atlauncher.workers.InstanceInstaller;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.net.HttpURLConnection;
 import java.net.SocketException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.GZIPInputStream;
 
 public class Downloadable {
+    /**
+     * A buffer for each download thread to read into, so a new one isn't made for every chunk read.
+     */
+    private static final ThreadLocal<byte[]> buffers = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[16 * 1024];
+        }
+    };
+
+    /**
+     * Runs the connections for hedged requests, the threads of which are only kept around while there's a use for them.
+     */
+    private static final ExecutorService hedgeExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Hedged Request");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
     private String beforeURL;
     private String url;
     private File file;
@@ -43,6 +83,14 @@ public class Downloadable {
     private String hash;
     private int size;
     private HttpURLConnection connection;
+    private boolean connectionUsed = false; // If the body of the current connection has been read
+    private long rangeStart = 0; // The byte the body of the next connection opened should start from
+    private PartialDownload partialDownload = null;
+    private ConnectionPool.Permit permit = null; // Lets this download use one of the connections to its host
+    private String downloadedHash = null; // Hash of the file worked out while it was downloaded
+    private long reportedBytes = 0; // Bytes of this file added to the installers progress so far
+    private long transferred = 0; // Bytes read from the network for this download over every attempt
+    private String failure = null; // Why this download failed, if it did
     private InstanceInstaller instanceInstaller;
     private boolean isATLauncherDownload;
     private File copyTo;
@@ -62,6 +110,19 @@ public class Downloadable {
                     break;
                 }
             }
+            if (this.server.getName().equals("Auto")) {
+                // No server picked by the user, so use whichever they could pick that's doing best
+                List<Server> selectable = new ArrayList<Server>();
+                for (Server server : this.servers) {
+                    if (server.isUserSelectable()) {
+                        selectable.add(server);
+                    }
+                }
+                Server best = MirrorScoreboard.getBest(selectable, this.server);
+                if (best != null) {
+                    this.server = best;
+                }
+            }
             this.url = this.server.getFileURL(url);
         } else {
             this.url = url;
@@ -69,7 +130,7 @@ public class Downloadable {
         this.beforeURL = url;
         this.file = file;
         this.hash = hash;
-        this.size = size;
+        this.size = (size > 0 ? size : -1); // A size of 0 from a pack's JSON means it wasn't given
         this.instanceInstaller = instanceInstaller;
         this.isATLauncherDownload = isATLauncherDownload;
         this.copyTo = copyTo;
@@ -128,33 +189,62 @@ public class Downloadable {
         }
     }
 
+    /**
+     * Gets the size of the file. This never opens a connection, so when the size wasn't given it will be 0 until the
+     * download has started and the size has been read from the response headers.
+     *
+     * @return the size of the file in bytes or 0 if not known
+     */
     public int getFilesize() {
         if (this.size == -1) {
-            int size = getConnection().getContentLength();
-            if (size == -1) {
-                this.size = 0;
-            } else {
-                this.size = size;
-            }
+            return 0;
         }
         return this.size;
     }
 
+    /**
+     * Reads the size of the file from the headers of the connection we're about to download the body from if it wasn't
+     * already known, adding it to the installers total so the progress bar is correct without another request.
+     *
+     * @param downloadAsLibrary if the progress of this download is tracked by the installer
+     */
+    private void readFilesizeFromHeaders(boolean downloadAsLibrary) {
+        if (this.size != -1 || getConnection() == null) {
+            return;
+        }
+        long size = this.partialDownload.getSize(); // Takes into account any range asked for
+        if (size <= 0) {
+            size = getConnection().getContentLength();
+        }
+        if (size <= 0 || size > Integer.MAX_VALUE) {
+            this.size = 0;
+            return;
+        }
+        this.size = (int) size;
+        if (this.instanceInstaller != null && downloadAsLibrary) {
+            this.instanceInstaller.addTotalDownloadedBytes(size);
+        }
+    }
+
     public boolean needToDownload() {
         if (this.file == null) {
             return true;
         }
         if (this.file.exists()) {
             if (isMD5()) {
-                if (Utils.getMD5(this.file).equalsIgnoreCase(getHash())) {
+                if (DigestIndex.getMD5(this.file).equalsIgnoreCase(getHash())) {
                     return false;
                 }
             } else {
-                if (Utils.getSHA1(this.file).equalsIgnoreCase(getHash())) {
+                if (DigestIndex.getSHA1(this.file).equalsIgnoreCase(getHash())) {
                     return false;
                 }
             }
         }
+        // Only use the hash we were given, getting it from the server would cost another connection
+        if (DownloadCache.isCacheableHash(this.hash) && DownloadCache.restore(this.hash, this.file, this.size)) {
+            return false;
+        }
         return true;
     }
 
@@ -165,7 +255,7 @@ public class Downloadable {
             }
             new File(this.copyTo.getAbsolutePath().substring(0, this.copyTo.getAbsolutePath().lastIndexOf(File
                     .separatorChar))).mkdirs();
-            Utils.copyFile(this.file, this.copyTo, true);
+            SharedFiles.place(this.file, this.copyTo, true);
         }
     }
 
@@ -207,30 +297,14 @@ public class Downloadable {
             }
         }
         if (this.connection == null) {
-            LogManager.debug("Opening connection to " + this.url, 3);
+            this.connectionUsed = false;
             try {
-                if (App.settings.getEnableProxy()) {
-                    this.connection = (HttpURLConnection) new URL(this.url).openConnection(App.settings.getProxy());
+                if (this.isATLauncherDownload) {
+                    this.connection = openHedgedConnection();
                 } else {
-                    this.connection = (HttpURLConnection) new URL(this.url).openConnection();
-                }
-                this.connection.setUseCaches(false);
-                this.connection.setDefaultUseCaches(false);
-                if (App.useGzipForDownloads) {
-                    this.connection.setRequestProperty("Accept-Encoding", "gzip");
-                }
-                this.connection.setRequestProperty("User-Agent", App.settings.getUserAgent());
-                this.connection.setRequestProperty("Cache-Control", "no-store,max-age=0,no-cache");
-                this.connection.setRequestProperty("Expires", "0");
-                this.connection.setRequestProperty("Pragma", "no-cache");
-                this.connection.connect();
-
-                if (this.connection.getResponseCode() / 100 != 2) {
-                    throw new IOException(this.url + " returned response code " + this.connection.getResponseCode() +
-                            (this.connection.getResponseMessage() != null ? " with message of " + this.connection
-                                    .getResponseMessage() : ""));
+                    this.connection = openConnection(this.url);
+                    checkResponseCode(this.connection, this.url);
                 }
-                LogManager.debug("Connection opened to " + this.url, 3);
             } catch (IOException e) {
                 LogManager.debug("Exception when opening connection to " + this.url, 3);
                 App.settings.logStackTrace(e);
@@ -238,6 +312,11 @@ public class Downloadable {
                     if (getNextServer()) {
                         this.url = server.getFileURL(this.beforeURL);
                         this.connection = null;
+                        if (this.permit != null) {
+                            // Don't hold on to a download slot for the old server while waiting for one for the new one
+                            this.permit.release();
+                            this.permit = ConnectionPool.acquire(this.url);
+                        }
                         return getConnection();
                     } else {
                         LogManager.error("Failed to download " + this.beforeURL + " from all " + Constants.LAUNCHER_NAME + " servers. " +
@@ -252,56 +331,233 @@ public class Downloadable {
         return this.connection;
     }
 
+    private HttpURLConnection openConnection(String url) throws IOException {
+        LogManager.debug("Opening connection to " + url, 3);
+        HttpURLConnection connection;
+        if (App.settings != null && App.settings.getEnableProxy()) {
+            connection = (HttpURLConnection) new URL(url).openConnection(App.settings.getProxy());
+        } else {
+            connection = (HttpURLConnection) new URL(url).openConnection();
+        }
+        connection.setUseCaches(false);
+        connection.setDefaultUseCaches(false);
+        // A connection which stalls is given up on so the download can carry on with a new one
+        connection.setConnectTimeout(30000);
+        connection.setReadTimeout(30000);
+        if (this.rangeStart > 0) {
+            // Carry on from where the last attempt got to, unless the file has changed since
+            connection.setRequestProperty("Range", "bytes=" + this.rangeStart + "-");
+            connection.setRequestProperty("If-Range", this.partialDownload.getValidator());
+        } else if (App.useGzipForDownloads) {
+            connection.setRequestProperty("Accept-Encoding", "gzip");
+        }
+        if (App.settings != null) {
+            connection.setRequestProperty("User-Agent", App.settings.getUserAgent());
+        }
+        connection.setRequestProperty("Cache-Control", "no-store,max-age=0,no-cache");
+        connection.setRequestProperty("Expires", "0");
+        connection.setRequestProperty("Pragma", "no-cache");
+        connection.connect();
+        ConnectionPool.opened(url);
+        return connection;
+    }
+
+    private void checkResponseCode(HttpURLConnection connection, String url) throws IOException {
+        if (connection.getResponseCode() / 100 != 2) {
+            throw new IOException(url + " returned response code " + connection.getResponseCode() + (connection
+                    .getResponseMessage() != null ? " with message of " + connection.getResponseMessage() : ""));
+        }
+        LogManager.debug("Connection opened to " + url, 3);
+    }
+
+    /**
+     * Opens a connection to the given server, recording how long it took to respond in the mirror scoreboard.
+     */
+    private HttpURLConnection connectTo(Server server) throws IOException {
+        String url = server.getFileURL(this.beforeURL);
+        long started = System.nanoTime();
+        HttpURLConnection connection = null;
+        try {
+            connection = openConnection(url);
+            checkResponseCode(connection, url);
+        } catch (IOException e) {
+            MirrorScoreboard.recordFailure(server);
+            if (connection != null) {
+                connection.disconnect();
+                ConnectionPool.closed(url, false);
+            }
+            throw e;
+        }
+        MirrorScoreboard.recordResponse(server, System.nanoTime() - started);
+        return connection;
+    }
+
+    /**
+     * Opens a connection to the current server, and if it's slow to respond sends the same request to the next best
+     * server too, using whichever responds first. This keeps one slow server from holding up the whole install.
+     */
+    private HttpURLConnection openHedgedConnection() throws IOException {
+        Server backup = MirrorScoreboard.getBackup(this.servers, this.server);
+        if (backup == null) {
+            return connectTo(this.server);
+        }
+
+        CompletionService<HttpURLConnection> service = new ExecutorCompletionService<HttpURLConnection>
+                (hedgeExecutor);
+        Map<Future<HttpURLConnection>, ConnectTask> running = new HashMap<Future<HttpURLConnection>, ConnectTask>();
+        ConnectTask primary = new ConnectTask(this.server, false);
+        running.put(service.submit(primary), primary);
+        IOException failure = null;
+        try {
+            Future<HttpURLConnection> done = service.poll(MirrorScoreboard.getHedgeDelay(this.server), TimeUnit
+                    .MILLISECONDS);
+            if (done == null) {
+                LogManager.debug("No response from " + this.server.getName() + " for " + this.beforeURL + " yet, " +
+                        "also trying " + backup.getName(), 3);
+                // Only a download holding a permit for its own host needs one for the backup's too
+                ConnectTask task = new ConnectTask(backup, this.permit != null);
+                running.put(service.submit(task), task);
+            }
+            while (!running.isEmpty()) {
+                if (done == null) {
+                    done = service.take();
+                }
+                ConnectTask task = running.remove(done);
+                try {
+                    HttpURLConnection connection = done.get();
+                    if (task.permit != null) {
+                        // The rest of the download counts against the backup's host, and the permit for the first
+                        // host goes once its connection has been discarded
+                        this.permit.handOff();
+                        if (running.isEmpty()) {
+                            this.permit.release(); // It failed already so there's nothing to discard
+                        } else {
+                            primary.permit = this.permit;
+                        }
+                        task.permit.claim();
+                        this.permit = task.permit;
+                    }
+                    this.server = task.server;
+                    this.url = task.server.getFileURL(this.beforeURL);
+                    return connection;
+                } catch (ExecutionException e) {
+                    failure = e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e
+                            .getCause().toString());
+                }
+                done = null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while connecting to " + this.url);
+        } finally {
+            for (Map.Entry<Future<HttpURLConnection>, ConnectTask> loser : running.entrySet()) {
+                hedgeExecutor.execute(new DiscardTask(loser.getKey(), loser.getValue(), loser.getValue().server
+                        .getFileURL(this.beforeURL)));
+            }
+        }
+        throw failure;
+    }
+
     private void downloadFile(boolean downloadAsLibrary) {
         if (instanceInstaller != null) {
             if (instanceInstaller.isCancelled()) {
                 return;
             }
         }
+        if (this.partialDownload == null) {
+            this.partialDownload = new PartialDownload(this.file, isMD5() ? "MD5" : "SHA-1");
+        }
+        long offset = this.partialDownload.resume(this.url);
+        if (this.connection != null && this.rangeStart != offset) {
+            closeConnection(false); // The connection already open doesn't start where we need it to
+        }
+        this.rangeStart = offset;
         InputStream in = null;
-        FileOutputStream writer = null;
         try {
+            if (getConnection() == null) {
+                return;
+            }
+            this.connectionUsed = true;
+            if (this.partialDownload.start(getConnection(), isGziped())) {
+                LogManager.debug("Resuming download of " + this.url + " from byte " + offset, 3);
+            }
+            readFilesizeFromHeaders(downloadAsLibrary);
+            addReportedBytes(this.partialDownload.getOffset() - this.reportedBytes, downloadAsLibrary);
             if (isGziped() && App.useGzipForDownloads) {
                 in = new GZIPInputStream(getConnection().getInputStream());
             } else {
                 in = getConnection().getInputStream();
             }
-            writer = new FileOutputStream(this.file);
-            byte[] buffer = new byte[2048];
+            byte[] buffer = buffers.get();
             int bytesRead = 0;
+            long bytesReceived = 0;
+            long started = System.nanoTime();
             while ((bytesRead = in.read(buffer)) > 0) {
-                writer.write(buffer, 0, bytesRead);
-                buffer = new byte[2048];
-                if (this.instanceInstaller != null && downloadAsLibrary && getFilesize() != 0) {
-                    this.instanceInstaller.addDownloadedBytes(bytesRead);
-                }
+                bytesReceived += bytesRead;
+                this.transferred += bytesRead;
+                this.partialDownload.write(buffer, 0, bytesRead);
+                addReportedBytes(bytesRead, downloadAsLibrary);
+            }
+            if (!this.partialDownload.isComplete()) {
+                throw new IOException("Connection closed after " + this.partialDownload.getOffset() + " of " + this
+                        .partialDownload.getSize() + " bytes");
             }
+            in.close();
+            in = null;
+            closeConnection(true); // All of the body was read so the connection can be used for the next download
+            if (this.isATLauncherDownload) {
+                MirrorScoreboard.recordTransfer(this.server, bytesReceived, System.nanoTime() - started);
+            }
+            this.downloadedHash = this.partialDownload.finish();
+            DigestIndex.put(this.file, isMD5(), this.downloadedHash);
         } catch (SocketException e) {
-            LogManager.error("Failed to download " + this.url + " due to SocketException!");
             // Connection reset. Close connection and try again
-            App.settings.logStackTrace(e);
-            this.connection.disconnect();
-            this.connection = null;
+            logDownloadFailure(e);
+            closeConnection(false);
             if (this.oldFile != null && this.oldFile.exists()) {
                 Utils.moveFile(this.oldFile, this.file, true);
             }
         } catch (IOException e) {
-            LogManager.error("Failed to download " + this.url + " due to IOException!");
-            App.settings.logStackTrace(e);
+            logDownloadFailure(e);
+            closeConnection(false);
+            if (this.isATLauncherDownload) {
+                MirrorScoreboard.recordFailure(this.server);
+            }
             if (this.oldFile != null && this.oldFile.exists()) {
                 Utils.moveFile(this.oldFile, this.file, true);
             }
         } finally {
-            try {
-                if (writer != null) {
-                    writer.close();
-                }
-                if (in != null) {
-                    in.close();
-                }
-            } catch (IOException e1) {
-                App.settings.logStackTrace(e1);
-            }
+            this.partialDownload.close(); // Saves how far we got so the next attempt can carry on from there
+            Utils.closeQuietly(in);
+        }
+    }
+
+    private void logDownloadFailure(IOException e) {
+        if (this.partialDownload.canResume()) {
+            LogManager.warn("Download of " + this.url + " was cut off after " + this.partialDownload.getOffset() + " " +
+                    "bytes (" + e.getMessage() + "). Carrying on from there!");
+        } else {
+            LogManager.error("Failed to download " + this.url + " due to " + e.getClass().getSimpleName() + "!");
+            App.settings.logStackTrace(e);
+        }
+    }
+
+    /**
+     * Adds the given number of bytes to the installers progress. If a retry has to download bytes which have already
+     * been counted again, then this is called with a negative number and the total is raised instead.
+     *
+     * @param bytes             the number of bytes downloaded
+     * @param downloadAsLibrary if the progress of this download is tracked by the installer
+     */
+    private void addReportedBytes(long bytes, boolean downloadAsLibrary) {
+        this.reportedBytes += bytes;
+        if (this.instanceInstaller == null || !downloadAsLibrary || getFilesize() == 0 || bytes == 0) {
+            return;
+        }
+        if (bytes > 0) {
+            this.instanceInstaller.addDownloadedBytes(bytes);
+        } else {
+            this.instanceInstaller.addTotalDownloadedBytes(-bytes);
         }
     }
 
@@ -311,8 +567,12 @@ public class Downloadable {
                 return null;
             }
         }
+        if (getConnection() == null) {
+            return null;
+        }
         StringBuilder response = null;
         try {
+            this.connectionUsed = true;
             InputStream in = null;
             if (isGziped() && App.useGzipForDownloads) {
                 in = new GZIPInputStream(getConnection().getInputStream());
@@ -330,24 +590,73 @@ public class Downloadable {
         } catch (IOException e) {
             LogManager.error("Failed to get contents of " + this.url + " due to IOException!");
             App.settings.logStackTrace(e);
+            closeConnection(false);
             return null;
         }
-        this.connection.disconnect();
+        closeConnection(true);
         return response.toString();
     }
 
+    /**
+     * Finishes with the current connection. If all of its body has been read and its stream closed it's left open so
+     * Java's keep-alive cache can hand it to the next download from the same host, otherwise it's disconnected.
+     *
+     * @param reusable true if the body of the connection was read completely
+     */
+    private void closeConnection(boolean reusable) {
+        if (this.connection == null) {
+            return;
+        }
+        if (!reusable) {
+            this.connection.disconnect();
+        }
+        this.connection = null;
+        ConnectionPool.closed(this.url, reusable);
+    }
+
     public void download(boolean downloadAsLibrary) {
         download(downloadAsLibrary, false);
     }
 
     public void download(boolean downloadAsLibrary, boolean force) {
+        long started = System.currentTimeMillis();
+        this.transferred = 0;
+        this.failure = null;
+        this.permit = ConnectionPool.acquire(this.url);
+        try {
+            doDownload(downloadAsLibrary, force);
+        } finally {
+            this.permit.release();
+            this.permit = null; // Only held while downloading, anything opened after that isn't limited
+        }
+        LauncherEvent event = LauncherEvent.of(this.failure == null ? "download.finished" : "download.failed").bytes
+                (this.transferred).duration(System.currentTimeMillis() - started).error(this.failure);
+        if (this.file != null) {
+            event.file(this.file.getName());
+        }
+        if (this.isATLauncherDownload) {
+            event.mirror(this.server.getName());
+        }
+        if (this.instanceInstaller != null) {
+            event.instance(this.instanceInstaller.getInstanceName()).pack(this.instanceInstaller.getPack().getName())
+                    .version(this.instanceInstaller.getVersion().getVersion()).phase(this.instanceInstaller
+                    .getPhase());
+            this.instanceInstaller.addTransferredBytes(this.transferred);
+        }
+        event.emit();
+    }
+
+    private void doDownload(boolean downloadAsLibrary, boolean force) {
         this.attempts = 0;
-        if (this.connection != null) {
-            this.connection.disconnect();
-            this.connection = null;
+        this.reportedBytes = 0;
+        this.downloadedHash = null;
+        if (this.connection != null && this.connectionUsed) {
+            // Only throw away the connection if we've already read from it, one opened to get the hash can be reused
+            closeConnection(false);
         }
         if (this.file == null) {
             LogManager.error("Cannot download " + this.url + " to file as one wasn't specified!");
+            this.failure = "No file to download to";
             return;
         }
         if (this.file.exists()) {
@@ -356,6 +665,7 @@ public class Downloadable {
         }
         if (instanceInstaller != null) {
             if (instanceInstaller.isCancelled()) {
+                this.failure = "Cancelled";
                 return;
             }
         }
@@ -371,16 +681,22 @@ public class Downloadable {
         if (getHash().equalsIgnoreCase("-")) {
             downloadFile(downloadAsLibrary); // Only download the file once since we have no MD5 to
             // check
+            if (!this.file.exists()) {
+                this.failure = "Couldn't download";
+            }
         } else {
             String fileHash = "0";
             boolean done = false;
+            DownloadCache.restore(getHash(), this.file, this.size);
             while (attempts <= 3) {
                 attempts++;
-                if (this.file.exists()) {
+                if (this.downloadedHash != null && this.file.exists()) {
+                    fileHash = this.downloadedHash; // Already hashed as it was downloaded
+                } else if (this.file.exists()) {
                     if (isMD5()) {
-                        fileHash = Utils.getMD5(this.file);
+                        fileHash = DigestIndex.getMD5(this.file);
                     } else {
-                        fileHash = Utils.getSHA1(this.file);
+                        fileHash = DigestIndex.getSHA1(this.file);
                     }
                 } else {
                     fileHash = "0";
@@ -389,17 +705,17 @@ public class Downloadable {
                     done = true;
                     break; // Hash matches, file is good
                 }
-                if (this.connection != null) {
-                    this.connection.disconnect();
-                    this.connection = null;
+                if (this.connection != null && this.connectionUsed) {
+                    closeConnection(false);
+                }
+                if (this.downloadedHash != null && this.isATLauncherDownload) {
+                    MirrorScoreboard.recordFailure(this.server); // The server sent a file which doesn't match
                 }
+                this.downloadedHash = null;
                 if (this.file.exists()) {
                     Utils.delete(this.file); // Delete file since it doesn't match MD5
                 }
-                if (attempts != 1 && downloadAsLibrary) {
-                    this.instanceInstaller.addTotalDownloadedBytes(this.size);
-                }
-                downloadFile(downloadAsLibrary); // Keep downloading file until it matches MD5
+                downloadFile(downloadAsLibrary); // Keep downloading file until it matches MD5, carrying on if it can
             }
             if (!done) {
                 if (this.isATLauncherDownload) {
@@ -409,11 +725,15 @@ public class Downloadable {
                                 "server!");
                         this.url = server.getFileURL(this.beforeURL);
                         if (downloadAsLibrary) {
-                            this.instanceInstaller.addTotalDownloadedBytes(this.size);
+                            this.instanceInstaller.addTotalDownloadedBytes(getFilesize());
                         }
-                        download(downloadAsLibrary); // Redownload the file
+                        // Don't hold on to a download slot for the old server while waiting for one for the new one
+                        this.permit.release();
+                        this.permit = ConnectionPool.acquire(this.url);
+                        doDownload(downloadAsLibrary, false); // Redownload the file
                     } else {
                         Utils.copyFile(this.file, App.settings.getFailedDownloadsDir());
+                        this.failure = "Hash mismatch from every server";
                         LogManager.error("Failed to download file " + this.file.getName() + " from all " + Constants.LAUNCHER_NAME +
                                 "servers. Copied to FailedDownloads Folder. Cancelling install!");
                         if (this.instanceInstaller != null) {
@@ -422,6 +742,7 @@ public class Downloadable {
                     }
                 } else {
                     Utils.copyFile(this.file, App.settings.getFailedDownloadsDir());
+                    this.failure = "Expected hash " + getHash() + " but got " + fileHash;
                     LogManager.error("Error downloading " + this.file.getName() + " from " + this.url + ". Expected " +
                             "hash of " + getHash() + " but got " + fileHash + " instead. Copied to FailedDownloads " +
                             "Folder. Cancelling install!");
@@ -429,13 +750,16 @@ public class Downloadable {
                         instanceInstaller.cancel(true);
                     }
                 }
-            } else if (this.copyTo != null && this.actuallyCopy) {
+            } else {
+                DownloadCache.store(getHash(), this.file);
+            }
+            if (done && this.copyTo != null && this.actuallyCopy) {
                 String fileHash2;
                 if (this.copyTo.exists()) {
                     if (isMD5()) {
-                        fileHash2 = Utils.getMD5(this.file);
+                        fileHash2 = DigestIndex.getMD5(this.copyTo);
                     } else {
-                        fileHash2 = Utils.getSHA1(this.file);
+                        fileHash2 = DigestIndex.getSHA1(this.copyTo);
                     }
                 } else {
                     fileHash2 = "0";
@@ -446,34 +770,38 @@ public class Downloadable {
                     }
                     new File(this.copyTo.getAbsolutePath().substring(0, this.copyTo.getAbsolutePath().lastIndexOf
                             (File.separatorChar))).mkdirs();
-                    Utils.copyFile(this.file, this.copyTo, true);
+                    if (SharedFiles.place(this.file, this.copyTo, true)) {
+                        DigestIndex.put(this.copyTo, isMD5(), getHash()); // A copy of the file we just checked
+                    }
                 }
             }
-            App.settings.clearTriedServers(); // Okay downloaded it so clear the servers used
+            if (this.isATLauncherDownload) {
+                App.settings.clearTriedServers(); // Okay downloaded it so clear the servers used
+            }
         }
 
         if (this.oldFile != null && this.oldFile.exists()) {
             Utils.delete(this.oldFile);
         }
 
-        if (this.connection != null) {
-            this.connection.disconnect();
-        }
+        closeConnection(false);
     }
 
     public boolean getNextServer() {
-        for (Server server : this.servers) {
-            if (this.server != server) {
-                LogManager.warn("Server " + this.server.getName() + " Not Available! Switching To " + server.getName());
-                this.servers.remove(this.server);
-                this.server = server; // Setup next available server
-                return true;
-            }
+        this.servers.remove(this.server);
+        Server next = MirrorScoreboard.getBest(this.servers, null); // The best scoring server not tried yet
+        if (next == null) {
+            return false;
         }
-        return false;
+        LogManager.warn("Server " + this.server.getName() + " Not Available! Switching To " + next.getName());
+        this.server = next; // Setup next available server
+        return true;
     }
 
     public int getResponseCode() {
+        if (getConnection() == null) {
+            return -1;
+        }
         try {
             return getConnection().getResponseCode();
         } catch (IOException e) {
@@ -481,4 +809,81 @@ public class Downloadable {
             return -1;
         }
     }
+
+    /**
+     * Connects to a server for a hedged request.
+     */
+    private final class ConnectTask implements Callable<HttpURLConnection> {
+        private final Server server;
+        private final boolean acquire;
+
+        /**
+         * The permit the connection counts against, once connected if the task got its own, or once the backup won
+         * for the first server. It's released when the connection is discarded.
+         */
+        private volatile ConnectionPool.Permit permit = null;
+
+        /**
+         * @param server  the server to connect to
+         * @param acquire true to wait for a permit for the server's host before connecting
+         */
+        private ConnectTask(Server server, boolean acquire) {
+            this.server = server;
+            this.acquire = acquire;
+        }
+
+        @Override
+        public HttpURLConnection call() throws IOException {
+            ConnectionPool.Permit permit = this.acquire ? ConnectionPool.acquire(this.server.getFileURL(beforeURL))
+                    : null;
+            boolean connected = false;
+            try {
+                HttpURLConnection connection = connectTo(this.server);
+                connected = true;
+                return connection;
+            } finally {
+                if (permit != null) {
+                    if (connected) {
+                        permit.handOff(); // To the download's thread if this wins, or to the discard task if not
+                        this.permit = permit;
+                    } else {
+                        permit.release();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits for the losing side of a hedged request to finish connecting and then closes its connection, releasing
+     * the permit it counted against.
+     */
+    private static final class DiscardTask implements Runnable {
+        private final Future<HttpURLConnection> future;
+        private final ConnectTask task;
+        private final String url;
+
+        private DiscardTask(Future<HttpURLConnection> future, ConnectTask task, String url) {
+            this.future = future;
+            this.task = task;
+            this.url = url;
+        }
+
+        @Override
+        public void run() {
+            try {
+                this.future.get().disconnect();
+                ConnectionPool.closed(this.url, false);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                // It failed anyway, so there's nothing to close.
+            } finally {
+                ConnectionPool.Permit permit = this.task.permit;
+                if (permit != null) {
+                    permit.release();
+                }
+            }
+        }
+    }
 }
@@ -21,10 +21,14 @@ import com.atlauncher.App;
 import com.atlauncher.Gsons;
 import com.atlauncher.LogManager;
 import com.atlauncher.data.openmods.OpenEyeReportResponse;
+import com.atlauncher.evnt.LauncherEvent;
 import com.atlauncher.gui.dialogs.ProgressDialog;
 import com.atlauncher.mclauncher.LegacyMCLauncher;
 import com.atlauncher.mclauncher.MCLauncher;
+import com.atlauncher.thread.ProcessPump;
+import com.atlauncher.utils.GameLogArchive;
 import com.atlauncher.utils.HTMLUtils;
+import com.atlauncher.utils.MinecraftLogClassifier;
 import com.atlauncher.utils.Utils;
 
 import javax.imageio.ImageIO;
@@ -32,12 +36,9 @@ import javax.swing.ImageIcon;
 import javax.swing.JOptionPane;
 import java.awt.Image;
 import java.awt.image.BufferedImage;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -158,6 +159,13 @@ public class Instance implements Cloneable {
      */
     private boolean newLaunchMethod;
 
+    /**
+     * The tags in Minecraft's output the pack wants shown at a certain log level, on top of the usual ones.
+     *
+     * @see com.atlauncher.utils.MinecraftLogClassifier
+     */
+    private Map<String, String> logLevels;
+
     /**
      * List of DisableableMod objects for the mods in the Instance.
      *
@@ -590,6 +598,15 @@ public class Instance implements Cloneable {
         return new File(getRootDirectory(), "reports");
     }
 
+    /**
+     * Gets a File object for the directory where the output of each time this Instance is launched is kept.
+     *
+     * @return File object for the game logs directory of this Instance
+     */
+    public File getGameLogsDirectory() {
+        return new File(getRootDirectory(), "gamelogs");
+    }
+
     /**
      * Gets a File object for the mods directory of this Instance.
      *
@@ -919,6 +936,14 @@ public class Instance implements Cloneable {
         this.mainClass = mainClass;
     }
 
+    public Map<String, String> getLogLevels() {
+        return this.logLevels;
+    }
+
+    public void setLogLevels(Map<String, String> logLevels) {
+        this.logLevels = logLevels;
+    }
+
     /**
      * Gets the assets value which Minecraft uses to determine how to load assets in the game.
      *
@@ -1112,6 +1137,17 @@ public class Instance implements Cloneable {
                 return false;
             }
 
+            // Keep the account's details out of the console, the logs and anything uploaded from them
+            LogManager.addSecret(account.getMinecraftUsername(), "**MINECRAFTUSERNAME**");
+            LogManager.addSecret(account.getUsername(), "**MINECRAFTUSERNAME**");
+            if (account.hasAccessToken()) {
+                LogManager.addSecret(account.getAccessToken(), "**ACCESSTOKEN**");
+            }
+            if (account.hasUUID()) {
+                LogManager.addSecret(account.getUUID(), "**UUID**");
+                LogManager.addSecret(account.getUUIDNoDashes(), "**UUID**");
+            }
+
             Thread launcher = new Thread() {
                 public void run() {
                     try {
@@ -1149,37 +1185,53 @@ public class Instance implements Cloneable {
                         }
 
                         App.settings.showKillMinecraft(process);
-                        InputStream is = process.getInputStream();
-                        InputStreamReader isr = new InputStreamReader(is);
-                        BufferedReader br = new BufferedReader(isr);
-                        String line;
-                        while ((line = br.readLine()) != null) {
-                            if (!LogManager.showDebug) {
-                                line = line.replace(account.getMinecraftUsername(), "**MINECRAFTUSERNAME**");
-                                line = line.replace(account.getUsername(), "**MINECRAFTUSERNAME**");
-                                if (account.hasAccessToken()) {
-                                    line = line.replace(account.getAccessToken(), "**ACCESSTOKEN**");
-                                }
-                                if (account.hasUUID()) {
-                                    line = line.replace(account.getUUID(), "**UUID**");
+                        LauncherEvent.of("launch.started").instance(getName()).pack(getPackName()).version
+                                (getVersion()).duration(System.currentTimeMillis() - start).emit();
+                        final MinecraftLogClassifier classifier = MinecraftLogClassifier.forRules(logLevels);
+                        final MinecraftLogClassifier.Result result = new MinecraftLogClassifier.Result();
+                        GameLogArchive.Recorder recorder = null;
+                        try {
+                            recorder = new GameLogArchive(getGameLogsDirectory()).startSession();
+                        } catch (IOException e) {
+                            LogManager.warn("Couldn't save this session's game log: " + e.getMessage());
+                        }
+                        final GameLogArchive.Recorder gameLog = recorder;
+                        ProcessPump.Pumped output = ProcessPump.pump("Minecraft", process, new ProcessPump
+                                .LineListener() {
+                            @Override
+                            public void line(ProcessPump.Source source, String line) {
+                                LogManager.minecraft(classifier.classify(line, result), source == ProcessPump.Source
+                                        .STDERR);
+                                if (gameLog != null) {
+                                    try {
+                                        gameLog.append(LogManager.redactAlways(line));
+                                    } catch (IOException e) {
+                                        LogManager.warn("Stopped saving the game log: " + e.getMessage());
+                                        Utils.closeQuietly(gameLog);
+                                    }
                                 }
                             }
-                            LogManager.minecraft(line);
+                        });
+                        int exitValue;
+                        try {
+                            exitValue = output.waitFor();
+                        } catch (InterruptedException e) {
+                            exitValue = 0; // Assume we exited fine
+                            process.destroy(); // Kill the process
                         }
+                        Utils.closeQuietly(gameLog);
+                        LogManager.debug(output.getStatistics());
                         App.settings.hideKillMinecraft();
                         if (App.settings.getParent() != null && App.settings.keepLauncherOpen()) {
                             App.settings.getParent().setVisible(true);
                         }
                         long end = System.currentTimeMillis();
+                        LauncherEvent.of("launch.exited").instance(getName()).pack(getPackName()).version
+                                (getVersion()).bytes(output.getBytes()).duration(end - start).error(exitValue == 0 ?
+                                null : "Exited with code " + exitValue).emit();
                         if (App.settings.isInOfflineMode() && !App.forceOfflineMode) {
                             App.settings.checkOnlineStatus();
                         }
-                        int exitValue = 0; // Assume we exited fine
-                        try {
-                            exitValue = process.exitValue(); // Try to get the real exit value
-                        } catch (IllegalThreadStateException e) {
-                            process.destroy(); // Kill the process
-                        }
                         if (!App.settings.keepLauncherOpen()) {
                             App.settings.getConsole().setVisible(false); // Hide the console to pretend we've closed
                         }
@@ -19,7 +19,9 @@ package com.atlauncher.data;
 
 import com.atlauncher.App;
 import com.atlauncher.LogManager;
+import com.atlauncher.utils.DigestIndex;
 import com.atlauncher.utils.HTMLUtils;
+import com.atlauncher.utils.SharedFiles;
 import com.atlauncher.utils.Utils;
 import com.atlauncher.workers.InstanceInstaller;
 
@@ -283,7 +285,7 @@ public class Mod {
         File fileLocation = new File(App.settings.getDownloadsDir(), getFile());
         if (fileLocation.exists()) {
             if (hasMD5()) {
-                if (compareMD5(Utils.getMD5(fileLocation))) {
+                if (compareMD5(DigestIndex.getMD5(fileLocation))) {
                     return; // File already exists and matches hash, don't download it
                 } else {
                     Utils.delete(fileLocation); // File exists but is corrupt, delete it
@@ -411,7 +413,7 @@ public class Mod {
                 break;
         }
         if (hasMD5()) {
-            if (compareMD5(Utils.getMD5(fileLocation))) {
+            if (compareMD5(DigestIndex.getMD5(fileLocation))) {
                 return; // MD5 hash matches
             } else {
                 if (attempt < 5) {
@@ -431,7 +433,7 @@ public class Mod {
         File fileLocation = new File(App.settings.getDownloadsDir(), getServerFile());
         if (fileLocation.exists()) {
             if (hasServerMD5()) {
-                if (compareServerMD5(Utils.getMD5(fileLocation))) {
+                if (compareServerMD5(DigestIndex.getMD5(fileLocation))) {
                     return; // File already exists and matches hash, don't download it
                 } else {
                     Utils.delete(fileLocation); // File exists but is corrupt, delete it
@@ -542,7 +544,7 @@ public class Mod {
             }
         }
         if (hasServerMD5()) {
-            if (compareServerMD5(Utils.getMD5(fileLocation))) {
+            if (compareServerMD5(DigestIndex.getMD5(fileLocation))) {
                 return; // MD5 hash matches
             } else {
                 if (attempt < 5) {
@@ -572,18 +574,18 @@ public class Mod {
             case jar:
             case forge:
                 if (installer.isServer() && thisType == Type.forge) {
-                    Utils.copyFile(fileLocation, installer.getRootDirectory());
+                    SharedFiles.place(fileLocation, installer.getRootDirectory(), false);
                     break;
                 } else if (installer.isServer() && thisType == Type.jar) {
-                    Utils.unzip(fileLocation, installer.getTempJarDirectory());
+                    installer.addServerJarMod(fileLocation);
                     break;
                 }
-                Utils.copyFile(fileLocation, installer.getJarModsDirectory());
+                SharedFiles.place(fileLocation, installer.getJarModsDirectory(), false);
                 installer.addToJarOrder(getFile());
                 break;
             case mcpc:
                 if (installer.isServer()) {
-                    Utils.copyFile(fileLocation, installer.getRootDirectory());
+                    SharedFiles.place(fileLocation, installer.getRootDirectory(), false);
                     break;
                 }
                 break;
@@ -591,13 +593,13 @@ public class Mod {
                 if (!installer.getTexturePacksDirectory().exists()) {
                     installer.getTexturePacksDirectory().mkdir();
                 }
-                Utils.copyFile(fileLocation, installer.getTexturePacksDirectory());
+                SharedFiles.place(fileLocation, installer.getTexturePacksDirectory(), false);
                 break;
             case resourcepack:
                 if (!installer.getResourcePacksDirectory().exists()) {
                     installer.getResourcePacksDirectory().mkdir();
                 }
-                Utils.copyFile(fileLocation, installer.getResourcePacksDirectory());
+                SharedFiles.place(fileLocation, installer.getResourcePacksDirectory(), false);
                 break;
             case texturepackextract:
                 if (!installer.getTexturePacksDirectory().exists()) {
@@ -631,53 +633,53 @@ public class Mod {
                 Utils.delete(tempDirMillenaire);
                 break;
             case mods:
-                Utils.copyFile(fileLocation, installer.getModsDirectory());
+                SharedFiles.place(fileLocation, installer.getModsDirectory(), false);
                 break;
             case ic2lib:
                 if (!installer.getIC2LibDirectory().exists()) {
                     installer.getIC2LibDirectory().mkdir();
                 }
-                Utils.copyFile(fileLocation, installer.getIC2LibDirectory());
+                SharedFiles.place(fileLocation, installer.getIC2LibDirectory(), false);
                 break;
             case flan:
                 if (!installer.getFlanDirectory().exists()) {
                     installer.getFlanDirectory().mkdir();
                 }
-                Utils.copyFile(fileLocation, installer.getFlanDirectory());
+                SharedFiles.place(fileLocation, installer.getFlanDirectory(), false);
                 break;
             case denlib:
                 if (!installer.getDenLibDirectory().exists()) {
                     installer.getDenLibDirectory().mkdir();
                 }
-                Utils.copyFile(fileLocation, installer.getDenLibDirectory());
+                SharedFiles.place(fileLocation, installer.getDenLibDirectory(), false);
                 break;
             case dependency:
                 if (!installer.getDependencyDirectory().exists()) {
                     installer.getDependencyDirectory().mkdirs();
                 }
-                Utils.copyFile(fileLocation, installer.getDependencyDirectory());
+                SharedFiles.place(fileLocation, installer.getDependencyDirectory(), false);
                 break;
             case plugins:
                 if (!installer.getPluginsDirectory().exists()) {
                     installer.getPluginsDirectory().mkdir();
                 }
-                Utils.copyFile(fileLocation, installer.getPluginsDirectory());
+                SharedFiles.place(fileLocation, installer.getPluginsDirectory(), false);
                 break;
             case coremods:
                 if (installer.getVersion().getMinecraftVersion().usesCoreMods()) {
                     if (!installer.getCoreModsDirectory().exists()) {
                         installer.getCoreModsDirectory().mkdir();
                     }
-                    Utils.copyFile(fileLocation, installer.getCoreModsDirectory());
+                    SharedFiles.place(fileLocation, installer.getCoreModsDirectory(), false);
                 } else {
-                    Utils.copyFile(fileLocation, installer.getModsDirectory());
+                    SharedFiles.place(fileLocation, installer.getModsDirectory(), false);
                 }
                 break;
             case shaderpack:
                 if (!installer.getShaderPacksDirectory().exists()) {
                     installer.getShaderPacksDirectory().mkdir();
                 }
-                Utils.copyFile(fileLocation, installer.getShaderPacksDirectory());
+                SharedFiles.place(fileLocation, installer.getShaderPacksDirectory(), false);
                 break;
             case extract:
                 File tempDirExtract = new File(App.settings.getTempDir(), getSafeName());
@@ -30,10 +30,16 @@ import com.atlauncher.gui.dialogs.ProgressDialog;
 import com.atlauncher.gui.tabs.InstancesTab;
 import com.atlauncher.gui.tabs.NewsTab;
 import com.atlauncher.gui.tabs.PacksTab;
-import com.atlauncher.thread.LoggingThread;
+import com.atlauncher.network.ConnectionPool;
+import com.atlauncher.network.DownloadScheduler;
+import com.atlauncher.network.MirrorScoreboard;
+import com.atlauncher.thread.TaskGraph;
 import com.atlauncher.utils.ATLauncherAPIUtils;
 import com.atlauncher.utils.HTMLUtils;
+import com.atlauncher.utils.LogIndex;
 import com.atlauncher.utils.MojangAPIUtils;
+import com.atlauncher.utils.RingBuffer;
+import com.atlauncher.utils.SharedFiles;
 import com.atlauncher.utils.Timestamper;
 import com.atlauncher.utils.Utils;
 import com.google.gson.JsonIOException;
@@ -71,13 +77,10 @@ import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.net.Proxy.Type;
 import java.net.URLDecoder;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Calendar;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -87,8 +90,7 @@ import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Timer;
 import java.util.TimerTask;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Settings class for storing all data for the Launcher and the settings of the user.
@@ -96,6 +98,8 @@ import java.util.concurrent.Executors;
  * @author Ryan
  */
 public class Settings {
+    private static final int STARTUP_THREADS = 4; // Steps of loading the launcher to run at once
+
     // Users Settings
     private Server server; // Server to use for the Launcher
     private String forgeLoggingLevel; // Logging level to use when running Minecraft with Forge
@@ -124,6 +128,9 @@ public class Settings {
     private String proxyType; // The type of proxy (socks, http)
     private int concurrentConnections; // Number of concurrent connections to open when downloading
     private int daysOfLogsToKeep; // Number of days of logs to keep
+    private int downloadCacheSize; // Maximum size in MB of the shared download cache, 0 to disable it
+    private int logsDiskBudget; // Maximum size in MB of the launcher's log files and event log between them
+    private RingBuffer.OverflowPolicy logOverflowPolicy = RingBuffer.OverflowPolicy.BLOCK; // When logging is behind
     private Account account; // Account using the Launcher
     private String addedPacks; // The Semi Public packs the user has added to the Launcher
     private Proxy proxy = null; // The proxy object if any
@@ -152,8 +159,9 @@ public class Settings {
     // Directories and Files for the Launcher
     private File baseDir, backupsDir, configsDir, themesDir, jsonDir, versionsDir, imagesDir, skinsDir, jarsDir,
             commonConfigsDir, resourcesDir, librariesDir, launcherLibrariesdir, languagesDir, downloadsDir,
-            usersDownloadsFolder, instancesDir, serversDir, tempDir, failedDownloadsDir, instancesDataFile,
-            checkingServersFile, userDataFile, propertiesFile, logsDir;
+            usersDownloadsFolder, instancesDir, serversDir, tempDir, failedDownloadsDir, cacheDir, instancesDataFile,
+            checkingServersFile, userDataFile, propertiesFile, digestIndexFile, sharedFilesIndexFile, mirrorScoresFile,
+            logsDir;
     // Launcher Settings
     private JFrame parent; // Parent JFrame of the actual Launcher
     private Properties properties = new Properties(); // Properties to store everything in
@@ -193,6 +201,7 @@ public class Settings {
 
     public void setupFiles() {
         baseDir = Utils.getCoreGracefully();
+        LogManager.addSecret(baseDir.getAbsolutePath(), "**USERSDIR**");
         usersDownloadsFolder = new File(System.getProperty("user.home"), "Downloads");
         logsDir = new File(baseDir, "Logs");
         backupsDir = new File(baseDir, "Backups");
@@ -213,10 +222,14 @@ public class Settings {
         serversDir = new File(baseDir, "Servers");
         tempDir = new File(baseDir, "Temp");
         failedDownloadsDir = new File(baseDir, "FailedDownloads");
+        cacheDir = new File(baseDir, "Cache");
         instancesDataFile = new File(configsDir, "instancesdata");
         checkingServersFile = new File(configsDir, "checkingservers.json");
         userDataFile = new File(configsDir, "userdata");
         propertiesFile = new File(configsDir, Constants.LAUNCHER_NAME + ".conf");
+        digestIndexFile = new File(configsDir, "digestindex");
+        sharedFilesIndexFile = new File(configsDir, "sharedfiles");
+        mirrorScoresFile = new File(configsDir, "mirrorscores.json");
     }
 
     public void loadEverything() {
@@ -225,70 +238,147 @@ public class Settings {
         }
 
         setupServers(); // Setup the servers available to use in the Launcher
-        findActiveServers(); // Find active servers
-        loadServerProperty(false); // Get users Server preference
-        if (hasUpdatedFiles()) {
-            downloadUpdatedFiles(); // Downloads updated files on the server
-        }
-
-        checkForLauncherUpdate();
-
-        downloadExternalLibraries();
-
-        if (!Utils.checkAuthLibLoaded()) {
-            LogManager.error("AuthLib was not loaded into the classpath!");
-        }
-
-        loadNews(); // Load the news
-
-        this.languageLoaded = true; // Languages are now loaded
-
-        loadMinecraftVersions(); // Load info about the different Minecraft versions
-
-        loadPacks(); // Load the Packs available in the Launcher
 
-        loadUsers(); // Load the Testers and Allowed Players for the packs
-
-        loadInstances(); // Load the users installed Instances
-
-        loadAccounts(); // Load the saved Accounts
-
-        loadCheckingServers(); // Load the saved servers we're checking with the tool
-
-        loadProperties(); // Load the users Properties
-
-        if (this.isUsingCustomJavaPath()) {
-            checkForValidJavaPath(true); // Checks for a valid Java path
-        }
-
-        console.setupLanguage(); // Setup language on the console
-
-        clearOldLogs(); // Clear all the old logs out
+        // Each step starts as soon as the steps it needs have finished, so the network bound ones overlap
+        TaskGraph startup = new TaskGraph("Startup");
+        TaskGraph.Task serversTask = startup.add("Find active servers", new Runnable() {
+            @Override
+            public void run() {
+                findActiveServers(); // Find active servers
+                loadServerProperty(false); // Get users Server preference
+            }
+        });
+        TaskGraph.Task updatedFilesTask = startup.add("Download updated files", new Runnable() {
+            @Override
+            public void run() {
+                if (hasUpdatedFiles()) {
+                    downloadUpdatedFiles(); // Downloads updated files on the server
+                }
+            }
+        }, serversTask);
+        TaskGraph.Task launcherUpdateTask = startup.add("Check for launcher update", new Runnable() {
+            @Override
+            public void run() {
+                checkForLauncherUpdate();
+            }
+        }, updatedFilesTask);
+        startup.add("Download external libraries", new Runnable() {
+            @Override
+            public void run() {
+                downloadExternalLibraries();
 
-        checkResources(); // Check for new format of resources
+                if (!Utils.checkAuthLibLoaded()) {
+                    LogManager.error("AuthLib was not loaded into the classpath!");
+                }
+            }
+        }, updatedFilesTask);
+        startup.add("Load news", new Runnable() {
+            @Override
+            public void run() {
+                loadNews(); // Load the news
+            }
+        }, updatedFilesTask);
+        startup.add("Load Minecraft versions", new Runnable() {
+            @Override
+            public void run() {
+                loadMinecraftVersions(); // Load info about the different Minecraft versions
+            }
+        }, updatedFilesTask);
+        TaskGraph.Task packsTask = startup.add("Load packs", new Runnable() {
+            @Override
+            public void run() {
+                loadPacks(); // Load the Packs available in the Launcher
+            }
+        }, updatedFilesTask);
+        TaskGraph.Task usersTask = startup.add("Load users", new Runnable() {
+            @Override
+            public void run() {
+                loadUsers(); // Load the Testers and Allowed Players for the packs
+            }
+        }, packsTask);
+        // Loading instances can save them when converting old data, so it also waits for the update check
+        TaskGraph.Task instancesTask = startup.add("Load instances", new Runnable() {
+            @Override
+            public void run() {
+                loadInstances(); // Load the users installed Instances
+            }
+        }, packsTask, launcherUpdateTask);
+        TaskGraph.Task accountsTask = startup.add("Load accounts", new Runnable() {
+            @Override
+            public void run() {
+                loadAccounts(); // Load the saved Accounts
+            }
+        });
+        startup.add("Load checking servers", new Runnable() {
+            @Override
+            public void run() {
+                loadCheckingServers(); // Load the saved servers we're checking with the tool
+            }
+        });
+        TaskGraph.Task propertiesTask = startup.add("Load properties", new Runnable() {
+            @Override
+            public void run() {
+                languageLoaded = true; // Languages are now loaded
 
-        checkAccountUUIDs(); // Check for accounts UUID's and add them if necessary
+                loadProperties(); // Load the users Properties
 
-        changeInstanceUserLocks(); // Changes any instances user locks to UUIDs if available
+                if (isUsingCustomJavaPath()) {
+                    checkForValidJavaPath(true); // Checks for a valid Java path
+                }
 
-        checkAccountsForNameChanges(); // Check account for username changes
+                console.setupLanguage(); // Setup language on the console
 
-        LogManager.debug("Checking for access to master server");
-        OUTER:
-        for (Pack pack : this.packs) {
-            if (pack.isTester()) {
-                for (Server server : this.servers) {
-                    if (server.getName().equals("Master Server (Testing Only)")) {
-                        server.setUserSelectable(true);
-                        LogManager.debug("Access to master server granted");
-                        break OUTER; // Don't need to check anymore so break the outer loop
+                clearOldLogs(); // Clear all the old logs out
+            }
+        }, serversTask, updatedFilesTask, accountsTask);
+        startup.add("Check resources", new Runnable() {
+            @Override
+            public void run() {
+                checkResources(); // Check for new format of resources
+            }
+        }, propertiesTask);
+        // Anything saving accounts waits until we know the launcher isn't about to exit to update
+        TaskGraph.Task accountUUIDsTask = startup.add("Check account UUIDs", new Runnable() {
+            @Override
+            public void run() {
+                checkAccountUUIDs(); // Check for accounts UUID's and add them if necessary
+            }
+        }, accountsTask, launcherUpdateTask);
+        TaskGraph.Task userLocksTask = startup.add("Change instance user locks", new Runnable() {
+            @Override
+            public void run() {
+                changeInstanceUserLocks(); // Changes any instances user locks to UUIDs if available
+            }
+        }, instancesTask, accountUUIDsTask);
+        startup.add("Check for username changes", new Runnable() {
+            @Override
+            public void run() {
+                checkAccountsForNameChanges(); // Check account for username changes
+            }
+        }, userLocksTask);
+        startup.add("Check for master server access", new Runnable() {
+            @Override
+            public void run() {
+                LogManager.debug("Checking for access to master server");
+                OUTER:
+                for (Pack pack : Settings.this.packs) {
+                    if (pack.isTester()) {
+                        for (Server server : Settings.this.servers) {
+                            if (server.getName().equals("Master Server (Testing Only)")) {
+                                server.setUserSelectable(true);
+                                LogManager.debug("Access to master server granted");
+                                break OUTER; // Don't need to check anymore so break the outer loop
+                            }
+                        }
                     }
                 }
-            }
-        }
-        LogManager.debug("Finished checking for access to master server");
+                LogManager.debug("Finished checking for access to master server");
 
-        loadServerProperty(true); // Get users Server preference
+                loadServerProperty(true); // Get users Server preference
+            }
+        }, usersTask, propertiesTask);
+        startup.run(STARTUP_THREADS);
+        startup.logReport();
 
         if (Utils.isWindows() && this.javaPath.contains("x86")) {
             LogManager.warn("You're using 32 bit Java on a 64 bit Windows install!");
@@ -442,25 +532,9 @@ public class Settings {
             Utils.delete(logFile1);
         }
 
-        Date toDeleteAfter = new Date();
-
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(toDeleteAfter);
-        calendar.add(Calendar.DATE, -(getDaysOfLogsToKeep()));
-        toDeleteAfter = calendar.getTime();
-
-        for (File file : this.logsDir.listFiles(Utils.getLogsFileFilter())) {
-            try {
-                Date date = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss").parse(file.getName().replace(Constants
-                        .LAUNCHER_NAME + "-Log_", "").replace(".log", ""));
-
-                if (date.before(toDeleteAfter)) {
-                    Utils.delete(file);
-                    LogManager.debug("Deleting log file " + file.getName());
-                }
-            } catch (java.text.ParseException e) {
-                LogManager.error("Invalid log file " + file.getName());
-            }
+        for (LogIndex logIndex : LogManager.getLogIndexes()) {
+            logIndex.setBudget(this.logsDiskBudget * 1024L * 1024L);
+            logIndex.clean(TimeUnit.DAYS.toMillis(getDaysOfLogsToKeep()));
         }
 
         LogManager.debug("Finished clearing out old logs");
@@ -483,12 +557,8 @@ public class Settings {
             Utils.delete(logFile1);
         }
 
-        for (File file : this.logsDir.listFiles(Utils.getLogsFileFilter())) {
-            if (file.getName().equals(LoggingThread.filename)) {
-                continue; // Skip current log
-            }
-
-            Utils.delete(file);
+        for (LogIndex logIndex : LogManager.getLogIndexes()) {
+            logIndex.clear(); // Everything but the current log
         }
     }
 
@@ -753,9 +823,9 @@ public class Settings {
     public void downloadUpdatedFiles() {
         ArrayList<Downloadable> downloads = getLauncherFiles();
         if (downloads != null) {
-            ExecutorService executor = Executors.newFixedThreadPool(this.concurrentConnections);
+            DownloadScheduler.Phase phase = DownloadScheduler.newPhase("launcher files");
             for (final Downloadable download : downloads) {
-                executor.execute(new Runnable() {
+                phase.submit(new Runnable() {
                     @Override
                     public void run() {
                         if (download.needToDownload()) {
@@ -765,9 +835,7 @@ public class Settings {
                     }
                 });
             }
-            executor.shutdown();
-            while (!executor.isTerminated()) {
-            }
+            phase.await();
         }
 
         LogManager.info("Finished downloading updated files!");
@@ -884,10 +952,10 @@ public class Settings {
             }
         }
 
-        ExecutorService executor = Executors.newFixedThreadPool(getConcurrentConnections());
+        DownloadScheduler.Phase phase = DownloadScheduler.newPhase("external libraries");
 
         for (final LauncherLibrary library : this.launcherLibraries) {
-            executor.execute(new Runnable() {
+            phase.submit(new Runnable() {
 
                 @Override
                 public void run() {
@@ -900,9 +968,7 @@ public class Settings {
                 }
             });
         }
-        executor.shutdown();
-        while (!executor.isTerminated()) {
-        }
+        phase.await();
 
         for (LauncherLibrary library : this.launcherLibraries) {
             File file = library.getFile();
@@ -925,7 +991,7 @@ public class Settings {
     private void checkFolders() {
         File[] files = {backupsDir, configsDir, themesDir, jsonDir, commonConfigsDir, imagesDir, skinsDir, jarsDir,
                 resourcesDir, librariesDir, launcherLibrariesdir, languagesDir, downloadsDir, instancesDir,
-                serversDir, tempDir, failedDownloadsDir, logsDir};
+                serversDir, tempDir, failedDownloadsDir, cacheDir, logsDir};
         for (File file : files) {
             if (!file.exists()) {
                 file.mkdir();
@@ -1126,6 +1192,42 @@ public class Settings {
         return this.failedDownloadsDir;
     }
 
+    /**
+     * Returns the download cache directory
+     *
+     * @return File object for the download cache directory
+     */
+    public File getCacheDir() {
+        return this.cacheDir;
+    }
+
+    /**
+     * Returns the file the hashes of files checked by the launcher are saved to
+     *
+     * @return File object for the digest index file
+     */
+    public File getDigestIndexFile() {
+        return this.digestIndexFile;
+    }
+
+    /**
+     * Returns the file the libraries, assets and mods shared between instances are tracked in
+     *
+     * @return File object for the shared files index file
+     */
+    public File getSharedFilesIndexFile() {
+        return this.sharedFilesIndexFile;
+    }
+
+    /**
+     * Returns the file the scores of the download servers are saved to
+     *
+     * @return File object for the mirror scores file
+     */
+    public File getMirrorScoresFile() {
+        return this.mirrorScoresFile;
+    }
+
     /**
      * Returns the logs directory
      *
@@ -1260,11 +1362,30 @@ public class Settings {
             if (this.concurrentConnections < 1) {
                 this.concurrentConnections = 8;
             }
+            ConnectionPool.configure(this.concurrentConnections); // Before any connections are made
 
             this.daysOfLogsToKeep = Integer.parseInt(properties.getProperty("daysoflogstokeep", "7"));
             if (this.daysOfLogsToKeep < 1 || this.daysOfLogsToKeep > 30) {
                 this.daysOfLogsToKeep = 7;
             }
+
+            this.downloadCacheSize = Integer.parseInt(properties.getProperty("downloadcachesize", "10240"));
+            if (this.downloadCacheSize < 0) {
+                this.downloadCacheSize = 10240;
+            }
+
+            this.logsDiskBudget = Integer.parseInt(properties.getProperty("logsdiskbudget", "100"));
+            if (this.logsDiskBudget < 1) {
+                this.logsDiskBudget = 100;
+            }
+
+            try {
+                this.logOverflowPolicy = RingBuffer.OverflowPolicy.valueOf(properties.getProperty
+                        ("logoverflowpolicy", "BLOCK").toUpperCase());
+            } catch (IllegalArgumentException e) {
+                this.logOverflowPolicy = RingBuffer.OverflowPolicy.BLOCK;
+            }
+            LogManager.setOverflowPolicy(this.logOverflowPolicy);
         } catch (FileNotFoundException e) {
             logStackTrace(e);
         } catch (IOException e) {
@@ -1448,6 +1569,7 @@ public class Settings {
                         + " which is not valid! Must be 1 or more. Setting back to default of 8!");
                 this.concurrentConnections = 8;
             }
+            ConnectionPool.configure(this.concurrentConnections);
 
             this.daysOfLogsToKeep = Integer.parseInt(properties.getProperty("daysoflogstokeep", "7"));
             if (this.daysOfLogsToKeep < 1 || this.daysOfLogsToKeep > 30) {
@@ -1457,6 +1579,22 @@ public class Settings {
                 this.daysOfLogsToKeep = 7;
             }
 
+            this.downloadCacheSize = Integer.parseInt(properties.getProperty("downloadcachesize", "10240"));
+            if (this.downloadCacheSize < 0) {
+                // Download cache size should be 0 (disabled) or more
+                LogManager.warn("Tried to set the download cache size to " + this.downloadCacheSize + " which is not " +
+                        "valid! Must be 0 or more. Setting back to default of 10240!");
+                this.downloadCacheSize = 10240;
+            }
+
+            this.logsDiskBudget = Integer.parseInt(properties.getProperty("logsdiskbudget", "100"));
+            if (this.logsDiskBudget < 1) {
+                // Logs disk budget should be 1 or more
+                LogManager.warn("Tried to set the logs disk budget to " + this.logsDiskBudget + " which is not " +
+                        "valid! Must be 1 or more. Setting back to default of 100!");
+                this.logsDiskBudget = 100;
+            }
+
             this.theme = properties.getProperty("theme", Constants.LAUNCHER_NAME);
 
             this.dateFormat = properties.getProperty("dateformat", "dd/M/yyy");
@@ -1529,6 +1667,9 @@ public class Settings {
             properties.setProperty("servercheckerwait", this.serverCheckerWait + "");
             properties.setProperty("concurrentconnections", this.concurrentConnections + "");
             properties.setProperty("daysoflogstokeep", this.daysOfLogsToKeep + "");
+            properties.setProperty("downloadcachesize", this.downloadCacheSize + "");
+            properties.setProperty("logsdiskbudget", this.logsDiskBudget + "");
+            properties.setProperty("logoverflowpolicy", this.logOverflowPolicy.name());
             properties.setProperty("theme", this.theme);
             properties.setProperty("dateformat", this.dateFormat);
             if (account != null) {
@@ -1621,14 +1762,19 @@ public class Settings {
 
     public boolean disableServerGetNext() {
         this.server.disableServer(); // Disable the server
+        List<Server> available = new ArrayList<Server>();
         for (Server server : this.servers) {
-            if (!server.isDisabled() && server.isUserSelectable()) {
-                LogManager.warn("Server " + this.server.getName() + " Not Available! Switching To " + server.getName());
-                this.server = server; // Setup next available server
-                return true;
+            if (server.isUserSelectable()) {
+                available.add(server);
             }
         }
-        return false;
+        Server next = MirrorScoreboard.getBest(available, null); // The best scoring server that's still enabled
+        if (next == null) {
+            return false;
+        }
+        LogManager.warn("Server " + this.server.getName() + " Not Available! Switching To " + next.getName());
+        this.server = next; // Setup next available server
+        return true;
     }
 
     public void clearTriedServers() {
@@ -1640,14 +1786,15 @@ public class Settings {
 
     public boolean getNextServer() {
         this.triedServers.add(this.server);
-        for (Server server : this.servers) {
-            if (!this.triedServers.contains(server) && !server.isDisabled()) {
-                LogManager.warn("Server " + this.server.getName() + " Not Available! Switching To " + server.getName());
-                this.server = server; // Setup next available server
-                return true;
-            }
+        List<Server> untried = new ArrayList<Server>(this.servers);
+        untried.removeAll(this.triedServers);
+        Server next = MirrorScoreboard.getBest(untried, null); // The best scoring server not tried yet
+        if (next == null) {
+            return false;
         }
-        return false;
+        LogManager.warn("Server " + this.server.getName() + " Not Available! Switching To " + next.getName());
+        this.server = next; // Setup next available server
+        return true;
     }
 
     /**
@@ -1703,24 +1850,22 @@ public class Settings {
             this.minecraftVersions.put(mv.getVersion(), mv);
         }
         LogManager.info("[Background] Checking Minecraft Versions Started");
-        ExecutorService executor = Executors.newFixedThreadPool(this.concurrentConnections);
+        final DownloadScheduler.Phase phase = DownloadScheduler.newPhase("minecraft versions");
         for (final Entry<String, MinecraftVersion> entry : this.minecraftVersions.entrySet()) {
-            executor.execute(new Runnable() {
+            phase.submit(new Runnable() {
                 @Override
                 public void run() {
                     entry.getValue().loadVersion();
                 }
             });
         }
-        executor.execute(new Runnable() {
+        App.TASKPOOL.execute(new Runnable() {
             @Override
             public void run() {
+                phase.await();
                 LogManager.info("[Background] Checking Minecraft Versions Complete");
             }
         });
-        executor.shutdown();
-        while (!executor.isShutdown()) {
-        }
         LogManager.debug("Finished loading Minecraft versions");
     }
 
@@ -2153,6 +2298,7 @@ public class Settings {
     public void removeInstance(Instance instance) {
         if (this.instances.remove(instance)) {
             Utils.delete(instance.getRootDirectory());
+            SharedFiles.forgetAll(instance.getRootDirectory());
             saveInstances();
             reloadInstancesPanel();
         }
@@ -2677,15 +2823,10 @@ public class Settings {
      * Logs a stack trace to the console window
      *
      * @param exception The exception to show in the console
+     * @see LogManager#logStackTrace(String, Throwable)
      */
     public void logStackTrace(Exception exception) {
-        exception.printStackTrace();
-        LogManager.error(exception.getMessage());
-        for (StackTraceElement element : exception.getStackTrace()) {
-            if (element.toString() != null) {
-                LogManager.error(element.toString());
-            }
-        }
+        LogManager.logStackTrace(null, exception);
     }
 
     /**
@@ -2693,10 +2834,10 @@ public class Settings {
      *
      * @param message   A message regarding the stack trace to show before it providing more insight
      * @param exception The exception to show in the console
+     * @see LogManager#logStackTrace(String, Throwable)
      */
     public void logStackTrace(String message, Exception exception) {
-        LogManager.error(message);
-        logStackTrace(exception);
+        LogManager.logStackTrace(message, exception);
     }
 
     public void showKillMinecraft(Process minecraft) {
@@ -3047,6 +3188,7 @@ public class Settings {
 
     public void setConcurrentConnections(int concurrentConnections) {
         this.concurrentConnections = concurrentConnections;
+        ConnectionPool.configure(concurrentConnections);
     }
 
     public int getDaysOfLogsToKeep() {
@@ -3057,6 +3199,22 @@ public class Settings {
         this.daysOfLogsToKeep = daysOfLogsToKeep;
     }
 
+    public int getLogsDiskBudget() {
+        return this.logsDiskBudget;
+    }
+
+    public void setLogsDiskBudget(int logsDiskBudget) {
+        this.logsDiskBudget = logsDiskBudget;
+    }
+
+    public int getDownloadCacheSize() {
+        return this.downloadCacheSize;
+    }
+
+    public void setDownloadCacheSize(int downloadCacheSize) {
+        this.downloadCacheSize = downloadCacheSize;
+    }
+
     public String getTheme() {
         return this.theme;
     }
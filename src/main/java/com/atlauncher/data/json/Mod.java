@@ -22,7 +22,10 @@ import com.atlauncher.LogManager;
 import com.atlauncher.annot.Json;
 import com.atlauncher.data.Downloadable;
 import com.atlauncher.data.Language;
+import com.atlauncher.network.DownloadCache;
+import com.atlauncher.utils.DigestIndex;
 import com.atlauncher.utils.HTMLUtils;
+import com.atlauncher.utils.SharedFiles;
 import com.atlauncher.utils.Utils;
 import com.atlauncher.workers.InstanceInstaller;
 
@@ -333,7 +336,8 @@ public class Mod {
         File fileLocation = new File(App.settings.getDownloadsDir(), getFile());
         if (fileLocation.exists()) {
             if (hasMD5()) {
-                if (Utils.getMD5(fileLocation).equalsIgnoreCase(this.md5)) {
+                if (DigestIndex.getMD5(fileLocation).equalsIgnoreCase(this.md5)) {
+                    DownloadCache.store(this.md5, fileLocation);
                     return; // File already exists and matches hash, don't download it
                 } else {
                     Utils.delete(fileLocation); // File exists but is corrupt, delete it
@@ -344,6 +348,9 @@ public class Mod {
                 }
             }
         }
+        if (hasMD5() && DownloadCache.restore(this.md5, fileLocation, this.filesize)) {
+            return; // Found in the download cache so no need to download it or ask the user to
+        }
         switch (this.download) {
             case browser:
                 File downloadsFolderFile = new File(App.settings.getUsersDownloadsDir(), getFile());
@@ -461,7 +468,8 @@ public class Mod {
                 break;
         }
         if (hasMD5()) {
-            if (Utils.getMD5(fileLocation).equalsIgnoreCase(this.md5)) {
+            if (DigestIndex.getMD5(fileLocation).equalsIgnoreCase(this.md5)) {
+                DownloadCache.store(this.md5, fileLocation);
                 return; // MD5 hash matches
             } else {
                 if (attempt < 5) {
@@ -481,7 +489,7 @@ public class Mod {
         File fileLocation = new File(App.settings.getDownloadsDir(), getServerFile());
         if (fileLocation.exists()) {
             if (this.hasServerMD5()) {
-                if (Utils.getMD5(fileLocation).equalsIgnoreCase(this.serverMD5)) {
+                if (DigestIndex.getMD5(fileLocation).equalsIgnoreCase(this.serverMD5)) {
                     return; // File already exists and matches hash, don't download it
                 } else {
                     Utils.delete(fileLocation); // File exists but is corrupt, delete it
@@ -592,7 +600,7 @@ public class Mod {
             }
         }
         if (hasServerMD5()) {
-            if (Utils.getMD5(fileLocation).equalsIgnoreCase(this.serverMD5)) {
+            if (DigestIndex.getMD5(fileLocation).equalsIgnoreCase(this.serverMD5)) {
                 return; // MD5 hash matches
             } else {
                 if (attempt < 5) {
@@ -622,18 +630,18 @@ public class Mod {
             case jar:
             case forge:
                 if (installer.isServer() && thisType == ModType.forge) {
-                    Utils.copyFile(fileLocation, installer.getRootDirectory());
+                    SharedFiles.place(fileLocation, installer.getRootDirectory(), false);
                     break;
                 } else if (installer.isServer() && thisType == ModType.jar) {
-                    Utils.unzip(fileLocation, installer.getTempJarDirectory());
+                    installer.addServerJarMod(fileLocation);
                     break;
                 }
-                Utils.copyFile(fileLocation, installer.getJarModsDirectory());
+                SharedFiles.place(fileLocation, installer.getJarModsDirectory(), false);
                 installer.addToJarOrder(getFile());
                 break;
             case mcpc:
                 if (installer.isServer()) {
-                    Utils.copyFile(fileLocation, installer.getRootDirectory());
+                    SharedFiles.place(fileLocation, installer.getRootDirectory(), false);
                     break;
                 }
                 break;
@@ -641,13 +649,13 @@ public class Mod {
                 if (!installer.getTexturePacksDirectory().exists()) {
                     installer.getTexturePacksDirectory().mkdir();
                 }
-                Utils.copyFile(fileLocation, installer.getTexturePacksDirectory());
+                SharedFiles.place(fileLocation, installer.getTexturePacksDirectory(), false);
                 break;
             case resourcepack:
                 if (!installer.getResourcePacksDirectory().exists()) {
                     installer.getResourcePacksDirectory().mkdir();
                 }
-                Utils.copyFile(fileLocation, installer.getResourcePacksDirectory());
+                SharedFiles.place(fileLocation, installer.getResourcePacksDirectory(), false);
                 break;
             case texturepackextract:
                 if (!installer.getTexturePacksDirectory().exists()) {
@@ -681,54 +689,54 @@ public class Mod {
                 Utils.delete(tempDirMillenaire);
                 break;
             case mods:
-                Utils.copyFile(fileLocation, installer.getModsDirectory());
+                SharedFiles.place(fileLocation, installer.getModsDirectory(), false);
                 break;
             case ic2lib:
                 if (!installer.getIC2LibDirectory().exists()) {
                     installer.getIC2LibDirectory().mkdir();
                 }
-                Utils.copyFile(fileLocation, installer.getIC2LibDirectory());
+                SharedFiles.place(fileLocation, installer.getIC2LibDirectory(), false);
                 break;
             case flan:
                 if (!installer.getFlanDirectory().exists()) {
                     installer.getFlanDirectory().mkdir();
                 }
-                Utils.copyFile(fileLocation, installer.getFlanDirectory());
+                SharedFiles.place(fileLocation, installer.getFlanDirectory(), false);
                 break;
             case denlib:
                 if (!installer.getDenLibDirectory().exists()) {
                     installer.getDenLibDirectory().mkdir();
                 }
-                Utils.copyFile(fileLocation, installer.getDenLibDirectory());
+                SharedFiles.place(fileLocation, installer.getDenLibDirectory(), false);
                 break;
             case depandency:
             case dependency:
                 if (!installer.getDependencyDirectory().exists()) {
                     installer.getDependencyDirectory().mkdirs();
                 }
-                Utils.copyFile(fileLocation, installer.getDependencyDirectory());
+                SharedFiles.place(fileLocation, installer.getDependencyDirectory(), false);
                 break;
             case plugins:
                 if (!installer.getPluginsDirectory().exists()) {
                     installer.getPluginsDirectory().mkdir();
                 }
-                Utils.copyFile(fileLocation, installer.getPluginsDirectory());
+                SharedFiles.place(fileLocation, installer.getPluginsDirectory(), false);
                 break;
             case coremods:
                 if (installer.getVersion().getMinecraftVersion().usesCoreMods()) {
                     if (!installer.getCoreModsDirectory().exists()) {
                         installer.getCoreModsDirectory().mkdir();
                     }
-                    Utils.copyFile(fileLocation, installer.getCoreModsDirectory());
+                    SharedFiles.place(fileLocation, installer.getCoreModsDirectory(), false);
                 } else {
-                    Utils.copyFile(fileLocation, installer.getModsDirectory());
+                    SharedFiles.place(fileLocation, installer.getModsDirectory(), false);
                 }
                 break;
             case shaderpack:
                 if (!installer.getShaderPacksDirectory().exists()) {
                     installer.getShaderPacksDirectory().mkdir();
                 }
-                Utils.copyFile(fileLocation, installer.getShaderPacksDirectory());
+                SharedFiles.place(fileLocation, installer.getShaderPacksDirectory(), false);
                 break;
             case extract:
                 File tempDirExtract = new File(App.settings.getTempDir(), getSafeName());
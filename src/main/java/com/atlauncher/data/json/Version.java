@@ -98,6 +98,11 @@ public class Version {
      */
     private Map<String, String> colours;
 
+    /**
+     * A map of tags found in Minecraft's output, such as [MyMod/WARN], to the log level lines with them are shown at.
+     */
+    private Map<String, String> logLevels;
+
     /**
      * A list of mods to be installed with this version.
      */
@@ -198,6 +203,10 @@ public class Version {
         return this.colours;
     }
 
+    public Map<String, String> getLogLevels() {
+        return this.logLevels;
+    }
+
     public List<Mod> getMods() {
         return this.mods;
     }
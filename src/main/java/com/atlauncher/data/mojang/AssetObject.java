@@ -17,7 +17,7 @@
  */
 package com.atlauncher.data.mojang;
 
-import com.atlauncher.utils.Utils;
+import com.atlauncher.utils.DigestIndex;
 
 import java.io.File;
 
@@ -40,6 +40,6 @@ public class AssetObject {
         if (file.length() != this.size) {
             return true;
         }
-        return !this.hash.equalsIgnoreCase(Utils.getSHA1(file));
+        return !this.hash.equalsIgnoreCase(DigestIndex.getSHA1(file));
     }
 }
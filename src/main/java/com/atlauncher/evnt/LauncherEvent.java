@@ -0,0 +1,181 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.evnt;
+
+import com.atlauncher.LogManager;
+
+/**
+ * Something the launcher did, such as downloading a file or finishing part of an install, written to the event log
+ * as a line of JSON so it can be picked up by tools rather than read by people. Alongside {@link LogEvent}, which is
+ * for people.
+ * <p/>
+ * Emitting one only sets a few fields and adds it to a queue; turning it into JSON and writing it is left to the
+ * event logging thread. For example:
+ * <pre>
+ * LauncherEvent.of("download.finished").pack("Test Pack").bytes(1024).duration(250).emit();
+ * </pre>
+ */
+public final class LauncherEvent {
+    /**
+     * Value of the number fields when they haven't been set, which leaves them out of the JSON.
+     */
+    public static final long UNSET = -1;
+
+    public final String type;
+    public final long time; // When it happened, rather than when it's written
+    private String instance;
+    private String pack;
+    private String version;
+    private String phase;
+    private String file;
+    private String mirror;
+    private String error;
+    private long bytes = UNSET;
+    private long duration = UNSET;
+
+    private LauncherEvent(String type) {
+        this.type = type;
+        this.time = System.currentTimeMillis();
+    }
+
+    /**
+     * Starts an event, timed from now.
+     *
+     * @param type what happened, such as download.finished
+     * @return the event
+     */
+    public static LauncherEvent of(String type) {
+        return new LauncherEvent(type);
+    }
+
+    public LauncherEvent instance(String instance) {
+        this.instance = instance;
+        return this;
+    }
+
+    public LauncherEvent pack(String pack) {
+        this.pack = pack;
+        return this;
+    }
+
+    public LauncherEvent version(String version) {
+        this.version = version;
+        return this;
+    }
+
+    public LauncherEvent phase(String phase) {
+        this.phase = phase;
+        return this;
+    }
+
+    public LauncherEvent file(String file) {
+        this.file = file;
+        return this;
+    }
+
+    public LauncherEvent mirror(String mirror) {
+        this.mirror = mirror;
+        return this;
+    }
+
+    public LauncherEvent error(String error) {
+        this.error = error;
+        return this;
+    }
+
+    public LauncherEvent bytes(long bytes) {
+        this.bytes = bytes;
+        return this;
+    }
+
+    /**
+     * Sets how long what happened took.
+     *
+     * @param millis the time taken in milliseconds
+     * @return the event
+     */
+    public LauncherEvent duration(long millis) {
+        this.duration = millis;
+        return this;
+    }
+
+    /**
+     * Adds the event to the queue to be written to the event log. It shouldn't be changed after this.
+     */
+    public void emit() {
+        LogManager.event(this);
+    }
+
+    /**
+     * Writes the event as a single line of JSON, leaving out anything not set. Anything other than printable ASCII is
+     * escaped, so the line is the same whatever character set it's written in.
+     *
+     * @param json what to write the line to
+     */
+    public void toJSON(StringBuilder json) {
+        json.append("{\"time\":").append(this.time);
+        appendString(json, "type", this.type);
+        appendString(json, "instance", this.instance);
+        appendString(json, "pack", this.pack);
+        appendString(json, "version", this.version);
+        appendString(json, "phase", this.phase);
+        appendString(json, "file", this.file);
+        appendNumber(json, "bytes", this.bytes);
+        appendNumber(json, "duration", this.duration);
+        appendString(json, "mirror", this.mirror);
+        appendString(json, "error", this.error == null ? null : LogManager.redact(this.error));
+        json.append("}\n");
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder json = new StringBuilder(128);
+        toJSON(json);
+        return json.substring(0, json.length() - 1);
+    }
+
+    private static void appendNumber(StringBuilder json, String name, long value) {
+        if (value != UNSET) {
+            json.append(",\"").append(name).append("\":").append(value);
+        }
+    }
+
+    private static void appendString(StringBuilder json, String name, String value) {
+        if (value == null) {
+            return;
+        }
+        json.append(",\"").append(name).append("\":\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c == '\n') {
+                json.append("\\n");
+            } else if (c == '\r') {
+                json.append("\\r");
+            } else if (c == '\t') {
+                json.append("\\t");
+            } else if (c < 0x20 || c > 0x7E) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+}
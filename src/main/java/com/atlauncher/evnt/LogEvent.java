@@ -26,6 +26,8 @@ import com.atlauncher.writer.LogEventWriter;
 
 import java.awt.Color;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 
 public final class LogEvent {
     public static final int CONSOLE = 0xA;
@@ -33,25 +35,57 @@ public final class LogEvent {
     public final LogType type;
     public final String body;
     public final int meta;
+    public final long time; // When it was logged, rather than when it's written
+    public final Throwable thrown; // Its stack trace is only rendered when it's written, by the logging thread
+    private String trace = null; // Guarded by the logging thread
 
     public LogEvent(LogType type, String body) {
         this(type, body, CONSOLE | FILE);
     }
 
     public LogEvent(LogType type, String body, int meta) {
+        this(type, body, null, meta);
+    }
+
+    /**
+     * Creates an event with the stack trace of an exception after its message.
+     *
+     * @param type   the type of event
+     * @param body   the message to show before the stack trace, or an empty string for just the stack trace
+     * @param thrown the exception, or null for none
+     * @param meta   where the event should go
+     */
+    public LogEvent(LogType type, String body, Throwable thrown, int meta) {
         this.type = type;
-        if (App.settings != null && !LogManager.showDebug) {
-            body = body.replace(App.settings.getBaseDir().getAbsolutePath(), "**USERSDIR**");
-        }
-        this.body = (!body.endsWith("\n") ? body + "\n" : body);
+        body = LogManager.redact(body);
+        this.body = (!body.endsWith("\n") && (thrown == null || !body.isEmpty()) ? body + "\n" : body);
+        this.thrown = thrown;
         this.meta = meta;
+        this.time = System.currentTimeMillis();
+    }
+
+    /**
+     * Gets the stack trace of the exception, formatted and with secrets removed the first time it's needed.
+     *
+     * @return the stack trace, or an empty string if there's no exception
+     */
+    public String getTrace() {
+        if (this.thrown == null) {
+            return "";
+        }
+        if (this.trace == null) {
+            StringWriter trace = new StringWriter();
+            this.thrown.printStackTrace(new PrintWriter(trace));
+            this.trace = LogManager.redact(trace.toString());
+        }
+        return this.trace;
     }
 
     public void post(LogEventWriter writer) {
         if ((this.meta & CONSOLE) == CONSOLE) {
             Console c = App.settings.getConsole().console;
-            c.setColor(this.type.color()).setBold(true).write("[" + Timestamper.now() + "] ");
-            c.setColor(App.THEME.getConsoleTextColor()).setBold(false).write(this.body);
+            c.write("[" + Timestamper.format(this.time) + "] ", this.type.color(), true);
+            c.write(this.body + getTrace(), App.THEME.getConsoleTextColor(), false);
         }
         if ((this.meta & FILE) == FILE) {
             try {
@@ -64,7 +98,7 @@ public final class LogEvent {
 
     @Override
     public String toString() {
-        return "[" + Timestamper.now() + "] [" + this.type.name() + "]" + this.body;
+        return "[" + Timestamper.format(this.time) + "] [" + this.type.name() + "]" + this.body + getTrace();
     }
 
     public static enum LogType {
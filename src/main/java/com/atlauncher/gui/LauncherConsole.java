@@ -111,7 +111,8 @@ public class LauncherConsole extends JFrame implements RelocalizationListener {
     }
 
     /**
-     * Returns a string with the text currently in the console
+     * Returns a string with the text currently in the console, which is at most the last {@link Console#MAX_LINES}
+     * lines of the log
      *
      * @return String Console Text
      */
@@ -135,7 +136,7 @@ public class LauncherConsole extends JFrame implements RelocalizationListener {
     }
 
     public void clearConsole() {
-        console.setText(null);
+        console.clear();
     }
 
     @Override
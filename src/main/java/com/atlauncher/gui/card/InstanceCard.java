@@ -30,6 +30,7 @@ import com.atlauncher.gui.components.CollapsiblePanel;
 import com.atlauncher.gui.components.ImagePanel;
 import com.atlauncher.gui.dialogs.BackupDialog;
 import com.atlauncher.gui.dialogs.EditModsDialog;
+import com.atlauncher.gui.dialogs.GameLogSearchDialog;
 import com.atlauncher.gui.dialogs.InstanceInstallerDialog;
 import com.atlauncher.gui.dialogs.ProgressDialog;
 import com.atlauncher.gui.dialogs.RenameInstanceDialog;
@@ -462,8 +463,22 @@ public class InstanceCard extends CollapsiblePanel implements RelocalizationList
                         updateItem.setEnabled(false);
                     }
 
+                    JMenuItem searchLogsItem = new JMenuItem(Language.INSTANCE.localize("instance.searchlogs"));
+                    rightClickMenu.add(searchLogsItem);
+
+                    if (!instance.getGameLogsDirectory().isDirectory()) {
+                        searchLogsItem.setEnabled(false);
+                    }
+
                     rightClickMenu.show(image, e.getX(), e.getY());
 
+                    searchLogsItem.addActionListener(new ActionListener() {
+                        @Override
+                        public void actionPerformed(ActionEvent e) {
+                            new GameLogSearchDialog(instance).setVisible(true);
+                        }
+                    });
+
                     changeImageItem.addActionListener(new ActionListener() {
                         @Override
                         public void actionPerformed(ActionEvent e) {
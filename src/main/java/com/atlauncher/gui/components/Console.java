@@ -19,19 +19,71 @@
 package com.atlauncher.gui.components;
 
 import javax.swing.JTextPane;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultStyledDocument;
+import javax.swing.text.Element;
 import javax.swing.text.SimpleAttributeSet;
 import javax.swing.text.StyleConstants;
 import java.awt.Color;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+/**
+ * The text pane showing the launcher's log. Text can be written from any thread; it's collected into styled runs and
+ * added to the document on the event dispatch thread in one go each frame, rather than one insert per write, so a
+ * flood of log lines doesn't lock up the launcher.
+ * <p/>
+ * Only the last {@link #MAX_LINES} lines are kept, both in the document and in what's waiting to be added, so memory
+ * stays the same no matter how long it runs. The full log is always in the log file.
+ */
 public final class Console extends JTextPane {
+    /**
+     * The most lines shown before the oldest ones are removed.
+     */
+    public static final int MAX_LINES = 5000;
+
+    /**
+     * The shortest time between updates of the document, about one frame.
+     */
+    private static final long FRAME_NANOS = 16000000;
+
     /**
      * Auto generate serial.
      */
     private static final long serialVersionUID = 5325985090210097809L;
     private final SimpleAttributeSet attrs = new SimpleAttributeSet();
+    private final Map<String, AttributeSet> styles = new HashMap<String, AttributeSet>();
+    private final Deque<Run> pending = new ArrayDeque<Run>(); // Guarded by itself
+    private int pendingLines = 0; // Guarded by pending
+    private boolean scheduled = false; // Guarded by pending
+    private long lastUpdate = 0; // Only used on the event dispatch thread
+    private final Timer nextFrame;
+    private final Runnable update = new Runnable() {
+        @Override
+        public void run() {
+            update();
+        }
+    };
 
     public Console() {
+        super(new ConsoleDocument());
         this.setEditable(false);
+        this.nextFrame = new Timer(0, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                update();
+            }
+        });
+        this.nextFrame.setRepeats(false);
     }
 
     public Console setColor(Color c) {
@@ -49,12 +101,187 @@ public final class Console extends JTextPane {
         return true; // Word Wrapping
     }
 
+    /**
+     * Writes text in the colour and boldness last set with {@link #setColor(Color)} and {@link #setBold(boolean)}.
+     *
+     * @param str the text to write
+     */
     public void write(String str) {
+        write(str, StyleConstants.getForeground(this.attrs), StyleConstants.isBold(this.attrs));
+    }
+
+    /**
+     * Writes text in the given style. It shows up in the console on the next frame.
+     *
+     * @param str   the text to write
+     * @param color the colour of the text
+     * @param bold  if the text should be bold
+     */
+    public void write(String str, Color color, boolean bold) {
+        AttributeSet style = getStyle(color, bold);
+        synchronized (this.pending) {
+            Run last = this.pending.peekLast();
+            if (last != null && last.style == style) {
+                last.text.append(str);
+            } else {
+                this.pending.addLast(new Run(str, style));
+            }
+            this.pendingLines += countLines(str);
+
+            // Anything more than a screen's worth behind would only be removed again straight away, so drop it now
+            while (this.pendingLines > MAX_LINES && this.pending.size() > 1) {
+                this.pendingLines -= countLines(this.pending.removeFirst().text);
+            }
+
+            if (!this.scheduled) {
+                this.scheduled = true;
+                SwingUtilities.invokeLater(this.update);
+            }
+        }
+    }
+
+    /**
+     * Removes everything from the console, including anything waiting to be shown.
+     */
+    public void clear() {
+        synchronized (this.pending) {
+            this.pending.clear();
+            this.pendingLines = 0;
+        }
+        this.setText(null);
+    }
+
+    /**
+     * Adds everything written since the last update to the document. Runs on the event dispatch thread, at most once
+     * a frame.
+     */
+    private void update() {
+        long wait = this.lastUpdate + FRAME_NANOS - System.nanoTime();
+        if (wait > 0) {
+            // Too soon after the last one, so give the event dispatch thread a break and come back next frame
+            this.nextFrame.setInitialDelay((int) (wait / 1000000) + 1);
+            this.nextFrame.start();
+            return;
+        }
+        this.lastUpdate = System.nanoTime();
+
+        Run[] runs;
+        synchronized (this.pending) {
+            runs = this.pending.toArray(new Run[this.pending.size()]);
+            this.pending.clear();
+            this.pendingLines = 0;
+            this.scheduled = false;
+        }
+
+        ConsoleDocument document = (ConsoleDocument) this.getDocument();
         try {
-            this.getDocument().insertString(this.getDocument().getLength(), str, this.attrs);
-            this.setCaretPosition(this.getDocument().getLength());
-        } catch (Exception ex) {
+            document.append(runs);
+
+            Element root = document.getDefaultRootElement();
+            int extra = root.getElementCount() - MAX_LINES;
+            if (extra > 0) {
+                document.remove(0, root.getElement(extra).getStartOffset());
+            }
+            this.setCaretPosition(document.getLength());
+        } catch (BadLocationException ex) {
             ex.printStackTrace(System.err);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Gets the shared attributes for a style, so runs in the same style can be told apart by identity.
+     */
+    private AttributeSet getStyle(Color color, boolean bold) {
+        String key = (color == null ? "" : Integer.toHexString(color.getRGB())) + bold;
+        synchronized (this.styles) {
+            AttributeSet style = this.styles.get(key);
+            if (style == null) {
+                SimpleAttributeSet attributes = new SimpleAttributeSet();
+                if (color != null) {
+                    StyleConstants.setForeground(attributes, color);
+                }
+                StyleConstants.setBold(attributes, bold);
+                style = attributes.copyAttributes();
+                this.styles.put(key, style);
+            }
+            return style;
+        }
+    }
+
+    private static int countLines(CharSequence text) {
+        int lines = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * A document which can have many runs of styled text added to the end with one insert, rather than one for each.
+     */
+    private static final class ConsoleDocument extends DefaultStyledDocument {
+        private static final long serialVersionUID = 5851327196354317564L;
+
+        /**
+         * Adds the runs to the end of the document, building the same elements inserting them one at a time would.
+         */
+        private void append(Run[] runs) throws BadLocationException {
+            if (runs.length == 0) {
+                return;
+            }
+            int offset = this.getLength();
+            AttributeSet lineStyle = this.getParagraphElement(offset).getAttributes();
+            AttributeSet endStyle = this.getCharacterElement(Math.max(0, offset - 1)).getAttributes();
+            boolean newLine = offset > 0 && "\n".equals(this.getText(offset - 1, 1));
+
+            List<ElementSpec> specs = new ArrayList<ElementSpec>();
+            if (newLine) {
+                // Start a new line rather than adding on to the end of the last one
+                specs.add(new ElementSpec(lineStyle, ElementSpec.EndTagType));
+                specs.add(new ElementSpec(lineStyle, ElementSpec.StartTagType));
+            }
+            ElementSpec lastStart = newLine ? specs.get(1) : null;
+            for (Run run : runs) {
+                char[] text = run.text.toString().toCharArray();
+                int start = 0;
+                for (int i = 0; i < text.length; i++) {
+                    if (text[i] == '\n') {
+                        specs.add(new ElementSpec(run.style, ElementSpec.ContentType, text, start, i + 1 - start));
+                        specs.add(new ElementSpec(null, ElementSpec.EndTagType));
+                        lastStart = new ElementSpec(lineStyle, ElementSpec.StartTagType);
+                        specs.add(lastStart);
+                        start = i + 1;
+                    }
+                }
+                if (start < text.length) {
+                    specs.add(new ElementSpec(run.style, ElementSpec.ContentType, text, start, text.length - start));
+                }
+            }
+
+            // Join up with what's there the same way DefaultStyledDocument does when inserting a string at the end
+            ElementSpec first = specs.get(0);
+            if (first.getType() == ElementSpec.ContentType && first.getAttributes().isEqual(endStyle)) {
+                first.setDirection(ElementSpec.JoinPreviousDirection);
+            }
+            if (lastStart != null) {
+                lastStart.setDirection(newLine ? ElementSpec.JoinNextDirection : ElementSpec.JoinFractureDirection);
+            }
+            this.insert(offset, specs.toArray(new ElementSpec[specs.size()]));
+        }
+    }
+
+    /**
+     * Text waiting to be added to the document, all in one style.
+     */
+    private static final class Run {
+        private final StringBuilder text;
+        private final AttributeSet style;
+
+        private Run(String text, AttributeSet style) {
+            this.text = new StringBuilder(text);
+            this.style = style;
+        }
+    }
+}
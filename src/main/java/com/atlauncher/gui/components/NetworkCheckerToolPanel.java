@@ -26,6 +26,7 @@ import com.atlauncher.data.Server;
 import com.atlauncher.evnt.listener.SettingsListener;
 import com.atlauncher.evnt.manager.SettingsManager;
 import com.atlauncher.gui.dialogs.ProgressDialog;
+import com.atlauncher.network.MirrorScoreboard;
 import com.atlauncher.utils.HTMLUtils;
 import com.atlauncher.utils.Utils;
 
@@ -125,6 +126,11 @@ public class NetworkCheckerToolPanel extends AbstractToolPanel implements Action
                         download.download(false);
 
                         long timeTaken = System.currentTimeMillis() - started;
+                        if (file.exists()) {
+                            MirrorScoreboard.recordTransfer(server, file.length(), timeTaken * 1000000);
+                        } else {
+                            MirrorScoreboard.recordFailure(server);
+                        }
                         float bps = file.length() / (timeTaken / 1000);
                         float kbps = bps / 1024;
                         float mbps = kbps / 1024;
@@ -136,6 +142,11 @@ public class NetworkCheckerToolPanel extends AbstractToolPanel implements Action
                         dialog.doneTask();
                     }
 
+                    // What the launcher has learnt about each server from the downloads made so far
+                    results.append("Server scores, best first:\n\n").append(MirrorScoreboard.getStatistics(App
+                            .settings.getServers())).append("\n\n----------------\n\n");
+                    MirrorScoreboard.save();
+
                     String result = Utils.uploadPaste(Constants.LAUNCHER_NAME + " Network Test Log", results.toString
                             ());
                     if (result.contains(Constants.PASTE_CHECK_URL)) {
@@ -0,0 +1,217 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.gui.dialogs;
+
+import com.atlauncher.App;
+import com.atlauncher.LogManager;
+import com.atlauncher.data.Instance;
+import com.atlauncher.data.Language;
+import com.atlauncher.utils.GameLogArchive;
+
+import javax.swing.DefaultListModel;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JSplitPane;
+import javax.swing.JTextArea;
+import javax.swing.JTextField;
+import javax.swing.ListSelectionModel;
+import javax.swing.SwingUtilities;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.ListSelectionListener;
+import javax.swing.text.BadLocationException;
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.Font;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Searches the game logs saved from past launches of an instance, showing the lines around a match when it's picked.
+ * Searching and reading are done in the background, and only the lines shown are ever read into memory.
+ */
+public final class GameLogSearchDialog extends JDialog {
+    /**
+     * Auto generate serial.
+     */
+    private static final long serialVersionUID = -1737117586827810445L;
+
+    /**
+     * The most matches shown for a search.
+     */
+    private static final int MAX_MATCHES = 1000;
+
+    /**
+     * The number of lines shown either side of a match.
+     */
+    private static final int CONTEXT_LINES = 100;
+
+    private final GameLogArchive archive;
+    private final JTextField searchField = new JTextField(24);
+    private final JComboBox<String> sessions = new JComboBox<String>();
+    private final JCheckBox matchCase = new JCheckBox(Language.INSTANCE.localize("instance.matchcase"));
+    private final JButton searchButton = new JButton(Language.INSTANCE.localize("common.search"));
+    private final DefaultListModel<GameLogArchive.Match> matches = new DefaultListModel<GameLogArchive.Match>();
+    private final JList<GameLogArchive.Match> matchList = new JList<GameLogArchive.Match>(this.matches);
+    private final JTextArea context = new JTextArea();
+    private final JLabel status = new JLabel(" ");
+    private int searches = 0; // Only the results of the latest search are shown, guarded by the event thread
+
+    public GameLogSearchDialog(Instance instance) {
+        super(App.settings.getParent(), Language.INSTANCE.localizeWithReplace("instance.gamelogs", instance.getName
+                ()), ModalityType.MODELESS);
+        this.archive = new GameLogArchive(instance.getGameLogsDirectory());
+
+        this.setPreferredSize(new Dimension(800, 600));
+        this.setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
+
+        this.sessions.addItem(Language.INSTANCE.localize("instance.allsessions"));
+        for (String session : this.archive.getSessions()) {
+            this.sessions.addItem(session);
+        }
+
+        JPanel topPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        topPanel.add(new JLabel(Language.INSTANCE.localize("common.search") + ": "));
+        topPanel.add(this.searchField);
+        topPanel.add(this.sessions);
+        topPanel.add(this.matchCase);
+        topPanel.add(this.searchButton);
+
+        this.matchList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        this.matchList.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        this.context.setEditable(false);
+        this.context.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+
+        JSplitPane split = new JSplitPane(JSplitPane.VERTICAL_SPLIT, new JScrollPane(this.matchList), new JScrollPane
+                (this.context));
+        split.setResizeWeight(0.4);
+
+        this.add(topPanel, BorderLayout.NORTH);
+        this.add(split, BorderLayout.CENTER);
+        this.add(this.status, BorderLayout.SOUTH);
+
+        ActionListener search = new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                search();
+            }
+        };
+        this.searchField.addActionListener(search);
+        this.searchButton.addActionListener(search);
+        this.matchList.addListSelectionListener(new ListSelectionListener() {
+            @Override
+            public void valueChanged(ListSelectionEvent e) {
+                if (!e.getValueIsAdjusting() && matchList.getSelectedValue() != null) {
+                    showContext(matchList.getSelectedValue());
+                }
+            }
+        });
+
+        this.pack();
+        this.setLocationRelativeTo(App.settings.getParent());
+    }
+
+    private void search() {
+        final String text = this.searchField.getText();
+        if (text.isEmpty()) {
+            return;
+        }
+        final String session = this.sessions.getSelectedIndex() == 0 ? null : (String) this.sessions
+                .getSelectedItem();
+        final boolean ignoreCase = !this.matchCase.isSelected();
+        final int search = ++this.searches;
+        this.matches.clear();
+        this.context.setText("");
+        this.status.setText(Language.INSTANCE.localize("common.search") + "...");
+
+        App.TASKPOOL.submit(new Runnable() {
+            @Override
+            public void run() {
+                List<GameLogArchive.Match> found;
+                try {
+                    found = session == null ? archive.search(text, ignoreCase, MAX_MATCHES) : archive.search
+                            (session, text, ignoreCase, 0, MAX_MATCHES);
+                } catch (IOException e) {
+                    LogManager.error("Failed to search the game logs: " + e.getMessage());
+                    found = Collections.emptyList();
+                }
+                final List<GameLogArchive.Match> results = found;
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (search != searches) {
+                            return; // Another search has started since
+                        }
+                        for (GameLogArchive.Match match : results) {
+                            matches.addElement(match);
+                        }
+                        status.setText(results.isEmpty() ? Language.INSTANCE.localize("instance.nomatches") :
+                                results.size() + (results.size() == MAX_MATCHES ? "+" : ""));
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Reads the lines around a match, seeking straight to them, and shows them with the match selected.
+     */
+    private void showContext(final GameLogArchive.Match match) {
+        final long from = Math.max(0, match.getLine() - CONTEXT_LINES);
+        App.TASKPOOL.submit(new Runnable() {
+            @Override
+            public void run() {
+                final List<String> lines;
+                try {
+                    lines = archive.readLines(match.getSession(), from, CONTEXT_LINES * 2 + 1);
+                } catch (IOException e) {
+                    LogManager.error("Failed to read the game log: " + e.getMessage());
+                    return;
+                }
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (matchList.getSelectedValue() != match) {
+                            return; // Another match has been picked since
+                        }
+                        StringBuilder text = new StringBuilder();
+                        for (String line : lines) {
+                            text.append(line).append('\n');
+                        }
+                        context.setText(text.toString());
+                        try {
+                            int line = (int) (match.getLine() - from);
+                            context.select(context.getLineStartOffset(line), context.getLineEndOffset(line) - 1);
+                            context.getCaret().setSelectionVisible(true);
+                        } catch (BadLocationException ignored) {
+                        }
+                    }
+                });
+            }
+        });
+    }
+}
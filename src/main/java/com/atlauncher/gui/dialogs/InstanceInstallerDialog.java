@@ -347,6 +347,7 @@ public class InstanceInstallerDialog extends JDialog {
                                     instance.setMinecraftArguments(this.getMinecraftArguments());
                                     instance.setExtraArguments(this.getExtraArguments());
                                     instance.setMainClass(this.getMainClass());
+                                    instance.setLogLevels(this.getLogLevels());
                                     instance.setAssets(version.getMinecraftVersion().getMojangVersion().getAssets());
                                     if (version.isDev()) {
                                         instance.setDevVersion();
@@ -373,6 +374,7 @@ public class InstanceInstallerDialog extends JDialog {
                                     if (version.isDev() && (version.getHash() != null)) {
                                         newInstance.setHash(version.getHash());
                                     }
+                                    newInstance.setLogLevels(this.getLogLevels());
 
                                     App.settings.getInstances().add(newInstance);
 
@@ -0,0 +1,298 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.network;
+
+import com.atlauncher.LogManager;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits how many downloads run against each host at once and keeps statistics about the connections made to them.
+ * <p/>
+ * Each host gets at most half the concurrent connections, and never more than {@link #MAX_PER_HOST}, so when a pack's
+ * files are spread over several hosts no one of them takes every download thread. The connections themselves are kept
+ * alive and reused by Java's own keep-alive cache, which keeps as many idle connections to each host as it's allowed
+ * to have open. A connection can only be reused once its body has been read and its stream closed without calling
+ * disconnect() on it.
+ */
+public final class ConnectionPool {
+    private static final ConcurrentMap<String, Host> hosts = new ConcurrentHashMap<String, Host>();
+    private static final ThreadLocal<Set<String>> heldHosts = new ThreadLocal<Set<String>>() {
+        @Override
+        protected Set<String> initialValue() {
+            return new HashSet<String>();
+        }
+    };
+    /**
+     * The most connections open to one host at once, however many concurrent connections are allowed.
+     */
+    private static final int MAX_PER_HOST = 6;
+
+    private static volatile int maxPerHost = getLimit(8);
+
+    private ConnectionPool() {
+    }
+
+    /**
+     * Sets the number of connections that can be open to a single host at once from the number of concurrent
+     * connections. This also sizes Java's keep-alive cache, but that's only read before the first connection is made,
+     * so it should be called as early as possible.
+     *
+     * @param connections the number of concurrent connections allowed in total
+     */
+    public static synchronized void configure(int connections) {
+        int limit = getLimit(connections);
+        if (System.getProperty("http.maxConnections") == null || limit != maxPerHost) {
+            System.setProperty("http.maxConnections", String.valueOf(limit));
+        }
+        if (limit != maxPerHost) {
+            maxPerHost = limit;
+            for (Host host : hosts.values()) {
+                host.setLimit(limit); // Keeping what's been recorded for each host so far
+            }
+        }
+    }
+
+    /**
+     * Waits until a download from the host of the given URL can be started. The permit returned MUST be released once
+     * the download is done. A thread which already holds a permit for the host is let straight through.
+     *
+     * @param url the URL about to be downloaded
+     * @return the permit to release when done
+     */
+    public static Permit acquire(String url) {
+        String name = getHostName(url);
+        if (!heldHosts.get().add(name)) {
+            return new Permit(null, null); // Already holding one for this host, such as when retrying
+        }
+
+        Host host = getHost(name);
+        host.requests.incrementAndGet();
+        if (!host.permits.tryAcquire()) {
+            long start = System.nanoTime();
+            host.waits.incrementAndGet();
+            host.permits.acquireUninterruptibly();
+            host.waitNanos.addAndGet(System.nanoTime() - start);
+        }
+
+        int inUse = host.inUse.incrementAndGet();
+        int peak;
+        while (inUse > (peak = host.peakInUse.get()) && !host.peakInUse.compareAndSet(peak, inUse)) {
+            // Someone else raised the peak at the same time, try again.
+        }
+        return new Permit(name, host);
+    }
+
+    /**
+     * Records that a new connection was opened to the given URL.
+     *
+     * @param url the URL the connection was opened to
+     */
+    public static void opened(String url) {
+        getHost(getHostName(url)).opened.incrementAndGet();
+    }
+
+    /**
+     * Records that a connection to the given URL was finished with.
+     *
+     * @param url      the URL the connection was opened to
+     * @param reusable true if the body was read so the connection was handed back to be reused, false if it was closed
+     */
+    public static void closed(String url, boolean reusable) {
+        Host host = getHost(getHostName(url));
+        if (reusable) {
+            host.released.incrementAndGet();
+        } else {
+            host.discarded.incrementAndGet();
+        }
+    }
+
+    /**
+     * Gets a human readable summary of the connections made to each host this session. If the peak number in use for a
+     * host is the same as the limit and downloads have been waiting, raising the concurrent connections may help.
+     *
+     * @return the statistics of each host
+     */
+    public static String getStatistics() {
+        List<String> lines = new ArrayList<String>();
+        for (String name : hosts.keySet()) {
+            Host host = hosts.get(name);
+            if (host == null) {
+                continue;
+            }
+            long waits = host.waits.get();
+            lines.add(String.format("%s: %d downloads, %d connections opened, %d kept alive, %d closed, %d/%d peak in " +
+                    "use, %d waited (%.1f ms average)", name, host.requests.get(), host.opened.get(), host.released
+                    .get(), host.discarded.get(), host.peakInUse.get(), host.getLimit(), waits, waits == 0 ? 0.0f : (float)
+                    host.waitNanos.get() / waits / 1000000));
+        }
+        if (lines.isEmpty()) {
+            return "No connections made";
+        }
+        StringBuilder builder = new StringBuilder();
+        for (String line : lines) {
+            builder.append(builder.length() == 0 ? "" : "\n").append(line);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Logs the statistics of each host to the debug log.
+     */
+    public static void logStatistics() {
+        for (String line : getStatistics().split("\n")) {
+            LogManager.debug("Connection pool: " + line);
+        }
+    }
+
+    private static Host getHost(String name) {
+        Host host = hosts.get(name);
+        if (host == null) {
+            Host created = new Host(maxPerHost);
+            host = hosts.putIfAbsent(name, created);
+            if (host == null) {
+                host = created;
+                host.setLimit(maxPerHost); // In case it was changed while this was being added
+            }
+        }
+        return host;
+    }
+
+    private static int getLimit(int connections) {
+        return Math.max(1, Math.min(MAX_PER_HOST, (connections + 1) / 2));
+    }
+
+    private static String getHostName(String url) {
+        try {
+            URL parsed = new URL(url);
+            return parsed.getPort() == -1 ? parsed.getHost() : parsed.getHost() + ":" + parsed.getPort();
+        } catch (MalformedURLException e) {
+            return "unknown";
+        }
+    }
+
+    /**
+     * Permission to download from a host, which must be released once the download is done.
+     */
+    public static final class Permit {
+        private final String name;
+        private Host host;
+        private boolean held; // If the thread using it counts as holding one for the host
+
+        private Permit(String name, Host host) {
+            this.name = name;
+            this.host = host;
+            this.held = host != null;
+        }
+
+        /**
+         * Stops this counting as held by the current thread, so it can be handed to another thread. That thread must
+         * call {@link #claim()} before using it.
+         */
+        public void handOff() {
+            if (this.held) {
+                heldHosts.get().remove(this.name);
+                this.held = false;
+            }
+        }
+
+        /**
+         * Makes this count as held by the current thread once another thread has handed it off. If the thread already
+         * holds one for the host this one is released, as the thread would have been let straight through anyway.
+         */
+        public void claim() {
+            if (this.host != null && !this.held) {
+                if (heldHosts.get().add(this.name)) {
+                    this.held = true;
+                } else {
+                    release();
+                }
+            }
+        }
+
+        /**
+         * Lets the next download waiting for this host start. Does nothing if already released.
+         */
+        public void release() {
+            if (this.host != null) {
+                this.host.inUse.decrementAndGet();
+                this.host.permits.release();
+                this.host = null;
+                handOff();
+            }
+        }
+    }
+
+    private static final class Host {
+        private final Permits permits;
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong opened = new AtomicLong();
+        private final AtomicLong released = new AtomicLong();
+        private final AtomicLong discarded = new AtomicLong();
+        private final AtomicLong waits = new AtomicLong();
+        private final AtomicLong waitNanos = new AtomicLong();
+        private final AtomicInteger inUse = new AtomicInteger();
+        private final AtomicInteger peakInUse = new AtomicInteger();
+
+        private int limit; // Guarded by this
+
+        private Host(int limit) {
+            this.limit = limit;
+            this.permits = new Permits(limit);
+        }
+
+        /**
+         * Changes how many downloads can run against this host at once. Downloads already running over a lower limit
+         * carry on, and the next one waits until enough of them are done.
+         */
+        private synchronized void setLimit(int limit) {
+            if (limit > this.limit) {
+                this.permits.release(limit - this.limit);
+            } else if (limit < this.limit) {
+                this.permits.reduce(this.limit - limit);
+            }
+            this.limit = limit;
+        }
+
+        private synchronized int getLimit() {
+            return this.limit;
+        }
+    }
+
+    private static final class Permits extends Semaphore {
+        private static final long serialVersionUID = 6876001021890366692L;
+
+        private Permits(int permits) {
+            super(permits, true);
+        }
+
+        private void reduce(int reduction) {
+            reducePermits(reduction);
+        }
+    }
+}
@@ -0,0 +1,385 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.network;
+
+import com.atlauncher.App;
+import com.atlauncher.LogManager;
+import com.atlauncher.utils.DigestIndex;
+import com.atlauncher.utils.IndexFile;
+import com.atlauncher.utils.Utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A content addressed store of every file the launcher has downloaded and verified, shared between all instances and
+ * installs. Files are stored under the Cache directory by their MD5 or SHA-1 hash and are hard linked (or copied when
+ * hard links aren't available) back into place when a download with the same hash is requested again.
+ * <p/>
+ * The store is kept under the download cache size set in the settings by evicting the least recently used files. The
+ * order they were used in is kept in the cache.index file in the Cache directory rather than in the files' last
+ * modified times, as the files are hard linked into instances and other things rely on those times not changing.
+ */
+public final class DownloadCache {
+    private static final String HEADER = "downloadcache 1";
+    private static final String INDEX_NAME = "cache.index";
+
+    private static final Object lock = new Object();
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong bytesSaved = new AtomicLong();
+
+    /**
+     * All the files in the cache keyed by hash in least recently used order. This is null until first used.
+     */
+    private static Map<String, File> entries = null;
+
+    /**
+     * The total size in bytes of all the files in the cache.
+     */
+    private static long totalSize = 0;
+
+    /**
+     * The file the order of use is saved to. This is set when the cache is first used.
+     */
+    private static IndexFile index = null;
+    private static boolean changed = false;
+
+    private DownloadCache() {
+    }
+
+    /**
+     * Checks if the cache is turned on. It's disabled by setting the download cache size to 0.
+     *
+     * @return true if the cache should be used
+     */
+    public static boolean isEnabled() {
+        return App.settings != null && App.settings.getCacheDir() != null && App.settings.getDownloadCacheSize() > 0;
+    }
+
+    /**
+     * Checks if the given hash can be used as a key in the cache, which is only the case for MD5 and SHA-1 hashes.
+     *
+     * @param hash the hash to check
+     * @return true if the hash is a valid MD5 or SHA-1 hash
+     */
+    public static boolean isCacheableHash(String hash) {
+        return hash != null && (hash.length() == 32 || hash.length() == 40) && hash.matches("[A-Fa-f0-9]+");
+    }
+
+    /**
+     * Tries to put the file with the given hash in place from the cache. The file in the cache is checked against
+     * the hash first and dropped from the cache if it doesn't match.
+     *
+     * @param hash the MD5 or SHA-1 hash of the file wanted
+     * @param to   where the file should end up
+     * @param size the expected size of the file or 0 or less if not known
+     * @return true if the file was found in the cache and put in place, false if it needs to be downloaded
+     */
+    public static boolean restore(String hash, File to, long size) {
+        if (!isEnabled() || !isCacheableHash(hash) || to == null) {
+            return false;
+        }
+
+        File blob;
+        synchronized (lock) {
+            blob = getEntries().get(hash.toLowerCase()); // Moves the entry to the most recently used position
+            changed |= blob != null;
+        }
+
+        // The blob is hard linked into the Downloads folder and instances, so a write to any of those changes it too
+        if (blob == null || !blob.isFile() || (size > 0 && blob.length() != size) || !matches(blob, hash)) {
+            if (blob != null) {
+                remove(hash.toLowerCase());
+            }
+            misses.incrementAndGet();
+            return false;
+        }
+
+        if (to.exists()) {
+            Utils.delete(to);
+        }
+        to.getParentFile().mkdirs();
+
+        if (!Utils.createHardLink(blob, to) && !Utils.copyFile(blob, to, true)) {
+            misses.incrementAndGet();
+            return false;
+        }
+
+        hits.incrementAndGet();
+        bytesSaved.addAndGet(blob.length());
+        LogManager.debug("Restored " + to.getName() + " from the download cache", 3);
+        return true;
+    }
+
+    /**
+     * Adds a file to the cache. The file MUST have already been checked to match the given hash.
+     *
+     * @param hash the MD5 or SHA-1 hash of the file
+     * @param from the file to add to the cache
+     */
+    public static void store(String hash, File from) {
+        if (!isEnabled() || !isCacheableHash(hash) || from == null || !from.isFile()) {
+            return;
+        }
+
+        String key = hash.toLowerCase();
+        File blob = getBlobFile(key);
+
+        synchronized (lock) {
+            if (getEntries().containsKey(key) && blob.isFile() && blob.length() == from.length()) {
+                return; // Already have it
+            }
+        }
+
+        blob.getParentFile().mkdirs();
+        File temp = new File(blob.getParentFile(), key + "." + Thread.currentThread().getId() + ".tmp");
+        if (temp.exists()) {
+            Utils.delete(temp);
+        }
+
+        if (!Utils.createHardLink(from, temp) && !Utils.copyFile(from, temp, true)) {
+            LogManager.debug("Couldn't add " + from.getName() + " to the download cache", 3);
+            return;
+        }
+
+        remove(key); // Anything already stored under this hash doesn't match so get rid of it
+
+        if (!temp.renameTo(blob)) {
+            Utils.delete(temp);
+            return;
+        }
+
+        synchronized (lock) {
+            if (!getEntries().containsKey(key)) {
+                entries.put(key, blob);
+                totalSize += blob.length();
+            }
+            changed = true;
+            evict();
+        }
+    }
+
+    /**
+     * Saves the order the files in the cache were used in, if it's changed since it was last saved.
+     */
+    public static void save() {
+        synchronized (lock) {
+            if (index == null || !changed) {
+                return;
+            }
+            try {
+                index.save();
+                changed = false;
+            } catch (IOException e) {
+                LogManager.error("Failed to save the download cache index: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Gets the number of downloads which were served from the cache.
+     *
+     * @return the number of cache hits
+     */
+    public static long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of downloads which weren't in the cache and had to go to the network.
+     *
+     * @return the number of cache misses
+     */
+    public static long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Gets the number of bytes which didn't need to be downloaded because they were in the cache.
+     *
+     * @return the number of bytes served from the cache
+     */
+    public static long getBytesSaved() {
+        return bytesSaved.get();
+    }
+
+    /**
+     * Gets the total size of the files in the cache.
+     *
+     * @return the size of the cache in bytes
+     */
+    public static long getSize() {
+        synchronized (lock) {
+            getEntries();
+            return totalSize;
+        }
+    }
+
+    /**
+     * Gets a human readable summary of how the cache has been performing this session.
+     *
+     * @return the cache statistics
+     */
+    public static String getStatistics() {
+        return String.format("%d hits, %d misses, %.2f MB saved, %.2f MB stored", getHits(), getMisses(),
+                (float) getBytesSaved() / 1024 / 1024, (float) getSize() / 1024 / 1024);
+    }
+
+    /**
+     * Checks a file still has the hash it was stored under. This is cheap for files which haven't changed since
+     * they were last hashed.
+     */
+    private static boolean matches(File blob, String hash) {
+        String actual = hash.length() == 32 ? DigestIndex.getMD5(blob) : DigestIndex.getSHA1(blob);
+        return hash.equalsIgnoreCase(actual);
+    }
+
+    private static File getBlobFile(String key) {
+        return new File(new File(App.settings.getCacheDir(), key.substring(0, 2)), key);
+    }
+
+    private static void remove(String key) {
+        synchronized (lock) {
+            File blob = getEntries().remove(key);
+            if (blob != null) {
+                totalSize -= blob.length();
+                changed = true;
+            } else {
+                blob = getBlobFile(key);
+            }
+            if (blob.exists()) {
+                Utils.delete(blob);
+            }
+        }
+    }
+
+    /**
+     * Removes the least recently used files until the cache is under its maximum size. Must hold the lock.
+     */
+    private static void evict() {
+        long maxSize = (long) App.settings.getDownloadCacheSize() * 1024 * 1024;
+        Iterator<Map.Entry<String, File>> iterator = entries.entrySet().iterator();
+        while (totalSize > maxSize && iterator.hasNext()) {
+            File blob = iterator.next().getValue();
+            totalSize -= blob.length();
+            iterator.remove();
+            changed = true;
+            Utils.delete(blob);
+            LogManager.debug("Evicted " + blob.getName() + " from the download cache", 3);
+        }
+    }
+
+    /**
+     * Gets the entries in the cache, scanning the cache directory and reading the order they were used in the first
+     * time it's called. Must hold the lock.
+     *
+     * @return the entries in the cache in least recently used order
+     */
+    private static Map<String, File> getEntries() {
+        if (entries == null) {
+            entries = new LinkedHashMap<String, File>(256, 0.75f, true);
+            totalSize = 0;
+
+            Map<String, File> found = new HashMap<String, File>();
+            File[] dirs = App.settings.getCacheDir().listFiles();
+            if (dirs != null) {
+                for (File dir : dirs) {
+                    File[] files = dir.listFiles();
+                    if (files == null) {
+                        continue;
+                    }
+                    for (File file : files) {
+                        if (file.getName().endsWith(".tmp")) {
+                            Utils.delete(file); // Left over from a crash while storing
+                        } else if (isCacheableHash(file.getName())) {
+                            found.put(file.getName(), file);
+                        }
+                    }
+                }
+            }
+
+            final List<String> order = new ArrayList<String>();
+            index = new IndexFile(new File(App.settings.getCacheDir(), INDEX_NAME), HEADER, 1, new IndexFile
+                    .Entries() {
+                @Override
+                public void clear() {
+                    order.clear();
+                }
+
+                @Override
+                public void read(String[] fields) {
+                    order.add(fields[0]);
+                }
+
+                @Override
+                public void write(IndexFile.Writer writer) throws IOException {
+                    for (String key : entries.keySet()) {
+                        writer.line(key);
+                    }
+                }
+            });
+            try {
+                index.load();
+            } catch (IOException e) {
+                LogManager.error("Failed to read the download cache index: " + e.getMessage());
+            }
+
+            for (String key : order) {
+                File file = found.remove(key);
+                if (file != null) {
+                    entries.put(key, file);
+                    totalSize += file.length();
+                }
+            }
+
+            // Stored since the order was last saved, so they go after the rest in the order they were stored
+            List<File> unordered = new ArrayList<File>(found.values());
+            Collections.sort(unordered, new Comparator<File>() {
+                @Override
+                public int compare(File first, File second) {
+                    long difference = first.lastModified() - second.lastModified();
+                    return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+                }
+            });
+            for (File file : unordered) {
+                entries.put(file.getName(), file);
+                totalSize += file.length();
+            }
+            changed = !unordered.isEmpty();
+
+            IndexFile.saveOnExit(new Runnable() {
+                @Override
+                public void run() {
+                    save();
+                }
+            });
+            LogManager.debug("Loaded " + entries.size() + " files from the download cache");
+        }
+        return entries;
+    }
+}
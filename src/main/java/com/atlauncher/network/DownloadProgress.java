@@ -0,0 +1,109 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.network;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of how many bytes a group of parallel downloads need to get and have got so far.
+ * <p/>
+ * Download threads can add to it for every chunk they read. The progress bar should only be refreshed when
+ * {@link #shouldRefresh()} says so, which is at most once a frame no matter how many threads are downloading.
+ */
+public final class DownloadProgress {
+    /**
+     * The number of milliseconds between refreshes of the progress bar, which works out at 30 a second.
+     */
+    public static final long FRAME_MILLIS = 1000 / 30;
+
+    private final StripedCounter total = new StripedCounter();
+    private final StripedCounter downloaded = new StripedCounter();
+    private final AtomicLong nextRefresh = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Starts counting again with the given total and nothing downloaded.
+     *
+     * @param total the number of bytes to download or 0 if not known yet
+     */
+    public void reset(long total) {
+        this.total.reset(total);
+        this.downloaded.reset(0);
+        this.nextRefresh.set(Long.MIN_VALUE);
+    }
+
+    /**
+     * Adds to the number of bytes that need to be downloaded.
+     *
+     * @param bytes the number of bytes to add
+     */
+    public void addTotal(long bytes) {
+        this.total.add(bytes);
+    }
+
+    /**
+     * Adds to the number of bytes that have been downloaded.
+     *
+     * @param bytes the number of bytes to add
+     */
+    public void addDownloaded(long bytes) {
+        this.downloaded.add(bytes);
+    }
+
+    /**
+     * Gets the number of bytes that need to be downloaded.
+     *
+     * @return the total number of bytes
+     */
+    public long getTotal() {
+        return this.total.sum();
+    }
+
+    /**
+     * Gets the number of bytes that have been downloaded.
+     *
+     * @return the number of bytes downloaded
+     */
+    public long getDownloaded() {
+        return this.downloaded.sum();
+    }
+
+    /**
+     * Gets how far through the downloads are.
+     *
+     * @return the percent done between 0 and 100
+     */
+    public int getPercent() {
+        long total = getTotal();
+        if (total <= 0) {
+            return 0;
+        }
+        return (int) Math.min(100, getDownloaded() * 100 / total);
+    }
+
+    /**
+     * Checks if enough time has passed since the last refresh for the progress bar to be refreshed again. Only one of
+     * the threads calling this during a frame will be told to refresh.
+     *
+     * @return true if the caller should refresh the progress bar
+     */
+    public boolean shouldRefresh() {
+        long now = System.nanoTime() / 1000000;
+        long next = this.nextRefresh.get();
+        return now >= next && this.nextRefresh.compareAndSet(next, now + FRAME_MILLIS);
+    }
+}
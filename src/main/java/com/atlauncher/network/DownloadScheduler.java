@@ -0,0 +1,199 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.network;
+
+import com.atlauncher.App;
+import com.atlauncher.LogManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The single bounded pool that all downloads in the launcher run on, sized by the concurrent connections setting.
+ * <p/>
+ * Work is grouped into phases. Each phase is a barrier which can be waited on without spinning, and which cancels any
+ * of its tasks that haven't finished yet when its owner (such as an InstanceInstaller) is cancelled.
+ */
+public final class DownloadScheduler {
+    private static final AtomicInteger threadNumber = new AtomicInteger(1);
+    private static ThreadPoolExecutor executor = null;
+
+    private DownloadScheduler() {
+    }
+
+    /**
+     * Starts a new phase of downloads which isn't tied to anything that can be cancelled.
+     *
+     * @param name the name of the phase used when logging
+     * @return the new phase
+     */
+    public static Phase newPhase(String name) {
+        return new Phase(name, null);
+    }
+
+    /**
+     * Starts a new phase of downloads which will stop when the given owner is cancelled.
+     *
+     * @param name  the name of the phase used when logging
+     * @param owner the task that the downloads are being done for, such as an InstanceInstaller
+     * @return the new phase
+     */
+    public static Phase newPhase(String name, Future<?> owner) {
+        return new Phase(name, owner);
+    }
+
+    /**
+     * Gets the shared executor, resizing it if the number of concurrent connections has been changed.
+     *
+     * @return the shared executor
+     */
+    private static synchronized ThreadPoolExecutor getExecutor() {
+        int threads = Math.max(1, App.settings == null ? 8 : App.settings.getConcurrentConnections());
+
+        if (executor == null) {
+            executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "ATL-Download-Thread-" + threadNumber.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            executor.allowCoreThreadTimeOut(true);
+        } else if (executor.getMaximumPoolSize() != threads) {
+            if (threads > executor.getMaximumPoolSize()) {
+                executor.setMaximumPoolSize(threads);
+                executor.setCorePoolSize(threads);
+            } else {
+                executor.setCorePoolSize(threads);
+                executor.setMaximumPoolSize(threads);
+            }
+        }
+
+        return executor;
+    }
+
+    /**
+     * A group of tasks submitted to the download pool which can be waited on together.
+     */
+    public static final class Phase {
+        private final String name;
+        private final Future<?> owner;
+        private final List<Future<?>> futures = new ArrayList<Future<?>>();
+
+        private Phase(String name, Future<?> owner) {
+            this.name = name;
+            this.owner = owner;
+        }
+
+        /**
+         * Queues a task to be run as part of this phase.
+         *
+         * @param task the task to run
+         * @return a future which completes when the task has been run
+         */
+        public Future<?> submit(final Runnable task) {
+            Future<?> future = getExecutor().submit(new Runnable() {
+                @Override
+                public void run() {
+                    if (!isCancelled()) {
+                        task.run();
+                    }
+                }
+            });
+
+            synchronized (this.futures) {
+                this.futures.add(future);
+            }
+
+            return future;
+        }
+
+        /**
+         * Checks if the owner of this phase has been cancelled.
+         *
+         * @return true if the tasks in this phase should no longer run
+         */
+        public boolean isCancelled() {
+            return this.owner != null && this.owner.isCancelled();
+        }
+
+        /**
+         * Blocks until every task in this phase has finished, or until the owner is cancelled in which case all the
+         * tasks which haven't finished are cancelled.
+         *
+         * @return true if all the tasks ran, false if the phase was cancelled
+         */
+        public boolean await() {
+            List<Future<?>> toWaitFor;
+            synchronized (this.futures) {
+                toWaitFor = new ArrayList<Future<?>>(this.futures);
+            }
+
+            for (Future<?> future : toWaitFor) {
+                while (true) {
+                    if (isCancelled()) {
+                        cancel();
+                        return false;
+                    }
+
+                    try {
+                        future.get(250, TimeUnit.MILLISECONDS);
+                        break;
+                    } catch (TimeoutException e) {
+                        // Not done yet, check if we've been cancelled and wait again.
+                    } catch (CancellationException e) {
+                        break;
+                    } catch (ExecutionException e) {
+                        LogManager.error("Task in the " + this.name + " download phase failed!");
+                        App.settings.logStackTrace(e);
+                        break;
+                    } catch (InterruptedException e) {
+                        cancel();
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                }
+            }
+
+            return !isCancelled();
+        }
+
+        /**
+         * Cancels all the tasks in this phase which haven't finished yet.
+         */
+        public void cancel() {
+            synchronized (this.futures) {
+                for (Future<?> future : this.futures) {
+                    future.cancel(true);
+                }
+            }
+            LogManager.debug("Cancelled the " + this.name + " download phase");
+        }
+    }
+}
@@ -0,0 +1,378 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.network;
+
+import com.atlauncher.App;
+import com.atlauncher.Gsons;
+import com.atlauncher.LogManager;
+import com.atlauncher.data.Server;
+import com.atlauncher.utils.Utils;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps a score for each of the launcher's download servers from how quickly they respond, how fast they send files
+ * and how often downloads from them fail, so downloads go to whichever server is doing best right now rather than the
+ * first one in the list. Each figure is an exponentially weighted moving average, so recent downloads count the most.
+ * <p/>
+ * Servers with no score yet are treated as having an average response time and speed until they've been used. Scores
+ * are saved to the mirrorscores.json file in the Configs folder so they're kept between launches.
+ */
+public final class MirrorScoreboard {
+    /**
+     * How much each new sample counts towards the averages.
+     */
+    private static final double ALPHA = 0.2;
+
+    /**
+     * The size of file the expected download time of each server is worked out for when ranking them.
+     */
+    private static final long TYPICAL_BYTES = 512 * 1024;
+
+    /**
+     * Downloads smaller than this are mostly waiting on the response, so they're too noisy to measure the speed with.
+     */
+    private static final long MIN_THROUGHPUT_BYTES = 64 * 1024;
+
+    private static final double DEFAULT_RESPONSE_MILLIS = 200;
+    private static final double DEFAULT_BYTES_PER_SECOND = 1024 * 1024;
+
+    /**
+     * A request is hedged on a second server once it's taken this many times the usual response time of its server.
+     */
+    private static final int HEDGE_MULTIPLE = 4;
+    private static final long MIN_HEDGE_MILLIS = 1000;
+    private static final long MAX_HEDGE_MILLIS = 5000;
+
+    /**
+     * Scores not updated for this long are thrown away when loaded, as they no longer say much about the server.
+     */
+    private static final long MAX_AGE_MILLIS = 7L * 24 * 60 * 60 * 1000;
+
+    private static final Type SCORES_TYPE = new TypeToken<Map<String, Score>>() {
+    }.getType();
+
+    private static final ConcurrentMap<String, Score> scores = new ConcurrentHashMap<String, Score>();
+    private static final AtomicBoolean changed = new AtomicBoolean(false);
+
+    /**
+     * The file the scores are saved to, or null if they aren't saved. This is set the first time the scores are used.
+     */
+    private static File scoresFile = null;
+    private static volatile boolean loaded = false;
+
+    private MirrorScoreboard() {
+    }
+
+    /**
+     * Records how long the given server took to respond to a request.
+     *
+     * @param server the server the request was made to
+     * @param nanos  the time from starting to connect until the response headers were read
+     */
+    public static void recordResponse(Server server, long nanos) {
+        getScore(server).addResponse(nanos / 1000000.0);
+        changed.set(true);
+    }
+
+    /**
+     * Records a file successfully downloaded from the given server.
+     *
+     * @param server the server the file was downloaded from
+     * @param bytes  the number of bytes read from the server
+     * @param nanos  the time taken to read them, not including waiting for the response
+     */
+    public static void recordTransfer(Server server, long bytes, long nanos) {
+        getScore(server).addTransfer(bytes >= MIN_THROUGHPUT_BYTES && nanos > 0 ? bytes * 1000000000.0 / nanos : -1);
+        changed.set(true);
+    }
+
+    /**
+     * Records a request to the given server failing, either to connect, with an error response or with a file which
+     * didn't match its hash.
+     *
+     * @param server the server the request was made to
+     */
+    public static void recordFailure(Server server) {
+        getScore(server).addFailure();
+        changed.set(true);
+    }
+
+    /**
+     * Gets the server with the lowest expected time to download a file from of those given, skipping any disabled
+     * ones. The preferred server wins any ties.
+     *
+     * @param servers   the servers to choose from
+     * @param preferred the server to use when no other is expected to be faster, or null if there isn't one
+     * @return the best server, or null if none are enabled
+     */
+    public static Server getBest(List<Server> servers, Server preferred) {
+        Server best = null;
+        double bestCost = Double.MAX_VALUE;
+        if (preferred != null && !preferred.isDisabled()) {
+            best = preferred;
+            bestCost = getCost(preferred);
+        }
+        for (Server server : servers) {
+            if (server.isDisabled() || server == preferred) {
+                continue;
+            }
+            double cost = getCost(server);
+            if (cost < bestCost) {
+                best = server;
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Gets the server to send a second copy of a slow request to. This is the best of the given servers other than the
+     * one the request was first sent to, only counting those users can choose from.
+     *
+     * @param servers the servers to choose from
+     * @param primary the server the request was first sent to
+     * @return the server to hedge the request on, or null if there isn't one
+     */
+    public static Server getBackup(List<Server> servers, Server primary) {
+        Server best = null;
+        double bestCost = Double.MAX_VALUE;
+        for (Server server : servers) {
+            if (server == primary || server.isDisabled() || !server.isUserSelectable()) {
+                continue;
+            }
+            double cost = getCost(server);
+            if (cost < bestCost) {
+                best = server;
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Gets how long to wait for a response from the given server before sending the request to a second one too.
+     *
+     * @param server the server the request was sent to
+     * @return the number of milliseconds to wait
+     */
+    public static long getHedgeDelay(Server server) {
+        Score score = scores.get(server.getName());
+        double responseMillis = score == null ? -1 : score.getResponseMillis();
+        if (responseMillis < 0) {
+            return MAX_HEDGE_MILLIS; // Don't know how quick it usually is, so give it a while
+        }
+        return Math.max(MIN_HEDGE_MILLIS, Math.min(MAX_HEDGE_MILLIS, (long) (responseMillis * HEDGE_MULTIPLE)));
+    }
+
+    /**
+     * Gets a human readable summary of the score of each server, best first.
+     *
+     * @param servers the servers to show the scores of
+     * @return the scores of the servers
+     */
+    public static String getStatistics(List<Server> servers) {
+        ensureLoaded();
+        StringBuilder builder = new StringBuilder();
+        Map<Server, Double> costs = new HashMap<Server, Double>();
+        for (Server server : servers) {
+            costs.put(server, getCost(server));
+        }
+        while (!costs.isEmpty()) {
+            Server best = null;
+            for (Server server : servers) {
+                if (costs.containsKey(server) && (best == null || costs.get(server) < costs.get(best))) {
+                    best = server;
+                }
+            }
+            Score score = scores.get(best.getName());
+            builder.append(builder.length() == 0 ? "" : "\n").append(best.getName()).append(": ");
+            if (score == null) {
+                builder.append("not used yet");
+            } else {
+                builder.append(score);
+            }
+            builder.append(String.format(" (%.0f ms expected for a 512 KB file)", costs.remove(best)));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Loads the scores from the given file, replacing any already known. From then on they're saved to that file.
+     *
+     * @param file the file to load the scores from and save them to
+     */
+    public static synchronized void load(File file) {
+        scoresFile = file;
+        loaded = true;
+        scores.clear();
+        changed.set(false);
+        if (!file.exists()) {
+            return;
+        }
+
+        Reader reader = null;
+        try {
+            reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+            Map<String, Score> saved = Gsons.DEFAULT.fromJson(reader, SCORES_TYPE);
+            if (saved != null) {
+                long now = System.currentTimeMillis();
+                for (Map.Entry<String, Score> entry : saved.entrySet()) {
+                    if (entry.getValue() != null && now - entry.getValue().updated < MAX_AGE_MILLIS) {
+                        scores.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LogManager.warn("Couldn't read the mirror scores from " + file + ": " + e.getMessage());
+        } catch (JsonParseException e) {
+            LogManager.warn("Couldn't read the mirror scores from " + file + ": " + e.getMessage());
+        } finally {
+            Utils.closeQuietly(reader);
+        }
+    }
+
+    /**
+     * Saves the scores if any have changed since they were last saved.
+     */
+    public static synchronized void save() {
+        ensureLoaded();
+        if (scoresFile == null || !changed.getAndSet(false)) {
+            return;
+        }
+
+        Writer writer = null;
+        try {
+            writer = new OutputStreamWriter(new FileOutputStream(scoresFile), "UTF-8");
+            writer.write(Gsons.DEFAULT.toJson(new HashMap<String, Score>(scores), SCORES_TYPE));
+        } catch (IOException e) {
+            LogManager.warn("Couldn't save the mirror scores to " + scoresFile + ": " + e.getMessage());
+        } finally {
+            Utils.closeQuietly(writer);
+        }
+    }
+
+    private static double getCost(Server server) {
+        ensureLoaded();
+        Score score = scores.get(server.getName());
+        return score == null ? new Score().getCost() : score.getCost();
+    }
+
+    private static Score getScore(Server server) {
+        ensureLoaded();
+        Score score = scores.get(server.getName());
+        if (score == null) {
+            Score created = new Score();
+            score = scores.putIfAbsent(server.getName(), created);
+            if (score == null) {
+                score = created;
+            }
+        }
+        return score;
+    }
+
+    private static void ensureLoaded() {
+        if (!loaded) {
+            synchronized (MirrorScoreboard.class) {
+                if (!loaded && App.settings != null) {
+                    load(App.settings.getMirrorScoresFile());
+                    Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            save();
+                        }
+                    }));
+                }
+                loaded = true;
+            }
+        }
+    }
+
+    /**
+     * The averages kept for a server. Values below 0 haven't been measured yet. This is saved with Gson, so its fields
+     * are the file format.
+     */
+    private static final class Score {
+        private double responseMillis = -1;
+        private double bytesPerSecond = -1;
+        private double errorRate = 0;
+        private long samples = 0;
+        private long updated = 0;
+
+        private synchronized void addResponse(double millis) {
+            this.responseMillis = average(this.responseMillis, millis);
+            this.samples++;
+            this.updated = System.currentTimeMillis();
+        }
+
+        private synchronized void addTransfer(double bytesPerSecond) {
+            if (bytesPerSecond > 0) {
+                this.bytesPerSecond = average(this.bytesPerSecond, bytesPerSecond);
+            }
+            this.errorRate = average(this.errorRate, 0);
+            this.updated = System.currentTimeMillis();
+        }
+
+        private synchronized void addFailure() {
+            this.errorRate = average(this.errorRate, 1);
+            this.samples++;
+            this.updated = System.currentTimeMillis();
+        }
+
+        private synchronized double getResponseMillis() {
+            return this.responseMillis;
+        }
+
+        /**
+         * Gets the expected time in milliseconds to download a typical file, allowing for having to try again when it
+         * fails.
+         */
+        private synchronized double getCost() {
+            double millis = (this.responseMillis < 0 ? DEFAULT_RESPONSE_MILLIS : this.responseMillis) + TYPICAL_BYTES *
+                    1000.0 / (this.bytesPerSecond < 0 ? DEFAULT_BYTES_PER_SECOND : this.bytesPerSecond);
+            return millis / Math.max(0.05, 1 - this.errorRate);
+        }
+
+        private static double average(double current, double sample) {
+            return current < 0 ? sample : current + ALPHA * (sample - current);
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format("%s response, %s, %.0f%% failed, %d requests", this.responseMillis < 0 ? "unknown" :
+                    String.format("%.0f ms", this.responseMillis), this.bytesPerSecond < 0 ? "unknown speed" : String
+                    .format("%.2f MB/s", this.bytesPerSecond / 1024 / 1024), this.errorRate * 100, this.samples);
+        }
+    }
+}
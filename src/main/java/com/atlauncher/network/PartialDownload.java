@@ -0,0 +1,420 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.network;
+
+import com.atlauncher.LogManager;
+import com.atlauncher.utils.Utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+/**
+ * A download which is written to a .part file next to where it should end up, so that if the connection drops it can
+ * be carried on from where it got to with a HTTP Range request instead of starting again.
+ * <p/>
+ * A small .part.info file next to it holds the URL, the number of bytes safely written and the ETag or Last-Modified
+ * header of the response, which is sent back in an If-Range header so that a file which has changed on the server is
+ * downloaded again from the start. The hash of the file is worked out as it's written so the whole file doesn't need to
+ * be read again once it's done.
+ */
+public final class PartialDownload {
+    /**
+     * How many bytes are written between each save of the .part.info file.
+     */
+    private static final long CHECKPOINT_BYTES = 1024 * 1024;
+
+    private final File file;
+    private final File partFile;
+    private final File infoFile;
+    private final String algorithm;
+
+    private String url = null;
+    private String validator = null;
+    private long offset = 0;
+    private long size = -1;
+    private boolean resumable = false;
+    private long lastCheckpoint = 0;
+    private MessageDigest digest = null;
+    private FileOutputStream fileOut = null;
+    private OutputStream out = null; // Writes to fileOut, updating the digest as it goes
+
+    /**
+     * Creates a new partial download.
+     *
+     * @param file      the file the download should end up in
+     * @param algorithm the algorithm to hash the file with, such as MD5 or SHA-1
+     */
+    public PartialDownload(File file, String algorithm) {
+        this.file = file;
+        this.partFile = new File(file.getParentFile(), file.getName() + ".part");
+        this.infoFile = new File(file.getParentFile(), file.getName() + ".part.info");
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * Works out where the download of the given URL should start from, which is the number of bytes safely written by
+     * an earlier attempt or 0 if there's nothing to carry on from.
+     *
+     * @param url the URL about to be downloaded
+     * @return the offset to request the file from
+     */
+    public long resume(String url) {
+        if (this.digest != null && url.equals(this.url) && this.resumable && this.partFile.length() == this.offset) {
+            return this.offset; // Carrying on from an attempt in this session so the digest is already up to date
+        }
+
+        this.digest = null;
+        this.offset = 0;
+        this.size = -1;
+        this.validator = null;
+        this.resumable = false;
+        this.url = url;
+
+        if (!this.partFile.isFile() || !this.infoFile.isFile()) {
+            discard();
+            return 0;
+        }
+
+        Properties info = new Properties();
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(this.infoFile);
+            info.load(in);
+        } catch (IOException e) {
+            LogManager.debug("Couldn't read " + this.infoFile.getName() + ", starting the download again", 3);
+            discard();
+            return 0;
+        } finally {
+            Utils.closeQuietly(in);
+        }
+
+        long offset;
+        long size;
+        try {
+            offset = Long.parseLong(info.getProperty("offset", "0"));
+            size = Long.parseLong(info.getProperty("size", "-1"));
+        } catch (NumberFormatException e) {
+            discard();
+            return 0;
+        }
+
+        // Anything after the last checkpoint may not have made it to the disk so it's downloaded again
+        offset = Math.min(offset, this.partFile.length());
+
+        if (!url.equals(info.getProperty("url")) || info.getProperty("validator") == null || offset <= 0 || (size >
+                0 && offset >= size)) {
+            discard();
+            return 0;
+        }
+
+        try {
+            RandomAccessFile raf = new RandomAccessFile(this.partFile, "rw");
+            try {
+                raf.setLength(offset);
+            } finally {
+                raf.close();
+            }
+            this.digest = hashPart(offset);
+        } catch (IOException e) {
+            LogManager.debug("Couldn't reuse " + this.partFile.getName() + ", starting the download again", 3);
+            discard();
+            return 0;
+        }
+
+        this.offset = offset;
+        this.lastCheckpoint = offset;
+        this.size = size;
+        this.validator = info.getProperty("validator");
+        this.resumable = true;
+        return offset;
+    }
+
+    /**
+     * Gets the validator to send in an If-Range header when resuming, which is the ETag or Last-Modified header from
+     * the response the .part file was started from.
+     *
+     * @return the validator or null if there is none
+     */
+    public String getValidator() {
+        return this.validator;
+    }
+
+    /**
+     * Starts writing the body of the response from the given connection, carrying on from the .part file if the server
+     * sent back just the range asked for and starting again from nothing otherwise.
+     *
+     * @param connection the connected connection to download the body of
+     * @param gzipped    if the body is gzipped, which means it can't be resumed by byte offset
+     * @return true if the download is carrying on from an earlier attempt, false if it's starting from the start
+     * @throws IOException if the .part file can't be opened
+     */
+    public boolean start(HttpURLConnection connection, boolean gzipped) throws IOException {
+        boolean resuming = this.offset > 0 && connection.getResponseCode() == HttpURLConnection.HTTP_PARTIAL &&
+                getRangeStart(connection) == this.offset;
+
+        if (!resuming && connection.getResponseCode() == HttpURLConnection.HTTP_PARTIAL) {
+            discard();
+            throw new IOException(connection.getURL() + " sent back a different range to the one asked for");
+        }
+
+        if (!resuming) {
+            this.offset = 0;
+            this.lastCheckpoint = 0;
+            this.size = -1;
+            try {
+                this.digest = MessageDigest.getInstance(this.algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IOException("Cannot hash download with " + this.algorithm);
+            }
+        }
+
+        if (!gzipped && connection.getContentLength() >= 0) {
+            this.size = this.offset + connection.getContentLength();
+        } else if (!resuming) {
+            this.size = -1;
+        }
+
+        String validator = connection.getHeaderField("ETag");
+        if (validator == null) {
+            validator = connection.getHeaderField("Last-Modified");
+        }
+        this.validator = validator;
+
+        // A gzipped body can't be carried on from by byte offset, so only plain bodies are resumable
+        this.resumable = !gzipped && validator != null && !"none".equalsIgnoreCase(connection.getHeaderField
+                ("Accept-Ranges"));
+
+        this.partFile.getParentFile().mkdirs();
+        this.fileOut = new FileOutputStream(this.partFile, resuming);
+        this.out = new DigestOutputStream(this.fileOut, this.digest);
+
+        // Nothing is saved until the first checkpoint, so most files never have a .part.info file at all
+        if ((!resuming || !this.resumable) && this.infoFile.exists()) {
+            Utils.delete(this.infoFile);
+        }
+        return resuming;
+    }
+
+    /**
+     * Writes the next part of the body to the .part file.
+     *
+     * @param buffer the buffer holding the bytes
+     * @param off    the offset in the buffer the bytes start at
+     * @param len    the number of bytes to write
+     * @throws IOException if the bytes couldn't be written
+     */
+    public void write(byte[] buffer, int off, int len) throws IOException {
+        this.out.write(buffer, off, len);
+        this.offset += len;
+        if (this.offset - this.lastCheckpoint >= CHECKPOINT_BYTES) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Gets the number of bytes of the file which have been written so far.
+     *
+     * @return the number of bytes written
+     */
+    public long getOffset() {
+        return this.offset;
+    }
+
+    /**
+     * Checks if a later attempt will be able to carry on from what has been written so far.
+     *
+     * @return true if some of the file has been written and the server supports carrying on from it
+     */
+    public boolean canResume() {
+        return this.resumable && this.offset > 0;
+    }
+
+    /**
+     * Gets the full size of the file being downloaded.
+     *
+     * @return the size of the file or -1 if not known
+     */
+    public long getSize() {
+        return this.size;
+    }
+
+    /**
+     * Checks if all of the file has been written. If the size isn't known then it's assumed to be done.
+     *
+     * @return true if the whole file has been written
+     */
+    public boolean isComplete() {
+        return this.digest != null && (this.size < 0 || this.offset == this.size);
+    }
+
+    /**
+     * Moves the finished .part file to where it should end up.
+     *
+     * @return the hash of the file in lowercase hex
+     * @throws IOException if the file couldn't be moved into place
+     */
+    public String finish() throws IOException {
+        close(false);
+        if (this.file.exists()) {
+            Utils.delete(this.file);
+        }
+        if (!this.partFile.renameTo(this.file) && !Utils.moveFile(this.partFile, this.file, true)) {
+            throw new IOException("Couldn't move " + this.partFile.getAbsolutePath() + " to " + this.file
+                    .getAbsolutePath());
+        }
+        String hash = Utils.toHex(this.digest.digest());
+        discard();
+        return hash;
+    }
+
+    /**
+     * Stops writing to the .part file, saving how far it got so a later attempt can carry on from there.
+     */
+    public void close() {
+        close(true);
+    }
+
+    /**
+     * Stops writing to the .part file.
+     *
+     * @param checkpoint if how far it got should be saved, which isn't needed when it's finished or thrown away
+     */
+    private void close(boolean checkpoint) {
+        if (this.out != null) {
+            if (checkpoint && this.offset > this.lastCheckpoint) {
+                checkpoint(); // Before closing it, as the bytes have to be synced first
+            }
+            Utils.closeQuietly(this.out);
+            this.out = null;
+            this.fileOut = null;
+        }
+    }
+
+    /**
+     * Throws away anything downloaded so far so the next attempt starts from the start.
+     */
+    public void discard() {
+        close(false);
+        if (this.partFile.exists()) {
+            Utils.delete(this.partFile);
+        }
+        if (this.infoFile.exists()) {
+            Utils.delete(this.infoFile);
+        }
+        this.digest = null;
+        this.offset = 0;
+        this.lastCheckpoint = 0;
+        this.resumable = false;
+    }
+
+    /**
+     * Saves the number of bytes written so far to the .part.info file. The file is written to a temporary file first
+     * and then moved into place, so a crash part way through never leaves a broken file behind.
+     */
+    private void checkpoint() {
+        if (!this.resumable) {
+            return;
+        }
+
+        Properties info = new Properties();
+        info.setProperty("url", this.url);
+        info.setProperty("validator", this.validator);
+        info.setProperty("offset", Long.toString(this.offset));
+        info.setProperty("size", Long.toString(this.size));
+
+        File temp = new File(this.infoFile.getParentFile(), this.infoFile.getName() + ".tmp");
+        FileOutputStream out = null;
+        try {
+            if (this.fileOut != null) {
+                this.fileOut.getFD().sync(); // The bytes must be on disk before we say they are
+            }
+            out = new FileOutputStream(temp);
+            info.store(out, null);
+            out.close();
+            out = null;
+            if (this.infoFile.exists()) {
+                Utils.delete(this.infoFile);
+            }
+            if (temp.renameTo(this.infoFile)) {
+                this.lastCheckpoint = this.offset;
+            }
+        } catch (IOException e) {
+            LogManager.debug("Couldn't save " + this.infoFile.getName() + ": " + e.getMessage(), 3);
+        } finally {
+            Utils.closeQuietly(out);
+        }
+    }
+
+    /**
+     * Hashes the first given number of bytes of the .part file.
+     *
+     * @param length the number of bytes to hash
+     * @return the digest after hashing the bytes
+     * @throws IOException if the .part file couldn't be read
+     */
+    private MessageDigest hashPart(long length) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(this.algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("Cannot hash download with " + this.algorithm);
+        }
+
+        InputStream in = new FileInputStream(this.partFile);
+        try {
+            byte[] buffer = new byte[16 * 1024];
+            long left = length;
+            int read;
+            while (left > 0 && (read = in.read(buffer, 0, (int) Math.min(buffer.length, left))) > 0) {
+                digest.update(buffer, 0, read);
+                left -= read;
+            }
+        } finally {
+            in.close();
+        }
+        return digest;
+    }
+
+    /**
+     * Gets the first byte of the range the server sent back from the Content-Range header.
+     *
+     * @param connection the connection to check
+     * @return the first byte sent or -1 if the header is missing or can't be read
+     */
+    private static long getRangeStart(HttpURLConnection connection) {
+        String range = connection.getHeaderField("Content-Range");
+        if (range == null || !range.startsWith("bytes ") || range.indexOf('-') == -1) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(range.substring(6, range.indexOf('-')).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
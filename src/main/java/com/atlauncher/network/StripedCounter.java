@@ -0,0 +1,93 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.network;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter which many threads can add to at once without fighting over the same value. Each thread adds to one of a
+ * number of stripes picked from its id, and reading the value sums the stripes.
+ * <p/>
+ * Reads are only exact when nothing is adding at the same time, which is all that progress reporting needs.
+ */
+public final class StripedCounter {
+    /**
+     * The number of longs between each stripe so that two stripes never end up in the same cache line.
+     */
+    private static final int PADDING = 8;
+
+    private final int mask;
+    private final AtomicLongArray stripes;
+
+    public StripedCounter() {
+        int stripes = 1;
+        while (stripes < Runtime.getRuntime().availableProcessors() * 2) {
+            stripes <<= 1;
+        }
+        this.mask = stripes - 1;
+        this.stripes = new AtomicLongArray(stripes * PADDING);
+    }
+
+    /**
+     * Adds the given amount to the counter.
+     *
+     * @param amount the amount to add, which can be negative
+     */
+    public void add(long amount) {
+        if (amount != 0) {
+            this.stripes.addAndGet(getStripe(), amount);
+        }
+    }
+
+    /**
+     * Gets the current value of the counter.
+     *
+     * @return the sum of all the amounts added since it was last reset
+     */
+    public long sum() {
+        long sum = 0;
+        for (int i = 0; i < this.stripes.length(); i += PADDING) {
+            sum += this.stripes.get(i);
+        }
+        return sum;
+    }
+
+    /**
+     * Sets the counter back to the given value.
+     *
+     * @param value the value the counter should have
+     */
+    public void reset(long value) {
+        for (int i = 0; i < this.stripes.length(); i += PADDING) {
+            this.stripes.set(i, 0);
+        }
+        this.stripes.set(0, value);
+    }
+
+    private int getStripe() {
+        long id = Thread.currentThread().getId();
+        int hash = (int) (id ^ (id >>> 32));
+        hash ^= (hash >>> 16); // Thread ids are handed out in order, so spread them out a bit
+        return (hash & this.mask) * PADDING;
+    }
+
+    @Override
+    public String toString() {
+        return Long.toString(sum());
+    }
+}
@@ -38,7 +38,7 @@ public final class GithubIssueReporter {
             body = body + "\n\n" + times('-', 50) + "\n" + "Here is my log: " + App.TASKPOOL.submit(new PasteUpload()
             ).get();
             Map<String, Object> request = new HashMap<String, Object>();
-            request.put("issue", new GithubIssue(title, body));
+            request.put("issue", new GithubIssue(LogManager.redact(title), LogManager.redact(body)));
 
             try {
                 APIResponse response = Gsons.DEFAULT.fromJson(Utils.sendAPICall("githubissue/", request), APIResponse
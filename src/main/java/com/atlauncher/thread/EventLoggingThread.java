@@ -0,0 +1,201 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.thread;
+
+import com.atlauncher.LogManager;
+import com.atlauncher.data.Constants;
+import com.atlauncher.evnt.LauncherEvent;
+import com.atlauncher.utils.LogIndex;
+import com.atlauncher.utils.RingBuffer;
+import com.atlauncher.writer.RollingLogWriter;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the launcher's events to the event log, one line of JSON each, in files which are rolled, compressed and
+ * cleared out the same as the normal log files. Each file is only ever appended to a whole line at a time, so it can
+ * be followed by a log shipper while it's being written.
+ */
+public final class EventLoggingThread extends Thread {
+    /**
+     * What the event log files are named with, followed by the date and time they were started.
+     */
+    public static final String PREFIX = Constants.LAUNCHER_NAME + "-Events_";
+
+    /**
+     * What the event log files end with, before being compressed.
+     */
+    public static final String SUFFIX = ".jsonl";
+
+    /**
+     * The most events taken from the queue at once.
+     */
+    private static final int BATCH_SIZE = 512;
+
+    /**
+     * How often what's been written is flushed to the file, so a log shipper following it isn't kept waiting long.
+     */
+    private static final long FLUSH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * How much is written to a file before starting a new one.
+     */
+    private static final long MAX_FILE_CHARS = 8 * 1024 * 1024;
+
+    private final RingBuffer<LauncherEvent> queue;
+    private final RollingLogWriter writer;
+    private final List<LauncherEvent> batch = new ArrayList<LauncherEvent>(BATCH_SIZE);
+    private final StringBuilder line = new StringBuilder(256);
+    private long reportedDropped = 0;
+    private boolean closed = false; // Guarded by the writer
+
+    /**
+     * Starts the first file of the event log. The thread still needs starting.
+     *
+     * @param queue the events waiting to be written
+     * @param dir   the folder to write the event log to, which must exist
+     * @param index the index of the files in the folder
+     * @throws IOException if the file couldn't be created
+     */
+    public EventLoggingThread(RingBuffer<LauncherEvent> queue, File dir, LogIndex index) throws IOException {
+        this.queue = queue;
+        this.setName("ATL-Event-Logging-Thread");
+        this.setDaemon(true); // What's left in the queue is written by the shutdown hook
+        this.setPriority(Thread.MIN_PRIORITY);
+        this.writer = new RollingLogWriter(dir, PREFIX, SUFFIX, null, index, MAX_FILE_CHARS);
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                close();
+            }
+        }));
+    }
+
+    /**
+     * Gets a filter for the files of the event log, compressed or not.
+     *
+     * @return the filter
+     */
+    public static FilenameFilter getFileFilter() {
+        return new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(PREFIX) && (name.endsWith(SUFFIX) || name.endsWith(SUFFIX + ".gz")) && new
+                        File(dir, name).isFile();
+            }
+        };
+    }
+
+    @Override
+    public void run() {
+        try {
+            long lastFlush = System.nanoTime();
+            boolean unflushed = false;
+            while (true) {
+                if (this.queue.drainTo(this.batch, BATCH_SIZE) == 0) {
+                    this.queue.await(unflushed ? Math.max(0, lastFlush + FLUSH_NANOS - System.nanoTime()) :
+                            FLUSH_NANOS);
+                } else {
+                    synchronized (this.writer) {
+                        if (this.closed) {
+                            return;
+                        }
+                        try {
+                            write(this.batch);
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                    this.batch.clear();
+                    unflushed = true;
+                }
+                reportDropped();
+
+                if (unflushed && System.nanoTime() - lastFlush >= FLUSH_NANOS) {
+                    flush();
+                    lastFlush = System.nanoTime();
+                    unflushed = false;
+                }
+            }
+        } catch (Exception ex) {
+            ex.printStackTrace(System.err);
+        }
+    }
+
+    /**
+     * Writes anything still in the queue and closes the file. Called when the launcher exits.
+     */
+    public void close() {
+        synchronized (this.writer) {
+            if (this.closed) {
+                return;
+            }
+            List<LauncherEvent> remaining = new ArrayList<LauncherEvent>();
+            this.queue.drainTo(remaining, Integer.MAX_VALUE);
+            try {
+                write(remaining);
+                this.writer.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            this.closed = true;
+        }
+    }
+
+    /**
+     * Writes each event with a single write, so no line is ever split between two files.
+     */
+    private void write(List<LauncherEvent> events) throws IOException {
+        for (LauncherEvent event : events) {
+            this.line.setLength(0);
+            event.toJSON(this.line);
+            this.writer.write(this.line.toString());
+        }
+    }
+
+    /**
+     * Adds a warning to the launcher's log if any events have been dropped since the last one. Nothing's added to the
+     * event log itself, as whatever's reading it can't do anything about it.
+     */
+    private void reportDropped() {
+        long dropped = this.queue.getDropped();
+        if (dropped > this.reportedDropped) {
+            LogManager.warn((dropped - this.reportedDropped) + " events weren't written to the event log as they came " +
+                    "in faster than they could be written (" + dropped + " in total)");
+            this.reportedDropped = dropped;
+        }
+    }
+
+    private void flush() {
+        synchronized (this.writer) {
+            if (this.closed) {
+                return;
+            }
+            try {
+                this.writer.flush();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -21,44 +21,52 @@ package com.atlauncher.thread;
 import com.atlauncher.App;
 import com.atlauncher.data.Constants;
 import com.atlauncher.evnt.LogEvent;
+import com.atlauncher.utils.LogIndex;
+import com.atlauncher.utils.RingBuffer;
 import com.atlauncher.utils.Timestamper;
 import com.atlauncher.writer.LogEventWriter;
+import com.atlauncher.writer.RollingLogWriter;
 
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.concurrent.BlockingQueue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public final class LoggingThread extends Thread {
+    /**
+     * The most events taken from the queue at once.
+     */
+    private static final int BATCH_SIZE = 512;
+
+    /**
+     * How often what's been written is flushed to the log file, rather than flushing after every event.
+     */
+    private static final long FLUSH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * How much is written to a log file before starting a new one, so long sessions with lots of debug logging don't
+     * end up with one huge file.
+     */
+    private static final long MAX_FILE_CHARS = 16 * 1024 * 1024;
+
     private final LogEventWriter writer;
-    private final BlockingQueue<LogEvent> queue;
-    private static final String date = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss").format(new Date());
-    public static final String filename = Constants.LAUNCHER_NAME + "-Log_" + date + ".log";
+    private final RingBuffer<LogEvent> queue;
+    private final List<LogEvent> batch = new ArrayList<LogEvent>(BATCH_SIZE);
+    private long reportedDropped = 0;
+    private boolean closed = false; // Guarded by the writer
 
-    public LoggingThread(BlockingQueue<LogEvent> queue) {
+    public LoggingThread(RingBuffer<LogEvent> queue, LogIndex index) {
         this.queue = queue;
         this.setName("ATL-Logging-Thread");
-        File log = new File(App.settings.getLogsDir(), filename);
-        if (!log.exists()) {
-            try {
-                log.createNewFile();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
+        this.setDaemon(true); // What's left in the queue is written by the shutdown hook
         try {
-            this.writer = new LogEventWriter(new FileWriter(log));
+            this.writer = new LogEventWriter(new RollingLogWriter(App.settings.getLogsDir(), Constants.LAUNCHER_NAME
+                    + "-Log_", index, MAX_FILE_CHARS));
             this.writer.write("Generated on " + Timestamper.now() + "\n");
             Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
                 @Override
                 public void run() {
-                    try {
-                        writer.close();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
+                    close();
                 }
             }));
         } catch (IOException e) {
@@ -69,10 +77,31 @@ public final class LoggingThread extends Thread {
     @Override
     public void run() {
         try {
+            long lastFlush = System.nanoTime();
+            boolean unflushed = false;
             while (true) {
-                LogEvent next = this.queue.take();
-                if (next != null) {
-                    next.post(this.writer);
+                if (this.queue.drainTo(this.batch, BATCH_SIZE) == 0) {
+                    // Nothing to do, so sleep until something's logged or it's time to flush
+                    this.queue.await(unflushed ? Math.max(0, lastFlush + FLUSH_NANOS - System.nanoTime()) :
+                            FLUSH_NANOS);
+                } else {
+                    synchronized (this.writer) {
+                        if (this.closed) {
+                            return;
+                        }
+                        for (LogEvent event : this.batch) {
+                            event.post(this.writer);
+                        }
+                    }
+                    this.batch.clear();
+                    unflushed = true;
+                }
+                reportDropped();
+
+                if (unflushed && System.nanoTime() - lastFlush >= FLUSH_NANOS) {
+                    flush();
+                    lastFlush = System.nanoTime();
+                    unflushed = false;
                 }
             }
         } catch (Exception ex) {
@@ -80,4 +109,58 @@ public final class LoggingThread extends Thread {
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Adds a warning to the console and log if any events have been dropped since the last one.
+     */
+    private void reportDropped() {
+        long dropped = this.queue.getDropped();
+        if (dropped > this.reportedDropped) {
+            LogEvent warning = new LogEvent(LogEvent.LogType.WARN, (dropped - this.reportedDropped) + " log " +
+                    "messages were dropped as they came in faster than they could be written (" + dropped + " in " +
+                    "total, overflow policy " + this.queue.getOverflowPolicy() + ")");
+            this.reportedDropped = dropped;
+            synchronized (this.writer) {
+                if (!this.closed) {
+                    warning.post(this.writer);
+                }
+            }
+        }
+    }
+
+    private void flush() {
+        synchronized (this.writer) {
+            if (this.closed) {
+                return;
+            }
+            try {
+                this.writer.flush();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Writes anything still in the queue to the log file and closes it. Called when the launcher exits.
+     */
+    private void close() {
+        synchronized (this.writer) {
+            if (this.closed) {
+                return;
+            }
+            List<LogEvent> remaining = new ArrayList<LogEvent>();
+            this.queue.drainTo(remaining, Integer.MAX_VALUE);
+            try {
+                for (LogEvent event : remaining) {
+                    if ((event.meta & LogEvent.FILE) == LogEvent.FILE) {
+                        this.writer.write(event);
+                    }
+                }
+                this.writer.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            this.closed = true;
+        }
+    }
+}
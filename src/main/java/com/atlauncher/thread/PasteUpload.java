@@ -19,6 +19,7 @@
 package com.atlauncher.thread;
 
 import com.atlauncher.App;
+import com.atlauncher.LogManager;
 import com.atlauncher.data.Constants;
 
 import java.io.BufferedReader;
@@ -32,7 +33,7 @@ import java.util.concurrent.Callable;
 public final class PasteUpload implements Callable<String> {
     @Override
     public String call() throws Exception {
-        String log = App.settings.getLog().replace(System.getProperty("line.separator"), "\n");
+        String log = LogManager.redact(App.settings.getLog().replace(System.getProperty("line.separator"), "\n"));
         String urlParameters = "";
         urlParameters += "title=" + URLEncoder.encode(Constants.LAUNCHER_NAME + " - Log", "ISO-8859-1") + "&";
         urlParameters += "language=" + URLEncoder.encode("text", "ISO-8859-1") + "&";
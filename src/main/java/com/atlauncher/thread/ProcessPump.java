@@ -0,0 +1,400 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.thread;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the output of launched processes, such as Minecraft, and hands it on a line at a time.
+ * <p/>
+ * A single thread looks after the stdout and stderr of every process, so running a few instances at once doesn't mean
+ * a couple of threads each. Process pipes can't be waited on together, so the thread reads whatever each stream has
+ * ready in one go and only sleeps, for a little longer each time up to 20 ms, when none of them had anything. This
+ * keeps the pipes emptied so a process never stalls on a full one, and nothing waiting on a process is held up by it
+ * going quiet.
+ */
+public final class ProcessPump {
+    /**
+     * The size of the buffers each stream is read into.
+     */
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * The longest time to sleep when no process has written anything.
+     */
+    private static final long MAX_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    private static final List<Pumped> processes = new ArrayList<Pumped>(); // Guarded by the class
+    private static Thread thread; // Guarded by the class
+
+    private ProcessPump() {
+    }
+
+    /**
+     * Starts reading a process's stdout and stderr. Don't read either stream of the process anywhere else.
+     *
+     * @param name     the name of the process, used in its statistics
+     * @param process  the process
+     * @param listener what to give each line to, which is called on the pump's thread
+     * @return the pumped process, to wait on and get statistics from
+     */
+    public static Pumped pump(String name, Process process, LineListener listener) {
+        Pumped pumped = new Pumped(name, process, listener);
+        synchronized (ProcessPump.class) {
+            processes.add(pumped);
+            if (thread == null) {
+                thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        pumpAll();
+                    }
+                }, "ATL-Process-Pump");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            ProcessPump.class.notifyAll();
+        }
+        return pumped;
+    }
+
+    private static void pumpAll() {
+        List<Pumped> pumping = new ArrayList<Pumped>();
+        long idle = 0;
+        long nextTick = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (true) {
+            synchronized (ProcessPump.class) {
+                while (processes.isEmpty()) {
+                    try {
+                        ProcessPump.class.wait();
+                    } catch (InterruptedException e) {
+                        thread = null;
+                        return;
+                    }
+                }
+                pumping.clear();
+                pumping.addAll(processes);
+            }
+
+            boolean read = false;
+            for (Pumped pumped : pumping) {
+                read |= pumped.pump();
+                if (pumped.isFinished()) {
+                    synchronized (ProcessPump.class) {
+                        processes.remove(pumped);
+                    }
+                }
+            }
+
+            long now = System.nanoTime();
+            if (now >= nextTick) {
+                for (Pumped pumped : pumping) {
+                    pumped.tick(now);
+                }
+                nextTick = now + TimeUnit.SECONDS.toNanos(1);
+            }
+
+            if (read) {
+                idle = 0;
+            } else {
+                idle = Math.min(MAX_IDLE_NANOS, Math.max(idle * 2, TimeUnit.MILLISECONDS.toNanos(1)));
+                try {
+                    TimeUnit.NANOSECONDS.sleep(idle);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Where a line came from.
+     */
+    public static enum Source {
+        STDOUT, STDERR
+    }
+
+    /**
+     * Is given each line a process writes. It's called on the pump thread, so it must never wait on anything, or the
+     * output of every other process stops being read too.
+     */
+    public static interface LineListener {
+        /**
+         * Called with a line, without its line ending, in the order they were written to each stream.
+         *
+         * @param source the stream the line was written to
+         * @param line   the line
+         */
+        void line(Source source, String line);
+    }
+
+    /**
+     * A process being pumped, with counts of what it's written.
+     */
+    public static final class Pumped {
+        private final String name;
+        private final Process process;
+        private final LineListener listener;
+        private final Stream out;
+        private final Stream err;
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private final long started = System.nanoTime();
+        private volatile long lines = 0;
+        private volatile long bytes = 0;
+        private volatile long linesPerSecond = 0;
+        private volatile long bytesPerSecond = 0;
+        private volatile long peakLinesPerSecond = 0;
+        private volatile long ended = 0;
+        private long lastTick = this.started;
+        private long lastLines = 0;
+        private long lastBytes = 0;
+
+        private Pumped(String name, Process process, LineListener listener) {
+            this.name = name;
+            this.process = process;
+            this.listener = listener;
+            this.out = new Stream(Source.STDOUT, process.getInputStream());
+            this.err = new Stream(Source.STDERR, process.getErrorStream());
+        }
+
+        /**
+         * Reads whatever the process has written since last time, finishing up once it's exited.
+         *
+         * @return true if anything was read
+         */
+        private boolean pump() {
+            boolean exited = hasExited(); // Checked first so anything written before exiting is read below
+            boolean read = this.out.read() | this.err.read();
+            if (exited && !read) {
+                this.out.end();
+                this.err.end();
+                this.ended = System.nanoTime();
+                tick(this.ended);
+                this.finished.countDown();
+            }
+            return read;
+        }
+
+        private boolean hasExited() {
+            try {
+                this.process.exitValue();
+                return true;
+            } catch (IllegalThreadStateException e) {
+                return false;
+            }
+        }
+
+        private boolean isFinished() {
+            return this.finished.getCount() == 0;
+        }
+
+        /**
+         * Works out the rates over the time since the last tick.
+         */
+        private void tick(long now) {
+            long nanos = Math.max(1, now - this.lastTick);
+            this.linesPerSecond = (this.lines - this.lastLines) * TimeUnit.SECONDS.toNanos(1) / nanos;
+            this.bytesPerSecond = (this.bytes - this.lastBytes) * TimeUnit.SECONDS.toNanos(1) / nanos;
+            this.peakLinesPerSecond = Math.max(this.peakLinesPerSecond, this.linesPerSecond);
+            this.lastTick = now;
+            this.lastLines = this.lines;
+            this.lastBytes = this.bytes;
+        }
+
+        /**
+         * Waits for the process to exit and everything it wrote to be handed on.
+         *
+         * @return the exit value of the process
+         * @throws InterruptedException if interrupted while waiting
+         */
+        public int waitFor() throws InterruptedException {
+            this.finished.await();
+            return this.process.waitFor();
+        }
+
+        public long getLines() {
+            return this.lines;
+        }
+
+        public long getBytes() {
+            return this.bytes;
+        }
+
+        /**
+         * Gets the number of lines written in the last second, or since the last second started if it's finished.
+         *
+         * @return the lines per second
+         */
+        public long getLinesPerSecond() {
+            return this.linesPerSecond;
+        }
+
+        /**
+         * Gets the number of bytes written in the last second, or since the last second started if it's finished.
+         *
+         * @return the bytes per second
+         */
+        public long getBytesPerSecond() {
+            return this.bytesPerSecond;
+        }
+
+        public long getPeakLinesPerSecond() {
+            return this.peakLinesPerSecond;
+        }
+
+        /**
+         * Gets a summary of what the process has written, to log once it's finished.
+         *
+         * @return the summary
+         */
+        public String getStatistics() {
+            long nanos = (this.ended == 0 ? System.nanoTime() : this.ended) - this.started;
+            return String.format("%s wrote %d lines (%d KB) in %d seconds, at most %d lines a second", this.name,
+                    this.lines, this.bytes / 1024, TimeUnit.NANOSECONDS.toSeconds(nanos), this.peakLinesPerSecond);
+        }
+
+        /**
+         * One of the process's output streams, turning the bytes read into lines.
+         */
+        private final class Stream {
+            private final Source source;
+            private final InputStream in;
+            private final ReadableByteChannel channel;
+            private final CharsetDecoder decoder = Charset.defaultCharset().newDecoder().onMalformedInput
+                    (CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+            private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+            private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+            private final StringBuilder line = new StringBuilder();
+            private boolean closed = false;
+
+            private Stream(Source source, InputStream in) {
+                this.source = source;
+                this.in = in;
+                this.channel = Channels.newChannel(in);
+            }
+
+            /**
+             * Reads whatever's ready without waiting for more.
+             *
+             * @return true if anything was read
+             */
+            private boolean read() {
+                if (this.closed) {
+                    return false;
+                }
+                boolean read = false;
+                try {
+                    int available;
+                    while ((available = this.in.available()) > 0) {
+                        // Only ask for what's there, so the read never has to wait
+                        this.bytes.limit(Math.min(this.bytes.capacity(), this.bytes.position() + available));
+                        int count = this.channel.read(this.bytes);
+                        if (count <= 0) {
+                            break;
+                        }
+                        Pumped.this.bytes += count;
+                        read = true;
+                        this.bytes.flip();
+                        decode(false);
+                        this.bytes.compact();
+                    }
+                } catch (IOException e) {
+                    end(); // Closed under us, such as when the process was killed
+                }
+                return read;
+            }
+
+            /**
+             * Hands on what's left once the process has exited.
+             */
+            private void end() {
+                if (this.closed) {
+                    return;
+                }
+                this.closed = true;
+                this.bytes.flip();
+                decode(true);
+                if (this.line.length() != 0) {
+                    send();
+                }
+                try {
+                    this.channel.close();
+                } catch (IOException ignored) {
+                }
+            }
+
+            private void decode(boolean endOfInput) {
+                while (true) {
+                    CoderResult result = this.decoder.decode(this.bytes, this.chars, endOfInput);
+                    if (endOfInput && result.isUnderflow()) {
+                        this.decoder.flush(this.chars);
+                    }
+                    this.chars.flip();
+                    split();
+                    this.chars.clear();
+                    if (!result.isOverflow()) {
+                        return;
+                    }
+                }
+            }
+
+            /**
+             * Hands on every complete line in what's been decoded, keeping any partial line for next time.
+             */
+            private void split() {
+                char[] array = this.chars.array();
+                int start = this.chars.position();
+                int end = this.chars.limit();
+                for (int i = start; i < end; i++) {
+                    if (array[i] == '\n') {
+                        this.line.append(array, start, i - start);
+                        send();
+                        start = i + 1;
+                    }
+                }
+                this.line.append(array, start, end - start);
+            }
+
+            private void send() {
+                int length = this.line.length();
+                if (length != 0 && this.line.charAt(length - 1) == '\r') {
+                    length--;
+                }
+                Pumped.this.lines++;
+                try {
+                    Pumped.this.listener.line(this.source, this.line.substring(0, length));
+                } catch (RuntimeException e) {
+                    e.printStackTrace(System.err); // Don't let one bad line stop the rest being read
+                }
+                this.line.setLength(0);
+            }
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.thread;
+
+import com.atlauncher.LogManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a set of tasks in parallel, each one starting as soon as all the tasks it depends on have finished. Tasks can
+ * only depend on tasks added before them, so there can't be any cycles.
+ * <p/>
+ * Once run, the time each task waited and took is kept so a report of what held things up can be logged. If a task
+ * throws, the tasks depending on it are skipped and the exception is thrown from {@link #run(int)} once everything
+ * else has finished.
+ */
+public final class TaskGraph {
+    private final String name;
+    private final List<Task> tasks = new ArrayList<Task>();
+    private long started;
+    private long finished;
+
+    public TaskGraph(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Adds a task to be run once the given tasks have finished.
+     *
+     * @param name         the name of the task to show in the report
+     * @param runnable     what the task does
+     * @param dependencies the tasks which must finish before this one starts
+     * @return the task, for other tasks to depend on
+     */
+    public Task add(String name, Runnable runnable, Task... dependencies) {
+        Task task = new Task(name, runnable);
+        for (Task dependency : dependencies) {
+            if (!this.tasks.contains(dependency)) {
+                throw new IllegalArgumentException(name + " depends on " + dependency.name + " which isn't in " +
+                        this.name);
+            }
+            task.dependencies.add(dependency);
+            dependency.dependents.add(task);
+        }
+        task.remaining.set(dependencies.length);
+        this.tasks.add(task);
+        return task;
+    }
+
+    /**
+     * Runs all the tasks, waiting until they've all finished.
+     *
+     * @param threads the most tasks to run at once
+     */
+    public void run(int threads) {
+        final CountDownLatch done = new CountDownLatch(this.tasks.size());
+        final AtomicInteger count = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, name + " " + count.incrementAndGet());
+            }
+        });
+
+        this.started = System.nanoTime();
+        try {
+            for (Task task : this.tasks) {
+                if (task.dependencies.isEmpty()) {
+                    task.ready = this.started;
+                    executor.execute(new Worker(task, executor, done));
+                }
+            }
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdown();
+            this.finished = System.nanoTime();
+        }
+
+        for (Task task : this.tasks) {
+            if (task.failure instanceof RuntimeException) {
+                throw (RuntimeException) task.failure;
+            } else if (task.failure instanceof Error) {
+                throw (Error) task.failure;
+            }
+        }
+    }
+
+    /**
+     * Gets a report of when each task started, how long it took and what it was waiting on, along with the chain of
+     * tasks which decided how long the whole graph took to run.
+     *
+     * @return the lines of the report
+     */
+    public List<String> getReport() {
+        List<Task> ordered = new ArrayList<Task>(this.tasks);
+        Collections.sort(ordered, new Comparator<Task>() {
+            @Override
+            public int compare(Task first, Task second) {
+                return first.start < second.start ? -1 : (first.start == second.start ? 0 : 1);
+            }
+        });
+
+        List<String> lines = new ArrayList<String>();
+        lines.add(String.format("%s took %d ms", this.name, millis(this.finished - this.started)));
+        for (Task task : ordered) {
+            if (task.skipped) {
+                lines.add(String.format("  %-32s skipped", task.name));
+                continue;
+            }
+            lines.add(String.format("  %-32s started at %5d ms, took %5d ms (ready at %5d ms) on %s", task.name,
+                    millis(task.start - this.started), millis(task.end - task.start), millis(task.ready - this
+                            .started), task.thread));
+        }
+
+        // Work back from whatever finished last through whatever each task was last waiting on
+        Task last = null;
+        for (Task task : this.tasks) {
+            if (!task.skipped && (last == null || task.end > last.end)) {
+                last = task;
+            }
+        }
+        StringBuilder path = new StringBuilder();
+        while (last != null) {
+            path.insert(0, (path.length() == 0 ? "" : " -> ")).insert(0, last.name);
+            Task waitedOn = null;
+            for (Task dependency : last.dependencies) {
+                if (waitedOn == null || dependency.end > waitedOn.end) {
+                    waitedOn = dependency;
+                }
+            }
+            last = waitedOn;
+        }
+        lines.add("  Critical path: " + path);
+        return lines;
+    }
+
+    /**
+     * Writes the report to the log.
+     */
+    public void logReport() {
+        for (String line : getReport()) {
+            LogManager.info(line);
+        }
+    }
+
+    private static long millis(long nanos) {
+        return nanos / 1000000;
+    }
+
+    /**
+     * A task in the graph, added with {@link #add(String, Runnable, Task...)}.
+     */
+    public static final class Task {
+        private final String name;
+        private final Runnable runnable;
+        private final List<Task> dependencies = new ArrayList<Task>();
+        private final List<Task> dependents = new ArrayList<Task>();
+        private final AtomicInteger remaining = new AtomicInteger();
+        private volatile long ready;
+        private volatile long start;
+        private volatile long end;
+        private volatile String thread;
+        private volatile Throwable failure;
+        private volatile boolean skipped;
+
+        private Task(String name, Runnable runnable) {
+            this.name = name;
+            this.runnable = runnable;
+        }
+    }
+
+    /**
+     * Runs a task and then starts any of the tasks depending on it which have nothing left to wait on.
+     */
+    private static final class Worker implements Runnable {
+        private final Task task;
+        private final ExecutorService executor;
+        private final CountDownLatch done;
+
+        private Worker(Task task, ExecutorService executor, CountDownLatch done) {
+            this.task = task;
+            this.executor = executor;
+            this.done = done;
+        }
+
+        @Override
+        public void run() {
+            this.task.thread = Thread.currentThread().getName();
+            this.task.start = System.nanoTime();
+            try {
+                this.task.runnable.run();
+            } catch (Throwable t) {
+                this.task.failure = t;
+                LogManager.error("Startup task " + this.task.name + " failed: " + t);
+            } finally {
+                this.task.end = System.nanoTime();
+            }
+
+            if (this.task.failure != null) {
+                skip(this.task);
+            } else {
+                for (Task dependent : this.task.dependents) {
+                    if (dependent.remaining.decrementAndGet() == 0) {
+                        dependent.ready = System.nanoTime();
+                        this.executor.execute(new Worker(dependent, this.executor, this.done));
+                    }
+                }
+            }
+            this.done.countDown();
+        }
+
+        /**
+         * Marks everything depending on a failed task as skipped, as those tasks will never be started.
+         */
+        private void skip(Task failed) {
+            for (Task dependent : failed.dependents) {
+                synchronized (dependent) {
+                    if (dependent.skipped) {
+                        continue;
+                    }
+                    dependent.skipped = true;
+                }
+                this.done.countDown();
+                skip(dependent);
+            }
+        }
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.utils;
+
+import com.atlauncher.App;
+import com.atlauncher.LogManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Remembers the MD5 and SHA-1 hashes of files so they don't have to be read again every time they're checked. Hashes
+ * are keyed by the absolute path of the file and are only used while its size and last modified time are unchanged.
+ * <p/>
+ * The index is saved to the digestindex file in the Configs folder so it's kept between launches. It's always written
+ * to a temporary file first and then moved into place, and a file which wasn't completely written is ignored, so a
+ * crash can only ever lose hashes, which are then just worked out again.
+ */
+public final class DigestIndex {
+    private static final String HEADER = "digestindex 1";
+
+    /**
+     * Files modified this close to when they were hashed could be changed again without their last modified time
+     * changing, so hashes of them aren't trusted until they've been hashed again later on.
+     */
+    private static final long RACY_MILLIS = 2000;
+
+    private static final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    private static final AtomicBoolean changed = new AtomicBoolean(false);
+
+    /**
+     * The index file it's saved to, or null if it isn't saved. This is set the first time the index is used.
+     */
+    private static IndexFile index = null;
+    private static volatile boolean loaded = false;
+
+    private DigestIndex() {
+    }
+
+    /**
+     * Gets the MD5 hash of the given file, only reading the file if it's changed since it was last hashed.
+     *
+     * @param file the file to hash
+     * @return the MD5 hash of the file
+     */
+    public static String getMD5(File file) {
+        return getHash(file, true);
+    }
+
+    /**
+     * Gets the SHA-1 hash of the given file, only reading the file if it's changed since it was last hashed.
+     *
+     * @param file the file to hash
+     * @return the SHA-1 hash of the file
+     */
+    public static String getSHA1(File file) {
+        return getHash(file, false);
+    }
+
+    /**
+     * Remembers the hash of a file which has just been worked out some other way, such as while downloading it. As the
+     * hash comes from the bytes that were written rather than reading the file back, it's trusted straight away.
+     *
+     * @param file the file the hash is for
+     * @param md5  true if the hash is an MD5 hash, false if it's a SHA-1 hash
+     * @param hash the hash of the file
+     */
+    public static void put(File file, boolean md5, String hash) {
+        if (file.isFile()) {
+            put(file.getAbsolutePath(), file.length(), file.lastModified(), Long.MAX_VALUE, md5, hash);
+        }
+    }
+
+    /**
+     * Forgets the hashes of the given file.
+     *
+     * @param file the file to forget about
+     */
+    public static void remove(File file) {
+        if (entries.remove(file.getAbsolutePath()) != null) {
+            changed.set(true);
+        }
+    }
+
+    /**
+     * Loads the index from the given file, replacing anything already in it. From then on it's saved to that file.
+     *
+     * @param file the file to load the index from and save it to
+     */
+    public static synchronized void load(File file) {
+        index = new IndexFile(file, HEADER, 6, new IndexFile.Entries() {
+            @Override
+            public void clear() {
+                entries.clear();
+            }
+
+            @Override
+            public void read(String[] fields) {
+                Entry entry = new Entry(Long.parseLong(fields[0]), Long.parseLong(fields[1]), Long.parseLong
+                        (fields[2]));
+                entry.md5 = "-".equals(fields[3]) ? null : fields[3];
+                entry.sha1 = "-".equals(fields[4]) ? null : fields[4];
+                entries.put(fields[5], entry);
+            }
+
+            @Override
+            public void write(IndexFile.Writer writer) throws IOException {
+                Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+                while (iterator.hasNext()) {
+                    Map.Entry<String, Entry> mapEntry = iterator.next();
+                    Entry entry = mapEntry.getValue();
+                    if (!new File(mapEntry.getKey()).isFile()) {
+                        iterator.remove();
+                        continue;
+                    }
+                    writer.line(entry.length, entry.lastModified, entry.hashedAt, entry.md5 == null ? "-" : entry
+                            .md5, entry.sha1 == null ? "-" : entry.sha1, mapEntry.getKey());
+                }
+            }
+        });
+        loaded = true;
+        changed.set(false);
+
+        try {
+            int count = index.load();
+            if (count != -1) {
+                LogManager.debug("Loaded " + count + " file hashes from the digest index");
+            }
+        } catch (IOException e) {
+            LogManager.error("Failed to read the digest index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Saves the index if anything in it has changed since it was last saved. Files which no longer exist are left out.
+     */
+    public static synchronized void save() {
+        ensureLoaded();
+        if (index == null || !changed.getAndSet(false)) {
+            return;
+        }
+
+        try {
+            int count = index.save();
+            LogManager.debug("Saved " + count + " file hashes to the digest index", 3);
+        } catch (IOException e) {
+            changed.set(true);
+            LogManager.error("Failed to save the digest index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Gets the number of files in the index.
+     *
+     * @return the number of files the index has hashes for
+     */
+    public static int size() {
+        ensureLoaded();
+        return entries.size();
+    }
+
+    private static void ensureLoaded() {
+        if (!loaded) {
+            synchronized (DigestIndex.class) {
+                if (!loaded && App.settings != null) {
+                    load(App.settings.getDigestIndexFile());
+                    IndexFile.saveOnExit(new Runnable() {
+                        @Override
+                        public void run() {
+                            save();
+                        }
+                    });
+                }
+                loaded = true;
+            }
+        }
+    }
+
+    private static String getHash(File file, boolean md5) {
+        if (!file.isFile()) {
+            return md5 ? Utils.getMD5(file) : Utils.getSHA1(file);
+        }
+        ensureLoaded();
+
+        String path = file.getAbsolutePath();
+        long length = file.length();
+        long lastModified = file.lastModified();
+
+        Entry entry = entries.get(path);
+        if (entry != null && entry.matches(length, lastModified)) {
+            String hash = md5 ? entry.md5 : entry.sha1;
+            if (hash != null) {
+                return hash;
+            }
+        }
+
+        long hashedAt = System.currentTimeMillis();
+        String hash = md5 ? Utils.getMD5(file) : Utils.getSHA1(file);
+
+        // Only remember it if the file didn't change while it was being read
+        if (file.length() == length && file.lastModified() == lastModified) {
+            put(path, length, lastModified, hashedAt, md5, hash);
+        }
+        return hash;
+    }
+
+    private static void put(String path, long length, long lastModified, long hashedAt, boolean md5, String hash) {
+        ensureLoaded();
+        Entry entry = entries.get(path);
+        if (entry == null || entry.length != length || entry.lastModified != lastModified) {
+            entry = new Entry(length, lastModified, hashedAt);
+            entries.put(path, entry);
+        }
+        if (md5) {
+            entry.md5 = hash.toLowerCase();
+        } else {
+            entry.sha1 = hash.toLowerCase();
+        }
+        changed.set(true);
+    }
+
+    private static final class Entry {
+        private final long length;
+        private final long lastModified;
+        private final long hashedAt;
+        private volatile String md5 = null;
+        private volatile String sha1 = null;
+
+        private Entry(long length, long lastModified, long hashedAt) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.hashedAt = hashedAt;
+        }
+
+        private boolean matches(long length, long lastModified) {
+            return this.length == length && this.lastModified == lastModified && this.lastModified < this.hashedAt -
+                    RACY_MILLIS;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Decides which exceptions have their stack traces logged, so something failing over and over, such as every download
+ * while a server's down, doesn't flood the log with the same trace.
+ * <p/>
+ * Exceptions are grouped by where they happened: the type of exception and the first place in the launcher's own code
+ * it passed through. A trace exactly the same as the last one logged from the same place is only counted, and only so
+ * many are logged from each place a minute. How many were left out is added to the next one logged from there.
+ */
+public final class ErrorLimiter {
+    /**
+     * Start of the stack frames which are the launcher's own code.
+     */
+    private static final String OWN_CODE = "com.atlauncher.";
+
+    private final int perWindow;
+    private final long windowMillis;
+    private final ConcurrentMap<Site, SiteState> sites = new ConcurrentHashMap<Site, SiteState>();
+
+    /**
+     * Creates a limiter.
+     *
+     * @param perWindow    the most traces logged from each place in a window
+     * @param windowMillis how long each window lasts
+     */
+    public ErrorLimiter(int perWindow, long windowMillis) {
+        this.perWindow = perWindow;
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * Checks if the trace of an exception should be logged. Nothing is formatted unless some were left out.
+     *
+     * @param thrown the exception
+     * @param now    the current time in milliseconds
+     * @return null if it shouldn't be logged, otherwise a note of how many were left out since the last one logged
+     * from the same place, which is empty if none were
+     */
+    public String check(Throwable thrown, long now) {
+        StackTraceElement[] frames = thrown.getStackTrace();
+        Site site = new Site(thrown.getClass(), firstOwnFrame(frames));
+        SiteState state = this.sites.get(site);
+        if (state == null) {
+            SiteState added = this.sites.putIfAbsent(site, state = new SiteState());
+            if (added != null) {
+                state = added;
+            }
+        }
+
+        synchronized (state) {
+            if (now - state.windowStart >= this.windowMillis) {
+                state.windowStart = now;
+                state.logged = 0;
+                state.last = null; // So even the same trace is logged again now and then, with how often it happened
+            }
+            if (state.last != null && isSame(state.last, state.lastFrames, thrown, frames)) {
+                state.repeats++;
+                return null;
+            }
+            if (state.logged >= this.perWindow) {
+                state.suppressed++;
+                return null;
+            }
+
+            String note = note(state.repeats, state.suppressed);
+            state.logged++;
+            state.repeats = 0;
+            state.suppressed = 0;
+            state.last = thrown;
+            state.lastFrames = frames;
+            return note;
+        }
+    }
+
+    private static String note(int repeats, int suppressed) {
+        if (repeats == 0 && suppressed == 0) {
+            return "";
+        }
+        StringBuilder note = new StringBuilder("(");
+        if (repeats > 0) {
+            note.append("the same error happened ").append(repeats).append(repeats == 1 ? " more time" : " more " +
+                    "times");
+        }
+        if (suppressed > 0) {
+            note.append(repeats > 0 ? " and " : "").append(suppressed).append(suppressed == 1 ? " other error was" :
+                    " other errors were").append(" left out");
+        }
+        return note.append(" since the last from here)").toString();
+    }
+
+    private static StackTraceElement firstOwnFrame(StackTraceElement[] frames) {
+        for (StackTraceElement frame : frames) {
+            if (frame.getClassName().startsWith(OWN_CODE)) {
+                return frame;
+            }
+        }
+        return frames.length == 0 ? null : frames[0];
+    }
+
+    /**
+     * Checks if two exceptions would have the same stack trace, causes and all.
+     */
+    private static boolean isSame(Throwable a, StackTraceElement[] aFrames, Throwable b, StackTraceElement[] bFrames) {
+        while (true) {
+            if (a.getClass() != b.getClass() || !equal(a.getMessage(), b.getMessage()) || !Arrays.equals(aFrames,
+                    bFrames)) {
+                return false;
+            }
+            a = a.getCause();
+            b = b.getCause();
+            if (a == null || b == null) {
+                return a == b;
+            }
+            aFrames = a.getStackTrace();
+            bFrames = b.getStackTrace();
+        }
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static final class Site {
+        private final Class<?> type;
+        private final StackTraceElement frame;
+
+        private Site(Class<?> type, StackTraceElement frame) {
+            this.type = type;
+            this.frame = frame;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Site)) {
+                return false;
+            }
+            Site site = (Site) other;
+            return this.type == site.type && (this.frame == null ? site.frame == null : this.frame.equals(site
+                    .frame));
+        }
+
+        @Override
+        public int hashCode() {
+            return this.type.hashCode() * 31 + (this.frame == null ? 0 : this.frame.hashCode());
+        }
+    }
+
+    private static final class SiteState {
+        private long windowStart = Long.MIN_VALUE / 2;
+        private int logged = 0; // Logged in this window
+        private int repeats = 0; // The same as the last logged, since it was logged
+        private int suppressed = 0; // Left out as too many were logged in the window, since the last logged
+        private Throwable last = null;
+        private StackTraceElement[] lastFrames = null;
+    }
+}
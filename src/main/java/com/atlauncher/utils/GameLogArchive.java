@@ -0,0 +1,503 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.utils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the output of each time an instance is launched, so it can be searched through afterwards.
+ * <p/>
+ * Each session is saved as a .log.gz file made up of segments of up to 4096 lines, each of which is compressed on its
+ * own, along with a .idx file giving the first line, number of lines and where in the file each segment is. Together
+ * the segments are still a normal gzip file which any tool can open, but any line can be got to by only reading the
+ * segment it's in, and searches only ever have one segment of a session in memory at a time.
+ */
+public final class GameLogArchive {
+    /**
+     * The most lines in each compressed segment.
+     */
+    private static final int SEGMENT_LINES = 4096;
+
+    /**
+     * The most sessions kept for each instance. The oldest are deleted when a new one is started.
+     */
+    private static final int MAX_SESSIONS = 20;
+
+    private static final String DATE_FORMAT = "yyyy-MM-dd_HH-mm-ss";
+    private static final int DATE_LENGTH = DATE_FORMAT.length();
+
+    private final File dir;
+
+    /**
+     * Creates an archive of the sessions in the given folder.
+     *
+     * @param dir the folder to keep the sessions in, which is created when the first session is started
+     */
+    public GameLogArchive(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Starts saving a new session, clearing out the oldest if there are too many.
+     *
+     * @return the recorder to add the session's lines to
+     * @throws IOException if the session's files couldn't be created
+     */
+    public Recorder startSession() throws IOException {
+        if (!this.dir.isDirectory() && !this.dir.mkdirs()) {
+            throw new IOException("Couldn't create " + this.dir.getAbsolutePath());
+        }
+
+        List<String> sessions = getSessions();
+        for (int i = MAX_SESSIONS - 1; i < sessions.size(); i++) {
+            Utils.delete(getLogFile(sessions.get(i)));
+            Utils.delete(getIndexFile(sessions.get(i)));
+        }
+
+        String date = new SimpleDateFormat(DATE_FORMAT).format(new Date());
+        String session = date;
+        if (!sessions.isEmpty() && sessions.get(0).startsWith(date)) {
+            // Always numbered after the newest, even if older ones started that second were just deleted
+            session = date + "-" + (getNumber(sessions.get(0)) + 1);
+        }
+        return new Recorder(session);
+    }
+
+    /**
+     * Gets the saved sessions, newest first.
+     *
+     * @return the names of the sessions
+     */
+    public List<String> getSessions() {
+        String[] names = this.dir.list(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(".idx");
+            }
+        });
+        List<String> sessions = new ArrayList<String>();
+        if (names != null) {
+            for (String name : names) {
+                sessions.add(name.substring(0, name.length() - 4));
+            }
+        }
+        Collections.sort(sessions, new Comparator<String>() {
+            @Override
+            public int compare(String first, String second) {
+                int date = second.substring(0, Math.min(DATE_LENGTH, second.length())).compareTo(first.substring(0,
+                        Math.min(DATE_LENGTH, first.length())));
+                return date != 0 ? date : getNumber(second) - getNumber(first);
+            }
+        });
+        return sessions;
+    }
+
+    /**
+     * Gets the number added to a session's name when more than one was started in the same second.
+     */
+    private static int getNumber(String session) {
+        if (session.length() <= DATE_LENGTH + 1) {
+            return 1;
+        }
+        try {
+            return Integer.parseInt(session.substring(DATE_LENGTH + 1));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Gets the number of lines saved for a session.
+     *
+     * @param session the name of the session
+     * @return the number of lines
+     * @throws IOException if the session's index couldn't be read
+     */
+    public long getLineCount(String session) throws IOException {
+        List<Segment> segments = readIndex(session);
+        if (segments.isEmpty()) {
+            return 0;
+        }
+        Segment last = segments.get(segments.size() - 1);
+        return last.firstLine + last.lines;
+    }
+
+    /**
+     * Reads some of the lines of a session, only decompressing the segments they're in.
+     *
+     * @param session the name of the session
+     * @param from    the number of the first line to read, starting from 0
+     * @param count   the most lines to read
+     * @return the lines, which are fewer than asked for if the session ends first
+     * @throws IOException if the session couldn't be read
+     */
+    public List<String> readLines(String session, long from, int count) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        for (Segment segment : readIndex(session)) {
+            if (lines.size() == count) {
+                break;
+            }
+            if (segment.firstLine + segment.lines <= from) {
+                continue; // Skipped without reading it
+            }
+            BufferedReader reader = segment.open(getLogFile(session));
+            try {
+                String line;
+                for (long number = segment.firstLine; lines.size() < count && (line = reader.readLine()) != null;
+                     number++) {
+                    if (number >= from) {
+                        lines.add(line);
+                    }
+                }
+            } finally {
+                Utils.closeQuietly(reader);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Searches every session for lines containing some text, newest session first.
+     *
+     * @param text       the text to look for
+     * @param ignoreCase if the case of the text doesn't matter
+     * @param max        the most matches to find
+     * @return the matches
+     * @throws IOException if a session couldn't be read
+     */
+    public List<Match> search(String text, boolean ignoreCase, int max) throws IOException {
+        List<Match> matches = new ArrayList<Match>();
+        for (String session : getSessions()) {
+            if (matches.size() == max) {
+                break;
+            }
+            matches.addAll(search(session, text, ignoreCase, 0, max - matches.size()));
+        }
+        return matches;
+    }
+
+    /**
+     * Searches a session for lines containing some text, starting at a given line, such as the one after the last
+     * match to get more of them.
+     *
+     * @param session    the name of the session
+     * @param text       the text to look for
+     * @param ignoreCase if the case of the text doesn't matter
+     * @param from       the number of the line to start from
+     * @param max        the most matches to find
+     * @return the matches
+     * @throws IOException if the session couldn't be read
+     */
+    public List<Match> search(String session, String text, boolean ignoreCase, long from, int max) throws
+            IOException {
+        String query = ignoreCase ? text.toLowerCase(Locale.ENGLISH) : text;
+        List<Match> matches = new ArrayList<Match>();
+        for (Segment segment : readIndex(session)) {
+            if (matches.size() == max) {
+                break;
+            }
+            if (segment.firstLine + segment.lines <= from) {
+                continue;
+            }
+            BufferedReader reader = segment.open(getLogFile(session));
+            try {
+                String line;
+                for (long number = segment.firstLine; matches.size() < max && (line = reader.readLine()) != null;
+                     number++) {
+                    if (number >= from && (ignoreCase ? line.toLowerCase(Locale.ENGLISH) : line).contains(query)) {
+                        matches.add(new Match(session, number, line));
+                    }
+                }
+            } finally {
+                Utils.closeQuietly(reader);
+            }
+        }
+        return matches;
+    }
+
+    private List<Segment> readIndex(String session) throws IOException {
+        List<Segment> segments = new ArrayList<Segment>();
+        File file = getIndexFile(session);
+        if (!file.isFile()) {
+            return segments;
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t");
+                if (parts.length != 4) {
+                    break; // Cut off part way through being written
+                }
+                segments.add(new Segment(Long.parseLong(parts[0]), Integer.parseInt(parts[1]), Long.parseLong
+                        (parts[2]), Long.parseLong(parts[3])));
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid game log index " + file.getName());
+        } finally {
+            Utils.closeQuietly(reader);
+        }
+        return segments;
+    }
+
+    private File getLogFile(String session) {
+        return new File(this.dir, session + ".log.gz");
+    }
+
+    private File getIndexFile(String session) {
+        return new File(this.dir, session + ".idx");
+    }
+
+    /**
+     * Saves the lines of a session as they come in. Each segment is added to the index once it's finished, so if the
+     * launcher exits without closing it only the lines since the last full segment are lost.
+     */
+    public final class Recorder implements Closeable {
+        private final String session;
+        private final CountingOutputStream out;
+        private final Writer index;
+        private Writer segment = null;
+        private long segmentStart;
+        private long firstLine = 0;
+        private int lines = 0;
+        private boolean closed = false;
+
+        private Recorder(String session) throws IOException {
+            this.session = session;
+            this.out = new CountingOutputStream(new FileOutputStream(getLogFile(session)));
+            this.index = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(getIndexFile(session)),
+                    "UTF-8"));
+        }
+
+        public String getSession() {
+            return this.session;
+        }
+
+        /**
+         * Adds a line to the session.
+         *
+         * @param line the line, without a line ending
+         * @throws IOException if it couldn't be written
+         */
+        public synchronized void append(String line) throws IOException {
+            if (this.closed) {
+                return;
+            }
+            if (this.segment == null) {
+                this.segmentStart = this.out.getCount();
+                this.segment = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(new
+                        UnclosableOutputStream(this.out), 8192), "UTF-8"), 8192);
+            }
+            this.segment.write(line);
+            this.segment.write('\n');
+            if (++this.lines == SEGMENT_LINES) {
+                finishSegment();
+            }
+        }
+
+        /**
+         * Finishes the last segment and closes the session's files.
+         *
+         * @throws IOException if they couldn't be written
+         */
+        @Override
+        public synchronized void close() throws IOException {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            try {
+                finishSegment();
+            } finally {
+                Utils.closeQuietly(this.index);
+                Utils.closeQuietly(this.out);
+            }
+        }
+
+        private void finishSegment() throws IOException {
+            if (this.segment == null) {
+                return;
+            }
+            this.segment.close(); // Finishes the gzip member without closing the file
+            this.segment = null;
+            this.out.flush();
+            this.index.write(this.firstLine + "\t" + this.lines + "\t" + this.segmentStart + "\t" + (this.out
+                    .getCount() - this.segmentStart) + "\n");
+            this.index.flush();
+            this.firstLine += this.lines;
+            this.lines = 0;
+        }
+    }
+
+    /**
+     * A line found by a search.
+     */
+    public static final class Match {
+        private final String session;
+        private final long line;
+        private final String text;
+
+        private Match(String session, long line, String text) {
+            this.session = session;
+            this.line = line;
+            this.text = text;
+        }
+
+        public String getSession() {
+            return this.session;
+        }
+
+        /**
+         * Gets the number of the line in its session, starting from 0.
+         *
+         * @return the line number
+         */
+        public long getLine() {
+            return this.line;
+        }
+
+        public String getText() {
+            return this.text;
+        }
+
+        @Override
+        public String toString() {
+            return this.session + ":" + (this.line + 1) + ": " + this.text;
+        }
+    }
+
+    private static final class Segment {
+        private final long firstLine;
+        private final int lines;
+        private final long offset;
+        private final long length;
+
+        private Segment(long firstLine, int lines, long offset, long length) {
+            this.firstLine = firstLine;
+            this.lines = lines;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        /**
+         * Opens a reader for just this segment's lines, skipping straight to it in the file.
+         */
+        private BufferedReader open(File file) throws IOException {
+            InputStream in = new FileInputStream(file);
+            try {
+                long skipped = 0;
+                while (skipped < this.offset) {
+                    long skip = in.skip(this.offset - skipped);
+                    if (skip <= 0) {
+                        throw new IOException("Game log " + file.getName() + " is shorter than its index");
+                    }
+                    skipped += skip;
+                }
+                return new BufferedReader(new InputStreamReader(new GZIPInputStream(new BoundedInputStream(in, this
+                        .length), 8192), "UTF-8"));
+            } catch (IOException e) {
+                Utils.closeQuietly(in);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Stops reading at the end of a segment, so the next segment's header isn't read as part of this one.
+     */
+    private static final class BoundedInputStream extends FilterInputStream {
+        private long remaining;
+
+        private BoundedInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (this.remaining <= 0) {
+                return -1;
+            }
+            int read = super.read();
+            if (read != -1) {
+                this.remaining--;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (this.remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(bytes, offset, (int) Math.min(length, this.remaining));
+            if (read > 0) {
+                this.remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), this.remaining);
+        }
+    }
+
+
+    /**
+     * Lets each segment's gzip stream be closed to finish it, while the file carries on being written.
+     */
+    private static final class UnclosableOutputStream extends FilterOutputStream {
+        private UnclosableOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            this.out.write(bytes, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.utils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+
+/**
+ * A file the launcher keeps an index in, such as the digest index, with one line of tab separated fields for each
+ * entry between a header naming the format and a footer holding the number of lines.
+ * <p/>
+ * It's always written to a temporary file next to it first, synced and then moved into place. A file without its
+ * footer, or with the wrong number of lines, wasn't completely written and is ignored, so a crash while saving only
+ * ever leaves the last complete index behind.
+ */
+public final class IndexFile {
+    private static final String FOOTER = "end";
+
+    private final File file;
+    private final String header;
+    private final int fields;
+    private final Entries entries;
+
+    /**
+     * Creates a new index file.
+     *
+     * @param file    the file the index is kept in
+     * @param header  the first line of the file, naming the format and its version
+     * @param fields  how many fields each line has. The last is the rest of the line, so it can hold tabs
+     * @param entries what to read each line into and write each line from
+     */
+    public IndexFile(File file, String header, int fields, Entries entries) {
+        this.file = file;
+        this.header = header;
+        this.fields = fields;
+        this.entries = entries;
+    }
+
+    /**
+     * Adds a hook which saves an index when the launcher exits.
+     *
+     * @param save what saves the index
+     */
+    public static void saveOnExit(Runnable save) {
+        Runtime.getRuntime().addShutdownHook(new Thread(save));
+    }
+
+    public File getFile() {
+        return this.file;
+    }
+
+    /**
+     * Reads the index into the entries, from the temporary file if the index itself wasn't completely written. If
+     * neither was, the entries are left cleared.
+     *
+     * @return the number of lines read, or -1 if there wasn't a complete index to read
+     * @throws IOException if there was an index but it couldn't be read
+     */
+    public int load() throws IOException {
+        File temp = getTempFile();
+        IOException failure = null;
+        try {
+            int count = read(this.file);
+            if (count != -1) {
+                return count;
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+
+        try {
+            int count = read(temp);
+            if (count != -1) {
+                if (this.file.exists()) {
+                    Utils.delete(this.file);
+                }
+                temp.renameTo(this.file); // Crashed before it was moved into place, so it's the newest there is
+                return count;
+            }
+        } catch (IOException e) {
+            if (failure == null) {
+                failure = e;
+            }
+        } finally {
+            if (temp.exists()) {
+                Utils.delete(temp);
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+        return -1;
+    }
+
+    /**
+     * Writes every entry to the index.
+     *
+     * @return the number of lines written
+     * @throws IOException if it couldn't be written, in which case the index is left as it was
+     */
+    public int save() throws IOException {
+        File temp = getTempFile();
+        FileOutputStream out = null;
+        BufferedWriter writer = null;
+        try {
+            out = new FileOutputStream(temp);
+            writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+            writer.write(this.header);
+            writer.newLine();
+
+            Writer lines = new Writer(writer);
+            this.entries.write(lines);
+
+            writer.write(FOOTER + " " + lines.count);
+            writer.newLine();
+            writer.flush();
+            out.getFD().sync();
+            writer.close();
+            writer = null;
+
+            if (this.file.exists()) {
+                Utils.delete(this.file);
+            }
+            if (!temp.renameTo(this.file)) {
+                throw new IOException("Couldn't move " + temp.getAbsolutePath() + " to " + this.file
+                        .getAbsolutePath());
+            }
+            return lines.count;
+        } finally {
+            Utils.closeQuietly(writer);
+            Utils.closeQuietly(out);
+        }
+    }
+
+    /**
+     * Reads the index from the given file.
+     *
+     * @return the number of lines read, or -1 if it doesn't exist or wasn't completely written
+     */
+    private int read(File file) throws IOException {
+        this.entries.clear();
+        if (!file.isFile()) {
+            return -1;
+        }
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            if (!this.header.equals(reader.readLine())) {
+                return -1;
+            }
+
+            int count = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(FOOTER + " ")) {
+                    if (Integer.parseInt(line.substring(FOOTER.length() + 1)) == count) {
+                        return count;
+                    }
+                    break;
+                }
+                String[] parts = line.split("\t", this.fields);
+                if (parts.length != this.fields) {
+                    break;
+                }
+                this.entries.read(parts);
+                count++;
+            }
+        } catch (NumberFormatException e) {
+            this.entries.clear();
+            throw new IOException("Bad number in " + file.getName() + ": " + e.getMessage());
+        } catch (IOException e) {
+            this.entries.clear();
+            throw e;
+        } finally {
+            Utils.closeQuietly(reader);
+        }
+
+        this.entries.clear();
+        return -1;
+    }
+
+    private File getTempFile() {
+        return new File(this.file.getParentFile(), this.file.getName() + ".tmp");
+    }
+
+    /**
+     * What an index file reads its lines into and writes them from.
+     */
+    public interface Entries {
+        /**
+         * Forgets everything read so far, before reading or when what was read turns out to be incomplete.
+         */
+        void clear();
+
+        /**
+         * Reads one line.
+         *
+         * @param fields the fields of the line
+         * @throws NumberFormatException if a field which should be a number isn't
+         */
+        void read(String[] fields);
+
+        /**
+         * Writes every line.
+         *
+         * @param writer what to write each line to
+         * @throws IOException if a line couldn't be written
+         */
+        void write(Writer writer) throws IOException;
+    }
+
+    /**
+     * Writes the lines of an index file, counting them for the footer.
+     */
+    public static final class Writer {
+        private final BufferedWriter writer;
+        private int count = 0;
+
+        private Writer(BufferedWriter writer) {
+            this.writer = writer;
+        }
+
+        /**
+         * Writes a line made of the given fields. A line which couldn't be read back the same, as a field has a line
+         * break in it or one other than the last has a tab in it, isn't written. What it was for is just worked out
+         * again next time.
+         *
+         * @param fields the fields of the line
+         * @return true if the line was written
+         * @throws IOException if the line couldn't be written
+         */
+        public boolean line(Object... fields) throws IOException {
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < fields.length; i++) {
+                String field = String.valueOf(fields[i]);
+                if (field.indexOf('\n') != -1 || field.indexOf('\r') != -1 || (i < fields.length - 1 && field
+                        .indexOf('\t') != -1)) {
+                    return false;
+                }
+                if (i > 0) {
+                    line.append('\t');
+                }
+                line.append(field);
+            }
+            this.writer.write(line.toString());
+            this.writer.newLine();
+            this.count++;
+            return true;
+        }
+    }
+}
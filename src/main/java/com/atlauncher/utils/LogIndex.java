@@ -0,0 +1,499 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps track of the launcher's log files in the Logs folder, so old ones can be cleared out without listing the folder
+ * and working out the date of every file on each launch.
+ * <p/>
+ * Each file's name, when it was started and its size are kept in the logs.index file in the folder, which is always
+ * written to a temporary file first and then moved into place. If it's missing or wasn't completely written, it's
+ * rebuilt from the files in the folder. Finished log files are gzipped one at a time in the background, and once the
+ * folder goes over its disk budget the oldest files are deleted until it's back under. Folders can share one
+ * {@link Budget}, in which case the oldest files across all of them are deleted first. The file being written to is
+ * never compressed or deleted.
+ */
+public final class LogIndex {
+    private static final String HEADER = "logindex 1";
+    private static final String INDEX_NAME = "logs.index";
+
+    private final File dir;
+    private final IndexFile index;
+    private final FilenameFilter filter;
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(); // Oldest first, guarded by this
+    private final ExecutorService compressor;
+    private final Budget budget;
+    private String active = null; // Guarded by this
+
+    /**
+     * Loads the index of the log files in the given folder, rebuilding it if needed. The folder has a disk budget of
+     * its own.
+     *
+     * @param dir    the folder the log files are in
+     * @param filter which files in the folder are log files, for when the index needs rebuilding
+     */
+    public LogIndex(File dir, FilenameFilter filter) {
+        this(dir, filter, new Budget());
+    }
+
+    /**
+     * Loads the index of the log files in the given folder, rebuilding it if needed.
+     *
+     * @param dir    the folder the log files are in
+     * @param filter which files in the folder are log files, for when the index needs rebuilding
+     * @param budget the disk budget the folder shares with any others given it
+     */
+    public LogIndex(File dir, FilenameFilter filter, Budget budget) {
+        this.dir = dir;
+        this.budget = budget;
+        this.index = new IndexFile(new File(dir, INDEX_NAME), HEADER, 3, new IndexFile.Entries() {
+            @Override
+            public void clear() {
+                entries.clear();
+            }
+
+            @Override
+            public void read(String[] fields) {
+                if (new File(LogIndex.this.dir, fields[2]).isFile()) {
+                    entries.put(fields[2], new Entry(Long.parseLong(fields[0]), Long.parseLong(fields[1])));
+                }
+            }
+
+            @Override
+            public void write(IndexFile.Writer writer) throws IOException {
+                for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                    writer.line(entry.getValue().created, entry.getValue().size, entry.getKey());
+                }
+            }
+        });
+        this.filter = filter;
+        this.compressor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ATL-Log-Compressor");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+
+        synchronized (this) {
+            int count = -1;
+            try {
+                count = this.index.load();
+            } catch (IOException e) {
+                System.err.println("Failed to read the log index: " + e.getMessage());
+            }
+            if (count == -1) {
+                rebuild();
+            }
+        }
+        budget.indexes.add(this);
+    }
+
+    /**
+     * Adds a new log file which is about to be written to, and which isn't touched until another is started.
+     *
+     * @param name the name of the file in the folder
+     */
+    public synchronized void start(String name) {
+        this.entries.remove(name);
+        this.entries.put(name, new Entry(System.currentTimeMillis(), 0));
+        this.active = name;
+
+        // Anything left from a session which didn't finish its files, or from before there was an index
+        for (final String finished : this.entries.keySet()) {
+            if (!finished.equals(name) && !finished.endsWith(".gz")) {
+                compressLater(finished);
+            }
+        }
+        save();
+    }
+
+    /**
+     * Marks a log file as finished, so it can be compressed and later deleted.
+     *
+     * @param name the name of the file
+     * @param size the size the file ended up
+     */
+    public synchronized void finish(String name, long size) {
+        close(name, size);
+        compressLater(name);
+    }
+
+    /**
+     * Marks a log file as finished without compressing it yet, such as when exiting. It's compressed when the next
+     * file is started, whenever that is.
+     *
+     * @param name the name of the file
+     * @param size the size the file ended up
+     */
+    public synchronized void close(String name, long size) {
+        Entry entry = this.entries.get(name);
+        if (entry != null) {
+            entry.size = size;
+        }
+        if (name.equals(this.active)) {
+            this.active = null;
+        }
+        save();
+    }
+
+    /**
+     * Sets the most space the log files can take up between them, along with those of any other folders sharing the
+     * budget. The oldest are deleted when it's gone over.
+     *
+     * @param bytes the disk budget in bytes
+     */
+    public void setBudget(long bytes) {
+        this.budget.setBytes(bytes);
+    }
+
+    /**
+     * Deletes log files started too long ago, and then the oldest files until they're all within the disk budget.
+     *
+     * @param maxAgeMillis how long ago a file can have been started and still be kept
+     */
+    public void clean(long maxAgeMillis) {
+        synchronized (this) {
+            long cutoff = System.currentTimeMillis() - maxAgeMillis;
+            boolean changed = false;
+            Iterator<Map.Entry<String, Entry>> iterator = this.entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Entry> entry = iterator.next();
+                if (entry.getValue().created < cutoff && !entry.getKey().equals(this.active)) {
+                    delete(entry.getKey());
+                    iterator.remove();
+                    changed = true;
+                }
+            }
+            if (changed) {
+                save();
+            }
+        }
+        this.budget.enforce();
+    }
+
+    /**
+     * Deletes every log file apart from the one being written to.
+     */
+    public synchronized void clear() {
+        Iterator<String> iterator = this.entries.keySet().iterator();
+        while (iterator.hasNext()) {
+            String name = iterator.next();
+            if (!name.equals(this.active)) {
+                delete(name);
+                iterator.remove();
+            }
+        }
+        save();
+    }
+
+    /**
+     * Gets the names of the log files, oldest first.
+     *
+     * @return the names of the files in the folder
+     */
+    public synchronized List<String> getNames() {
+        return new ArrayList<String>(this.entries.keySet());
+    }
+
+    /**
+     * Gets the size of all the finished log files, not counting the one being written to.
+     *
+     * @return the total size in bytes
+     */
+    public synchronized long getSize() {
+        long size = 0;
+        for (Entry entry : this.entries.values()) {
+            size += entry.size;
+        }
+        return size;
+    }
+
+    /**
+     * Waits for any log files waiting to be compressed, such as when exiting.
+     *
+     * @param millis the longest to wait
+     */
+    public void awaitCompression(long millis) {
+        this.compressor.shutdown();
+        try {
+            this.compressor.awaitTermination(millis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void compressLater(final String name) {
+        if (this.compressor.isShutdown()) {
+            return;
+        }
+        this.compressor.submit(new Runnable() {
+            @Override
+            public void run() {
+                compress(name);
+            }
+        });
+    }
+
+    /**
+     * Gzips a finished log file next to it and swaps the compressed one into the index, then makes sure the folder's
+     * still within its budget. The file is only read here, without holding the lock, so logging's never held up.
+     */
+    private void compress(String name) {
+        synchronized (this) {
+            if (!this.entries.containsKey(name) || name.equals(this.active)) {
+                return; // Deleted or cleared already
+            }
+        }
+
+        File file = new File(this.dir, name);
+        File compressed = new File(this.dir, name + ".gz");
+        InputStream in = null;
+        OutputStream out = null;
+        try {
+            in = new FileInputStream(file);
+            out = new GZIPOutputStream(new FileOutputStream(compressed), 64 * 1024);
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            out.close();
+            out = null;
+        } catch (IOException e) {
+            Utils.closeQuietly(out);
+            Utils.delete(compressed);
+            System.err.println("Failed to compress log file " + name + ": " + e.getMessage());
+            return;
+        } finally {
+            Utils.closeQuietly(in);
+            Utils.closeQuietly(out);
+        }
+
+        synchronized (this) {
+            if (!this.entries.containsKey(name)) {
+                Utils.delete(compressed); // Cleared while it was being compressed
+                return;
+            }
+            Utils.delete(file);
+
+            // Swapped in where it was so the order's kept, even for files started at the same time
+            Map<String, Entry> entries = new LinkedHashMap<String, Entry>(this.entries);
+            this.entries.clear();
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                if (entry.getKey().equals(name)) {
+                    this.entries.put(name + ".gz", new Entry(entry.getValue().created, compressed.length()));
+                } else {
+                    this.entries.put(entry.getKey(), entry.getValue());
+                }
+            }
+            save();
+        }
+        this.budget.enforce(); // Without holding the lock, as the budget takes the lock of every folder sharing it
+    }
+
+    /**
+     * Adds the files which could be deleted to keep within the budget to the given list. Must hold the lock.
+     *
+     * @param files the list to add to
+     * @return the size of every finished file in the folder
+     */
+    private long getDeletable(List<Deletable> files) {
+        for (Map.Entry<String, Entry> entry : this.entries.entrySet()) {
+            if (!entry.getKey().equals(this.active)) {
+                files.add(new Deletable(this, entry.getKey(), entry.getValue()));
+            }
+        }
+        return getSize();
+    }
+
+    /**
+     * Deletes a file to keep within the budget, unless it's already gone. The index is saved afterwards by the budget.
+     * Must hold the lock.
+     *
+     * @return true if the file was still there to delete
+     */
+    private boolean remove(String name) {
+        if (this.entries.remove(name) == null) {
+            return false;
+        }
+        delete(name);
+        return true;
+    }
+
+    private void delete(String name) {
+        File file = new File(this.dir, name);
+        if (file.exists()) {
+            Utils.delete(file);
+        }
+    }
+
+    /**
+     * Puts the entries back in order of when they were started, oldest first. Must hold the lock.
+     */
+    private void sort() {
+        List<Map.Entry<String, Entry>> sorted = new ArrayList<Map.Entry<String, Entry>>(this.entries.entrySet());
+        Collections.sort(sorted, new Comparator<Map.Entry<String, Entry>>() {
+            @Override
+            public int compare(Map.Entry<String, Entry> first, Map.Entry<String, Entry> second) {
+                long firstCreated = first.getValue().created;
+                long secondCreated = second.getValue().created;
+                return firstCreated < secondCreated ? -1 : (firstCreated > secondCreated ? 1 : 0);
+            }
+        });
+        this.entries.clear();
+        for (Map.Entry<String, Entry> entry : sorted) {
+            this.entries.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Builds the index from the log files in the folder, for the first launch with an index or if it was lost. Must
+     * hold the lock.
+     */
+    private void rebuild() {
+        this.entries.clear();
+        File[] files = this.dir.listFiles(this.filter);
+        if (files != null) {
+            for (File file : files) {
+                this.entries.put(file.getName(), new Entry(file.lastModified(), file.length()));
+            }
+        }
+        sort();
+        save();
+    }
+
+    /**
+     * Saves the index. Must hold the lock.
+     */
+    private void save() {
+        try {
+            this.index.save();
+        } catch (IOException e) {
+            System.err.println("Failed to save the log index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * The most space log files can take up, shared by the folders it's given to. Once they go over it between them,
+     * the oldest files across all of them are deleted until they're back under.
+     */
+    public static final class Budget {
+        private final List<LogIndex> indexes = new CopyOnWriteArrayList<LogIndex>();
+        private volatile long bytes = Long.MAX_VALUE;
+
+        /**
+         * Sets the most space the log files can take up.
+         *
+         * @param bytes the disk budget in bytes
+         */
+        public void setBytes(long bytes) {
+            this.bytes = bytes;
+        }
+
+        /**
+         * Deletes the oldest finished files of every folder sharing the budget until they all fit in it. Takes the
+         * lock of each folder in turn, so it mustn't be called while holding any of them.
+         */
+        private synchronized void enforce() {
+            List<Deletable> files = new ArrayList<Deletable>();
+            long size = 0;
+            for (LogIndex index : this.indexes) {
+                synchronized (index) {
+                    size += index.getDeletable(files);
+                }
+            }
+            if (size <= this.bytes) {
+                return;
+            }
+
+            Collections.sort(files, new Comparator<Deletable>() {
+                @Override
+                public int compare(Deletable first, Deletable second) {
+                    return first.created < second.created ? -1 : (first.created > second.created ? 1 : 0);
+                }
+            });
+            Set<LogIndex> changed = new HashSet<LogIndex>();
+            for (Deletable file : files) {
+                if (size <= this.bytes) {
+                    break;
+                }
+                synchronized (file.index) {
+                    if (file.index.remove(file.name)) {
+                        size -= file.size;
+                        changed.add(file.index);
+                    }
+                }
+            }
+            for (LogIndex index : changed) {
+                synchronized (index) {
+                    index.save();
+                }
+            }
+        }
+    }
+
+    private static final class Deletable {
+        private final LogIndex index;
+        private final String name;
+        private final long created;
+        private final long size;
+
+        private Deletable(LogIndex index, String name, Entry entry) {
+            this.index = index;
+            this.name = name;
+            this.created = entry.created;
+            this.size = entry.size;
+        }
+    }
+
+    private static final class Entry {
+        private final long created;
+        private long size;
+
+        private Entry(long created, long size) {
+            this.created = created;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.utils;
+
+import com.atlauncher.LogManager;
+import com.atlauncher.evnt.LogEvent.LogType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Works out the log level of lines of Minecraft's output from the tags in them, such as [Client thread/WARN].
+ * <p/>
+ * All the tags are built into a {@link StringMatcher} once, so each line is only looked through a single time no
+ * matter how many tags there are, including any a pack adds. When a line has more than one tag, the rule listed first
+ * wins, and the message shown starts from that rule's tag. Only then is the message checked for anything which changes
+ * the level, such as a CONFLICT in an [INFO] line.
+ */
+public final class MinecraftLogClassifier {
+    /**
+     * The rules used for every pack, in order of which wins when a line matches more than one.
+     */
+    private static final Rule[] DEFAULT_RULES = {
+            new Rule("[INFO] [STDERR]", LogType.WARN, true),
+            new Rule("[INFO]", LogType.INFO, true, new Rule("CONFLICT", LogType.ERROR, false), new Rule("overwriting " +
+                    "existing item", LogType.WARN, false)),
+            new Rule("[WARNING]", LogType.WARN, true),
+            new Rule("WARNING:", LogType.WARN, true),
+            new Rule("INFO:", LogType.INFO, true),
+            new Rule("Exception", LogType.ERROR, false),
+            new Rule("[SEVERE]", LogType.ERROR, true),
+            threadRule("Sound Library Loader", LogType.ERROR),
+            threadRule("Sound Library Loader", LogType.WARN),
+            threadRule("Sound Library Loader", LogType.INFO),
+            threadRule("MCO Availability Checker #1", LogType.ERROR),
+            threadRule("MCO Availability Checker #1", LogType.WARN),
+            threadRule("MCO Availability Checker #1", LogType.INFO),
+            threadRule("Client thread", LogType.ERROR),
+            threadRule("Client thread", LogType.WARN),
+            threadRule("Client thread", LogType.INFO),
+            threadRule("Server thread", LogType.ERROR),
+            threadRule("Server thread", LogType.WARN),
+            threadRule("Server thread", LogType.INFO),
+            threadRule("main", LogType.ERROR),
+            threadRule("main", LogType.WARN),
+            threadRule("main", LogType.INFO)
+    };
+
+    /**
+     * The classifier with just the default rules.
+     */
+    public static final MinecraftLogClassifier DEFAULT = new MinecraftLogClassifier(new Rule[0]);
+
+    private final Rule[] rules;
+    private final StringMatcher matcher;
+    private final int[] tagRules; // The rule for each tag in the matcher
+
+    private MinecraftLogClassifier(Rule[] extraRules) {
+        this.rules = new Rule[extraRules.length + DEFAULT_RULES.length];
+        System.arraycopy(extraRules, 0, this.rules, 0, extraRules.length);
+        System.arraycopy(DEFAULT_RULES, 0, this.rules, extraRules.length, DEFAULT_RULES.length);
+
+        // Each different tag is only looked for once, and if rules share a tag the first one wins
+        List<String> tags = new ArrayList<String>();
+        List<Integer> tagRules = new ArrayList<Integer>();
+        for (int i = 0; i < this.rules.length; i++) {
+            if (!tags.contains(this.rules[i].tag)) {
+                tags.add(this.rules[i].tag);
+                tagRules.add(i);
+            }
+        }
+        this.matcher = new StringMatcher(tags);
+        this.tagRules = new int[tagRules.size()];
+        for (int i = 0; i < this.tagRules.length; i++) {
+            this.tagRules[i] = tagRules.get(i);
+        }
+    }
+
+    /**
+     * Creates a classifier with rules from a pack on top of the default ones. The pack's rules win over the default
+     * ones, and the message shown starts from the pack's tag.
+     *
+     * @param levels the tags to look for mapped to the level to log lines with them at, such as INFO, WARN or ERROR
+     * @return the classifier, or the default one if there are no extra rules
+     */
+    public static MinecraftLogClassifier forRules(Map<String, String> levels) {
+        if (levels == null || levels.isEmpty()) {
+            return DEFAULT;
+        }
+        List<Rule> rules = new ArrayList<Rule>();
+        for (Map.Entry<String, String> entry : levels.entrySet()) {
+            if (entry.getKey() == null || entry.getKey().isEmpty() || entry.getValue() == null) {
+                continue;
+            }
+            try {
+                rules.add(new Rule(entry.getKey(), LogType.valueOf(entry.getValue().toUpperCase()), true));
+            } catch (IllegalArgumentException e) {
+                LogManager.warn("Ignoring log rule for " + entry.getKey() + " as " + entry.getValue() + " isn't a log" +
+                        " level");
+            }
+        }
+        return new MinecraftLogClassifier(rules.toArray(new Rule[rules.size()]));
+    }
+
+    /**
+     * Works out the level of a line and where its message starts.
+     *
+     * @param text   the line of output
+     * @param result the result to fill in, which can be reused for every line
+     * @return the result passed in
+     */
+    public Result classify(String text, Result result) {
+        int length = text.length();
+        if (result.chars == null || result.chars.length < length) {
+            result.chars = new char[Math.max(length, 256)];
+        }
+        char[] chars = result.chars;
+        text.getChars(0, length, chars, 0);
+
+        StringMatcher matcher = this.matcher;
+        int best = this.rules.length; // The first rule in the list found so far
+        int bestStart = 0;
+        int state = 0;
+        for (int i = 0; i < length; i++) {
+            state = matcher.next(state, chars[i]);
+            if (state >= 0) {
+                continue;
+            }
+
+            // At least one tag ends here. Only the first place a rule's tag is found counts, as with indexOf
+            state = ~state;
+            for (int tag : matcher.getEnds(state)) {
+                if (this.tagRules[tag] < best) {
+                    best = this.tagRules[tag];
+                    bestStart = i + 1 - matcher.getLength(tag);
+                }
+            }
+        }
+
+        result.text = text;
+        result.tagged = best != this.rules.length;
+        if (!result.tagged) {
+            result.type = LogType.INFO;
+            result.start = 0;
+            return result;
+        }
+        Rule rule = this.rules[best];
+        result.type = rule.type;
+        result.start = rule.cut ? bestStart : 0;
+        for (Rule qualifier : rule.qualifiers) {
+            // Only the line which matched is looked through for these, and only in the message from the tag on
+            if (text.indexOf(qualifier.tag, bestStart) != -1) {
+                result.type = qualifier.type;
+                break;
+            }
+        }
+        return result;
+    }
+
+    private static Rule threadRule(String thread, LogType type) {
+        return new Rule("[" + thread + "/" + type.name() + "]", type, true);
+    }
+
+    /**
+     * A tag to look for and the level to log lines containing it at.
+     */
+    private static final class Rule {
+        private final String tag;
+        private final LogType type;
+        private final boolean cut; // If the message starts at the tag rather than being the whole line
+        private final Rule[] qualifiers; // Other tags after this one which change the level
+
+        private Rule(String tag, LogType type, boolean cut, Rule... qualifiers) {
+            this.tag = tag;
+            this.type = type;
+            this.cut = cut;
+            this.qualifiers = qualifiers;
+        }
+    }
+
+    /**
+     * The level of a line and where its message starts. One can be kept and passed in for every line to save creating
+     * a new one each time.
+     */
+    public static final class Result {
+        private LogType type;
+        private String text;
+        private int start;
+        private boolean tagged;
+        private char[] chars; // The line being looked through
+
+        public LogType getType() {
+            return this.type;
+        }
+
+        /**
+         * Checks if the line had a tag in it, rather than being logged at INFO for want of one.
+         *
+         * @return true if a rule matched the line
+         */
+        public boolean isTagged() {
+            return this.tagged;
+        }
+
+        /**
+         * Gets the message to show, which is the line from the tag which decided its level onwards.
+         *
+         * @return the message
+         */
+        public String getMessage() {
+            return this.start == 0 ? this.text : this.text.substring(this.start);
+        }
+    }
+}
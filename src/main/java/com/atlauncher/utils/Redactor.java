@@ -0,0 +1,129 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replaces secrets such as usernames, access tokens and paths in text with placeholders, looking for all of them in a
+ * single pass.
+ * <p/>
+ * Where secrets overlap, such as a username inside the path of the launcher's folder, the one starting first is
+ * replaced, and of those the longest. Text with no secrets in it is given back as it is without anything being copied.
+ */
+public final class Redactor {
+    /**
+     * A redactor with no secrets, which gives back whatever it's given.
+     */
+    public static final Redactor NONE = new Redactor();
+
+    private final StringMatcher matcher;
+    private final String[] replacements;
+
+    private Redactor() {
+        this.matcher = null;
+        this.replacements = new String[0];
+    }
+
+    /**
+     * Creates a redactor for the given secrets. Any which are null or empty are left out.
+     *
+     * @param secrets the secrets mapped to what to replace them with
+     */
+    public Redactor(Map<String, String> secrets) {
+        List<String> strings = new ArrayList<String>();
+        List<String> replacements = new ArrayList<String>();
+        for (Map.Entry<String, String> secret : secrets.entrySet()) {
+            if (secret.getKey() != null && !secret.getKey().isEmpty() && !strings.contains(secret.getKey())) {
+                strings.add(secret.getKey());
+                replacements.add(secret.getValue());
+            }
+        }
+        this.matcher = strings.isEmpty() ? null : new StringMatcher(strings);
+        this.replacements = replacements.toArray(new String[replacements.size()]);
+    }
+
+    /**
+     * Replaces any secrets in the text.
+     *
+     * @param text the text to look through
+     * @return the text with secrets replaced, or the same string if there weren't any
+     */
+    public String redact(String text) {
+        if (this.matcher == null || text == null) {
+            return text;
+        }
+
+        // Find every secret, as where each one starts and which one it is
+        int[] found = null;
+        int count = 0;
+        int state = 0;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            state = this.matcher.next(state, text.charAt(i));
+            if (state >= 0) {
+                continue;
+            }
+            state = ~state;
+            for (int secret : this.matcher.getEnds(state)) {
+                if (found == null) {
+                    found = new int[8];
+                } else if (found.length == count * 2) {
+                    int[] bigger = new int[found.length * 2];
+                    System.arraycopy(found, 0, bigger, 0, found.length);
+                    found = bigger;
+                }
+                found[count * 2] = i + 1 - this.matcher.getLength(secret);
+                found[count * 2 + 1] = secret;
+                count++;
+            }
+        }
+        if (found == null) {
+            return text;
+        }
+
+        // Sort them by where they start and then longest first, so the first of any that overlap is the one to use
+        for (int i = 1; i < count; i++) {
+            int start = found[i * 2];
+            int secret = found[i * 2 + 1];
+            int j = i - 1;
+            while (j >= 0 && (found[j * 2] > start || (found[j * 2] == start && this.matcher.getLength(found[j * 2 +
+                    1]) < this.matcher.getLength(secret)))) {
+                found[j * 2 + 2] = found[j * 2];
+                found[j * 2 + 3] = found[j * 2 + 1];
+                j--;
+            }
+            found[j * 2 + 2] = start;
+            found[j * 2 + 3] = secret;
+        }
+
+        StringBuilder redacted = new StringBuilder(text.length());
+        int done = 0;
+        for (int i = 0; i < count; i++) {
+            int start = found[i * 2];
+            if (start < done) {
+                continue; // Overlaps one already replaced
+            }
+            int secret = found[i * 2 + 1];
+            redacted.append(text, done, start).append(this.replacements[secret]);
+            done = start + this.matcher.getLength(secret);
+        }
+        return redacted.append(text, done, text.length()).toString();
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.utils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A fixed size queue which any number of threads can add to without taking a lock, drained in batches by a single
+ * consumer thread. Each slot has a sequence number saying whether it's ready to be written or read, so adding only
+ * costs a compare and set on the tail.
+ * <p/>
+ * What happens when it's full is decided by its {@link OverflowPolicy}. Anything thrown away is counted so it can be
+ * reported rather than going missing without anyone knowing.
+ *
+ * @param <E> the type of element held
+ */
+public final class RingBuffer<E> {
+    /**
+     * How long a producer waits for space with the BLOCK policy before giving up and dropping the element.
+     */
+    private static final long BLOCK_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * With the SAMPLE policy, one in this many elements added while full is still kept.
+     */
+    private static final int SAMPLE_RATE = 16;
+
+    private final int mask;
+    private final AtomicReferenceArray<E> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong overflows = new AtomicLong();
+    private volatile OverflowPolicy policy;
+    private volatile Thread consumer;
+    private volatile boolean waiting = false; // If the consumer is parked waiting for something to be added
+
+    /**
+     * Creates a ring buffer.
+     *
+     * @param capacity the number of elements it can hold, rounded up to a power of 2
+     * @param policy   what to do when an element is added while it's full
+     */
+    public RingBuffer(int capacity, OverflowPolicy policy) {
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<E>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            this.sequences.set(i, i);
+        }
+        this.policy = policy;
+    }
+
+    /**
+     * Adds an element, dealing with it being full as the overflow policy says.
+     *
+     * @param element the element to add
+     * @return true if the element was added, false if it was dropped
+     */
+    public boolean offer(E element) {
+        return offer(element, this.policy);
+    }
+
+    /**
+     * Adds an element without ever waiting for space, for anything which mustn't be held up even for a moment. If
+     * it's full and the overflow policy is to block, it's sampled instead.
+     *
+     * @param element the element to add
+     * @return true if the element was added, false if it was dropped
+     */
+    public boolean offerWithoutWaiting(E element) {
+        OverflowPolicy policy = this.policy;
+        return offer(element, policy == OverflowPolicy.BLOCK ? OverflowPolicy.SAMPLE : policy);
+    }
+
+    private boolean offer(E element, OverflowPolicy policy) {
+        if (tryOffer(element)) {
+            return true;
+        }
+
+        Thread consumer = this.consumer;
+        if (policy == OverflowPolicy.BLOCK && consumer != null && Thread.currentThread() != consumer) {
+            // Nothing makes space without a consumer, and it can't wait for itself, so both fall through to dropping
+            long deadline = System.nanoTime() + BLOCK_TIMEOUT_NANOS;
+            while (System.nanoTime() < deadline) {
+                wakeConsumer();
+                LockSupport.parkNanos(100000);
+                if (tryOffer(element)) {
+                    return true;
+                }
+            }
+        } else if (policy == OverflowPolicy.DROP_OLDEST || (policy == OverflowPolicy.SAMPLE && this.overflows
+                .incrementAndGet() % SAMPLE_RATE == 0)) {
+            // Make room by throwing away whatever's been waiting longest
+            for (int i = 0; i < 8; i++) {
+                if (poll() != null) {
+                    this.dropped.incrementAndGet();
+                }
+                if (tryOffer(element)) {
+                    return true;
+                }
+            }
+        }
+        this.dropped.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Takes the element which has been waiting longest.
+     *
+     * @return the element, or null if there's nothing waiting
+     */
+    public E poll() {
+        while (true) {
+            long position = this.head.get();
+            int index = (int) position & this.mask;
+            long difference = this.sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (this.head.compareAndSet(position, position + 1)) {
+                    E element = this.slots.getAndSet(index, null);
+                    this.sequences.lazySet(index, position + this.mask + 1);
+                    return element;
+                }
+            } else if (difference < 0) {
+                return null; // Empty, or the next element hasn't been written yet
+            }
+        }
+    }
+
+    /**
+     * Moves up to the given number of elements into the list, oldest first. The thread calling this becomes the
+     * consumer which producers wait on with the BLOCK policy.
+     *
+     * @param list the list to add the elements to
+     * @param max  the most elements to move
+     * @return the number of elements moved
+     */
+    public int drainTo(List<E> list, int max) {
+        Thread current = Thread.currentThread();
+        if (this.consumer != current) {
+            this.consumer = current; // Even if it never has to wait, so producers know someone's making space
+        }
+        int count = 0;
+        E element;
+        while (count < max && (element = poll()) != null) {
+            list.add(element);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Waits until there's something to take or the time is up. Only the consumer thread may call this.
+     *
+     * @param nanos the longest time to wait
+     */
+    public void await(long nanos) {
+        this.consumer = Thread.currentThread();
+        this.waiting = true;
+        if (isEmpty()) {
+            LockSupport.parkNanos(this, nanos);
+        }
+        this.waiting = false;
+    }
+
+    public boolean isEmpty() {
+        return this.head.get() == this.tail.get();
+    }
+
+    /**
+     * Gets the number of elements thrown away because it was full.
+     *
+     * @return the number dropped since this was created
+     */
+    public long getDropped() {
+        return this.dropped.get();
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return this.policy;
+    }
+
+    public void setOverflowPolicy(OverflowPolicy policy) {
+        this.policy = policy;
+    }
+
+    private boolean tryOffer(E element) {
+        while (true) {
+            long position = this.tail.get();
+            int index = (int) position & this.mask;
+            long difference = this.sequences.get(index) - position;
+            if (difference == 0) {
+                if (this.tail.compareAndSet(position, position + 1)) {
+                    this.slots.lazySet(index, element);
+                    this.sequences.set(index, position + 1);
+                    wakeConsumer();
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false; // Full
+            }
+        }
+    }
+
+    private void wakeConsumer() {
+        Thread consumer = this.consumer;
+        if (this.waiting && consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * What to do with an element added while the buffer is full.
+     */
+    public static enum OverflowPolicy {
+        /**
+         * Wait for the consumer to make space, giving up after a second so a stuck consumer can't hang everything.
+         */
+        BLOCK,
+
+        /**
+         * Throw away the oldest element to make space for the new one.
+         */
+        DROP_OLDEST,
+
+        /**
+         * Throw away most new elements, but keep one in every 16 in place of the oldest, so there's still some idea
+         * of what was happening.
+         */
+        SAMPLE
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.utils;
+
+import com.atlauncher.App;
+import com.atlauncher.LogManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Puts files the launcher keeps one of, such as libraries, assets and downloaded mods, in place in instances by hard
+ * linking them, so each instance shares the one copy on disk. Where a hard link can't be made, such as between drives,
+ * the file is copied instead.
+ * <p/>
+ * Every file put in place is remembered along with the file it came from, so how many places use each file is known,
+ * and a file already put in place by an earlier install which hasn't changed since is left alone. The index is saved
+ * to the sharedfiles file in the Configs folder the same way the digest index is.
+ * <p/>
+ * Anything writing to a file which may have been put in place this way must replace it rather than write into it, or
+ * every other place sharing it is changed too.
+ */
+public final class SharedFiles {
+    private static final String HEADER = "sharedfiles 1";
+
+    private static final AtomicLong linked = new AtomicLong();
+    private static final AtomicLong copied = new AtomicLong();
+    private static final AtomicLong unchanged = new AtomicLong();
+    private static final AtomicLong bytesShared = new AtomicLong();
+
+    /**
+     * Everything put in place, keyed by its absolute path. Must hold the lock on this class to use.
+     */
+    private static final Map<String, Placed> placed = new HashMap<String, Placed>();
+
+    /**
+     * How many places each file has been put in, keyed by its absolute path. Must hold the lock on this class to use.
+     */
+    private static final Map<String, Integer> references = new HashMap<String, Integer>();
+
+    /**
+     * The index file it's saved to, or null if it isn't saved. This is set the first time the index is used.
+     */
+    private static IndexFile index = null;
+    private static boolean loaded = false;
+    private static boolean changed = false;
+
+    private SharedFiles() {
+    }
+
+    /**
+     * Puts a file in place, hard linking it if possible and copying it if not. Whatever is already at the place is
+     * replaced, unless it was put there from the same file before and neither has changed since.
+     *
+     * @param from         the file to put in place
+     * @param to           where to put it, or the folder to put it in if withFilename is false
+     * @param withFilename if to is the file itself rather than the folder to put it in
+     * @return true if the file is in place, false if it couldn't be linked or copied
+     */
+    public static boolean place(File from, File to, boolean withFilename) {
+        if (!withFilename) {
+            to = new File(to, from.getName());
+        }
+        if (!from.isFile()) {
+            LogManager.error("File " + from.getAbsolutePath() + " cannot be put in " + to.getAbsolutePath() + " as " +
+                    "it isn't a file");
+            return false;
+        }
+
+        String source = from.getAbsolutePath();
+        String target = to.getAbsolutePath();
+        synchronized (SharedFiles.class) {
+            ensureLoaded();
+            Placed last = placed.get(target);
+            if (last != null && last.isUnchanged(source, from, to)) {
+                unchanged.incrementAndGet();
+                return true;
+            }
+        }
+
+        if (!Utils.unlink(to)) {
+            LogManager.error("File " + to.getAbsolutePath() + " couldn't be replaced");
+            forget(to);
+            return false;
+        }
+        if (!to.getParentFile().exists()) {
+            to.getParentFile().mkdirs();
+        }
+        boolean link = Utils.createHardLink(from, to);
+        if (!link && !Utils.copyFile(from, to, true)) {
+            forget(to);
+            return false;
+        }
+        (link ? linked : copied).incrementAndGet();
+        if (link) {
+            bytesShared.addAndGet(from.length());
+        }
+
+        synchronized (SharedFiles.class) {
+            put(target, new Placed(source, from.length(), from.lastModified(), to.lastModified(), link));
+        }
+        return true;
+    }
+
+    /**
+     * Forgets everything put in place in a folder, such as when an instance is deleted.
+     *
+     * @param folder the folder
+     */
+    public static synchronized void forgetAll(File folder) {
+        ensureLoaded();
+        String prefix = folder.getAbsolutePath() + File.separator;
+        Iterator<Map.Entry<String, Placed>> iterator = placed.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Placed> entry = iterator.next();
+            if (entry.getKey().startsWith(prefix)) {
+                iterator.remove();
+                release(entry.getValue().source);
+            }
+        }
+    }
+
+    /**
+     * Gets how many places a file has been put in.
+     *
+     * @param from the file
+     * @return the number of places it's been put in
+     */
+    public static synchronized int getReferences(File from) {
+        ensureLoaded();
+        Integer count = references.get(from.getAbsolutePath());
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Gets a human readable summary of how files have been put in place this session.
+     *
+     * @return the statistics
+     */
+    public static String getStatistics() {
+        return String.format("%d linked, %d copied, %d already in place, %.2f MB shared", linked.get(), copied.get(),
+                unchanged.get(), (float) bytesShared.get() / 1024 / 1024);
+    }
+
+    /**
+     * Loads the index from the given file, replacing anything already in it. From then on it's saved to that file.
+     *
+     * @param file the file to load the index from and save it to
+     */
+    public static synchronized void load(File file) {
+        index = new IndexFile(file, HEADER, 6, new IndexFile.Entries() {
+            @Override
+            public void clear() {
+                placed.clear();
+                references.clear();
+            }
+
+            @Override
+            public void read(String[] fields) {
+                put(fields[5], new Placed(fields[4], Long.parseLong(fields[1]), Long.parseLong(fields[2]), Long
+                        .parseLong(fields[3]), "L".equals(fields[0])));
+            }
+
+            @Override
+            public void write(IndexFile.Writer writer) throws IOException {
+                Iterator<Map.Entry<String, Placed>> iterator = placed.entrySet().iterator();
+                while (iterator.hasNext()) {
+                    Map.Entry<String, Placed> entry = iterator.next();
+                    Placed file = entry.getValue();
+                    if (!new File(entry.getKey()).isFile()) {
+                        iterator.remove();
+                        release(file.source);
+                        continue;
+                    }
+                    writer.line(file.linked ? "L" : "C", file.sourceLength, file.sourceModified, file
+                            .targetModified, file.source, entry.getKey());
+                }
+            }
+        });
+        loaded = true;
+
+        try {
+            int count = index.load();
+            if (count != -1) {
+                LogManager.debug("Loaded " + count + " shared files from the index");
+            }
+        } catch (IOException e) {
+            LogManager.error("Failed to read the shared files index: " + e.getMessage());
+        }
+        changed = false;
+    }
+
+    /**
+     * Saves the index if anything in it has changed since it was last saved. Files which no longer exist are left out.
+     */
+    public static synchronized void save() {
+        ensureLoaded();
+        if (index == null || !changed) {
+            return;
+        }
+
+        try {
+            int count = index.save();
+            changed = false;
+            LogManager.debug("Saved " + count + " shared files to the index", 3);
+        } catch (IOException e) {
+            LogManager.error("Failed to save the shared files index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Forgets a file put in place, after it couldn't be put there again.
+     */
+    private static void forget(File to) {
+        synchronized (SharedFiles.class) {
+            Placed last = placed.remove(to.getAbsolutePath());
+            if (last != null) {
+                release(last.source);
+                changed = true;
+            }
+        }
+    }
+
+    /**
+     * Remembers a file put in place, replacing anything remembered at the same place. Must hold the lock.
+     */
+    private static void put(String target, Placed file) {
+        Placed last = placed.put(target, file);
+        if (last != null) {
+            release(last.source);
+        }
+        Integer count = references.get(file.source);
+        references.put(file.source, count == null ? 1 : count + 1);
+        changed = true;
+    }
+
+    /**
+     * Takes one off how many places a file has been put in. Must hold the lock.
+     */
+    private static void release(String source) {
+        Integer count = references.get(source);
+        if (count == null || count <= 1) {
+            references.remove(source);
+        } else {
+            references.put(source, count - 1);
+        }
+        changed = true;
+    }
+
+    /**
+     * Loads the index the first time it's used. Must hold the lock.
+     */
+    private static void ensureLoaded() {
+        if (!loaded) {
+            loaded = true;
+            if (App.settings != null) {
+                load(App.settings.getSharedFilesIndexFile());
+                IndexFile.saveOnExit(new Runnable() {
+                    @Override
+                    public void run() {
+                        save();
+                    }
+                });
+            }
+        }
+    }
+
+    private static final class Placed {
+        private final String source;
+        private final long sourceLength;
+        private final long sourceModified;
+        private final long targetModified;
+        private final boolean linked;
+
+        private Placed(String source, long sourceLength, long sourceModified, long targetModified, boolean linked) {
+            this.source = source;
+            this.sourceLength = sourceLength;
+            this.sourceModified = sourceModified;
+            this.targetModified = targetModified;
+            this.linked = linked;
+        }
+
+        /**
+         * Checks if a file put in place is still what was put there, and the file it came from hasn't changed.
+         */
+        private boolean isUnchanged(String source, File from, File to) {
+            return this.source.equals(source) && from.length() == this.sourceLength && from.lastModified() == this
+                    .sourceModified && to.isFile() && to.length() == this.sourceLength && to.lastModified() == this
+                    .targetModified;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds any of a set of strings in text in a single pass, however many strings there are, using an Aho-Corasick
+ * automaton built once up front.
+ * <p/>
+ * Text is fed through one character at a time with {@link #next(int, char)}, starting from state 0. When the state
+ * returned is negative one or more of the strings end at that character; flip it with ~ to carry on and to get which
+ * ones from {@link #getEnds(int)}. Callers drive the loop themselves so they can stop early or keep whatever they need
+ * about each match without anything being allocated.
+ */
+public final class StringMatcher {
+    private final int[] lengths;
+    private final int[] alphabet = new int[128]; // The column in the transitions for each ASCII character
+    private final boolean[] starts = new boolean[128]; // If any string starts with each ASCII character
+    private final Map<Character, Integer> otherAlphabet = new HashMap<Character, Integer>(); // And for the rest
+    private final int columns; // The number of different characters in all the strings, plus one for the rest
+    private final int other; // The column for characters in none of the strings
+    private final int[] transitions; // The state to go to from each state on each character, a row for each state
+    private final int[][] ends; // The strings ending at each state
+
+    /**
+     * Builds a matcher for the given strings, which are numbered by their place in the list.
+     *
+     * @param strings the strings to look for, none of which can be empty
+     */
+    public StringMatcher(List<String> strings) {
+        this.lengths = new int[strings.size()];
+
+        Arrays.fill(this.alphabet, -1);
+        int columns = 0;
+        for (String string : strings) {
+            if (string.isEmpty()) {
+                throw new IllegalArgumentException("Can't look for an empty string");
+            }
+            for (char c : string.toCharArray()) {
+                if (c < 128 ? this.alphabet[c] != -1 : this.otherAlphabet.containsKey(c)) {
+                    continue;
+                }
+                if (c < 128) {
+                    this.alphabet[c] = columns++;
+                } else {
+                    this.otherAlphabet.put(c, columns++);
+                }
+            }
+        }
+        this.other = columns++; // Every character not in a string shares a column, which always goes back to the start
+        for (int c = 0; c < this.alphabet.length; c++) {
+            if (this.alphabet[c] == -1) {
+                this.alphabet[c] = this.other;
+            }
+        }
+
+        // Build the trie of all the strings
+        List<int[]> gotos = new ArrayList<int[]>();
+        List<List<Integer>> ends = new ArrayList<List<Integer>>();
+        gotos.add(newRow(columns));
+        ends.add(new ArrayList<Integer>());
+        for (int s = 0; s < strings.size(); s++) {
+            String string = strings.get(s);
+            this.lengths[s] = string.length();
+            if (string.charAt(0) < 128) {
+                this.starts[string.charAt(0)] = true;
+            }
+            int state = 0;
+            for (char c : string.toCharArray()) {
+                int column = column(c);
+                if (gotos.get(state)[column] == -1) {
+                    gotos.get(state)[column] = gotos.size();
+                    gotos.add(newRow(columns));
+                    ends.add(new ArrayList<Integer>());
+                }
+                state = gotos.get(state)[column];
+            }
+            ends.get(state).add(s);
+        }
+
+        // Work out where to go on a mismatch breadth first, turning the trie into a full state machine as we go
+        int[] fail = new int[gotos.size()];
+        LinkedList<Integer> queue = new LinkedList<Integer>();
+        for (int column = 0; column < columns; column++) {
+            int next = gotos.get(0)[column];
+            if (next == -1) {
+                gotos.get(0)[column] = 0;
+            } else {
+                fail[next] = 0;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.removeFirst();
+            ends.get(state).addAll(ends.get(fail[state]));
+            for (int column = 0; column < columns; column++) {
+                int next = gotos.get(state)[column];
+                if (next == -1) {
+                    gotos.get(state)[column] = gotos.get(fail[state])[column];
+                } else {
+                    fail[next] = gotos.get(fail[state])[column];
+                    queue.add(next);
+                }
+            }
+        }
+
+        // Each state is where its row starts rather than its number, negated if strings end there
+        this.columns = columns;
+        this.transitions = new int[gotos.size() * columns];
+        this.ends = new int[gotos.size()][];
+        for (int state = 0; state < gotos.size(); state++) {
+            for (int column = 0; column < columns; column++) {
+                int next = gotos.get(state)[column];
+                this.transitions[state * columns + column] = ends.get(next).isEmpty() ? next * columns : ~(next *
+                        columns);
+            }
+            this.ends[state] = new int[ends.get(state).size()];
+            for (int i = 0; i < this.ends[state].length; i++) {
+                this.ends[state][i] = ends.get(state).get(i);
+            }
+        }
+    }
+
+    /**
+     * Moves on to the next character.
+     *
+     * @param state the state after the last character, or 0 to start
+     * @param c     the next character
+     * @return the state after this character, negated with ~ if any strings end here
+     */
+    public int next(int state, char c) {
+        if (state == 0 && c < 128 && !this.starts[c]) {
+            return 0; // Nothing can start here, so there's no need to look up where to go
+        }
+        return this.transitions[state + (c < 128 ? this.alphabet[c] : column(c))];
+    }
+
+    /**
+     * Gets the strings ending at a state.
+     *
+     * @param state a state returned negated from {@link #next(int, char)}, flipped back with ~
+     * @return the numbers of the strings
+     */
+    public int[] getEnds(int state) {
+        return this.ends[state / this.columns];
+    }
+
+    /**
+     * Gets the length of a string, to work out where a match of it started.
+     *
+     * @param string the number of the string
+     * @return its length
+     */
+    public int getLength(int string) {
+        return this.lengths[string];
+    }
+
+    private int column(char c) {
+        if (c < 128) {
+            return this.alphabet[c];
+        }
+        Integer column = this.otherAlphabet.isEmpty() ? null : this.otherAlphabet.get(c);
+        return column == null ? this.other : column;
+    }
+
+    private static int[] newRow(int columns) {
+        int[] row = new int[columns];
+        Arrays.fill(row, -1);
+        return row;
+    }
+}
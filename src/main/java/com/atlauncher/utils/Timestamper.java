@@ -22,18 +22,89 @@ import com.atlauncher.App;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 
+/**
+ * Formats the times shown on log events, safely from any thread.
+ * <p/>
+ * SimpleDateFormat can't be shared between threads, so each thread has its own, along with the last second it formatted
+ * and what that came out as. Events logged in the same second, which is most of them, are given the same string back
+ * without formatting anything. When the date format is changed, each thread's formatter is rebuilt the next time it's
+ * used.
+ */
 public final class Timestamper {
-    private static final SimpleDateFormat format = new SimpleDateFormat(App.settings.getDateFormat() + " HH:mm:ss a");
+    private static final String TIME_FORMAT = " HH:mm:ss a";
+
+    private static volatile String pattern = null; // Null until first used, so it can come from the settings
+
+    private static final ThreadLocal<Cache> cache = new ThreadLocal<Cache>() {
+        @Override
+        protected Cache initialValue() {
+            return new Cache();
+        }
+    };
+
+    private Timestamper() {
+    }
 
     public static String now() {
-        return format.format(new Date());
+        return format(System.currentTimeMillis());
     }
 
     public static String was(Date date) {
-        return format.format(date);
+        return format(date.getTime());
+    }
+
+    /**
+     * Formats a time as the date and time, using the date format from the settings.
+     *
+     * @param millis the time in milliseconds since the epoch, such as from System.currentTimeMillis()
+     * @return the formatted time
+     */
+    public static String format(long millis) {
+        String pattern = getPattern();
+        Cache cache = Timestamper.cache.get();
+        if (cache.pattern != pattern) {
+            cache.format = new SimpleDateFormat(pattern);
+            cache.pattern = pattern;
+            cache.second = Long.MIN_VALUE;
+        }
+        long second = millis >= 0 ? millis / 1000 : (millis - 999) / 1000;
+        if (cache.second != second) {
+            cache.text = cache.format.format(new Date(millis));
+            cache.second = second;
+        }
+        return cache.text;
     }
 
     public static void updateDateFormat() {
-        format.applyLocalizedPattern(App.settings.getDateFormat() + " HH:mm:ss a");
+        setDateFormat(App.settings.getDateFormat());
+    }
+
+    /**
+     * Changes the date format used from now on, on every thread.
+     *
+     * @param dateFormat the date part of the pattern, such as dd/M/yyy
+     */
+    public static void setDateFormat(String dateFormat) {
+        pattern = dateFormat + TIME_FORMAT; // Always a new string, so every cache sees it's changed
+    }
+
+    private static String getPattern() {
+        String pattern = Timestamper.pattern;
+        if (pattern == null) {
+            setDateFormat(App.settings == null || App.settings.getDateFormat() == null ? "dd/M/yyy" : App.settings
+                    .getDateFormat());
+            pattern = Timestamper.pattern;
+        }
+        return pattern;
+    }
+
+    /**
+     * A thread's formatter and the last thing it formatted.
+     */
+    private static final class Cache {
+        private String pattern = null;
+        private SimpleDateFormat format;
+        private long second;
+        private String text;
     }
-}
\ No newline at end of file
+}
@@ -24,7 +24,6 @@ import com.atlauncher.data.Constants;
 import com.atlauncher.data.mojang.ExtractRule;
 import com.atlauncher.data.mojang.OperatingSystem;
 import com.atlauncher.data.openmods.OpenEyeReportResponse;
-import com.atlauncher.evnt.LogEvent.LogType;
 import org.tukaani.xz.XZInputStream;
 
 import javax.crypto.BadPaddingException;
@@ -43,7 +42,6 @@ import java.awt.geom.AffineTransform;
 import java.awt.image.AffineTransformOp;
 import java.awt.image.BufferedImage;
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.Closeable;
@@ -83,9 +81,7 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Deque;
 import java.util.Enumeration;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.jar.JarEntry;
 import java.util.jar.JarInputStream;
@@ -95,7 +91,6 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
-import java.util.zip.ZipOutputStream;
 
 public class Utils {
     public static String error(Throwable t) {
@@ -571,7 +566,7 @@ public class Utils {
             MessageDigest md = MessageDigest.getInstance("MD5");
             FileInputStream fis = new FileInputStream(file);
 
-            byte[] dataBytes = new byte[1024];
+            byte[] dataBytes = new byte[16 * 1024];
 
             int nread = 0;
             while ((nread = fis.read(dataBytes)) != -1) {
@@ -614,7 +609,7 @@ public class Utils {
             MessageDigest md = MessageDigest.getInstance("SHA-1");
             FileInputStream fis = new FileInputStream(file);
 
-            byte[] dataBytes = new byte[1024];
+            byte[] dataBytes = new byte[16 * 1024];
 
             int nread = 0;
             while ((nread = fis.read(dataBytes)) != -1) {
@@ -671,6 +666,36 @@ public class Utils {
         return sb.toString();
     }
 
+    /**
+     * Converts the bytes of a digest to a lowercase hex string, the same as returned by getMD5 and getSHA1.
+     *
+     * @param bytes the bytes to convert
+     * @return the bytes as a hex string
+     */
+    public static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Integer.toString((b & 0xff) + 0x100, 16).substring(1));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Closes the given stream, ignoring any errors.
+     *
+     * @param closeable the stream to close, which can be null
+     */
+    public static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            LogManager.debug("Failed to close stream: " + e.getMessage(), 3);
+        }
+    }
+
     /**
      * Move file.
      *
@@ -788,6 +813,46 @@ public class Utils {
         return true;
     }
 
+    /**
+     * Gets rid of a file which is about to be written again, so it's replaced rather than written into. Libraries,
+     * assets and mods may be hard linked into several places, and writing into one of them would change them all.
+     *
+     * @param file the file about to be written
+     * @return true if there's nothing there anymore
+     */
+    public static boolean unlink(File file) {
+        return !file.exists() || file.delete();
+    }
+
+    /**
+     * Creates a hard link at the given location pointing to an existing file. This uses the Java 7 Files API through
+     * reflection since we still compile against Java 6, so it will simply return false on older Java versions or when
+     * the file system doesn't support hard links (such as when linking across drives).
+     *
+     * @param existing the existing file to link to
+     * @param link     the location of the new link, which must not already exist
+     * @return true if the link was created, false if the caller should fall back to copying
+     */
+    public static boolean createHardLink(File existing, File link) {
+        try {
+            Class<?> pathClass = Class.forName("java.nio.file.Path");
+            Method toPath = File.class.getMethod("toPath");
+            Method createLink = Class.forName("java.nio.file.Files").getMethod("createLink", pathClass, pathClass);
+            createLink.invoke(null, toPath.invoke(link), toPath.invoke(existing));
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false; // Java 6 so there is no way to create hard links
+        } catch (NoSuchMethodException e) {
+            return false;
+        } catch (IllegalAccessException e) {
+            return false;
+        } catch (InvocationTargetException e) {
+            LogManager.debug("Couldn't hard link " + link.getAbsolutePath() + " to " + existing.getAbsolutePath() +
+                    ": " + e.getCause(), 3);
+            return false;
+        }
+    }
+
     /**
      * Move directory.
      *
@@ -840,7 +905,7 @@ public class Utils {
                     copyDirectory(new File(sourceLocation, children[i]), new File(targetLocation, children[i]));
                 }
             } else {
-
+                unlink(targetLocation);
                 InputStream in = new FileInputStream(sourceLocation);
                 OutputStream out = new FileOutputStream(targetLocation);
 
@@ -878,42 +943,7 @@ public class Utils {
      */
     public static void unzip(File in, File out, ExtractRule extractRule) {
         try {
-            ZipFile zipFile = null;
-            if (!out.exists()) {
-                out.mkdirs();
-            }
-            zipFile = new ZipFile(in);
-            Enumeration<?> e = zipFile.entries();
-            while (e.hasMoreElements()) {
-                ZipEntry entry = (ZipEntry) e.nextElement();
-                String entryName = entry.getName();
-                if (entry.getName().endsWith("aux.class")) {
-                    entryName = "aux_class";
-                }
-                if (extractRule != null && extractRule.shouldExclude(entryName)) {
-                    continue;
-                }
-                if (entry.isDirectory()) {
-                    File folder = new File(out, entryName);
-                    folder.mkdirs();
-                }
-                File destinationFilePath = new File(out, entryName);
-                destinationFilePath.getParentFile().mkdirs();
-                if (!entry.isDirectory() && !entry.getName().equals(".minecraft")) {
-                    BufferedInputStream bis = new BufferedInputStream(zipFile.getInputStream(entry));
-                    int b;
-                    byte buffer[] = new byte[1024];
-                    FileOutputStream fos = new FileOutputStream(destinationFilePath);
-                    BufferedOutputStream bos = new BufferedOutputStream(fos, 1024);
-                    while ((b = bis.read(buffer, 0, 1024)) != -1) {
-                        bos.write(buffer, 0, b);
-                    }
-                    bos.flush();
-                    bos.close();
-                    bis.close();
-                }
-            }
-            zipFile.close();
+            ZipExtractor.extract(in, out, extractRule);
         } catch (IOException e) {
             App.settings.logStackTrace(e);
         }
@@ -1051,78 +1081,12 @@ public class Utils {
      */
     public static void zip(File in, File out) {
         try {
-            URI base = in.toURI();
-            Deque<File> queue = new LinkedList<File>();
-            queue.push(in);
-            OutputStream stream = new FileOutputStream(out);
-            Closeable res = stream;
-            ZipOutputStream zout = null;
-            try {
-                zout = new ZipOutputStream(stream);
-                res = zout;
-                while (!queue.isEmpty()) {
-                    in = queue.pop();
-                    for (File kid : in.listFiles()) {
-                        String name = base.relativize(kid.toURI()).getPath();
-                        if (name.endsWith("aux_class")) {
-                            name = "aux.class";
-                        }
-                        if (kid.isDirectory()) {
-                            queue.push(kid);
-                            name = name.endsWith("/") ? name : name + "/";
-                            zout.putNextEntry(new ZipEntry(name));
-                        } else {
-                            zout.putNextEntry(new ZipEntry(name));
-                            copy(kid, zout);
-                            zout.closeEntry();
-                        }
-                    }
-                }
-            } finally {
-                res.close();
-                if (zout != null) {
-                    zout.close();
-                }
-            }
+            ZipCompressor.compress(in, out);
         } catch (IOException e) {
             App.settings.logStackTrace(e);
         }
     }
 
-    /**
-     * Copy.
-     *
-     * @param in  the in
-     * @param out the out
-     * @throws IOException Signals that an I/O exception has occurred.
-     */
-    private static void copy(InputStream in, OutputStream out) throws IOException {
-        byte[] buffer = new byte[1024];
-        while (true) {
-            int readCount = in.read(buffer);
-            if (readCount < 0) {
-                break;
-            }
-            out.write(buffer, 0, readCount);
-        }
-    }
-
-    /**
-     * Copy.
-     *
-     * @param file the file
-     * @param out  the out
-     * @throws IOException Signals that an I/O exception has occurred.
-     */
-    private static void copy(File file, OutputStream out) throws IOException {
-        InputStream in = new FileInputStream(file);
-        try {
-            copy(in, out);
-        } finally {
-            in.close();
-        }
-    }
-
     /**
      * Encrypt.
      *
@@ -1390,7 +1354,8 @@ public class Utils {
             @Override
             public boolean accept(File dir, String name) {
                 File file = new File(dir, name);
-                return file.isFile() && name.startsWith(Constants.LAUNCHER_NAME + "-Log_") && name.endsWith(".log");
+                return file.isFile() && name.startsWith(Constants.LAUNCHER_NAME + "-Log_") && (name.endsWith(".log") ||
+                        name.endsWith(".log.gz"));
             }
         };
     }
@@ -1880,90 +1845,6 @@ public class Utils {
         return route;
     }
 
-    public static Object[] prepareMessageForMinecraftLog(String text) {
-        LogType type = null; // The log message type
-        String message = null; // The log message
-
-        if (text.contains("[INFO] [STDERR]")) {
-            message = text.substring(text.indexOf("[INFO] [STDERR]"));
-            type = LogType.WARN;
-        } else if (text.contains("[INFO]")) {
-            message = text.substring(text.indexOf("[INFO]"));
-            if (message.contains("CONFLICT")) {
-                type = LogType.ERROR;
-            } else if (message.contains("overwriting existing item")) {
-                type = LogType.WARN;
-            } else {
-                type = LogType.INFO;
-            }
-        } else if (text.contains("[WARNING]")) {
-            message = text.substring(text.indexOf("[WARNING]"));
-            type = LogType.WARN;
-        } else if (text.contains("WARNING:")) {
-            message = text.substring(text.indexOf("WARNING:"));
-            type = LogType.WARN;
-        } else if (text.contains("INFO:")) {
-            message = text.substring(text.indexOf("INFO:"));
-            type = LogType.INFO;
-        } else if (text.contains("Exception")) {
-            message = text;
-            type = LogType.ERROR;
-        } else if (text.contains("[SEVERE]")) {
-            message = text.substring(text.indexOf("[SEVERE]"));
-            type = LogType.ERROR;
-        } else if (text.contains("[Sound Library Loader/ERROR]")) {
-            message = text.substring(text.indexOf("[Sound Library Loader/ERROR]"));
-            type = LogType.ERROR;
-        } else if (text.contains("[Sound Library Loader/WARN]")) {
-            message = text.substring(text.indexOf("[Sound Library Loader/WARN]"));
-            type = LogType.WARN;
-        } else if (text.contains("[Sound Library Loader/INFO]")) {
-            message = text.substring(text.indexOf("[Sound Library Loader/INFO]"));
-            type = LogType.INFO;
-        } else if (text.contains("[MCO Availability Checker #1/ERROR]")) {
-            message = text.substring(text.indexOf("[MCO Availability Checker #1/ERROR]"));
-            type = LogType.ERROR;
-        } else if (text.contains("[MCO Availability Checker #1/WARN]")) {
-            message = text.substring(text.indexOf("[MCO Availability Checker #1/WARN]"));
-            type = LogType.WARN;
-        } else if (text.contains("[MCO Availability Checker #1/INFO]")) {
-            message = text.substring(text.indexOf("[MCO Availability Checker #1/INFO]"));
-            type = LogType.INFO;
-        } else if (text.contains("[Client thread/ERROR]")) {
-            message = text.substring(text.indexOf("[Client thread/ERROR]"));
-            type = LogType.ERROR;
-        } else if (text.contains("[Client thread/WARN]")) {
-            message = text.substring(text.indexOf("[Client thread/WARN]"));
-            type = LogType.WARN;
-        } else if (text.contains("[Client thread/INFO]")) {
-            message = text.substring(text.indexOf("[Client thread/INFO]"));
-            type = LogType.INFO;
-        } else if (text.contains("[Server thread/ERROR]")) {
-            message = text.substring(text.indexOf("[Server thread/ERROR]"));
-            type = LogType.ERROR;
-        } else if (text.contains("[Server thread/WARN]")) {
-            message = text.substring(text.indexOf("[Server thread/WARN]"));
-            type = LogType.WARN;
-        } else if (text.contains("[Server thread/INFO]")) {
-            message = text.substring(text.indexOf("[Server thread/INFO]"));
-            type = LogType.INFO;
-        } else if (text.contains("[main/ERROR]")) {
-            message = text.substring(text.indexOf("[main/ERROR]"));
-            type = LogType.ERROR;
-        } else if (text.contains("[main/WARN]")) {
-            message = text.substring(text.indexOf("[main/WARN]"));
-            type = LogType.WARN;
-        } else if (text.contains("[main/INFO]")) {
-            message = text.substring(text.indexOf("[main/INFO]"));
-            type = LogType.INFO;
-        } else {
-            message = text;
-            type = LogType.INFO;
-        }
-
-        return new Object[]{type, message};
-    }
-
     public static byte[] readFile(File file) {
         byte[] bytes = null;
         RandomAccessFile f = null;
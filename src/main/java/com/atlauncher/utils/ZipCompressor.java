@@ -0,0 +1,443 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Zips up a folder, such as a world backup or a rebuilt jar, compressing several files at a time. Each file is
+ * compressed on its own by one of a few threads, into memory or, for big files, a temporary file next to the zip. The
+ * compressed files are then written out in order with the headers of the zip format around them.
+ * <p/>
+ * Files which are already compressed, such as images, sounds and jars, are stored as they are, as are any which don't
+ * get any smaller. Zips too big or with too many files for the original format are written in the zip64 format.
+ */
+public final class ZipCompressor {
+    /**
+     * Threads used to compress files.
+     */
+    private static final int THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * The most files compressed ahead of the one being written, which bounds how much memory is used.
+     */
+    private static final int AHEAD = THREADS * 2;
+
+    /**
+     * Files which compress to more than this are compressed to a temporary file rather than into memory.
+     */
+    private static final int MAX_IN_MEMORY = 8 * 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * Extensions of files which are already compressed, so are stored rather than compressed again.
+     */
+    private static final Set<String> STORED_EXTENSIONS = new HashSet<String>(Arrays.asList("png", "jpg", "jpeg",
+            "gif", "ogg", "mp3", "jar", "zip", "gz", "xz", "7z", "litemod"));
+
+    private static final ExecutorService executor = Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "ATL-Zip-" + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }
+    });
+
+    private static final ThreadLocal<Deflater> deflaters = new ThreadLocal<Deflater>() {
+        @Override
+        protected Deflater initialValue() {
+            return new Deflater(Deflater.DEFAULT_COMPRESSION, true); // Raw deflate data, as zip files hold
+        }
+    };
+
+    private static final ThreadLocal<byte[]> buffers = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[BUFFER_SIZE];
+        }
+    };
+
+    private static final ThreadLocal<byte[]> outputs = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[BUFFER_SIZE];
+        }
+    };
+
+    private ZipCompressor() {
+    }
+
+    /**
+     * Zips up everything in a folder. Anything ending in aux_class is added as aux.class, undoing what extracting it
+     * did.
+     *
+     * @param in  the folder to zip up
+     * @param out the zip file to write, which is replaced if it exists
+     * @throws IOException if anything couldn't be read or the zip file couldn't be written
+     */
+    public static void compress(File in, File out) throws IOException {
+        List<Item> items = list(in, out.getAbsoluteFile().getParentFile());
+        List<Future<Compressed>> pending = new LinkedList<Future<Compressed>>();
+        int submitted = 0;
+        ZipWriter zip = new ZipWriter(new FileOutputStream(out));
+        byte[] buffer = new byte[BUFFER_SIZE];
+        boolean done = false;
+        try {
+            for (Item item : items) {
+                while (submitted < items.size() && pending.size() < AHEAD) {
+                    pending.add(executor.submit(items.get(submitted++)));
+                }
+                Compressed compressed = get(pending.remove(0));
+                try {
+                    compressed.copyTo(zip.putEntry(item.name, 0, compressed.method, ZipWriter.dosTime(compressed
+                            .time), compressed.crc, compressed.compressedSize, compressed.size), buffer);
+                } finally {
+                    compressed.discard();
+                }
+            }
+            zip.finish();
+            done = true;
+        } finally {
+            if (!done) {
+                // Not cancelled, as one already running would still spill to a file which then never got deleted
+                for (Future<Compressed> future : pending) {
+                    discard(future);
+                }
+            }
+            zip.close();
+        }
+    }
+
+    /**
+     * Lists the files and folders to add in the order they're added, a folder's files before its subfolders'.
+     */
+    private static List<Item> list(File in, File spillFolder) throws IOException {
+        URI base = in.toURI();
+        List<Item> items = new ArrayList<Item>();
+        Deque<File> queue = new LinkedList<File>();
+        queue.push(in);
+        while (!queue.isEmpty()) {
+            File folder = queue.pop();
+            File[] kids = folder.listFiles();
+            if (kids == null) {
+                throw new IOException("Couldn't list the files in " + folder);
+            }
+            for (File kid : kids) {
+                String name = base.relativize(kid.toURI()).getPath();
+                if (name.endsWith("aux_class")) {
+                    name = "aux.class";
+                }
+                if (kid.isDirectory()) {
+                    queue.push(kid);
+                    items.add(new Item(name.endsWith("/") ? name : name + "/", null, spillFolder));
+                } else {
+                    items.add(new Item(name, kid, spillFolder));
+                }
+            }
+        }
+        return items;
+    }
+
+    private static Compressed get(Future<Compressed> future) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while zipping");
+        }
+    }
+
+    /**
+     * Waits for a file to be compressed and throws away what it was compressed to, after something else has failed.
+     */
+    private static void discard(Future<Compressed> future) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    future.get().discard();
+                    return;
+                } catch (InterruptedException e) {
+                    interrupted = true; // Still has to wait, or what it spilled is left behind
+                } catch (ExecutionException e) {
+                    return; // It failed too, and cleaned up after itself
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static boolean isStored(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot != -1 && STORED_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ENGLISH));
+    }
+
+    /**
+     * A file or folder to add to the zip file, compressed by one of the threads.
+     */
+    private static final class Item implements Callable<Compressed> {
+        private final String name;
+        private final File file; // Null for a folder
+        private final File spillFolder; // Where it's compressed to if it's too big to keep in memory
+
+        private Item(String name, File file, File spillFolder) {
+            this.name = name;
+            this.file = file;
+            this.spillFolder = spillFolder;
+        }
+
+        @Override
+        public Compressed call() throws IOException {
+            if (this.file == null) {
+                return new Compressed(ZipWriter.METHOD_STORED, 0, 0, 0, System.currentTimeMillis());
+            }
+            if (isStored(this.name)) {
+                return checksum();
+            }
+
+            long modified = this.file.lastModified();
+            Deflater deflater = deflaters.get();
+            deflater.reset();
+            byte[] buffer = buffers.get();
+            byte[] output = outputs.get();
+            CRC32 crc = new CRC32();
+            SegmentOutputStream segment = new SegmentOutputStream(this.spillFolder);
+            InputStream in = new FileInputStream(this.file);
+            boolean done = false;
+            try {
+                long size = 0;
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    crc.update(buffer, 0, read);
+                    size += read;
+                    deflater.setInput(buffer, 0, read);
+                    while (!deflater.needsInput()) {
+                        segment.write(output, 0, deflater.deflate(output));
+                    }
+                }
+                deflater.finish();
+                while (!deflater.finished()) {
+                    segment.write(output, 0, deflater.deflate(output));
+                }
+                segment.close();
+                if (segment.getSize() >= size) {
+                    segment.discard();
+                    done = true;
+                    return new Compressed(ZipWriter.METHOD_STORED, crc.getValue(), size, size, modified).from(this
+                            .file);
+                }
+                done = true;
+                return new Compressed(ZipWriter.METHOD_DEFLATED, crc.getValue(), segment.getSize(), size, modified)
+                        .from(segment);
+            } finally {
+                Utils.closeQuietly(in);
+                if (!done) {
+                    segment.discard();
+                }
+            }
+        }
+
+        /**
+         * Only works out the checksum of a file which is stored, as it's copied straight from the file when written.
+         */
+        private Compressed checksum() throws IOException {
+            long modified = this.file.lastModified();
+            byte[] buffer = buffers.get();
+            CRC32 crc = new CRC32();
+            InputStream in = new FileInputStream(this.file);
+            try {
+                long size = 0;
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    crc.update(buffer, 0, read);
+                    size += read;
+                }
+                return new Compressed(ZipWriter.METHOD_STORED, crc.getValue(), size, size, modified).from(this.file);
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * What a file was compressed to, and where the data is to be copied from.
+     */
+    private static final class Compressed {
+        private final int method;
+        private final long crc;
+        private final long compressedSize;
+        private final long size;
+        private final long time;
+        private File file = null; // The file to copy the data from, if it's stored
+        private SegmentOutputStream segment = null; // What it was compressed to
+
+        private Compressed(int method, long crc, long compressedSize, long size, long time) {
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.time = time;
+        }
+
+        private Compressed from(File file) {
+            this.file = file;
+            return this;
+        }
+
+        private Compressed from(SegmentOutputStream segment) {
+            this.segment = segment;
+            return this;
+        }
+
+        private void copyTo(OutputStream out, byte[] buffer) throws IOException {
+            if (this.segment != null) {
+                this.segment.copyTo(out, buffer);
+            } else if (this.file != null) {
+                InputStream in = new FileInputStream(this.file);
+                try {
+                    long left = this.size; // The file may have changed since its checksum was worked out
+                    int read;
+                    while (left > 0 && (read = in.read(buffer, 0, (int) Math.min(buffer.length, left))) != -1) {
+                        out.write(buffer, 0, read);
+                        left -= read;
+                    }
+                    if (left > 0) {
+                        throw new IOException(this.file + " changed while it was being zipped");
+                    }
+                } finally {
+                    in.close();
+                }
+            }
+        }
+
+        private void discard() {
+            if (this.segment != null) {
+                this.segment.discard();
+            }
+        }
+    }
+
+    /**
+     * Holds compressed data in memory until there's too much, then moves it to a temporary file in the given folder.
+     */
+    private static final class SegmentOutputStream extends OutputStream {
+        private final File folder;
+        private ByteArrayOutputStream memory = new ByteArrayOutputStream(64 * 1024);
+        private File temp = null;
+        private OutputStream tempOut = null;
+        private long size = 0;
+
+        private SegmentOutputStream(File folder) {
+            this.folder = folder;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (this.tempOut == null && this.size + length > MAX_IN_MEMORY) {
+                this.temp = File.createTempFile("atlauncher", ".zippart", this.folder);
+                this.tempOut = new BufferedOutputStream(new FileOutputStream(this.temp), BUFFER_SIZE);
+                this.memory.writeTo(this.tempOut);
+                this.memory = null;
+            }
+            if (this.tempOut != null) {
+                this.tempOut.write(bytes, offset, length);
+            } else {
+                this.memory.write(bytes, offset, length);
+            }
+            this.size += length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (this.tempOut != null) {
+                this.tempOut.close();
+            }
+        }
+
+        private long getSize() {
+            return this.size;
+        }
+
+        private void copyTo(OutputStream out, byte[] buffer) throws IOException {
+            if (this.temp == null) {
+                this.memory.writeTo(out);
+                return;
+            }
+            InputStream in = new FileInputStream(this.temp);
+            try {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            } finally {
+                in.close();
+            }
+        }
+
+        private void discard() {
+            this.memory = null;
+            if (this.temp != null) {
+                Utils.closeQuietly(this.tempOut);
+                if (!this.temp.delete()) {
+                    this.temp.deleteOnExit();
+                }
+                this.temp = null;
+            }
+        }
+    }
+}
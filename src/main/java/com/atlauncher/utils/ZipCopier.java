@@ -0,0 +1,351 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copies entries from zip files into a new one without uncompressing them, so a jar can have its META-INF folder
+ * taken out, or several be merged, just by copying bytes. Only the central directory of each zip file is read to find
+ * the entries, then each one kept has its compressed data copied straight across behind a new header.
+ * <p/>
+ * Zip files are added in order, and an entry in one replaces any entry with the same name in those added before it,
+ * taking the place of the first of them in the new zip file.
+ */
+public final class ZipCopier {
+    /**
+     * Keeps everything except what's in a META-INF folder, which holds the signatures a jar mod would break.
+     */
+    public static final EntryFilter WITHOUT_META_INF = new EntryFilter() {
+        @Override
+        public String rename(String name) {
+            return name.contains("META-INF") ? null : name;
+        }
+    };
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END = 0x06054b50;
+    private static final int ZIP64_END = 0x06064b50;
+    private static final int ZIP64_LOCATOR = 0x07064b50;
+
+    private final List<Layer> layers = new ArrayList<Layer>();
+
+    /**
+     * Adds a zip file to copy entries from, replacing those with the same name from zip files added before it.
+     *
+     * @param zip    the zip file
+     * @param filter which entries to copy and what to call them, or null for all of them as they are
+     * @return this
+     */
+    public ZipCopier add(File zip, EntryFilter filter) {
+        this.layers.add(new Layer(zip, filter));
+        return this;
+    }
+
+    /**
+     * Writes the zip file. Each zip file added is only read from here.
+     *
+     * @param out the zip file to write, which is replaced if it exists, and mustn't be one of those added
+     * @throws IOException if one of the zip files couldn't be read or the new one couldn't be written
+     */
+    public void write(File out) throws IOException {
+        List<RandomAccessFile> files = new ArrayList<RandomAccessFile>(this.layers.size());
+        FileOutputStream stream = null;
+        try {
+            Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+            for (Layer layer : this.layers) {
+                RandomAccessFile file = new RandomAccessFile(layer.zip, "r");
+                files.add(file);
+                for (Entry entry : readEntries(layer.zip, file.getChannel(), layer.filter)) {
+                    entries.put(entry.name, entry); // Keeps the place of any entry it replaces
+                }
+            }
+
+            stream = new FileOutputStream(out);
+            ZipWriter zip = new ZipWriter(stream);
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            for (Entry entry : entries.values()) {
+                OutputStream data = zip.putEntry(entry.name, entry.flags, entry.method, entry.dosTime, entry.crc,
+                        entry.compressedSize, entry.size);
+                copyData(entry, data, buffer);
+            }
+            zip.finish();
+        } finally {
+            for (RandomAccessFile file : files) {
+                Utils.closeQuietly(file);
+            }
+            if (stream != null) {
+                stream.close();
+            }
+        }
+    }
+
+    /**
+     * Writes the zip file next to another one then moves it over that one, so it's left as it was if anything fails.
+     *
+     * @param zip the zip file to replace, which may be one of those added
+     * @throws IOException if one of the zip files couldn't be read or the new one couldn't be written or moved
+     */
+    public void replace(File zip) throws IOException {
+        File temp = new File(zip.getParentFile(), zip.getName() + ".tmp");
+        try {
+            write(temp);
+            if ((zip.exists() && !zip.delete()) || !temp.renameTo(zip)) {
+                throw new IOException("Couldn't replace " + zip + " with " + temp);
+            }
+        } finally {
+            if (temp.exists() && !temp.delete()) {
+                temp.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Copies the entries of a zip file into a new one.
+     *
+     * @param in     the zip file
+     * @param out    the zip file to write, which is replaced if it exists
+     * @param filter which entries to copy and what to call them, or null for all of them as they are
+     * @throws IOException if the zip file couldn't be read or the new one couldn't be written
+     */
+    public static void copy(File in, File out, EntryFilter filter) throws IOException {
+        new ZipCopier().add(in, filter).write(out);
+    }
+
+    /**
+     * Rewrites a zip file with only the entries a filter keeps, as {@link #replace(File)} does. It isn't rewritten at
+     * all if every entry is kept.
+     *
+     * @param zip    the zip file
+     * @param filter which entries to keep and what to call them
+     * @return true if the zip file was rewritten, false if the filter kept every entry as it was
+     * @throws IOException if the zip file couldn't be read or rewritten
+     */
+    public static boolean rewrite(File zip, EntryFilter filter) throws IOException {
+        if (!changesAnything(zip, filter)) {
+            return false;
+        }
+        new ZipCopier().add(zip, filter).replace(zip);
+        return true;
+    }
+
+    private static boolean changesAnything(File zip, EntryFilter filter) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(zip, "r");
+        try {
+            for (Entry entry : readEntries(zip, file.getChannel(), null)) {
+                if (!entry.name.equals(filter.rename(entry.name))) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Reads the entries from the central directory of a zip file, leaving out any the filter doesn't keep.
+     */
+    private static List<Entry> readEntries(File zip, FileChannel channel, EntryFilter filter) throws IOException {
+        long[] directory = findCentralDirectory(zip, channel);
+        if (directory[1] > Integer.MAX_VALUE) {
+            throw new IOException("The central directory of " + zip + " is too big");
+        }
+        ByteBuffer central = read(channel, directory[2], (int) directory[1]);
+        List<Entry> entries = new ArrayList<Entry>((int) Math.min(directory[0], 65536));
+        for (long i = 0; i < directory[0]; i++) {
+            if (central.remaining() < 46 || central.getInt() != CENTRAL_HEADER) {
+                throw new IOException("The central directory of " + zip + " is corrupt");
+            }
+            central.position(central.position() + 4); // Versions
+            int flags = central.getShort() & 0xFFFF;
+            int method = central.getShort() & 0xFFFF;
+            long dosTime = central.getInt() & 0xFFFFFFFFL;
+            long crc = central.getInt() & 0xFFFFFFFFL;
+            long compressedSize = central.getInt() & 0xFFFFFFFFL;
+            long size = central.getInt() & 0xFFFFFFFFL;
+            int nameLength = central.getShort() & 0xFFFF;
+            int extraLength = central.getShort() & 0xFFFF;
+            int commentLength = central.getShort() & 0xFFFF;
+            central.position(central.position() + 8); // Disk number and attributes
+            long offset = central.getInt() & 0xFFFFFFFFL;
+            byte[] name = new byte[nameLength];
+            central.get(name);
+            int extraEnd = central.position() + extraLength;
+            while (central.position() + 4 <= extraEnd) {
+                int id = central.getShort() & 0xFFFF;
+                int length = central.getShort() & 0xFFFF;
+                int next = central.position() + length;
+                if (id == 0x0001) {
+                    // Only the values too big for their own fields are here, in this order
+                    if (size == 0xFFFFFFFFL) {
+                        size = central.getLong();
+                    }
+                    if (compressedSize == 0xFFFFFFFFL) {
+                        compressedSize = central.getLong();
+                    }
+                    if (offset == 0xFFFFFFFFL) {
+                        offset = central.getLong();
+                    }
+                }
+                central.position(next);
+            }
+            central.position(extraEnd + commentLength);
+
+            String entryName = new String(name, UTF8);
+            String newName = filter == null ? entryName : filter.rename(entryName);
+            if (newName != null) {
+                entries.add(new Entry(newName, flags, method, dosTime, crc, compressedSize, size, offset, channel));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Finds the central directory from the records at the end of a zip file.
+     *
+     * @return the number of entries, the size of the central directory and where it starts
+     */
+    private static long[] findCentralDirectory(File zip, FileChannel channel) throws IOException {
+        long length = channel.size();
+        int tailLength = (int) Math.min(length, 22 + 0xFFFF); // The end record and the longest comment
+        ByteBuffer tail = read(channel, length - tailLength, tailLength);
+        int end = -1;
+        for (int i = tailLength - 22; i >= 0; i--) {
+            if (tail.getInt(i) == END) {
+                end = i;
+                break;
+            }
+        }
+        if (end == -1) {
+            throw new IOException(zip + " isn't a zip file");
+        }
+        long entries = tail.getShort(end + 10) & 0xFFFF;
+        long size = tail.getInt(end + 12) & 0xFFFFFFFFL;
+        long offset = tail.getInt(end + 16) & 0xFFFFFFFFL;
+        if ((entries == 0xFFFF || size == 0xFFFFFFFFL || offset == 0xFFFFFFFFL) && end >= 20 && tail.getInt(end -
+                20) == ZIP64_LOCATOR) {
+            ByteBuffer zip64 = read(channel, tail.getLong(end - 12), 56);
+            if (zip64.getInt(0) != ZIP64_END) {
+                throw new IOException("The zip64 end record of " + zip + " is corrupt");
+            }
+            entries = zip64.getLong(32);
+            size = zip64.getLong(40);
+            offset = zip64.getLong(48);
+        }
+        return new long[]{entries, size, offset};
+    }
+
+    /**
+     * Copies the compressed data of an entry, which comes after its local header.
+     */
+    private static void copyData(Entry entry, OutputStream out, ByteBuffer buffer) throws IOException {
+        ByteBuffer header = read(entry.channel, entry.offset, 30);
+        if (header.getInt(0) != LOCAL_HEADER) {
+            throw new IOException("The header of " + entry.name + " is corrupt");
+        }
+        long position = entry.offset + 30 + (header.getShort(26) & 0xFFFF) + (header.getShort(28) & 0xFFFF);
+        long left = entry.compressedSize;
+        while (left > 0) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), left));
+            int read = entry.channel.read(buffer, position);
+            if (read == -1) {
+                throw new IOException("The data of " + entry.name + " is cut short");
+            }
+            out.write(buffer.array(), 0, read);
+            position += read;
+            left -= read;
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) == -1) {
+                throw new IOException("Unexpected end of zip file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Decides which entries are copied and what they're called in the new zip file.
+     */
+    public interface EntryFilter {
+        /**
+         * Gets the name an entry is copied as.
+         *
+         * @param name the name of the entry
+         * @return the name to copy it as, or null to leave it out
+         */
+        String rename(String name);
+    }
+
+    private static final class Layer {
+        private final File zip;
+        private final EntryFilter filter;
+
+        private Layer(File zip, EntryFilter filter) {
+            this.zip = zip;
+            this.filter = filter;
+        }
+    }
+
+    private static final class Entry {
+        private final String name;
+        private final int flags;
+        private final int method;
+        private final long dosTime;
+        private final long crc;
+        private final long compressedSize;
+        private final long size;
+        private final long offset; // Where its local header starts
+        private final FileChannel channel;
+
+        private Entry(String name, int flags, int method, long dosTime, long crc, long compressedSize, long size,
+                      long offset, FileChannel channel) {
+            this.name = name;
+            this.flags = flags;
+            this.method = method;
+            this.dosTime = dosTime;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.offset = offset;
+            this.channel = channel;
+        }
+    }
+}
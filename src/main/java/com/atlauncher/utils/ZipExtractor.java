@@ -0,0 +1,285 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.utils;
+
+import com.atlauncher.data.mojang.ExtractRule;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Extracts zip files, such as natives, configs and mods, several entries at a time. Every folder needed is made once
+ * before any files are written, then the files are shared out between a few threads, each reading its entries
+ * straight from the zip file and writing them through a file channel from a pooled buffer.
+ * <p/>
+ * Small zip files are extracted on the calling thread, as handing them out would take longer than extracting them.
+ */
+public final class ZipExtractor {
+    /**
+     * Threads used to extract files, which is also the most buffers kept in the pool.
+     */
+    private static final int THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * Size of each buffer, large enough that most files in a mod or config zip are written in one go.
+     */
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * Zip files with fewer files or fewer bytes than this are extracted on the calling thread.
+     */
+    private static final int PARALLEL_MIN_FILES = 16;
+    private static final long PARALLEL_MIN_BYTES = 1024 * 1024;
+
+    /**
+     * Entries with this name are never extracted.
+     */
+    private static final String SKIPPED_NAME = ".minecraft";
+
+    private static final ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<ByteBuffer>();
+    private static final AtomicInteger pooled = new AtomicInteger();
+    private static final ExecutorService executor = Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "ATL-Unzip-" + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private ZipExtractor() {
+    }
+
+    /**
+     * Extracts a zip file into a folder, overwriting anything already there. Any entry ending in aux.class is
+     * extracted as aux_class, as Windows won't make a file called aux.
+     *
+     * @param in          the zip file
+     * @param out         the folder to extract it into
+     * @param extractRule which entries to leave out, or null for none
+     * @throws IOException if the zip file couldn't be read or anything couldn't be written, in which case some of it
+     *                     may have been extracted
+     */
+    public static void extract(File in, File out, ExtractRule extractRule) throws IOException {
+        final ZipFile zipFile = new ZipFile(in);
+        try {
+            // Later entries with the same name replace earlier ones, as they would extracting them in order
+            Map<File, ZipEntry> files = new LinkedHashMap<File, ZipEntry>();
+            TreeSet<File> folders = new TreeSet<File>();
+            folders.add(out);
+            long bytes = 0;
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (name.endsWith("aux.class")) {
+                    name = "aux_class";
+                }
+                if (extractRule != null && extractRule.shouldExclude(name)) {
+                    continue;
+                }
+                File file = new File(out, name);
+                if (entry.isDirectory()) {
+                    folders.add(file);
+                } else {
+                    folders.add(file.getParentFile());
+                    if (!name.equals(SKIPPED_NAME)) {
+                        files.remove(file);
+                        files.put(file, entry);
+                        bytes += Math.max(0, entry.getSize());
+                    }
+                }
+            }
+
+            makeFolders(folders);
+
+            if (files.size() < PARALLEL_MIN_FILES || bytes < PARALLEL_MIN_BYTES) {
+                ByteBuffer buffer = takeBuffer();
+                try {
+                    for (Map.Entry<File, ZipEntry> file : files.entrySet()) {
+                        write(zipFile, file.getValue(), file.getKey(), buffer);
+                    }
+                } finally {
+                    giveBuffer(buffer);
+                }
+                return;
+            }
+
+            extractInParallel(zipFile, files);
+        } finally {
+            zipFile.close();
+        }
+    }
+
+    /**
+     * Makes each folder, skipping any which are the parent of another as making that makes them too.
+     */
+    private static void makeFolders(TreeSet<File> folders) throws IOException {
+        File previous = null;
+        for (File folder : folders.descendingSet()) {
+            // In reverse order a folder's subfolders come just before it
+            if (previous != null && previous.getPath().startsWith(folder.getPath() + File.separator)) {
+                previous = folder;
+                continue;
+            }
+            previous = folder;
+            if (!folder.isDirectory() && !folder.mkdirs() && !folder.isDirectory()) {
+                throw new IOException("Couldn't create folder " + folder);
+            }
+        }
+    }
+
+    /**
+     * Shares the files out between the threads, biggest first, so one big file at the end doesn't hold up the rest.
+     */
+    private static void extractInParallel(final ZipFile zipFile, Map<File, ZipEntry> files) throws IOException {
+        final List<Map.Entry<File, ZipEntry>> queue = new ArrayList<Map.Entry<File, ZipEntry>>(files.entrySet());
+        Collections.sort(queue, new Comparator<Map.Entry<File, ZipEntry>>() {
+            @Override
+            public int compare(Map.Entry<File, ZipEntry> a, Map.Entry<File, ZipEntry> b) {
+                long aSize = a.getValue().getSize();
+                long bSize = b.getValue().getSize();
+                return aSize < bSize ? 1 : (aSize == bSize ? 0 : -1);
+            }
+        });
+
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        List<Future<Void>> workers = new ArrayList<Future<Void>>(THREADS);
+        for (int i = 0; i < Math.min(THREADS, queue.size()); i++) {
+            workers.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    ByteBuffer buffer = takeBuffer();
+                    try {
+                        int index;
+                        while (failed.get() == 0 && (index = next.getAndIncrement()) < queue.size()) {
+                            Map.Entry<File, ZipEntry> file = queue.get(index);
+                            write(zipFile, file.getValue(), file.getKey(), buffer);
+                        }
+                    } catch (IOException e) {
+                        failed.incrementAndGet(); // Stop the others, as the whole zip file has failed
+                        throw e;
+                    } finally {
+                        giveBuffer(buffer);
+                    }
+                    return null;
+                }
+            }));
+        }
+
+        IOException failure = null;
+        for (Future<Void> worker : workers) {
+            try {
+                worker.get(); // The zip file can't be closed until all of them are done with it
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e
+                            .getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed.incrementAndGet();
+                if (failure == null) {
+                    failure = new IOException("Interrupted extracting " + zipFile.getName());
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Writes an entry to a file, filling the buffer from the zip file and writing it out a buffer at a time.
+     */
+    private static void write(ZipFile zipFile, ZipEntry entry, File file, ByteBuffer buffer) throws IOException {
+        InputStream in = zipFile.getInputStream(entry);
+        FileOutputStream out = null;
+        try {
+            ReadableByteChannel source = Channels.newChannel(in);
+            if (!Utils.unlink(file)) {
+                throw new IOException("Couldn't replace " + file);
+            }
+            out = new FileOutputStream(file);
+            FileChannel target = out.getChannel();
+            boolean done = false;
+            while (!done) {
+                buffer.clear();
+                while (buffer.hasRemaining()) {
+                    if (source.read(buffer) == -1) {
+                        done = true;
+                        break;
+                    }
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    target.write(buffer);
+                }
+            }
+        } finally {
+            Utils.closeQuietly(in);
+            if (out != null) {
+                out.close();
+            }
+        }
+    }
+
+    private static ByteBuffer takeBuffer() {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+        pooled.decrementAndGet();
+        return buffer;
+    }
+
+    private static void giveBuffer(ByteBuffer buffer) {
+        if (pooled.incrementAndGet() <= THREADS + 1) {
+            buffers.offer(buffer);
+        } else {
+            pooled.decrementAndGet(); // Enough are kept already, so leave this one to be collected
+        }
+    }
+}
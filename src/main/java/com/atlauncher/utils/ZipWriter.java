@@ -0,0 +1,225 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Calendar;
+
+/**
+ * Writes a zip file from entries whose data is already compressed, or stored, along with its sizes and checksum. Each
+ * entry's header is written, then its data is written to the stream returned, and once all of them are written the
+ * central directory listing them is written at the end.
+ * <p/>
+ * As the sizes are known up front, no data descriptors are needed after the data. The zip64 format is used for any
+ * entry, or the whole zip file, too big for the original one.
+ */
+final class ZipWriter implements Closeable {
+    static final int METHOD_STORED = 0;
+    static final int METHOD_DEFLATED = 8;
+
+    /**
+     * Flags kept from entries copied from another zip file. The rest, such as the flag saying a data descriptor
+     * follows the data, only describe how that zip file was written.
+     */
+    static final int COPIED_FLAGS = 0x0001 | 0x0002 | 0x0004 | 0x0800;
+
+    private static final int FLAG_UTF8 = 0x0800;
+    private static final int ATTRIBUTE_FOLDER = 0x10;
+    private static final long ZIP64_LIMIT = 0xFFFFFFFFL;
+    private static final int ZIP64_ENTRIES_LIMIT = 0xFFFF;
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private final CountingOutputStream out;
+    private final ByteArrayOutputStream central = new ByteArrayOutputStream();
+    private int entries = 0;
+    private long expectedEnd = 0;
+
+    ZipWriter(OutputStream out) {
+        this.out = new CountingOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+    }
+
+    /**
+     * Writes the header of an entry. Exactly the compressed size in bytes must then be written to the stream returned
+     * before the next entry is started.
+     *
+     * @param name           the name of the entry, ending in / for a folder
+     * @param flags          the general purpose flags, of which only those in {@link #COPIED_FLAGS} are kept
+     * @param method         how the data is compressed
+     * @param dosTime        when the entry was last modified, in the format from {@link #dosTime(long)}
+     * @param crc            the checksum of the uncompressed data
+     * @param compressedSize the size of the data written
+     * @param size           the size of the data once uncompressed
+     * @return the stream to write the data to
+     * @throws IOException if the zip file couldn't be written, or the last entry's data wasn't the size given
+     */
+    OutputStream putEntry(String name, int flags, int method, long dosTime, long crc, long compressedSize, long size)
+            throws IOException {
+        checkLastEntry();
+        byte[] nameBytes = name.getBytes("UTF-8");
+        flags &= COPIED_FLAGS;
+        if (name.length() != nameBytes.length) {
+            flags |= FLAG_UTF8; // Marks the name as UTF-8 as it's not ASCII
+        }
+        boolean zip64 = size >= ZIP64_LIMIT || compressedSize >= ZIP64_LIMIT;
+        int version = zip64 ? 45 : (method == METHOD_STORED ? 10 : 20);
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream(30 + nameBytes.length + 20);
+        writeInt(header, 0x04034b50);
+        writeShort(header, version);
+        writeShort(header, flags);
+        writeShort(header, method);
+        writeInt(header, dosTime);
+        writeInt(header, crc);
+        writeInt(header, zip64 ? ZIP64_LIMIT : compressedSize);
+        writeInt(header, zip64 ? ZIP64_LIMIT : size);
+        writeShort(header, nameBytes.length);
+        writeShort(header, zip64 ? 20 : 0);
+        header.write(nameBytes);
+        if (zip64) {
+            writeShort(header, 0x0001);
+            writeShort(header, 16);
+            writeLong(header, size);
+            writeLong(header, compressedSize);
+        }
+        long headerOffset = this.out.getCount();
+        header.writeTo(this.out);
+        this.expectedEnd = this.out.getCount() + compressedSize;
+
+        boolean offset64 = headerOffset >= ZIP64_LIMIT;
+        int extra = (zip64 ? 16 : 0) + (offset64 ? 8 : 0);
+        writeInt(this.central, 0x02014b50);
+        writeShort(this.central, version);
+        writeShort(this.central, offset64 ? 45 : version);
+        writeShort(this.central, flags);
+        writeShort(this.central, method);
+        writeInt(this.central, dosTime);
+        writeInt(this.central, crc);
+        writeInt(this.central, zip64 ? ZIP64_LIMIT : compressedSize);
+        writeInt(this.central, zip64 ? ZIP64_LIMIT : size);
+        writeShort(this.central, nameBytes.length);
+        writeShort(this.central, extra == 0 ? 0 : extra + 4);
+        writeShort(this.central, 0); // Comment length
+        writeShort(this.central, 0); // Disk number
+        writeShort(this.central, 0); // Internal attributes
+        writeInt(this.central, name.endsWith("/") ? ATTRIBUTE_FOLDER : 0);
+        writeInt(this.central, offset64 ? ZIP64_LIMIT : headerOffset);
+        this.central.write(nameBytes);
+        if (extra != 0) {
+            writeShort(this.central, 0x0001);
+            writeShort(this.central, extra);
+            if (zip64) {
+                writeLong(this.central, size);
+                writeLong(this.central, compressedSize);
+            }
+            if (offset64) {
+                writeLong(this.central, headerOffset);
+            }
+        }
+        this.entries++;
+        return this.out;
+    }
+
+    /**
+     * Writes the central directory and the records at the end of the zip file, and flushes it.
+     *
+     * @throws IOException if the zip file couldn't be written, or the last entry's data wasn't the size given
+     */
+    void finish() throws IOException {
+        checkLastEntry();
+        long centralOffset = this.out.getCount();
+        long centralSize = this.central.size();
+        this.central.writeTo(this.out);
+
+        ByteArrayOutputStream end = new ByteArrayOutputStream(98);
+        if (this.entries >= ZIP64_ENTRIES_LIMIT || centralOffset >= ZIP64_LIMIT || centralSize >= ZIP64_LIMIT) {
+            writeInt(end, 0x06064b50);
+            writeLong(end, 44); // Size of the rest of this record
+            writeShort(end, 45);
+            writeShort(end, 45);
+            writeInt(end, 0);
+            writeInt(end, 0);
+            writeLong(end, this.entries);
+            writeLong(end, this.entries);
+            writeLong(end, centralSize);
+            writeLong(end, centralOffset);
+
+            writeInt(end, 0x07064b50);
+            writeInt(end, 0);
+            writeLong(end, this.out.getCount()); // Where the record above starts
+            writeInt(end, 1);
+        }
+        writeInt(end, 0x06054b50);
+        writeShort(end, 0);
+        writeShort(end, 0);
+        writeShort(end, Math.min(this.entries, ZIP64_ENTRIES_LIMIT));
+        writeShort(end, Math.min(this.entries, ZIP64_ENTRIES_LIMIT));
+        writeInt(end, Math.min(centralSize, ZIP64_LIMIT));
+        writeInt(end, Math.min(centralOffset, ZIP64_LIMIT));
+        writeShort(end, 0); // Comment length
+        end.writeTo(this.out);
+        this.out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.out.close();
+    }
+
+    /**
+     * Converts a time to the date and time format used by zip files, with the time in the low 16 bits.
+     *
+     * @param millis the time in milliseconds
+     * @return the time in the format zip files use
+     */
+    static long dosTime(long millis) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(millis);
+        int year = calendar.get(Calendar.YEAR);
+        if (year < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return ((year - 1980) << 25 | (calendar.get(Calendar.MONTH) + 1) << 21 | calendar.get(Calendar.DAY_OF_MONTH)
+                << 16 | calendar.get(Calendar.HOUR_OF_DAY) << 11 | calendar.get(Calendar.MINUTE) << 5 | calendar.get
+                (Calendar.SECOND) >> 1) & 0xFFFFFFFFL;
+    }
+
+    private void checkLastEntry() throws IOException {
+        if (this.out.getCount() != this.expectedEnd) {
+            throw new IOException("The data written for the last entry wasn't the size given");
+        }
+    }
+
+    private static void writeShort(ByteArrayOutputStream out, int value) {
+        out.write(value & 0xFF);
+        out.write((value >>> 8) & 0xFF);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, long value) {
+        writeShort(out, (int) (value & 0xFFFF));
+        writeShort(out, (int) ((value >>> 16) & 0xFFFF));
+    }
+
+    private static void writeLong(ByteArrayOutputStream out, long value) {
+        writeInt(out, value & 0xFFFFFFFFL);
+        writeInt(out, value >>> 32);
+    }
+}
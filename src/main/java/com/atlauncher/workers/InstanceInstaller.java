@@ -41,8 +41,17 @@ import com.atlauncher.data.mojang.EnumTypeAdapterFactory;
 import com.atlauncher.data.mojang.FileTypeAdapter;
 import com.atlauncher.data.mojang.Library;
 import com.atlauncher.data.mojang.MojangConstants;
+import com.atlauncher.evnt.LauncherEvent;
 import com.atlauncher.gui.dialogs.ModsChooser;
+import com.atlauncher.network.ConnectionPool;
+import com.atlauncher.network.DownloadCache;
+import com.atlauncher.network.DownloadProgress;
+import com.atlauncher.network.DownloadScheduler;
+import com.atlauncher.network.MirrorScoreboard;
+import com.atlauncher.utils.DigestIndex;
+import com.atlauncher.utils.SharedFiles;
 import com.atlauncher.utils.Utils;
+import com.atlauncher.utils.ZipCopier;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonIOException;
@@ -51,9 +60,7 @@ import com.google.gson.JsonSyntaxException;
 
 import javax.swing.SwingWorker;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FilenameFilter;
 import java.io.IOException;
@@ -61,11 +68,7 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.jar.JarEntry;
-import java.util.jar.JarInputStream;
-import java.util.jar.JarOutputStream;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class InstanceInstaller extends SwingWorker<Boolean, Void> {
 
@@ -98,11 +101,15 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
     private List<Mod> selectedMods;
     private int totalDownloads = 0; // Total number of downloads to download
     private int doneDownloads = 0; // Total number of downloads downloaded
-    private int totalBytes = 0; // Total number of bytes to download
-    private int downloadedBytes = 0; // Total number of bytes downloaded
+    private final DownloadProgress downloadProgress = new DownloadProgress(); // Bytes to download and downloaded
+    private final AtomicLong phaseBytes = new AtomicLong(); // Bytes downloaded in the current phase, for the event log
+    private long installBytes = 0; // Bytes downloaded in the phases before the current one
+    private volatile String phase = null; // The part of the install being done, for the event log
+    private long phaseStarted;
     private Instance instance = null;
     private List<DisableableMod> modsInstalled;
     private List<File> serverLibraries;
+    private final List<File> serverJarMods = new ArrayList<File>(); // Merged into the server jar in this order
     private List<String> forgeLibraries = new ArrayList<String>();
 
     public InstanceInstaller(String instanceName, Pack pack, PackVersion version, boolean isReinstall, boolean
@@ -129,6 +136,24 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
         return this.pack;
     }
 
+    /**
+     * Gets the part of the install being done, as written to the event log.
+     *
+     * @return the phase, or null if the install hasn't started or has finished
+     */
+    public String getPhase() {
+        return this.phase;
+    }
+
+    /**
+     * Adds to the bytes downloaded in the current phase of the install, including any downloaded again on a retry.
+     *
+     * @param bytes the number of bytes read from the network
+     */
+    public void addTransferredBytes(long bytes) {
+        this.phaseBytes.addAndGet(bytes);
+    }
+
     public void setInstance(Instance instance) {
         this.instance = instance;
     }
@@ -164,10 +189,6 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
         return new File(App.settings.getTempDir(), pack.getSafeName() + "_" + version.getSafeVersion());
     }
 
-    public File getTempJarDirectory() {
-        return new File(App.settings.getTempDir(), pack.getSafeName() + "_" + version.getSafeVersion() + "_JarTemp");
-    }
-
     public File getTempActionsDirectory() {
         return new File(App.settings.getTempDir(), pack.getSafeName() + "_" + version.getSafeVersion() +
                 "_ActionsTemp");
@@ -287,6 +308,16 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
         }
     }
 
+    /**
+     * Adds a jar mod to merge into the server jar once all the mods are installed, over the top of the server jar and
+     * any jar mods added before it.
+     *
+     * @param file the jar mod
+     */
+    public void addServerJarMod(File file) {
+        this.serverJarMods.add(file);
+    }
+
     public boolean wasModInstalled(String mod) {
         return instance != null && instance.wasModInstalled(mod);
     }
@@ -494,20 +525,20 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
     private void downloadResources() {
         fireTask(Language.INSTANCE.localize("instance.downloadingresources"));
         fireSubProgressUnknown();
-        ExecutorService executor = Executors.newFixedThreadPool(App.settings.getConcurrentConnections());
+        DownloadScheduler.Phase phase = DownloadScheduler.newPhase("resources", this);
         ArrayList<Downloadable> downloads = getResources();
-        totalBytes = 0;
-        downloadedBytes = 0;
+        long totalBytes = 0;
 
         for (Downloadable download : downloads) {
             if (download.needToDownload()) {
                 totalBytes += download.getFilesize();
             }
         }
+        downloadProgress.reset(totalBytes);
 
         fireSubProgress(0); // Show the subprogress bar
         for (final Downloadable download : downloads) {
-            executor.execute(new Runnable() {
+            phase.submit(new Runnable() {
 
                 @Override
                 public void run() {
@@ -520,100 +551,62 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
                 }
             });
         }
-        executor.shutdown();
-        while (!executor.isTerminated()) {
-        }
+        phase.await();
         fireSubProgress(-1); // Hide the subprogress bar
     }
 
     private void downloadLibraries() {
         fireTask(Language.INSTANCE.localize("instance.downloadinglibraries"));
         fireSubProgressUnknown();
-        ExecutorService executor;
         ArrayList<Downloadable> downloads = getLibraries();
-        totalBytes = 0;
-        downloadedBytes = 0;
-
-        executor = Executors.newFixedThreadPool(App.settings.getConcurrentConnections());
-
-        for (final Downloadable download : downloads) {
-            executor.execute(new Runnable() {
-
-                @Override
-                public void run() {
-                    if (download.needToDownload()) {
-                        totalBytes += download.getFilesize();
-                    }
-                }
-            });
-        }
-        executor.shutdown();
-        while (!executor.isTerminated()) {
-        }
+        downloadProgress.reset(0);
 
         fireSubProgress(0); // Show the subprogress bar
 
-        executor = Executors.newFixedThreadPool(App.settings.getConcurrentConnections());
+        // Sizes not given in the JSON are added to the total as the response headers arrive, so no separate pass
+        DownloadScheduler.Phase phase = DownloadScheduler.newPhase("libraries", this);
 
         for (final Downloadable download : downloads) {
-            executor.execute(new Runnable() {
+            phase.submit(new Runnable() {
 
                 @Override
                 public void run() {
                     if (download.needToDownload()) {
+                        addTotalDownloadedBytes(download.getFilesize());
                         fireTask(Language.INSTANCE.localize("common.downloading") + " " + download.getFilename());
                         download.download(true);
                     }
                 }
             });
         }
-        executor.shutdown();
-        while (!executor.isTerminated()) {
-        }
+        phase.await();
         fireSubProgress(-1); // Hide the subprogress bar
     }
 
     private void downloadMods(List<Mod> mods) {
         fireSubProgressUnknown();
-        ExecutorService executor;
         List<Downloadable> downloads = getDownloadableMods();
-        totalBytes = 0;
-        downloadedBytes = 0;
-
-        executor = Executors.newFixedThreadPool(App.settings.getConcurrentConnections());
-
-        for (final Downloadable download : downloads) {
-            executor.execute(new Runnable() {
-
-                @Override
-                public void run() {
-                    if (download.needToDownload()) {
-                        totalBytes += download.getFilesize();
-                    }
-                }
-            });
-        }
-        executor.shutdown();
-        while (!executor.isTerminated()) {
-        }
+        downloadProgress.reset(0);
 
         fireSubProgress(0); // Show the subprogress bar
 
-        executor = Executors.newFixedThreadPool(App.settings.getConcurrentConnections());
+        // Sizes not given in the JSON are added to the total as the response headers arrive, so no separate pass
+        DownloadScheduler.Phase phase = DownloadScheduler.newPhase("mods", this);
 
         for (final Downloadable download : downloads) {
-            executor.execute(new Runnable() {
+            phase.submit(new Runnable() {
 
                 @Override
                 public void run() {
                     if (download.needToDownload()) {
+                        addTotalDownloadedBytes(download.getFilesize());
                         download.download(true);
                     }
                 }
             });
         }
-        executor.shutdown();
-        while (!executor.isTerminated()) {
+        if (!phase.await()) {
+            return;
         }
 
         fireSubProgress(-1); // Hide the subprogress bar
@@ -636,7 +629,7 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
             for (String libraryFile : forgeLibraries) {
                 File library = new File(App.settings.getLibrariesDir(), libraryFile);
                 if (library.exists()) {
-                    Utils.copyFile(library, getBinDirectory());
+                    SharedFiles.place(library, getBinDirectory(), false);
                 } else {
                     LogManager.error("Cannot install instance because the library file " + library.getAbsolutePath()
                             + " wasn't found!");
@@ -655,8 +648,7 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
                         if (library.shouldExtract()) {
                             Utils.unzip(library.getFile(), getNativesDirectory(), library.getExtractRule());
                         } else {
-                            File dirToInstall = getBinDirectory();
-                            Utils.copyFile(library.getFile(), getBinDirectory());
+                            SharedFiles.place(library.getFile(), getBinDirectory(), false);
                         }
                     } else {
                         LogManager.error("Cannot install instance because the library file " + library.getFile()
@@ -679,7 +671,7 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
             withFilename = true;
         }
         if (toCopy.exists()) {
-            Utils.copyFile(toCopy, copyTo, withFilename);
+            SharedFiles.place(toCopy, copyTo, withFilename);
         } else {
             LogManager.error("Cannot install instance because the library file " + toCopy.getAbsolutePath() + " " +
                     "wasn't found!");
@@ -749,8 +741,7 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
                             .getHash(), (int) object.getSize(), this, false, virtualFile, index.isVirtual()));
                 } else {
                     if (index.isVirtual()) {
-                        virtualFile.mkdirs();
-                        Utils.copyFile(file, virtualFile, true);
+                        SharedFiles.place(file, virtualFile, true);
                     }
                 }
             }
@@ -869,33 +860,36 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
     }
 
     public void deleteMetaInf() {
-        File inputFile = getMinecraftJar();
-        File outputTmpFile = new File(App.settings.getTempDir(), pack.getSafeName() + "-minecraft.jar");
         try {
-            JarInputStream input = new JarInputStream(new FileInputStream(inputFile));
-            JarOutputStream output = new JarOutputStream(new FileOutputStream(outputTmpFile));
-            JarEntry entry;
+            ZipCopier.rewrite(getMinecraftJar(), ZipCopier.WITHOUT_META_INF);
+        } catch (IOException e) {
+            App.settings.logStackTrace(e);
+        }
+    }
 
-            while ((entry = input.getNextJarEntry()) != null) {
-                if (entry.getName().contains("META-INF")) {
-                    continue;
-                }
-                output.putNextEntry(entry);
-                byte buffer[] = new byte[1024];
-                int amo;
-                while ((amo = input.read(buffer, 0, 1024)) != -1) {
-                    output.write(buffer, 0, amo);
+    /**
+     * Merges the jar mods into the server jar in one go, copying each entry straight from whichever jar has the last
+     * say on it. Names are changed as extracting them and zipping them back up would: anything ending in aux.class
+     * ends up as aux.class and any .minecraft file is left out.
+     */
+    private void mergeServerJarMods() {
+        ZipCopier.EntryFilter filter = new ZipCopier.EntryFilter() {
+            @Override
+            public String rename(String name) {
+                if (name.endsWith("aux.class") || name.endsWith("aux_class")) {
+                    return "aux.class";
                 }
-                output.closeEntry();
+                return name.equals(".minecraft") ? null : name;
             }
-
-            input.close();
-            output.close();
-
-            inputFile.delete();
-            outputTmpFile.renameTo(inputFile);
+        };
+        ZipCopier copier = new ZipCopier().add(getMinecraftJar(), filter);
+        for (File jarMod : this.serverJarMods) {
+            copier.add(jarMod, filter);
+        }
+        try {
+            copier.replace(getMinecraftJar());
         } catch (IOException e) {
-            App.settings.logStackTrace(e);
+            App.settings.logStackTrace("Couldn't merge the jar mods into the server jar", e);
         }
     }
 
@@ -905,8 +899,7 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
         File configs = new File(App.settings.getTempDir(), "Configs.zip");
         String path = "packs/" + pack.getSafeName() + "/versions/" + version.getVersion() + "/Configs.zip";
         Downloadable configsDownload = new Downloadable(path, configs, null, this, true);
-        this.totalBytes = configsDownload.getFilesize();
-        this.downloadedBytes = 0;
+        this.downloadProgress.reset(0); // Set from the response headers once the download starts
         configsDownload.download(true); // Download the file
 
         // Extract the configs zip file
@@ -939,6 +932,10 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
         return this.jsonVersion;
     }
 
+    public Map<String, String> getLogLevels() {
+        return this.jsonVersion == null ? null : this.jsonVersion.getLogLevels();
+    }
+
     public boolean hasJarMods() {
         for (Mod mod : selectedMods) {
             if (!mod.installOnServer() && this.isServer) {
@@ -1182,6 +1179,7 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
             }
         }
         this.instanceIsCorrupt = true; // From this point on the instance is corrupt
+        startPhase("prepare");
         getTempDirectory().mkdirs(); // Make the temp directory
         backupSelectFiles();
         makeDirectories();
@@ -1189,35 +1187,33 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
         setMainClass();
         setExtraArguments();
         if (this.version.getMinecraftVersion().hasResources()) {
+            startPhase("resources");
             downloadResources(); // Download Minecraft Resources
             if (isCancelled()) {
                 return false;
             }
         }
+        startPhase("libraries");
         downloadLibraries(); // Download Libraries
         if (isCancelled()) {
             return false;
         }
+        startPhase("organise");
         organiseLibraries(); // Organise the libraries
         if (isCancelled()) {
             return false;
         }
         if (this.isServer) {
             for (File file : serverLibraries) {
-                file.mkdirs();
-                Utils.copyFile(new File(App.settings.getLibrariesDir(), file.getName()), file, true);
+                SharedFiles.place(new File(App.settings.getLibrariesDir(), file.getName()), file, true);
             }
         }
         addPercent(5);
-        if (this.isServer && this.hasJarMods()) {
-            fireTask(Language.INSTANCE.localize("server.extractingjar"));
-            fireSubProgressUnknown();
-            Utils.unzip(getMinecraftJar(), getTempJarDirectory());
-        }
         if (!this.isServer && this.hasJarMods() && !this.hasForge()) {
             deleteMetaInf();
         }
         addPercent(5);
+        startPhase("mods");
         if (selectedMods.size() != 0) {
             addPercent(40);
             fireTask(Language.INSTANCE.localize("instance.downloadingmods"));
@@ -1239,7 +1235,7 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
         if (isServer && hasJarMods()) {
             fireTask(Language.INSTANCE.localize("server.zippingjar"));
             fireSubProgressUnknown();
-            Utils.zip(getTempJarDirectory(), getMinecraftJar());
+            mergeServerJarMods();
         }
         if (extractedTexturePack) {
             fireTask(Language.INSTANCE.localize("instance.zippingtexturepackfiles"));
@@ -1260,6 +1256,7 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
         if (isCancelled()) {
             return false;
         }
+        startPhase("finish");
         if (hasActions()) {
             doActions();
         }
@@ -1274,6 +1271,13 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
             Utils.copyDirectory(App.settings.getCommonConfigsDir(), getRootDirectory());
         }
         restoreSelectFiles();
+        LogManager.debug("Download cache: " + DownloadCache.getStatistics());
+        LogManager.debug("Shared files: " + SharedFiles.getStatistics());
+        ConnectionPool.logStatistics();
+        DigestIndex.save(); // So the files checked and downloaded don't need hashing again next time
+        SharedFiles.save();
+        DownloadCache.save();
+        MirrorScoreboard.save();
         if (isServer) {
             File batFile = new File(getRootDirectory(), "LaunchServer.bat");
             File shFile = new File(getRootDirectory(), "LaunchServer.sh");
@@ -1291,17 +1295,48 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
     @Override
     protected Boolean doInBackground() throws Exception {
         LogManager.info("Started install of " + this.pack.getName() + " - " + this.version);
+        long started = System.currentTimeMillis();
+        event("install.started").emit();
+        boolean installed = false;
 
         try {
             this.jsonVersion = Gsons.DEFAULT.fromJson(this.pack.getJSON(version.getVersion()), Version.class);
-            return installUsingJSON();
+            installed = installUsingJSON();
+            return installed;
         } catch (JsonParseException e) {
             App.settings.logStackTrace("Couldn't parse JSON of pack!", e);
+        } finally {
+            String lastPhase = this.phase;
+            startPhase(null);
+            event(installed ? "install.finished" : isCancelled() ? "install.cancelled" : "install.failed").phase
+                    (installed ? null : lastPhase).bytes(this.installBytes).duration(System.currentTimeMillis() -
+                    started).emit();
         }
 
         return false;
     }
 
+    /**
+     * Moves on to the next part of the install, adding how long the last part took to the event log.
+     *
+     * @param phase the part of the install starting, or null if it's over
+     */
+    private void startPhase(String phase) {
+        long now = System.currentTimeMillis();
+        if (this.phase != null) {
+            long bytes = this.phaseBytes.getAndSet(0);
+            this.installBytes += bytes;
+            event("install.phase").phase(this.phase).bytes(bytes).duration(now - this.phaseStarted).emit();
+        }
+        this.phase = phase;
+        this.phaseStarted = now;
+    }
+
+    private LauncherEvent event(String type) {
+        return LauncherEvent.of(type).instance(this.instanceName).pack(this.pack.getName()).version(this.version
+                .getVersion()).mirror(App.settings.getServer().getName());
+    }
+
     private void setMainClass() {
         if (this.jsonVersion.hasMainClass()) {
             if (!this.jsonVersion.getMainClass().hasDepends() && !this.jsonVersion.getMainClass().hasDependsGroup()) {
@@ -1376,9 +1411,8 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
         }
     }
 
-    public void resetDownloadedBytes(int bytes) {
-        totalBytes = bytes;
-        downloadedBytes = 0;
+    public void resetDownloadedBytes(long bytes) {
+        this.downloadProgress.reset(bytes);
     }
 
     public void fireTask(String name) {
@@ -1439,29 +1473,35 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
         fireSubProgress((int) progress);
     }
 
-    public void addDownloadedBytes(int bytes) {
-        this.downloadedBytes += bytes;
-        this.updateProgressBar();
+    /**
+     * Adds to the number of bytes downloaded. This is called from many download threads for every chunk read, so the
+     * progress bar is only refreshed at most once a frame.
+     *
+     * @param bytes the number of bytes just downloaded
+     */
+    public void addDownloadedBytes(long bytes) {
+        this.downloadProgress.addDownloaded(bytes);
+        if (this.downloadProgress.shouldRefresh()) {
+            this.updateProgressBar();
+        }
     }
 
-    public void addTotalDownloadedBytes(int bytes) {
-        this.totalBytes += bytes;
-        this.updateProgressBar();
+    public void addTotalDownloadedBytes(long bytes) {
+        this.downloadProgress.addTotal(bytes);
+        if (this.downloadProgress.shouldRefresh()) {
+            this.updateProgressBar();
+        }
     }
 
     private void updateProgressBar() {
-        float progress;
-        if (this.totalBytes > 0) {
-            progress = ((float) this.downloadedBytes / (float) this.totalBytes) * 100;
-        } else {
-            progress = 0;
-        }
-        float done = (float) this.downloadedBytes / 1024 / 1024;
-        float toDo = (float) this.totalBytes / 1024 / 1024;
-        if (done > toDo) {
+        long downloaded = this.downloadProgress.getDownloaded();
+        long total = this.downloadProgress.getTotal();
+        float done = (float) downloaded / 1024 / 1024;
+        float toDo = (float) total / 1024 / 1024;
+        if (downloaded > total) {
             fireSubProgress(100, String.format("%.2f MB", done));
         } else {
-            fireSubProgress((int) progress, String.format("%.2f MB / %.2f MB", done, toDo));
+            fireSubProgress(this.downloadProgress.getPercent(), String.format("%.2f MB / %.2f MB", done, toDo));
         }
     }
 
@@ -0,0 +1,180 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.writer;
+
+import com.atlauncher.utils.LogIndex;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+
+/**
+ * Writes a log to a series of files, starting a new one when the current one gets too big or at midnight. Files are
+ * named from the prefix and when they were started, and each finished one is handed to the {@link LogIndex} to be
+ * compressed and cleared out in time.
+ * <p/>
+ * A new file is only ever started between calls to write, so anything written in one go, such as a whole log event,
+ * is never split between two files.
+ */
+public final class RollingLogWriter extends Writer {
+    private final File dir;
+    private final String prefix;
+    private final String suffix;
+    private final String continued;
+    private final LogIndex index;
+    private final long maxChars;
+    private Writer writer;
+    private String name;
+    private long written;
+    private long rollAt; // When to start a new file regardless of size
+    private boolean closed = false;
+
+    /**
+     * Starts the first file.
+     *
+     * @param dir      the folder to write the files to
+     * @param prefix   what to start each file's name with, which is followed by the date and time it was started
+     * @param index    the index of the log files in the folder
+     * @param maxChars how much to write to a file before starting a new one
+     * @throws IOException if the file couldn't be created
+     */
+    public RollingLogWriter(File dir, String prefix, LogIndex index, long maxChars) throws IOException {
+        this(dir, prefix, ".log", "#Continued from %s\n", index, maxChars);
+    }
+
+    /**
+     * Starts the first file.
+     *
+     * @param dir       the folder to write the files to
+     * @param prefix    what to start each file's name with, which is followed by the date and time it was started
+     * @param suffix    what to end each file's name with
+     * @param continued what to start each file after the first with, where %s is the name of the file before it, or
+     *                  null to start them with nothing, such as when every line has to be an entry
+     * @param index     the index of the log files in the folder
+     * @param maxChars  how much to write to a file before starting a new one
+     * @throws IOException if the file couldn't be created
+     */
+    public RollingLogWriter(File dir, String prefix, String suffix, String continued, LogIndex index, long maxChars)
+            throws IOException {
+        this.dir = dir;
+        this.prefix = prefix;
+        this.suffix = suffix;
+        this.continued = continued;
+        this.index = index;
+        this.maxChars = maxChars;
+        open();
+    }
+
+    /**
+     * Gets the name of the file being written to.
+     *
+     * @return the name of the file in the folder
+     */
+    public synchronized String getName() {
+        return this.name;
+    }
+
+    @Override
+    public synchronized void write(char[] chars, int offset, int length) throws IOException {
+        ensureOpen();
+        this.writer.write(chars, offset, length);
+        written(length);
+    }
+
+    @Override
+    public synchronized void write(String string, int offset, int length) throws IOException {
+        ensureOpen();
+        this.writer.write(string, offset, length);
+        written(length);
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        ensureOpen();
+        this.writer.flush();
+    }
+
+    /**
+     * Closes the file being written to. It's left uncompressed until the next launch so exiting isn't held up.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        this.writer.close();
+        this.index.close(this.name, new File(this.dir, this.name).length());
+    }
+
+    private void written(int length) throws IOException {
+        this.written += length;
+        if (this.written >= this.maxChars || System.currentTimeMillis() >= this.rollAt) {
+            roll();
+        }
+    }
+
+    /**
+     * Finishes the current file and starts a new one.
+     */
+    private void roll() throws IOException {
+        String previous = this.name;
+        this.writer.close();
+        this.index.finish(previous, new File(this.dir, previous).length());
+        open();
+        if (this.continued != null) {
+            this.writer.write(String.format(this.continued, previous));
+        }
+    }
+
+    private void open() throws IOException {
+        Date now = new Date();
+        String date = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss").format(now);
+        String name = this.prefix + date + this.suffix;
+        for (int i = 2; new File(this.dir, name).exists() || new File(this.dir, name + ".gz").exists(); i++) {
+            name = this.prefix + date + "-" + i + this.suffix; // Started more than one in the same second
+        }
+
+        this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(this.dir, name))), 64 *
+                1024);
+        this.name = name;
+        this.written = 0;
+        this.index.start(name);
+
+        Calendar midnight = Calendar.getInstance();
+        midnight.setTime(now);
+        midnight.set(Calendar.HOUR_OF_DAY, 0);
+        midnight.set(Calendar.MINUTE, 0);
+        midnight.set(Calendar.SECOND, 0);
+        midnight.set(Calendar.MILLISECOND, 0);
+        midnight.add(Calendar.DATE, 1);
+        this.rollAt = midnight.getTimeInMillis();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (this.closed) {
+            throw new IOException("Log file is closed");
+        }
+    }
+}
@@ -0,0 +1,13 @@
+/**
+ * Copyright 2013 and onwards by ATLauncher and Contributors
+ *
+ * This work is licensed under the GNU General Public License v3.0.
+ * Link to license: http://www.gnu.org/licenses/gpl-3.0.txt.
+ */
+
+/**
+ * Marks tests which time something against the way it used to be done rather than check it works. They take a while
+ * and only print what they find, so they're left out of the normal build. Run them with mvn test -Pbenchmark.
+ */
+public interface Benchmark {
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright 2013 and onwards by ATLauncher and Contributors
+ *
+ * This work is licensed under the GNU General Public License v3.0.
+ * Link to license: http://www.gnu.org/licenses/gpl-3.0.txt.
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Writes the files tests start with and reads back what was made from them.
+ */
+public final class FileHelper {
+    private FileHelper() {
+    }
+
+    /**
+     * Writes a file, making the folder it's in if needed.
+     */
+    public static void write(File file, byte[] bytes) throws IOException {
+        file.getParentFile().mkdirs();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+
+    public static void write(File file, String text) throws IOException {
+        write(file, text.getBytes("UTF-8"));
+    }
+
+    public static byte[] read(File file) throws IOException {
+        return read(new FileInputStream(file), (int) file.length());
+    }
+
+    public static byte[] read(ZipFile zip, ZipEntry entry) throws IOException {
+        return read(zip.getInputStream(entry), (int) entry.getSize());
+    }
+
+    /**
+     * Reads the lines of a text file, uncompressing it first if it ends in .gz.
+     */
+    public static List<String> readLines(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        if (file.getName().endsWith(".gz")) {
+            in = new GZIPInputStream(in);
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        try {
+            List<String> lines = new ArrayList<String>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+            return lines;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static byte[] read(InputStream in, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        try {
+            int read = 0;
+            while (read < bytes.length) {
+                read += in.read(bytes, read, bytes.length - read);
+            }
+        } finally {
+            in.close();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright 2013 and onwards by ATLauncher and Contributors
+ *
+ * This work is licensed under the GNU General Public License v3.0.
+ * Link to license: http://www.gnu.org/licenses/gpl-3.0.txt.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.SwingUtilities;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.DefaultStyledDocument;
+import javax.swing.text.Element;
+import javax.swing.text.SimpleAttributeSet;
+import javax.swing.text.StyleConstants;
+import javax.swing.text.StyledDocument;
+
+import org.junit.Test;
+
+import com.atlauncher.gui.components.Console;
+
+public class TestConsole {
+    @Test
+    public void testFloodIsBatchedAndCapped() throws Exception {
+        final Console console = new Console();
+        final AtomicInteger inserts = new AtomicInteger();
+        console.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                inserts.incrementAndGet();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
+
+        int lines = Console.MAX_LINES * 4;
+        long start = System.nanoTime();
+        for (int i = 0; i < lines; i++) {
+            console.write("[12:00:00] ", Color.RED, true);
+            console.write("Line " + i + "\n", Color.BLACK, false);
+        }
+        long time = (System.nanoTime() - start) / 1000000;
+        waitForUpdates();
+
+        Element root = console.getDocument().getDefaultRootElement();
+        assertTrue(root.getElementCount() <= Console.MAX_LINES + 1);
+        String text = console.getDocument().getText(0, console.getDocument().getLength());
+        assertTrue(text.endsWith("[12:00:00] Line " + (lines - 1) + "\n"));
+        assertTrue(inserts.get() < lines); // Nowhere near one insert per line
+        System.out.println(String.format("Wrote %d lines in %d ms with %d inserts", lines, time, inserts.get()));
+    }
+
+    @Test
+    public void testLinesKeepTheirStyles() throws Exception {
+        Console console = new Console();
+        console.write("Hello\n", Color.BLACK, false);
+        waitForUpdates();
+        for (int i = 0; i < 3; i++) {
+            console.write("[12:00:00] ", Color.RED, true);
+            console.write("Line " + i + "\n", Color.BLUE, false);
+        }
+        console.write("Not finished", Color.BLUE, false);
+        waitForUpdates();
+
+        StyledDocument document = console.getStyledDocument();
+        Element root = document.getDefaultRootElement();
+        assertEquals(5, root.getElementCount());
+        for (int i = 0; i < 3; i++) {
+            Element line = root.getElement(i + 1);
+            assertEquals("[12:00:00] Line " + i + "\n", document.getText(line.getStartOffset(), line.getEndOffset()
+                    - line.getStartOffset()));
+            AttributeSet time = document.getCharacterElement(line.getStartOffset()).getAttributes();
+            assertEquals(Color.RED, StyleConstants.getForeground(time));
+            assertTrue(StyleConstants.isBold(time));
+            AttributeSet body = document.getCharacterElement(line.getStartOffset() + 11).getAttributes();
+            assertEquals(Color.BLUE, StyleConstants.getForeground(body));
+            assertFalse(StyleConstants.isBold(body));
+        }
+        Element last = root.getElement(4);
+        assertEquals("Not finished", document.getText(last.getStartOffset(), 12));
+    }
+
+    @Test
+    public void testSameAsInsertingOneAtATime() throws Exception {
+        Console console = new Console();
+        DefaultStyledDocument expected = new DefaultStyledDocument();
+        Color[] colors = {Color.RED, Color.BLUE, Color.BLACK};
+        String[] texts = {"[12:00:00] ", "Line\n", "\n", "Two\nlines", "part", "\nstart"};
+        Random random = new Random(42);
+        for (int batch = 0; batch < 20; batch++) {
+            for (int i = random.nextInt(10); i >= 0; i--) {
+                String text = texts[random.nextInt(texts.length)];
+                Color color = colors[random.nextInt(colors.length)];
+                boolean bold = random.nextBoolean();
+                console.write(text, color, bold);
+
+                SimpleAttributeSet style = new SimpleAttributeSet();
+                StyleConstants.setForeground(style, color);
+                StyleConstants.setBold(style, bold);
+                expected.insertString(expected.getLength(), text, style);
+            }
+            waitForUpdates();
+
+            StyledDocument actual = console.getStyledDocument();
+            assertEquals(expected.getText(0, expected.getLength()), actual.getText(0, actual.getLength()));
+            Element expectedRoot = expected.getDefaultRootElement();
+            Element actualRoot = actual.getDefaultRootElement();
+            assertEquals(expectedRoot.getElementCount(), actualRoot.getElementCount());
+            for (int i = 0; i < expectedRoot.getElementCount(); i++) {
+                assertEquals(expectedRoot.getElement(i).getStartOffset(), actualRoot.getElement(i).getStartOffset());
+            }
+            for (int i = 0; i < expected.getLength(); i++) {
+                AttributeSet want = expected.getCharacterElement(i).getAttributes();
+                AttributeSet got = actual.getCharacterElement(i).getAttributes();
+                assertEquals(StyleConstants.getForeground(want), StyleConstants.getForeground(got));
+                assertEquals(StyleConstants.isBold(want), StyleConstants.isBold(got));
+            }
+        }
+    }
+
+    @Test
+    public void testClearRemovesWaitingText() throws Exception {
+        final Console console = new Console();
+        console.write("Hello\n", Color.BLACK, false);
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public void run() {
+                console.clear();
+            }
+        });
+        waitForUpdates();
+        assertEquals(0, console.getDocument().getLength());
+    }
+
+    /**
+     * Waits for any updates and the one frame they may have been held back for.
+     */
+    private void waitForUpdates() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            Thread.sleep(50);
+            SwingUtilities.invokeAndWait(new Runnable() {
+                @Override
+                public void run() {
+                }
+            });
+        }
+    }
+}
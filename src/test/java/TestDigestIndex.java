@@ -0,0 +1,171 @@
+/**
+ * Copyright 2013 and onwards by ATLauncher and Contributors
+ *
+ * This work is licensed under the GNU General Public License v3.0.
+ * Link to license: http://www.gnu.org/licenses/gpl-3.0.txt.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+
+import com.atlauncher.utils.DigestIndex;
+import com.atlauncher.utils.Utils;
+
+public class TestDigestIndex {
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private static final int OBJECTS = 5000;
+    private static final int OBJECT_SIZE = 8 * 1024;
+
+    private File dir;
+    private File indexFile;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        this.dir = this.temp.getRoot();
+        this.indexFile = new File(this.dir, "digestindex");
+        DigestIndex.load(this.indexFile);
+
+        this.file = new File(this.dir, "file");
+        FileHelper.write(this.file, "first");
+        this.file.setLastModified(System.currentTimeMillis() - 60000);
+    }
+
+    @After
+    public void tearDown() {
+        DigestIndex.load(new File(this.dir, "missing")); // Nothing there so this empties it
+    }
+
+    @Test
+    public void testHashIsReusedWhileFileIsUnchanged() throws IOException {
+        String md5 = Utils.getMD5(this.file);
+        assertEquals(md5, DigestIndex.getMD5(this.file));
+
+        // Same size and last modified time, so the index can't tell it changed and doesn't read it again
+        long lastModified = this.file.lastModified();
+        write("other");
+        this.file.setLastModified(lastModified);
+        assertEquals(md5, DigestIndex.getMD5(this.file));
+    }
+
+    @Test
+    public void testHashIsWorkedOutAgainWhenFileChanges() throws IOException {
+        DigestIndex.getSHA1(this.file);
+
+        write("second");
+        this.file.setLastModified(System.currentTimeMillis() - 30000);
+        assertEquals(Utils.getSHA1(this.file), DigestIndex.getSHA1(this.file));
+    }
+
+    @Test
+    public void testRecentlyModifiedFilesAreNotTrusted() throws IOException {
+        this.file.setLastModified(System.currentTimeMillis());
+        DigestIndex.getMD5(this.file);
+
+        // Modified in the same instant it was hashed, so the hash can't be trusted and it's read again
+        long lastModified = this.file.lastModified();
+        write("other");
+        this.file.setLastModified(lastModified);
+        assertEquals(Utils.getMD5(this.file), DigestIndex.getMD5(this.file));
+    }
+
+    @Test
+    public void testPutHashIsUsed() {
+        DigestIndex.put(this.file, true, "0123456789ABCDEF0123456789ABCDEF");
+        assertEquals("0123456789abcdef0123456789abcdef", DigestIndex.getMD5(this.file));
+    }
+
+    @Test
+    public void testHashesAreKeptBetweenLaunches() throws IOException {
+        String sha1 = DigestIndex.getSHA1(this.file);
+        DigestIndex.save();
+        DigestIndex.load(this.indexFile);
+        assertEquals(1, DigestIndex.size());
+
+        long lastModified = this.file.lastModified();
+        write("other");
+        this.file.setLastModified(lastModified);
+        assertEquals(sha1, DigestIndex.getSHA1(this.file)); // Came from the saved index
+    }
+
+    @Test
+    public void testHalfWrittenIndexIsIgnored() throws IOException {
+        FileHelper.write(this.indexFile, "digestindex 1\n5\t1000\t5000\t-\t-\t" + this.file.getAbsolutePath() + "\n");
+        DigestIndex.load(this.indexFile);
+        assertEquals(0, DigestIndex.size());
+    }
+
+    @Test
+    public void testIndexIsRecoveredFromTempFile() throws IOException {
+        DigestIndex.getSHA1(this.file);
+        DigestIndex.save();
+
+        // As if the launcher crashed between deleting the old index and moving the new one into place
+        assertTrue(this.indexFile.renameTo(new File(this.dir, "digestindex.tmp")));
+        DigestIndex.load(this.indexFile);
+        assertEquals(1, DigestIndex.size());
+    }
+
+    /**
+     * Checks a tree of asset objects the way an install does, once with nothing in the index and then again after a
+     * relaunch with the index loaded from disk.
+     */
+    @Test
+    @Category(Benchmark.class)
+    public void testWarmCheckOfAssetTree() throws IOException {
+        File objects = new File(this.dir, "objects");
+        Random random = new Random(1);
+        byte[] bytes = new byte[OBJECT_SIZE];
+        List<File> files = new ArrayList<File>();
+        for (int i = 0; i < OBJECTS; i++) {
+            random.nextBytes(bytes);
+            File object = new File(new File(objects, String.format("%02x", i % 256)), "object" + i);
+            object.getParentFile().mkdirs();
+            FileOutputStream out = new FileOutputStream(object);
+            out.write(bytes);
+            out.close();
+            object.setLastModified(System.currentTimeMillis() - 60000);
+            files.add(object);
+        }
+
+        long start = System.nanoTime();
+        List<String> cold = new ArrayList<String>();
+        for (File object : files) {
+            cold.add(DigestIndex.getSHA1(object));
+        }
+        long coldTime = System.nanoTime() - start;
+        DigestIndex.save();
+
+        DigestIndex.load(this.indexFile);
+        start = System.nanoTime();
+        List<String> warm = new ArrayList<String>();
+        for (File object : files) {
+            warm.add(DigestIndex.getSHA1(object));
+        }
+        long warmTime = System.nanoTime() - start;
+
+        assertEquals(cold, warm);
+        System.out.println(String.format("%d objects: cold check %d ms, warm check %d ms", OBJECTS, coldTime /
+                1000000, warmTime / 1000000));
+    }
+
+    private void write(String contents) throws IOException {
+        FileHelper.write(this.file, contents);
+    }
+}
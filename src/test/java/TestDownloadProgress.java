@@ -0,0 +1,76 @@
+/**
+ * Copyright 2013 and onwards by ATLauncher and Contributors
+ *
+ * This work is licensed under the GNU General Public License v3.0.
+ * Link to license: http://www.gnu.org/licenses/gpl-3.0.txt.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.atlauncher.network.DownloadProgress;
+
+public class TestDownloadProgress {
+    private static final int THREADS = 16;
+    private static final int CHUNKS = 100000;
+    private static final int CHUNK_SIZE = 2048;
+
+    @Test
+    public void testParallelCountsAreExact() throws Exception {
+        final DownloadProgress progress = new DownloadProgress();
+        final AtomicInteger refreshes = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(THREADS);
+
+        // More than 2 GB in total, which overflowed the old int counters
+        progress.reset((long) THREADS * CHUNKS * CHUNK_SIZE);
+
+        for (int i = 0; i < THREADS; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int j = 0; j < CHUNKS; j++) {
+                            progress.addDownloaded(CHUNK_SIZE);
+                            if (progress.shouldRefresh()) {
+                                refreshes.incrementAndGet();
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+
+        long startTime = System.nanoTime();
+        start.countDown();
+        done.await();
+        long time = (System.nanoTime() - startTime) / 1000000;
+
+        assertEquals((long) THREADS * CHUNKS * CHUNK_SIZE, progress.getDownloaded());
+        assertEquals(100, progress.getPercent());
+        assertTrue(refreshes.get() <= time / DownloadProgress.FRAME_MILLIS + 1);
+        System.out.println(String.format("%d chunks added in %d ms with %d refreshes", THREADS * CHUNKS, time,
+                refreshes.get()));
+    }
+
+    @Test
+    public void testRefreshIsCoalesced() {
+        DownloadProgress progress = new DownloadProgress();
+        assertTrue(progress.shouldRefresh());
+        assertFalse(progress.shouldRefresh());
+
+        progress.reset(0);
+        assertTrue(progress.shouldRefresh());
+    }
+}
@@ -0,0 +1,260 @@
+/**
+ * Copyright 2013 and onwards by ATLauncher and Contributors
+ *
+ * This work is licensed under the GNU General Public License v3.0.
+ * Link to license: http://www.gnu.org/licenses/gpl-3.0.txt.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.atlauncher.data.Downloadable;
+import com.atlauncher.utils.Utils;
+
+/**
+ * Runs downloads the same way the instance installer does against a local stand-in for the download servers. Counts
+ * the requests made, showing that each file only costs one round trip, and checks that downloads which get cut off
+ * carry on from where they got to.
+ */
+public class TestDownloadable {
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private static final int FILES = 50;
+    private static final int FILE_SIZE = 64 * 1024;
+    private static final int LATENCY = 10; // Milliseconds added to every request to act like a real server
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final byte[] body = new byte[FILE_SIZE];
+    private volatile String md5;
+    private volatile int dropAfter = Integer.MAX_VALUE; // Bytes of each response sent before the connection is cut
+    private ServerSocket server;
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        setBody(1);
+
+        // A tiny HTTP server rather than the JDK's one, as it needs to be able to cut connections part way through
+        this.server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!server.isClosed()) {
+                    try {
+                        final Socket socket = server.accept();
+                        connections.incrementAndGet();
+                        new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                try {
+                                    BufferedReader reader = new BufferedReader(new InputStreamReader(socket
+                                            .getInputStream(), "ISO-8859-1"));
+                                    while (handle(reader, socket.getOutputStream())) {
+                                        // Keep answering requests on this connection until it's closed.
+                                    }
+                                } catch (IOException e) {
+                                    // The client went away, nothing to do.
+                                } finally {
+                                    try {
+                                        socket.close();
+                                    } catch (IOException e) {
+                                        // Already closed.
+                                    }
+                                }
+                            }
+                        }).start();
+                    } catch (IOException e) {
+                        // Closed, so the loop ends.
+                    }
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+
+        this.dir = this.temp.getRoot();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        this.server.close();
+    }
+
+    @Test
+    public void testOneRequestPerFileWithHash() {
+        runDownloads(this.md5, "with hash");
+    }
+
+    @Test
+    public void testOneRequestPerFileWithHashFromServer() {
+        runDownloads(null, "hash from ETag");
+    }
+
+    @Test
+    public void testResumesWhenConnectionDrops() {
+        this.dropAfter = FILE_SIZE / 3 + 1; // Each response is cut off, so it takes 3 requests to get the whole file
+        File file = new File(this.dir, "dropped.jar");
+        Downloadable download = new Downloadable(getURL(0), file, this.md5, null, false);
+        download.download(true);
+
+        assertEquals(this.md5, Utils.getMD5(file));
+        assertEquals(3, this.requests.get());
+        assertEquals(FILE_SIZE, this.bytesSent.get()); // Only the missing bytes were sent again
+        assertFalse(new File(this.dir, "dropped.jar.part").exists());
+        assertFalse(new File(this.dir, "dropped.jar.part.info").exists());
+    }
+
+    @Test
+    public void testResumesAfterRestart() {
+        File file = new File(this.dir, "restart.jar");
+
+        // A download with no hash only gets one attempt, so this leaves the .part file behind
+        this.dropAfter = FILE_SIZE / 2;
+        new Downloadable(getURL(0), file, "-", null, false).download(true);
+        assertFalse(file.exists());
+        assertEquals(FILE_SIZE / 2, new File(this.dir, "restart.jar.part").length());
+
+        this.dropAfter = Integer.MAX_VALUE;
+        new Downloadable(getURL(0), file, this.md5, null, false).download(true);
+
+        assertEquals(this.md5, Utils.getMD5(file));
+        assertEquals(FILE_SIZE, this.bytesSent.get());
+    }
+
+    @Test
+    public void testStartsAgainWhenFileChanged() throws Exception {
+        File file = new File(this.dir, "changed.jar");
+
+        this.dropAfter = FILE_SIZE / 2;
+        new Downloadable(getURL(0), file, "-", null, false).download(true);
+        assertEquals(FILE_SIZE / 2, new File(this.dir, "changed.jar.part").length());
+
+        // The file on the server has changed so its ETag no longer matches the If-Range header
+        setBody(2);
+        this.dropAfter = Integer.MAX_VALUE;
+        new Downloadable(getURL(0), file, this.md5, null, false).download(true);
+
+        assertEquals(this.md5, Utils.getMD5(file));
+        assertEquals(FILE_SIZE / 2 + FILE_SIZE, this.bytesSent.get());
+    }
+
+    private void setBody(long seed) throws Exception {
+        new Random(seed).nextBytes(this.body);
+        this.md5 = toHex(MessageDigest.getInstance("MD5").digest(this.body));
+    }
+
+    private void runDownloads(String hash, String name) {
+        long start = System.nanoTime();
+        for (int i = 0; i < FILES; i++) {
+            File file = new File(this.dir, name.replace(' ', '_') + i + ".jar");
+            Downloadable download = new Downloadable(getURL(i), file, hash, null, false);
+
+            // Same calls the installer makes for every library and mod
+            assertTrue(download.needToDownload());
+            assertEquals(0, download.getFilesize()); // Unknown until the headers arrive, no request made for it
+            download.download(true);
+
+            assertEquals(FILE_SIZE, download.getFilesize());
+            assertEquals(FILE_SIZE, file.length());
+            assertFalse(download.needToDownload());
+        }
+        long time = (System.nanoTime() - start) / 1000000;
+
+        System.out.println(String.format("%s: %d files in %d ms using %d requests (%.2f per file) over %d " +
+                "connections", name, FILES, time, this.requests.get(), (float) this.requests.get() / FILES, this
+                .connections.get()));
+        assertEquals(FILES, this.requests.get());
+        assertEquals(1, this.connections.get()); // Every file after the first reused the same connection
+    }
+
+    private String getURL(int i) {
+        return "http://127.0.0.1:" + this.server.getLocalPort() + "/file" + i + ".jar";
+    }
+
+    /**
+     * Answers a single request, supporting Range and If-Range, and closing the connection after sending dropAfter
+     * bytes of the body. Connections are kept alive otherwise.
+     *
+     * @return true if another request can be read from the connection
+     */
+    private boolean handle(BufferedReader reader, OutputStream out) throws IOException {
+        String range = null;
+        String ifRange = null;
+        String line = reader.readLine();
+        if (line == null) {
+            return false;
+        }
+        while ((line = reader.readLine()) != null && !line.isEmpty()) {
+            if (line.toLowerCase().startsWith("range:")) {
+                range = line.substring(6).trim();
+            } else if (line.toLowerCase().startsWith("if-range:")) {
+                ifRange = line.substring(9).trim();
+            }
+        }
+
+        this.requests.incrementAndGet();
+        try {
+            Thread.sleep(LATENCY);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        String etag = "\"" + this.md5 + "\"";
+        int start = 0;
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            start = Integer.parseInt(range.substring("bytes=".length(), range.indexOf('-')));
+        }
+
+        StringBuilder headers = new StringBuilder();
+        if (start > 0) {
+            headers.append("HTTP/1.1 206 Partial Content\r\n");
+            headers.append("Content-Range: bytes ").append(start).append('-').append(FILE_SIZE - 1).append('/')
+                    .append(FILE_SIZE).append("\r\n");
+        } else {
+            headers.append("HTTP/1.1 200 OK\r\n");
+        }
+        headers.append("Content-Length: ").append(FILE_SIZE - start).append("\r\n");
+        headers.append("ETag: ").append(etag).append("\r\n");
+        headers.append("Accept-Ranges: bytes\r\n");
+        int length = Math.min(FILE_SIZE - start, this.dropAfter);
+        boolean keepAlive = length == FILE_SIZE - start;
+        headers.append(keepAlive ? "Connection: keep-alive\r\n\r\n" : "Connection: close\r\n\r\n");
+
+        this.bytesSent.addAndGet(length); // Before sending, as the client can be done before this thread carries on
+        out.write(headers.toString().getBytes("ISO-8859-1"));
+        out.write(this.body, start, length);
+        out.flush();
+        return keepAlive;
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder();
+        for (byte b : bytes) {
+            builder.append(String.format("%02x", b));
+        }
+        return builder.toString();
+    }
+}
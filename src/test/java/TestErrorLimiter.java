@@ -0,0 +1,131 @@
+/**
+ * Copyright 2013 and onwards by ATLauncher and Contributors
+ *
+ * This work is licensed under the GNU General Public License v3.0.
+ * Link to license: http://www.gnu.org/licenses/gpl-3.0.txt.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.atlauncher.evnt.LogEvent;
+import com.atlauncher.utils.ErrorLimiter;
+
+public class TestErrorLimiter {
+    private static final long MINUTE = 60000;
+
+    @Test
+    public void testTheSameTraceIsOnlyCounted() {
+        ErrorLimiter limiter = new ErrorLimiter(5, MINUTE);
+        List<Throwable> thrown = new ArrayList<Throwable>();
+        for (int i = 0; i < 100; i++) {
+            thrown.add(fail("Connection refused"));
+        }
+
+        assertEquals("", limiter.check(thrown.get(0), 0));
+        for (int i = 1; i < 99; i++) {
+            assertNull(limiter.check(thrown.get(i), i));
+        }
+        assertEquals("(the same error happened 98 more times since the last from here)", limiter.check(thrown.get
+                (99), MINUTE + 1));
+    }
+
+    @Test
+    public void testEachPlaceIsLimited() {
+        ErrorLimiter limiter = new ErrorLimiter(5, MINUTE);
+        for (int i = 0; i < 5; i++) {
+            assertEquals("", limiter.check(fail("Timed out after " + i + " ms"), 0));
+        }
+        for (int i = 5; i < 20; i++) {
+            assertNull(limiter.check(fail("Timed out after " + i + " ms"), 0));
+        }
+
+        // Somewhere else isn't held back, and nor is the same type of exception from there
+        assertEquals("", limiter.check(new IOException("Timed out"), 0));
+
+        assertEquals("(15 other errors were left out since the last from here)", limiter.check(fail("Timed out"),
+                MINUTE));
+    }
+
+    @Test
+    public void testCausesMakeTracesDifferent() {
+        ErrorLimiter limiter = new ErrorLimiter(5, MINUTE);
+        String[] messages = {"Not found", "Forbidden", "Forbidden"};
+        List<String> notes = new ArrayList<String>();
+        for (String message : messages) {
+            notes.add(limiter.check(wrap(fail(message)), 0));
+        }
+        assertEquals("", notes.get(0));
+        assertEquals("", notes.get(1));
+        assertNull(notes.get(2));
+    }
+
+    @Test
+    public void testTraceIsOnlyRenderedWhenWritten() {
+        LogEvent event = new LogEvent(LogEvent.LogType.ERROR, "Failed to download", fail("Connection refused"),
+                LogEvent.FILE);
+        String text = event.toString();
+        assertTrue(text.contains("[ERROR]Failed to download\njava.io.IOException: Connection refused"));
+        assertTrue(text.contains("\tat TestErrorLimiter.fail("));
+        assertTrue(event.getTrace() == event.getTrace());
+
+        LogEvent traceOnly = new LogEvent(LogEvent.LogType.ERROR, "", fail("Connection refused"), LogEvent.FILE);
+        assertTrue(traceOnly.toString().contains("[ERROR]java.io.IOException: Connection refused"));
+    }
+
+    /**
+     * Compares what logging a stack trace used to cost whatever caught the exception, an event for each line of it,
+     * with checking the limiter and adding a single event.
+     */
+    @Test
+    @Category(Benchmark.class)
+    public void testBenchmark() {
+        int times = 20000;
+        List<Throwable> thrown = new ArrayList<Throwable>();
+        for (int i = 0; i < times; i++) {
+            thrown.add(wrap(fail("Connection refused")));
+        }
+
+        long perFrameBest = Long.MAX_VALUE;
+        long limitedBest = Long.MAX_VALUE;
+        int events = 0;
+        for (int run = 0; run < 5; run++) {
+            long start = System.nanoTime();
+            for (Throwable t : thrown) {
+                events += new LogEvent(LogEvent.LogType.ERROR, t.getMessage(), LogEvent.FILE).body.length();
+                for (StackTraceElement element : t.getStackTrace()) {
+                    events += new LogEvent(LogEvent.LogType.ERROR, element.toString(), LogEvent.FILE).body.length();
+                }
+            }
+            perFrameBest = Math.min(perFrameBest, System.nanoTime() - start);
+
+            ErrorLimiter limiter = new ErrorLimiter(5, MINUTE);
+            start = System.nanoTime();
+            for (Throwable t : thrown) {
+                if (limiter.check(t, 0) != null) {
+                    events += new LogEvent(LogEvent.LogType.ERROR, "Failed", t, LogEvent.FILE).body.length();
+                }
+            }
+            limitedBest = Math.min(limitedBest, System.nanoTime() - start);
+        }
+        assertTrue(events > 0);
+        System.out.println(String.format("Stack traces: %d ns per exception with an event per line, %d ns limited",
+                perFrameBest / times, limitedBest / times));
+    }
+
+    private static Throwable fail(String message) {
+        return new IOException(message);
+    }
+
+    private static Throwable wrap(Throwable cause) {
+        return new RuntimeException("Download failed", cause);
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright 2013 and onwards by ATLauncher and Contributors
+ *
+ * This work is licensed under the GNU General Public License v3.0.
+ * Link to license: http://www.gnu.org/licenses/gpl-3.0.txt.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+
+import com.atlauncher.evnt.LauncherEvent;
+import com.atlauncher.thread.EventLoggingThread;
+import com.atlauncher.utils.LogIndex;
+import com.atlauncher.utils.RingBuffer;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+public class TestEventLog {
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private File dir;
+
+    @Before
+    public void setUp() {
+        this.dir = this.temp.getRoot();
+    }
+
+    @Test
+    public void testOnlyWhatsSetIsWritten() {
+        LauncherEvent event = LauncherEvent.of("download.failed").pack("Caf\u00e9 \"Pack\"").bytes(0).error("Line " +
+                "one\nline two");
+        String json = event.toString();
+        assertEquals("{\"time\":" + event.time + ",\"type\":\"download.failed\",\"pack\":\"Caf\\u00e9 \\\"Pack\\\"\"," +
+                "\"bytes\":0,\"error\":\"Line one\\nline two\"}", json);
+
+        JsonObject parsed = new JsonParser().parse(json).getAsJsonObject();
+        assertEquals("Caf\u00e9 \"Pack\"", parsed.get("pack").getAsString());
+        assertFalse(parsed.has("duration"));
+        assertFalse(parsed.has("mirror"));
+    }
+
+    @Test
+    public void testEveryEventIsWrittenAsALine() throws Exception {
+        RingBuffer<LauncherEvent> queue = new RingBuffer<LauncherEvent>(16384, RingBuffer.OverflowPolicy.BLOCK);
+        LogIndex index = new LogIndex(this.dir, EventLoggingThread.getFileFilter());
+        EventLoggingThread thread = new EventLoggingThread(queue, this.dir, index);
+        thread.start();
+        for (int i = 0; i < 10000; i++) {
+            queue.offer(LauncherEvent.of("install.phase").instance("Instance " + i).phase("mods").duration(i));
+        }
+        thread.close();
+
+        List<String> lines = new ArrayList<String>();
+        for (String name : index.getNames()) {
+            assertTrue(name.startsWith(EventLoggingThread.PREFIX) && name.endsWith(EventLoggingThread.SUFFIX));
+            lines.addAll(FileHelper.readLines(new File(this.dir, name)));
+        }
+        assertEquals(10000, lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            JsonObject event = new JsonParser().parse(lines.get(i)).getAsJsonObject();
+            assertEquals("Instance " + i, event.get("instance").getAsString());
+            assertEquals(i, event.get("duration").getAsLong());
+        }
+    }
+
+    /**
+     * Times emitting events from several threads at once, which is all whatever's emitting them waits for, and then
+     * how long the thread takes to write them.
+     */
+    @Test
+    @Category(Benchmark.class)
+    public void testBenchmark() throws Exception {
+        final int threads = 4;
+        final int events = 250000;
+        final RingBuffer<LauncherEvent> queue = new RingBuffer<LauncherEvent>(threads * events, RingBuffer
+                .OverflowPolicy.DROP_OLDEST);
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < events; j++) {
+                        queue.offer(LauncherEvent.of("download.finished").pack("Test Pack").version("1.0.0").file
+                                ("file.jar").bytes(j).duration(25).mirror("Europe"));
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        long began = System.nanoTime();
+        start.countDown();
+        done.await();
+        long emitting = System.nanoTime() - began;
+        assertEquals(0, queue.getDropped());
+
+        LogIndex index = new LogIndex(this.dir, EventLoggingThread.getFileFilter());
+        EventLoggingThread thread = new EventLoggingThread(queue, this.dir, index);
+        began = System.nanoTime();
+        thread.close(); // Writes everything in the queue
+        long writing = System.nanoTime() - began;
+        index.awaitCompression(60000);
+        System.out.println(String.format("Event log: %d ns to emit an event from %d threads at once, %d ns to write " +
+                "one", emitting / events, threads, writing / (threads * events)));
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright 2013 and onwards by ATLauncher and Contributors
+ *
+ * This work is licensed under the GNU General Public License v3.0.
+ * Link to license: http://www.gnu.org/licenses/gpl-3.0.txt.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+
+import com.atlauncher.utils.GameLogArchive;
+
+public class TestGameLogArchive {
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private File dir;
+    private GameLogArchive archive;
+
+    @Before
+    public void setUp() {
+        this.dir = new File(this.temp.getRoot(), "gamelogs"); // Made by the archive
+        this.archive = new GameLogArchive(this.dir);
+    }
+
+    @Test
+    public void testReadsFromAnyLine() throws IOException {
+        String session = record(10000, "first");
+
+        assertEquals(10000, this.archive.getLineCount(session));
+        List<String> lines = this.archive.readLines(session, 4090, 10); // Across the end of the first segment
+        assertEquals(10, lines.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(line(4090 + i, "first"), lines.get(i));
+        }
+        assertEquals(1, this.archive.readLines(session, 9999, 10).size());
+        assertEquals(0, this.archive.readLines(session, 10000, 10).size());
+
+        // Still a normal gzip file when read from the start
+        int count = 0;
+        for (String line : FileHelper.readLines(new File(this.dir, session + ".log.gz"))) {
+            assertEquals(line(count++, "first"), line);
+        }
+        assertEquals(10000, count);
+    }
+
+    @Test
+    public void testSearchesAcrossSessions() throws IOException {
+        String older = record(5000, "older");
+        String newer = record(5000, "newer");
+
+        List<GameLogArchive.Match> matches = this.archive.search("EXCEPTION", true, 100);
+        assertEquals(10, matches.size()); // Every 1000th line of each
+        assertEquals(newer, matches.get(0).getSession());
+        assertEquals(older, matches.get(9).getSession());
+        assertEquals(0, this.archive.search("EXCEPTION", false, 100).size());
+
+        // Carrying on from after a match
+        List<GameLogArchive.Match> more = this.archive.search(older, "Exception", false, matches.get(5).getLine() +
+                1, 100);
+        assertEquals(4, more.size());
+        assertEquals(1000, more.get(0).getLine());
+        assertEquals(line(1000, "older"), more.get(0).getText());
+
+        assertEquals(3, this.archive.search("Exception", false, 3).size());
+    }
+
+    @Test
+    public void testFinishedSegmentsSurviveWithoutClosing() throws IOException {
+        GameLogArchive.Recorder recorder = this.archive.startSession();
+        for (int i = 0; i < 5000; i++) {
+            recorder.append(line(i, "crash"));
+        }
+        // Never closed, as if the launcher was killed
+
+        assertEquals(4096, this.archive.getLineCount(recorder.getSession()));
+        assertEquals(line(4095, "crash"), this.archive.readLines(recorder.getSession(), 4095, 1).get(0));
+        recorder.close();
+    }
+
+    @Test
+    public void testOldestSessionsAreDeleted() throws IOException {
+        for (int i = 0; i < 25; i++) {
+            record(1, "session " + i);
+        }
+        List<String> sessions = this.archive.getSessions();
+        assertEquals(20, sessions.size());
+        assertEquals(line(0, "session 24"), this.archive.readLines(sessions.get(0), 0, 1).get(0));
+        assertEquals(40, this.dir.list().length);
+    }
+
+    /**
+     * Times searching half a million lines of game logs, and reading a line near the end of a big one without
+     * searching through it.
+     */
+    @Test
+    @Category(Benchmark.class)
+    public void testSearchSpeed() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            record(100000, "big " + i);
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            long start = System.nanoTime();
+            assertEquals(500, this.archive.search("Exception", false, 1000).size());
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        long seekStart = System.nanoTime();
+        String session = this.archive.getSessions().get(0);
+        assertEquals(line(99990, "big 4"), this.archive.readLines(session, 99990, 1).get(0));
+        long seek = System.nanoTime() - seekStart;
+        System.out.println(String.format("Game log archive: searched 500,000 lines in %d ms, read line 99,990 in %d " +
+                "ms", best / 1000000, seek / 1000000));
+        assertTrue(seek < best);
+    }
+
+    private String record(int lines, String name) throws IOException {
+        GameLogArchive.Recorder recorder = this.archive.startSession();
+        for (int i = 0; i < lines; i++) {
+            recorder.append(line(i, name));
+        }
+        recorder.close();
+        return recorder.getSession();
+    }
+
+    private static String line(int number, String name) {
+        if (number % 1000 == 0) {
+            return "[Client thread/ERROR] java.lang.RuntimeException: " + name + " line " + number;
+        }
+        return "[Client thread/INFO] [FML]: Loading " + name + " line " + number + " caf\u00e9";
+    }
+}
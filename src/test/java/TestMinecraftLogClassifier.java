@@ -0,0 +1,257 @@
+/**
+ * Copyright 2013 and onwards by ATLauncher and Contributors
+ *
+ * This work is licensed under the GNU General Public License v3.0.
+ * Link to license: http://www.gnu.org/licenses/gpl-3.0.txt.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.atlauncher.evnt.LogEvent.LogType;
+import com.atlauncher.utils.MinecraftLogClassifier;
+
+public class TestMinecraftLogClassifier {
+    /**
+     * Lines as they come out of a Forge client, from launch through to loading a world.
+     */
+    private static final String[] FORGE_LOG = {
+            "2014-06-21 14:12:03 [INFO] [ForgeModLoader] Forge Mod Loader version 6.4.49.965 for Minecraft 1.6.4 " +
+                    "loading",
+            "2014-06-21 14:12:03 [INFO] [ForgeModLoader] Java is Java HotSpot(TM) 64-Bit Server VM, version " +
+                    "1.7.0_55, running on Windows 7:amd64:6.1, installed at C:\\Program Files\\Java\\jre7",
+            "2014-06-21 14:12:04 [INFO] [STDERR] java.lang.NullPointerException",
+            "2014-06-21 14:12:04 [INFO] [STDOUT] Loaded 120 items from config",
+            "2014-06-21 14:12:05 [WARNING] [ForgeModLoader] The coremod codechicken.core.launch.DepLoader does not " +
+                    "have a MCVersion annotation, it may cause issues with this version of Minecraft",
+            "2014-06-21 14:12:06 [SEVERE] [ForgeModLoader] Fatal errors were detected during the transition from " +
+                    "PREINITIALIZATION to INITIALIZATION. Loading cannot continue",
+            "2014-06-21 14:12:06 [INFO] [Minecraft-Client] CONFLICT @ 2045 item slot already occupied by " +
+                    "ic2.core.item.ItemIC2",
+            "2014-06-21 14:12:06 [INFO] [ForgeModLoader] overwriting existing item at id 30012",
+            "Jun 21, 2014 2:12:07 PM net.minecraft.launchwrapper.LogWrapper log",
+            "INFO: Using tweak class name cpw.mods.fml.common.launcher.FMLTweaker",
+            "WARNING: The coremod fastcraft.Tweaker does not have a MCVersion annotation",
+            "[14:12:08] [main/INFO]: Setting user: **MINECRAFTUSERNAME**",
+            "[14:12:08] [main/WARN]: Tried to load a class that's already been loaded",
+            "[14:12:08] [main/ERROR]: Unable to launch",
+            "[14:12:09] [Client thread/INFO]: LWJGL Version: 2.9.1",
+            "[14:12:09] [Client thread/WARN]: Skipping bad option: lastServer:",
+            "[14:12:09] [Client thread/ERROR]: Couldn't set pixel format",
+            "[14:12:10] [Sound Library Loader/INFO]: Sound engine started",
+            "[14:12:10] [Sound Library Loader/WARN]: Missing sound for event: minecraft:item.fireCharge.use",
+            "[14:12:10] [Sound Library Loader/ERROR]: Error starting SoundSystem. Turning off sounds & music",
+            "[14:12:11] [MCO Availability Checker #1/INFO]: Realms is available",
+            "[14:12:11] [MCO Availability Checker #1/WARN]: Couldn't connect to Realms",
+            "[14:12:11] [MCO Availability Checker #1/ERROR]: Couldn't connect to Realms",
+            "[14:12:12] [Server thread/INFO]: Starting integrated minecraft server version 1.7.10",
+            "[14:12:12] [Server thread/WARN]: Can't keep up! Did the system time change, or is the server overloaded?",
+            "[14:12:12] [Server thread/ERROR]: Encountered an unexpected exception",
+            "[14:12:13] [Client thread/INFO]: [CHAT] [INFO] Welcome to the server",
+            "[14:12:13] [Client thread/ERROR]: Exception in thread \"Thread-12\" java.lang.IllegalStateException",
+            "\tat net.minecraft.client.Minecraft.run(Minecraft.java:961)",
+            "java.lang.RuntimeException: Missing texture",
+            "[14:12:14] [Client thread/INFO] [FML]: Injecting itemstacks",
+            "[14:12:14] [Thread-5/INFO] [STDOUT]: [mapwriter.Mw:load:371]: loaded region",
+            "Setting up the world, \u00e9t\u00e9 2014",
+            ""
+    };
+
+    @Test
+    public void testSameAsBefore() {
+        MinecraftLogClassifier.Result result = new MinecraftLogClassifier.Result();
+        for (String line : FORGE_LOG) {
+            assertSameAsBefore(line, result);
+        }
+
+        // And every mix of the lines with each other's tags in, to cover which tag wins
+        Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            StringBuilder line = new StringBuilder();
+            for (int j = random.nextInt(4); j >= 0; j--) {
+                String part = FORGE_LOG[random.nextInt(FORGE_LOG.length)];
+                line.append(part.substring(random.nextInt(part.length() + 1))).append(' ');
+            }
+            assertSameAsBefore(line.toString(), result);
+        }
+    }
+
+    @Test
+    public void testPackRulesWin() {
+        Map<String, String> levels = new LinkedHashMap<String, String>();
+        levels.put("[Client thread/INFO] [LagMod]", "warn");
+        levels.put("[OldMod]", "ERROR");
+        levels.put("[\u00e9t\u00e9]", "WARN");
+        levels.put("[Nothing]", "NOT A LEVEL");
+        MinecraftLogClassifier classifier = MinecraftLogClassifier.forRules(levels);
+        MinecraftLogClassifier.Result result = new MinecraftLogClassifier.Result();
+
+        classifier.classify("[14:12:14] [Client thread/INFO] [LagMod]: Tick took 500ms", result);
+        assertEquals(LogType.WARN, result.getType());
+        assertEquals("[Client thread/INFO] [LagMod]: Tick took 500ms", result.getMessage());
+
+        classifier.classify("2014-06-21 14:12:03 [INFO] [OldMod] Broken", result);
+        assertEquals(LogType.ERROR, result.getType());
+        assertEquals("[OldMod] Broken", result.getMessage());
+
+        classifier.classify("[14:12:14] [\u00e9t\u00e9] Summer", result);
+        assertEquals(LogType.WARN, result.getType());
+
+        classifier.classify("[14:12:14] [Client thread/INFO] [Nothing]: Fine", result);
+        assertEquals(LogType.INFO, result.getType());
+        assertEquals("[Client thread/INFO] [Nothing]: Fine", result.getMessage());
+
+        assertSame(MinecraftLogClassifier.DEFAULT, MinecraftLogClassifier.forRules(Collections.<String,
+                String>emptyMap()));
+    }
+
+    /**
+     * Times classifying the log a few hundred times over with the old chain of contains checks, with the classifier,
+     * and with the classifier given 20 more rules from a pack, keeping the best of 30 runs of each.
+     */
+    @Test
+    @Category(Benchmark.class)
+    public void testBenchmark() {
+        List<String> lines = new ArrayList<String>();
+        for (int i = 0; i < 300; i++) {
+            Collections.addAll(lines, FORGE_LOG);
+        }
+        Map<String, String> levels = new LinkedHashMap<String, String>();
+        for (int i = 0; i < 20; i++) {
+            levels.put("[Mod" + i + "/WARN]", "WARN");
+        }
+        MinecraftLogClassifier withPack = MinecraftLogClassifier.forRules(levels);
+        MinecraftLogClassifier.Result result = new MinecraftLogClassifier.Result();
+
+        long legacy = Long.MAX_VALUE;
+        long classifier = Long.MAX_VALUE;
+        long pack = Long.MAX_VALUE;
+        int check = 0;
+        for (int round = 0; round < 30; round++) {
+            long start = System.nanoTime();
+            for (String line : lines) {
+                check += ((String) legacyClassify(line)[1]).length();
+            }
+            long first = System.nanoTime();
+            for (String line : lines) {
+                check -= MinecraftLogClassifier.DEFAULT.classify(line, result).getMessage().length();
+            }
+            long second = System.nanoTime();
+            for (String line : lines) {
+                withPack.classify(line, result).getMessage();
+            }
+            long end = System.nanoTime();
+            legacy = Math.min(legacy, first - start);
+            classifier = Math.min(classifier, second - first);
+            pack = Math.min(pack, end - second);
+        }
+        assertEquals(0, check);
+        System.out.println(String.format("Classifying %d lines: contains chain %d ns/line, classifier %d ns/line, " +
+                "with 20 pack rules %d ns/line", lines.size(), legacy / lines.size(), classifier / lines.size(),
+                pack / lines.size()));
+    }
+
+    private void assertSameAsBefore(String line, MinecraftLogClassifier.Result result) {
+        Object[] expected = legacyClassify(line);
+        MinecraftLogClassifier.DEFAULT.classify(line, result);
+        assertEquals(line, expected[0], result.getType());
+        assertEquals(line, expected[1], result.getMessage());
+    }
+
+    /**
+     * How lines were classified before, to check nothing's changed.
+     */
+    private static Object[] legacyClassify(String text) {
+        LogType type = null; // The log message type
+        String message = null; // The log message
+
+        if (text.contains("[INFO] [STDERR]")) {
+            message = text.substring(text.indexOf("[INFO] [STDERR]"));
+            type = LogType.WARN;
+        } else if (text.contains("[INFO]")) {
+            message = text.substring(text.indexOf("[INFO]"));
+            if (message.contains("CONFLICT")) {
+                type = LogType.ERROR;
+            } else if (message.contains("overwriting existing item")) {
+                type = LogType.WARN;
+            } else {
+                type = LogType.INFO;
+            }
+        } else if (text.contains("[WARNING]")) {
+            message = text.substring(text.indexOf("[WARNING]"));
+            type = LogType.WARN;
+        } else if (text.contains("WARNING:")) {
+            message = text.substring(text.indexOf("WARNING:"));
+            type = LogType.WARN;
+        } else if (text.contains("INFO:")) {
+            message = text.substring(text.indexOf("INFO:"));
+            type = LogType.INFO;
+        } else if (text.contains("Exception")) {
+            message = text;
+            type = LogType.ERROR;
+        } else if (text.contains("[SEVERE]")) {
+            message = text.substring(text.indexOf("[SEVERE]"));
+            type = LogType.ERROR;
+        } else if (text.contains("[Sound Library Loader/ERROR]")) {
+            message = text.substring(text.indexOf("[Sound Library Loader/ERROR]"));
+            type = LogType.ERROR;
+        } else if (text.contains("[Sound Library Loader/WARN]")) {
+            message = text.substring(text.indexOf("[Sound Library Loader/WARN]"));
+            type = LogType.WARN;
+        } else if (text.contains("[Sound Library Loader/INFO]")) {
+            message = text.substring(text.indexOf("[Sound Library Loader/INFO]"));
+            type = LogType.INFO;
+        } else if (text.contains("[MCO Availability Checker #1/ERROR]")) {
+            message = text.substring(text.indexOf("[MCO Availability Checker #1/ERROR]"));
+            type = LogType.ERROR;
+        } else if (text.contains("[MCO Availability Checker #1/WARN]")) {
+            message = text.substring(text.indexOf("[MCO Availability Checker #1/WARN]"));
+            type = LogType.WARN;
+        } else if (text.contains("[MCO Availability Checker #1/INFO]")) {
+            message = text.substring(text.indexOf("[MCO Availability Checker #1/INFO]"));
+            type = LogType.INFO;
+        } else if (text.contains("[Client thread/ERROR]")) {
+            message = text.substring(text.indexOf("[Client thread/ERROR]"));
+            type = LogType.ERROR;
+        } else if (text.contains("[Client thread/WARN]")) {
+            message = text.substring(text.indexOf("[Client thread/WARN]"));
+            type = LogType.WARN;
+        } else if (text.contains("[Client thread/INFO]")) {
+            message = text.substring(text.indexOf("[Client thread/INFO]"));
+            type = LogType.INFO;
+        } else if (text.contains("[Server thread/ERROR]")) {
+            message = text.substring(text.indexOf("[Server thread/ERROR]"));
+            type = LogType.ERROR;
+        } else if (text.contains("[Server thread/WARN]")) {
+            message = text.substring(text.indexOf("[Server thread/WARN]"));
+            type = LogType.WARN;
+        } else if (text.contains("[Server thread/INFO]")) {
+            message = text.substring(text.indexOf("[Server thread/INFO]"));
+            type = LogType.INFO;
+        } else if (text.contains("[main/ERROR]")) {
+            message = text.substring(text.indexOf("[main/ERROR]"));
+            type = LogType.ERROR;
+        } else if (text.contains("[main/WARN]")) {
+            message = text.substring(text.indexOf("[main/WARN]"));
+            type = LogType.WARN;
+        } else if (text.contains("[main/INFO]")) {
+            message = text.substring(text.indexOf("[main/INFO]"));
+            type = LogType.INFO;
+        } else {
+            message = text;
+            type = LogType.INFO;
+        }
+
+        return new Object[]{type, message};
+    }
+}
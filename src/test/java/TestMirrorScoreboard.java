@@ -0,0 +1,125 @@
+/**
+ * Copyright 2013 and onwards by ATLauncher and Contributors
+ *
+ * This work is licensed under the GNU General Public License v3.0.
+ * Link to license: http://www.gnu.org/licenses/gpl-3.0.txt.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.atlauncher.data.Server;
+import com.atlauncher.network.MirrorScoreboard;
+
+public class TestMirrorScoreboard {
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private static final long MILLIS = 1000000;
+
+    private final Server auto = new Server("Auto", "auto.example.com", true, false);
+    private final Server fast = new Server("Fast", "fast.example.com", true, false);
+    private final Server slow = new Server("Slow", "slow.example.com", true, false);
+    private final Server master = new Server("Master", "master.example.com", false, true);
+    private final List<Server> servers = Arrays.asList(this.auto, this.fast, this.slow, this.master);
+
+    private File dir;
+    private File scoresFile;
+
+    @Before
+    public void setUp() throws IOException {
+        this.dir = this.temp.getRoot();
+        this.scoresFile = new File(this.dir, "mirrorscores.json");
+        MirrorScoreboard.load(this.scoresFile);
+    }
+
+    @After
+    public void tearDown() {
+        MirrorScoreboard.load(new File(this.dir, "missing")); // Nothing there so this empties it
+    }
+
+    @Test
+    public void testPreferredServerIsUsedWithoutScores() {
+        assertSame(this.auto, MirrorScoreboard.getBest(this.servers, this.auto));
+    }
+
+    @Test
+    public void testFastestServerIsChosen() {
+        for (int i = 0; i < 5; i++) {
+            download(this.auto, 300, 1024 * 1024);
+            download(this.fast, 30, 8 * 1024 * 1024);
+            download(this.slow, 900, 256 * 1024);
+        }
+        assertSame(this.fast, MirrorScoreboard.getBest(this.servers, this.auto));
+        assertSame(this.auto, MirrorScoreboard.getBackup(this.servers, this.fast));
+    }
+
+    @Test
+    public void testFailingServerIsAvoided() {
+        List<Server> servers = Arrays.asList(this.auto, this.fast);
+        download(this.auto, 300, 1024 * 1024);
+        download(this.fast, 30, 8 * 1024 * 1024);
+        assertSame(this.fast, MirrorScoreboard.getBest(servers, this.auto));
+
+        for (int i = 0; i < 10; i++) {
+            MirrorScoreboard.recordFailure(this.fast);
+        }
+        assertSame(this.auto, MirrorScoreboard.getBest(servers, this.auto));
+
+        // Once it starts working again it wins back the downloads
+        for (int i = 0; i < 20; i++) {
+            download(this.fast, 30, 8 * 1024 * 1024);
+        }
+        assertSame(this.fast, MirrorScoreboard.getBest(servers, this.auto));
+    }
+
+    @Test
+    public void testDisabledAndUnselectableServersAreSkipped() {
+        this.fast.disableServer();
+        assertSame(this.auto, MirrorScoreboard.getBest(this.servers, this.fast));
+        assertSame(this.slow, MirrorScoreboard.getBackup(this.servers, this.auto)); // Not the master server
+        assertNull(MirrorScoreboard.getBackup(Arrays.asList(this.auto, this.master), this.auto));
+    }
+
+    @Test
+    public void testHedgeDelayFollowsResponseTime() {
+        assertEquals(5000, MirrorScoreboard.getHedgeDelay(this.slow)); // Not known yet so it gets a while
+        MirrorScoreboard.recordResponse(this.fast, 20 * MILLIS);
+        assertEquals(1000, MirrorScoreboard.getHedgeDelay(this.fast));
+        MirrorScoreboard.recordResponse(this.slow, 600 * MILLIS);
+        assertEquals(2400, MirrorScoreboard.getHedgeDelay(this.slow));
+    }
+
+    @Test
+    public void testScoresAreKeptBetweenLaunches() {
+        download(this.auto, 300, 1024 * 1024);
+        download(this.fast, 30, 8 * 1024 * 1024);
+        String statistics = MirrorScoreboard.getStatistics(this.servers);
+        MirrorScoreboard.save();
+
+        MirrorScoreboard.load(this.scoresFile);
+        assertSame(this.fast, MirrorScoreboard.getBest(this.servers, this.auto));
+        assertEquals(statistics, MirrorScoreboard.getStatistics(this.servers));
+        System.out.println(statistics);
+    }
+
+    /**
+     * Records a 1 MB download from the given server.
+     */
+    private void download(Server server, long responseMillis, long bytesPerSecond) {
+        MirrorScoreboard.recordResponse(server, responseMillis * MILLIS);
+        MirrorScoreboard.recordTransfer(server, 1024 * 1024, 1024 * 1024 * 1000 * MILLIS / bytesPerSecond);
+    }
+}
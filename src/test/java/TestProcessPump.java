@@ -0,0 +1,121 @@
+/**
+ * Copyright 2013 and onwards by ATLauncher and Contributors
+ *
+ * This work is licensed under the GNU General Public License v3.0.
+ * Link to license: http://www.gnu.org/licenses/gpl-3.0.txt.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.atlauncher.thread.ProcessPump;
+
+public class TestProcessPump {
+    private static final int LINES = 20000;
+
+    /**
+     * What the writer's line ending in an accent should come back as, the same as it would through any reader.
+     */
+    private static final String CAFE = new String(" caf\u00e9".getBytes());
+
+    @Test
+    public void testLinesAreTaggedAndInOrder() throws Exception {
+        Collector collector = new Collector();
+        ProcessPump.Pumped pumped = ProcessPump.pump("Writer", start("10"), collector);
+
+        assertEquals(3, pumped.waitFor());
+        List<String> out = collector.get(ProcessPump.Source.STDOUT);
+        List<String> err = collector.get(ProcessPump.Source.STDERR);
+        assertEquals(12, out.size());
+        assertEquals(11, err.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals("out " + i + CAFE, out.get(i));
+            assertEquals("err " + i, err.get(i));
+        }
+        assertEquals("windows", out.get(10)); // Without the \r
+        assertEquals("no newline at the end", out.get(11));
+        assertEquals("", err.get(10));
+        assertEquals(23, pumped.getLines());
+        assertTrue(pumped.getBytes() > 0);
+    }
+
+    @Test
+    public void testSeveralProcessesShareOneThread() throws Exception {
+        List<Collector> collectors = new ArrayList<Collector>();
+        List<ProcessPump.Pumped> pumped = new ArrayList<ProcessPump.Pumped>();
+        long begin = System.nanoTime();
+        for (int i = 0; i < 4; i++) {
+            Collector collector = new Collector();
+            collectors.add(collector);
+            pumped.add(ProcessPump.pump("Writer " + i, start(String.valueOf(LINES)), collector));
+        }
+
+        int pumps = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("ATL-Process-Pump")) {
+                pumps++;
+            }
+        }
+        assertEquals(1, pumps);
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals(3, pumped.get(i).waitFor());
+            List<String> out = collectors.get(i).get(ProcessPump.Source.STDOUT);
+            assertEquals(LINES + 2, out.size());
+            for (int j = 0; j < LINES; j++) {
+                assertEquals("out " + j + CAFE, out.get(j));
+            }
+            assertEquals(LINES + 1, collectors.get(i).get(ProcessPump.Source.STDERR).size());
+        }
+        System.out.println(String.format("Process pump: 4 processes of %d lines in %d ms, %s", 2 * LINES + 3,
+                (System.nanoTime() - begin) / 1000000, pumped.get(0).getStatistics()));
+    }
+
+    private static Process start(String lines) throws Exception {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        return new ProcessBuilder(java, "-Dfile.encoding=" + System.getProperty("file.encoding"), "-cp", System
+                .getProperty("java.class.path"), Writer.class.getName(), lines).start();
+    }
+
+    private static final class Collector implements ProcessPump.LineListener {
+        private final List<String> out = Collections.synchronizedList(new ArrayList<String>());
+        private final List<String> err = Collections.synchronizedList(new ArrayList<String>());
+
+        @Override
+        public void line(ProcessPump.Source source, String line) {
+            (source == ProcessPump.Source.STDOUT ? this.out : this.err).add(line);
+        }
+
+        private List<String> get(ProcessPump.Source source) {
+            return source == ProcessPump.Source.STDOUT ? this.out : this.err;
+        }
+    }
+
+    /**
+     * Run in its own process to write to both streams, a bit like Minecraft does.
+     */
+    public static final class Writer {
+        public static void main(String[] args) {
+            int lines = Integer.parseInt(args[0]);
+            PrintStream out = System.out;
+            PrintStream err = System.err;
+            for (int i = 0; i < lines; i++) {
+                out.println("out " + i + " caf\u00e9");
+                err.println("err " + i);
+            }
+            out.print("windows\r\n");
+            out.print("no newline at the end");
+            err.println();
+            out.flush();
+            System.exit(3);
+        }
+    }
+}
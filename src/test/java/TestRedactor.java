@@ -0,0 +1,108 @@
+/**
+ * Copyright 2013 and onwards by ATLauncher and Contributors
+ *
+ * This work is licensed under the GNU General Public License v3.0.
+ * Link to license: http://www.gnu.org/licenses/gpl-3.0.txt.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.atlauncher.utils.Redactor;
+
+public class TestRedactor {
+    private static final String BASE_DIR = "C:\\Users\\Steve\\AppData\\Roaming\\ATLauncher";
+    private static final String TOKEN = "0a1b2c3d4e5f60718293a4b5c6d7e8f9";
+    private static final String UUID = "069a79f4-44e9-4726-a5be-fca90e38aaf5";
+
+    private final Redactor redactor = new Redactor(secrets());
+
+    @Test
+    public void testLinesWithoutSecretsAreLeftAlone() {
+        String line = "[14:12:09] [Client thread/INFO]: LWJGL Version: 2.9.1";
+        assertSame(line, this.redactor.redact(line));
+        assertSame(line, Redactor.NONE.redact(line));
+    }
+
+    @Test
+    public void testEverySecretIsReplaced() {
+        assertEquals("[14:12:08] [main/INFO]: Setting user: **MINECRAFTUSERNAME**", this.redactor.redact("[14:12:08] " +
+                "[main/INFO]: Setting user: Steve"));
+        assertEquals("(Session ID is token:**ACCESSTOKEN**:**UUID**)", this.redactor.redact("(Session ID is token:" +
+                TOKEN + ":" + UUID.replace("-", "") + ")"));
+        assertEquals("**UUID** **UUID** **MINECRAFTUSERNAME****MINECRAFTUSERNAME**", this.redactor.redact(UUID + " " +
+                UUID + " Stevesteve@example.com"));
+    }
+
+    @Test
+    public void testLongestOfOverlappingSecretsWins() {
+        // The username is in the path, but the whole path goes rather than leaving the rest of it behind
+        assertEquals("Loading **USERSDIR**\\Instances\\Test from **USERSDIR**", this.redactor.redact("Loading " +
+                BASE_DIR + "\\Instances\\Test from " + BASE_DIR));
+        assertEquals("C:\\Users\\**MINECRAFTUSERNAME**\\Desktop", this.redactor.redact("C:\\Users\\Steve\\Desktop"));
+    }
+
+    @Test
+    public void testEmptySecretsAreIgnored() {
+        Map<String, String> secrets = new LinkedHashMap<String, String>();
+        secrets.put("", "**NOTHING**");
+        secrets.put(null, "**NOTHING**");
+        String line = "Nothing to see";
+        assertSame(line, new Redactor(secrets).redact(line));
+    }
+
+    /**
+     * Times redacting lines the way the game's output was before, with a replace for each secret.
+     */
+    @Test
+    @Category(Benchmark.class)
+    public void testBenchmark() {
+        String[] lines = {"[14:12:09] [Client thread/INFO]: LWJGL Version: 2.9.1", "[14:12:08] [main/INFO]: Setting " +
+                "user: Steve", "[14:12:12] [Server thread/WARN]: Can't keep up! Did the system time change, or is " +
+                "the server overloaded?", "2014-06-21 14:12:03 [INFO] [ForgeModLoader] Loading " + BASE_DIR +
+                "\\Instances\\Test\\mods"};
+        Map<String, String> secrets = secrets();
+        long replace = Long.MAX_VALUE;
+        long redact = Long.MAX_VALUE;
+        int check = 0;
+        for (int round = 0; round < 30; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < 10000; i++) {
+                for (String line : lines) {
+                    for (Map.Entry<String, String> secret : secrets.entrySet()) {
+                        line = line.replace(secret.getKey(), secret.getValue());
+                    }
+                    check += line.length();
+                }
+            }
+            long middle = System.nanoTime();
+            for (int i = 0; i < 10000; i++) {
+                for (String line : lines) {
+                    check -= this.redactor.redact(line).length();
+                }
+            }
+            long end = System.nanoTime();
+            replace = Math.min(replace, middle - start);
+            redact = Math.min(redact, end - middle);
+        }
+        System.out.println(String.format("Redacting %d lines: replace for each secret %d ns/line, redactor %d " +
+                "ns/line", lines.length * 10000, replace / lines.length / 10000, redact / lines.length / 10000));
+    }
+
+    private static Map<String, String> secrets() {
+        Map<String, String> secrets = new LinkedHashMap<String, String>();
+        secrets.put(BASE_DIR, "**USERSDIR**");
+        secrets.put("Steve", "**MINECRAFTUSERNAME**");
+        secrets.put("steve@example.com", "**MINECRAFTUSERNAME**");
+        secrets.put(TOKEN, "**ACCESSTOKEN**");
+        secrets.put(UUID, "**UUID**");
+        secrets.put(UUID.replace("-", ""), "**UUID**");
+        return secrets;
+    }
+}
@@ -0,0 +1,192 @@
+/**
+ * Copyright 2013 and onwards by ATLauncher and Contributors
+ *
+ * This work is licensed under the GNU General Public License v3.0.
+ * Link to license: http://www.gnu.org/licenses/gpl-3.0.txt.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.atlauncher.utils.RingBuffer;
+
+public class TestRingBuffer {
+    private static final int PRODUCERS = 8;
+    private static final int EVENTS = 200000;
+
+    @Test
+    public void testNothingIsLostWhenBlocking() throws Exception {
+        RingBuffer<long[]> buffer = new RingBuffer<long[]>(1024, RingBuffer.OverflowPolicy.BLOCK);
+        long time = runProducers(buffer);
+
+        assertEquals(0, buffer.getDropped());
+        System.out.println(String.format("Ring buffer: %d events from %d threads in %d ms", PRODUCERS * EVENTS,
+                PRODUCERS, time));
+    }
+
+    @Test
+    public void testDropOldestKeepsNewest() {
+        RingBuffer<Integer> buffer = new RingBuffer<Integer>(4, RingBuffer.OverflowPolicy.DROP_OLDEST);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertEquals(6, buffer.getDropped());
+
+        List<Integer> left = new ArrayList<Integer>();
+        buffer.drainTo(left, 100);
+        assertEquals(Arrays.asList(6, 7, 8, 9), left);
+        assertTrue(buffer.isEmpty());
+        assertNull(buffer.poll());
+    }
+
+    @Test
+    public void testSampleKeepsSomeOfTheOverflow() {
+        RingBuffer<Integer> buffer = new RingBuffer<Integer>(4, RingBuffer.OverflowPolicy.SAMPLE);
+        int kept = 0;
+        for (int i = 0; i < 4 + 160; i++) {
+            if (buffer.offer(i)) {
+                kept++;
+            }
+        }
+        assertEquals(4 + 10, kept); // 1 in 16 of the 160 added while full
+        assertEquals(160, buffer.getDropped()); // 150 new ones and 10 old ones made way for the sampled ones
+
+        List<Integer> left = new ArrayList<Integer>();
+        buffer.drainTo(left, 100);
+        assertEquals(Integer.valueOf(4 + 159), left.get(3)); // The last sampled one is the newest
+    }
+
+    @Test
+    public void testDropsWithoutConsumerInsteadOfBlocking() {
+        RingBuffer<Integer> buffer = new RingBuffer<Integer>(2, RingBuffer.OverflowPolicy.BLOCK);
+        assertTrue(buffer.offer(1));
+        assertTrue(buffer.offer(2));
+
+        long start = System.nanoTime();
+        assertFalse(buffer.offer(3)); // No consumer to ever make space, so don't wait for one
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(1, buffer.getDropped());
+    }
+
+    @Test
+    public void testOfferWithoutWaitingNeverBlocks() throws Exception {
+        final RingBuffer<Integer> buffer = new RingBuffer<Integer>(2, RingBuffer.OverflowPolicy.BLOCK);
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                buffer.await(1); // Becomes the consumer, but never takes anything
+            }
+        });
+        consumer.start();
+        consumer.join();
+        assertTrue(buffer.offer(1));
+        assertTrue(buffer.offer(2));
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 32; i++) {
+            buffer.offerWithoutWaiting(3 + i); // Sampled rather than waiting on the consumer
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(32, buffer.getDropped()); // 30 new ones and 2 old ones made way for the sampled ones
+        assertEquals(RingBuffer.OverflowPolicy.BLOCK, buffer.getOverflowPolicy());
+    }
+
+    /**
+     * The same producers putting into the queue the logging thread used before, for comparison.
+     */
+    @Test
+    @Category(Benchmark.class)
+    public void testCompareWithBlockingQueue() throws Exception {
+        final ArrayBlockingQueue<long[]> queue = new ArrayBlockingQueue<long[]>(1024);
+        final CountDownLatch start = new CountDownLatch(1);
+        startProducers(start, new Producer() {
+            @Override
+            public void put(long[] event) throws InterruptedException {
+                queue.put(event);
+            }
+        });
+
+        long begin = System.nanoTime();
+        start.countDown();
+        List<long[]> batch = new ArrayList<long[]>();
+        for (int taken = 0; taken < PRODUCERS * EVENTS; taken++) {
+            batch.add(queue.take());
+        }
+        System.out.println(String.format("ArrayBlockingQueue: %d events from %d threads in %d ms", PRODUCERS *
+                EVENTS, PRODUCERS, (System.nanoTime() - begin) / 1000000));
+    }
+
+    /**
+     * Has each producer add numbered events and checks they all come out, in order for each producer.
+     */
+    private long runProducers(final RingBuffer<long[]> buffer) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        startProducers(start, new Producer() {
+            @Override
+            public void put(long[] event) {
+                buffer.offer(event);
+            }
+        });
+
+        Thread.sleep(50); // Let them all get to the start line
+        buffer.await(0); // Be the consumer before they start, or they could fill it and drop without waiting
+        long begin = System.nanoTime();
+        start.countDown();
+        long[] next = new long[PRODUCERS];
+        List<long[]> batch = new ArrayList<long[]>(512);
+        int taken = 0;
+        while (taken < PRODUCERS * EVENTS) {
+            if (buffer.drainTo(batch, 512) == 0) {
+                buffer.await(TimeUnit.MILLISECONDS.toNanos(10));
+                continue;
+            }
+            for (long[] event : batch) {
+                assertEquals(next[(int) event[0]]++, event[1]);
+            }
+            taken += batch.size();
+            batch.clear();
+        }
+        long time = (System.nanoTime() - begin) / 1000000;
+        for (long count : next) {
+            assertEquals(EVENTS, count);
+        }
+        return time;
+    }
+
+    private void startProducers(final CountDownLatch start, final Producer producer) {
+        for (int i = 0; i < PRODUCERS; i++) {
+            final int id = i;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int j = 0; j < EVENTS; j++) {
+                            producer.put(new long[]{id, j});
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private interface Producer {
+        void put(long[] event) throws InterruptedException;
+    }
+}
@@ -0,0 +1,173 @@
+/**
+ * Copyright 2013 and onwards by ATLauncher and Contributors
+ *
+ * This work is licensed under the GNU General Public License v3.0.
+ * Link to license: http://www.gnu.org/licenses/gpl-3.0.txt.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.atlauncher.data.Constants;
+import com.atlauncher.utils.LogIndex;
+import com.atlauncher.utils.Utils;
+import com.atlauncher.writer.RollingLogWriter;
+
+public class TestRollingLogWriter {
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private static final String PREFIX = Constants.LAUNCHER_NAME + "-Log_";
+
+    private File dir;
+
+    @Before
+    public void setUp() {
+        this.dir = this.temp.getRoot();
+    }
+
+    @Test
+    public void testRollsAndCompressesWithoutSplittingLines() throws IOException {
+        LogIndex index = newIndex();
+        RollingLogWriter writer = new RollingLogWriter(this.dir, PREFIX, index, 1000);
+        String first = writer.getName();
+        for (int i = 0; i < 100; i++) {
+            writer.write("line " + i + " of the log\n");
+        }
+        writer.close();
+        index.awaitCompression(10000);
+
+        List<String> names = index.getNames();
+        assertTrue(names.size() > 1);
+        assertEquals(first + ".gz", names.get(0));
+        assertEquals(writer.getName(), names.get(names.size() - 1)); // The last is left until next time
+
+        // Read back every file in order and check nothing was lost or split
+        int next = 0;
+        for (String name : names) {
+            assertTrue(new File(this.dir, name).isFile());
+            for (String line : read(name)) {
+                if (line.startsWith("#Continued from ")) {
+                    continue;
+                }
+                assertEquals("line " + next++ + " of the log", line);
+            }
+        }
+        assertEquals(100, next);
+        assertFalse(new File(this.dir, first).exists());
+    }
+
+    @Test
+    public void testOldestAreDeletedOverBudget() throws IOException {
+        LogIndex index = newIndex();
+        index.setBudget(2000);
+        RollingLogWriter writer = new RollingLogWriter(this.dir, PREFIX, index, 1000);
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            line.append((char) ('a' + (i * 7919) % 26)); // Something that doesn't compress to nothing
+        }
+        for (int i = 0; i < 200; i++) {
+            writer.write(line + " " + i + "\n");
+        }
+        index.awaitCompression(10000);
+
+        assertTrue(index.getSize() <= 2000);
+        List<String> names = index.getNames();
+        assertEquals(writer.getName(), names.get(names.size() - 1));
+        File[] files = this.dir.listFiles(Utils.getLogsFileFilter());
+        assertEquals(names.size(), files.length);
+        writer.close();
+    }
+
+    @Test
+    public void testFoldersShareOneBudget() throws IOException {
+        File events = new File(this.dir, "events");
+        events.mkdirs();
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            text.append('x');
+        }
+        long now = System.currentTimeMillis();
+        File[] files = new File[]{new File(this.dir, PREFIX + "2014-01-01_10-00-00.log"), new File(events, PREFIX +
+                "2014-01-02_10-00-00.log"), new File(this.dir, PREFIX + "2014-01-03_10-00-00.log"), new File(events,
+                PREFIX + "2014-01-04_10-00-00.log")};
+        for (int i = 0; i < files.length; i++) {
+            FileHelper.write(files[i], text.toString());
+            files[i].setLastModified(now - TimeUnit.DAYS.toMillis(files.length - i));
+        }
+
+        LogIndex.Budget budget = new LogIndex.Budget();
+        LogIndex logs = new LogIndex(this.dir, Utils.getLogsFileFilter(), budget);
+        LogIndex eventLogs = new LogIndex(events, Utils.getLogsFileFilter(), budget);
+        logs.setBudget(2500);
+        logs.clean(TimeUnit.DAYS.toMillis(7));
+
+        // The oldest go first whichever folder they're in, until both folders fit in the one budget between them
+        assertFalse(files[0].exists());
+        assertFalse(files[1].exists());
+        assertTrue(files[2].exists());
+        assertTrue(files[3].exists());
+        assertEquals(2000, logs.getSize() + eventLogs.getSize());
+    }
+
+    @Test
+    public void testIndexIsKeptAndRebuilt() throws IOException {
+        write(PREFIX + "2014-01-01_10-00-00.log", "from before there was an index\n");
+        new File(this.dir, PREFIX + "2014-01-01_10-00-00.log").setLastModified(System.currentTimeMillis() -
+                TimeUnit.DAYS.toMillis(10));
+        write(PREFIX + "2014-01-09_10-00-00.log", "newer\n");
+        write("something else.txt", "not a log\n");
+
+        LogIndex index = newIndex();
+        assertEquals(2, index.getNames().size());
+        index.clean(TimeUnit.DAYS.toMillis(7));
+        assertEquals(1, index.getNames().size());
+        assertFalse(new File(this.dir, PREFIX + "2014-01-01_10-00-00.log").exists());
+        assertTrue(new File(this.dir, "something else.txt").exists());
+
+        // Files added without the index knowing aren't picked up, as the folder isn't listed again
+        write(PREFIX + "2014-01-10_10-00-00.log", "unknown\n");
+        assertEquals(1, newIndex().getNames().size());
+
+        // But they are once it's lost
+        Utils.delete(new File(this.dir, "logs.index"));
+        assertEquals(2, newIndex().getNames().size());
+    }
+
+    @Test
+    public void testClearKeepsTheCurrentFile() throws IOException {
+        write(PREFIX + "2014-01-01_10-00-00.log", "old\n");
+        LogIndex index = newIndex();
+        RollingLogWriter writer = new RollingLogWriter(this.dir, PREFIX, index, 1000);
+        index.clear();
+
+        assertEquals(1, index.getNames().size());
+        assertEquals(writer.getName(), index.getNames().get(0));
+        writer.write("still writing\n");
+        writer.close();
+        assertEquals("still writing", read(writer.getName()).get(0));
+    }
+
+    private LogIndex newIndex() {
+        return new LogIndex(this.dir, Utils.getLogsFileFilter());
+    }
+
+    private void write(String name, String text) throws IOException {
+        FileHelper.write(new File(this.dir, name), text);
+    }
+
+    private List<String> read(String name) throws IOException {
+        return FileHelper.readLines(new File(this.dir, name));
+    }
+}
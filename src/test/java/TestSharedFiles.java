@@ -0,0 +1,173 @@
+/**
+ * Copyright 2013 and onwards by ATLauncher and Contributors
+ *
+ * This work is licensed under the GNU General Public License v3.0.
+ * Link to license: http://www.gnu.org/licenses/gpl-3.0.txt.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+
+import com.atlauncher.utils.SharedFiles;
+import com.atlauncher.utils.Utils;
+
+public class TestSharedFiles {
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private File dir;
+    private File indexFile;
+    private File library;
+
+    @Before
+    public void setUp() throws IOException {
+        this.dir = this.temp.getRoot();
+        this.indexFile = new File(this.dir, "sharedfiles");
+        SharedFiles.load(this.indexFile);
+
+        this.library = new File(this.dir, "Libraries/lwjgl-2.9.1.jar");
+        FileHelper.write(this.library, "lwjgl");
+    }
+
+    @After
+    public void tearDown() {
+        SharedFiles.load(new File(this.dir, "missing")); // Nothing there so this empties it
+    }
+
+    @Test
+    public void testFilesAreLinkedAndCounted() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            assertTrue(SharedFiles.place(this.library, bin(i), false));
+        }
+        assertEquals(3, SharedFiles.getReferences(this.library));
+
+        // Putting it in the same place again doesn't count it twice, and doesn't touch the file
+        assertTrue(SharedFiles.place(this.library, bin(0), false));
+        assertEquals(3, SharedFiles.getReferences(this.library));
+
+        SharedFiles.forgetAll(instance(1));
+        assertEquals(2, SharedFiles.getReferences(this.library));
+
+        // Writing into one of them shows they're all the same file on disk
+        FileOutputStream out = new FileOutputStream(new File(bin(2), this.library.getName()), true);
+        out.write('!');
+        out.close();
+        assertEquals("lwjgl!", new String(FileHelper.read(this.library), "UTF-8"));
+    }
+
+    @Test
+    public void testReplacingDoesNotWriteThroughLinks() throws IOException {
+        File other = new File(this.dir, "Libraries/lwjgl-2.9.0.jar");
+        FileHelper.write(other, "older lwjgl");
+        File placed = new File(bin(0), "lwjgl.jar");
+        assertTrue(SharedFiles.place(this.library, placed, true));
+
+        assertTrue(SharedFiles.place(other, placed, true));
+
+        assertEquals("older lwjgl", new String(FileHelper.read(placed), "UTF-8"));
+        assertEquals("lwjgl", new String(FileHelper.read(this.library), "UTF-8"));
+        assertEquals(0, SharedFiles.getReferences(this.library));
+        assertEquals(1, SharedFiles.getReferences(other));
+    }
+
+    @Test
+    public void testChangedFilesArePutInPlaceAgain() throws IOException {
+        assertTrue(SharedFiles.place(this.library, bin(0), false));
+        File placed = new File(bin(0), this.library.getName());
+        Utils.delete(placed);
+        FileHelper.write(placed, "edited");
+
+        assertTrue(SharedFiles.place(this.library, bin(0), false));
+
+        assertEquals("lwjgl", new String(FileHelper.read(placed), "UTF-8"));
+        assertEquals(1, SharedFiles.getReferences(this.library));
+    }
+
+    @Test
+    public void testIndexIsSavedAndLoaded() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            assertTrue(SharedFiles.place(this.library, bin(i), false));
+        }
+        Utils.delete(instance(2));
+        SharedFiles.save();
+
+        SharedFiles.load(this.indexFile);
+
+        assertEquals(2, SharedFiles.getReferences(this.library));
+    }
+
+    /**
+     * Compares putting the same libraries in 40 instances by copying them, as used to be done, with putting them in
+     * place through the shared files.
+     */
+    @Test
+    @Category(Benchmark.class)
+    public void testBenchmark() throws IOException {
+        int instances = 40;
+        List<File> libraries = new ArrayList<File>();
+        Random random = new Random(1);
+        long bytes = 0;
+        for (int i = 0; i < 60; i++) {
+            byte[] data = new byte[random.nextInt(1024 * 1024)];
+            random.nextBytes(data);
+            File library = new File(this.dir, "Libraries/library" + i + ".jar");
+            FileHelper.write(library, data);
+            libraries.add(library);
+            bytes += data.length;
+        }
+
+        for (int i = 0; i < instances; i++) {
+            new File(this.dir, "copied" + i).mkdirs();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < instances; i++) {
+            for (File library : libraries) {
+                Utils.copyFile(library, new File(this.dir, "copied" + i), false);
+            }
+        }
+        long copying = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < instances; i++) {
+            for (File library : libraries) {
+                SharedFiles.place(library, bin(i), false);
+            }
+        }
+        long placing = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < instances; i++) {
+            for (File library : libraries) {
+                SharedFiles.place(library, bin(i), false);
+            }
+        }
+        long reinstalling = System.nanoTime() - start;
+
+        assertEquals(instances, SharedFiles.getReferences(libraries.get(0)));
+        System.out.println(String.format("Shared files: %d MB of libraries in %d instances in %d ms copying, %d ms " +
+                "placing, %d ms placing again (%s)", bytes / 1024 / 1024, instances, copying / 1000000, placing /
+                1000000, reinstalling / 1000000, SharedFiles.getStatistics()));
+    }
+
+    private File instance(int i) {
+        return new File(this.dir, "Instances/Instance" + i);
+    }
+
+    private File bin(int i) {
+        return new File(instance(i), "bin");
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright 2013 and onwards by ATLauncher and Contributors
+ *
+ * This work is licensed under the GNU General Public License v3.0.
+ * Link to license: http://www.gnu.org/licenses/gpl-3.0.txt.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.atlauncher.thread.TaskGraph;
+
+public class TestTaskGraph {
+    private static final int STEP_MILLIS = 200;
+
+    private final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+
+    @Test
+    public void testIndependentTasksRunAtOnce() {
+        TaskGraph graph = new TaskGraph("Test");
+        TaskGraph.Task servers = graph.add("servers", step("servers"));
+        TaskGraph.Task files = graph.add("files", step("files"), servers);
+        graph.add("news", step("news"), files);
+        graph.add("packs", step("packs"), files);
+        graph.add("accounts", step("accounts"));
+
+        long start = System.nanoTime();
+        graph.run(4);
+        long time = (System.nanoTime() - start) / 1000000;
+
+        // Run one after the other this would take 5 steps, but only the 3 in a chain have to wait for each other
+        assertTrue(time < STEP_MILLIS * 4);
+        assertTrue(this.order.indexOf("servers") < this.order.indexOf("files"));
+        assertTrue(this.order.indexOf("files") < this.order.indexOf("news"));
+        assertTrue(this.order.indexOf("files") < this.order.indexOf("packs"));
+        assertEquals(5, this.order.size());
+
+        List<String> report = graph.getReport();
+        assertEquals(7, report.size());
+        assertTrue(report.get(6), report.get(6).endsWith("servers -> files -> news") || report.get(6).endsWith
+                ("servers -> files -> packs"));
+        for (String line : report) {
+            System.out.println(line);
+        }
+    }
+
+    @Test
+    public void testTasksAfterFailureAreSkipped() {
+        TaskGraph graph = new TaskGraph("Test");
+        TaskGraph.Task broken = graph.add("broken", new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("broken");
+            }
+        });
+        TaskGraph.Task after = graph.add("after", step("after"), broken);
+        graph.add("after that", step("after that"), after);
+        graph.add("independent", step("independent"));
+
+        try {
+            graph.run(2);
+            fail("The failure wasn't thrown");
+        } catch (IllegalStateException e) {
+            assertEquals("broken", e.getMessage());
+        }
+        assertEquals(Collections.singletonList("independent"), this.order);
+        assertFalse(graph.getReport().toString().contains("after that started"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTasksFromOtherGraphsCantBeDependedOn() {
+        TaskGraph.Task other = new TaskGraph("Other").add("other", step("other"));
+        new TaskGraph("Test").add("task", step("task"), other);
+    }
+
+    private Runnable step(final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(STEP_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                order.add(name);
+            }
+        };
+    }
+}
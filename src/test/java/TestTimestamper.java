@@ -0,0 +1,178 @@
+/**
+ * Copyright 2013 and onwards by ATLauncher and Contributors
+ *
+ * This work is licensed under the GNU General Public License v3.0.
+ * Link to license: http://www.gnu.org/licenses/gpl-3.0.txt.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.atlauncher.utils.Timestamper;
+
+public class TestTimestamper {
+    private static final int THREADS = 8;
+    private static final int TIMES = 200000;
+
+    @After
+    public void tearDown() {
+        Timestamper.setDateFormat("dd/M/yyy");
+    }
+
+    @Test
+    public void testSameSecondIsFormattedOnce() {
+        Timestamper.setDateFormat("dd/M/yyy");
+        long second = 1400000000000L;
+        String first = Timestamper.format(second + 10);
+        assertSame(first, Timestamper.format(second + 999));
+        assertNotSame(first, Timestamper.format(second + 1000));
+        assertEquals(new SimpleDateFormat("dd/M/yyy HH:mm:ss a").format(new Date(second)), first);
+    }
+
+    @Test
+    public void testNoCorruptedTimestampsAcrossThreads() throws Exception {
+        Timestamper.setDateFormat("dd/M/yyy");
+        List<Future<Integer>> results = runThreads("dd/M/yyy HH:mm:ss a");
+        for (Future<Integer> result : results) {
+            assertEquals(TIMES, (int) result.get());
+        }
+    }
+
+    @Test
+    public void testChangingTheFormatReachesEveryThread() throws Exception {
+        Timestamper.setDateFormat("dd/M/yyy");
+        final CountDownLatch formatted = new CountDownLatch(THREADS);
+        final CountDownLatch changed = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<String>> results = new ArrayList<Future<String>>();
+        for (int i = 0; i < THREADS; i++) {
+            results.add(executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    Timestamper.format(1400000000000L); // Caches the old format on this thread
+                    formatted.countDown();
+                    changed.await();
+                    return Timestamper.format(1400000000000L); // Same second, but the format's changed
+                }
+            }));
+        }
+        formatted.await();
+        Timestamper.setDateFormat("yyy/M/dd");
+        changed.countDown();
+
+        String expected = new SimpleDateFormat("yyy/M/dd HH:mm:ss a").format(new Date(1400000000000L));
+        for (Future<String> result : results) {
+            assertEquals(expected, result.get());
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * Compares formatting a log event's time each time with a shared, locked SimpleDateFormat against the cache, with
+     * times close together as they are when logging.
+     */
+    @Test
+    @Category(Benchmark.class)
+    public void testBenchmark() throws Exception {
+        final SimpleDateFormat shared = new SimpleDateFormat("dd/M/yyy HH:mm:ss a");
+        long lockedBest = Long.MAX_VALUE;
+        long cachedBest = Long.MAX_VALUE;
+        for (int run = 0; run < 5; run++) {
+            lockedBest = Math.min(lockedBest, time(new Formatter() {
+                @Override
+                public String format(long millis) {
+                    synchronized (shared) {
+                        return shared.format(new Date(millis));
+                    }
+                }
+            }));
+            cachedBest = Math.min(cachedBest, time(new Formatter() {
+                @Override
+                public String format(long millis) {
+                    return Timestamper.format(millis);
+                }
+            }));
+        }
+        System.out.println(String.format("Timestamper: %d ns per event with a locked formatter, %d ns cached, %d " +
+                "threads", lockedBest / (THREADS * TIMES), cachedBest / (THREADS * TIMES), THREADS));
+    }
+
+    /**
+     * Has each thread format random times, a few in each second, and checks every one against its own formatter.
+     */
+    private List<Future<Integer>> runThreads(final String pattern) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+        for (int i = 0; i < THREADS; i++) {
+            final long seed = i;
+            results.add(executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    SimpleDateFormat own = new SimpleDateFormat(pattern);
+                    Random random = new Random(seed);
+                    start.await();
+                    int correct = 0;
+                    long millis = 1400000000000L;
+                    for (int j = 0; j < TIMES; j++) {
+                        millis += random.nextInt(random.nextInt(10) == 0 ? 5000000 : 400);
+                        if (own.format(new Date(millis)).equals(Timestamper.format(millis))) {
+                            correct++;
+                        }
+                    }
+                    return correct;
+                }
+            }));
+        }
+        start.countDown();
+        executor.shutdown();
+        return results;
+    }
+
+    private long time(final Formatter formatter) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<Future<?>>();
+        for (int i = 0; i < THREADS; i++) {
+            results.add(executor.submit(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    start.await();
+                    long millis = 1400000000000L;
+                    for (int j = 0; j < TIMES; j++) {
+                        formatter.format(millis += 3); // Hundreds of events a second
+                    }
+                    return null;
+                }
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get();
+        }
+        long time = System.nanoTime() - begin;
+        executor.shutdown();
+        return time;
+    }
+
+    private interface Formatter {
+        String format(long millis);
+    }
+}
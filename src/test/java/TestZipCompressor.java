@@ -0,0 +1,216 @@
+/**
+ * Copyright 2013 and onwards by ATLauncher and Contributors
+ *
+ * This work is licensed under the GNU General Public License v3.0.
+ * Link to license: http://www.gnu.org/licenses/gpl-3.0.txt.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+
+import com.atlauncher.utils.Utils;
+import com.atlauncher.utils.ZipCompressor;
+
+public class TestZipCompressor {
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private File dir;
+
+    @Before
+    public void setUp() {
+        this.dir = this.temp.getRoot();
+    }
+
+    @Test
+    public void testZipsEverything() throws IOException {
+        File in = new File(this.dir, "in");
+        Map<String, byte[]> files = world(in, 4 * 1024 * 1024, 1);
+        FileHelper.write(new File(in, "net/minecraft/src/aux_class"), new byte[]{(byte) 0xCA, (byte) 0xFE});
+        FileHelper.write(new File(in, "empty.txt"), new byte[0]);
+        new File(in, "empty").mkdirs();
+        File out = new File(this.dir, "out.zip");
+
+        ZipCompressor.compress(in, out);
+
+        ZipFile zip = new ZipFile(out);
+        try {
+            for (Map.Entry<String, byte[]> file : files.entrySet()) {
+                ZipEntry entry = zip.getEntry(file.getKey());
+                assertTrue(file.getKey(), Arrays.equals(file.getValue(), FileHelper.read(zip, entry)));
+                assertEquals(file.getKey().endsWith(".png") ? ZipEntry.STORED : ZipEntry.DEFLATED, entry
+                        .getMethod());
+            }
+            assertTrue(Arrays.equals(new byte[]{(byte) 0xCA, (byte) 0xFE},
+                    FileHelper.read(zip, zip.getEntry("aux.class"))));
+            assertEquals(0, FileHelper.read(zip, zip.getEntry("empty.txt")).length);
+            assertTrue(zip.getEntry("empty/").isDirectory());
+            assertTrue(zip.getEntry("region/").isDirectory());
+            assertNull(zip.getEntry("net/minecraft/src/aux_class"));
+        } finally {
+            zip.close();
+        }
+    }
+
+    @Test
+    public void testIncompressibleFilesAreStored() throws IOException {
+        File in = new File(this.dir, "in");
+        byte[] random = new byte[100000];
+        new Random(2).nextBytes(random);
+        FileHelper.write(new File(in, "random.dat"), random);
+        File out = new File(this.dir, "out.zip");
+
+        ZipCompressor.compress(in, out);
+
+        ZipFile zip = new ZipFile(out);
+        try {
+            ZipEntry entry = zip.getEntry("random.dat");
+            assertEquals(ZipEntry.STORED, entry.getMethod());
+            assertTrue(Arrays.equals(random, FileHelper.read(zip, entry)));
+        } finally {
+            zip.close();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testMissingFolder() throws IOException {
+        ZipCompressor.compress(new File(this.dir, "missing"), new File(this.dir, "out.zip"));
+    }
+
+    /**
+     * Compares backing up a world the way it used to be done, a file at a time through a ZipOutputStream with a 1 KB
+     * buffer, with the compressor. The world is 64 MB unless set with -Datlauncher.zipBenchmarkMB, such as 1024 for
+     * one the size of a well explored world.
+     */
+    @Test
+    @Category(Benchmark.class)
+    public void testBenchmark() throws IOException {
+        int megabytes = Integer.getInteger("atlauncher.zipBenchmarkMB", 64);
+        File in = new File(this.dir, "world");
+        world(in, megabytes * 1024L * 1024L, 3);
+
+        long oldBest = Long.MAX_VALUE;
+        long newBest = Long.MAX_VALUE;
+        long oldSize = 0;
+        long newSize = 0;
+        int runs = megabytes > 256 ? 1 : 3;
+        for (int run = 0; run < runs; run++) {
+            File out = new File(this.dir, "old.zip");
+            long start = System.nanoTime();
+            oldZip(in, out);
+            oldBest = Math.min(oldBest, System.nanoTime() - start);
+            oldSize = out.length();
+            out.delete();
+
+            out = new File(this.dir, "new.zip");
+            start = System.nanoTime();
+            ZipCompressor.compress(in, out);
+            newBest = Math.min(newBest, System.nanoTime() - start);
+            newSize = out.length();
+            out.delete();
+        }
+        System.out.println(String.format("Zip: %d MB world in %d ms (%d MB) a file at a time, %d ms (%d MB) with the" +
+                " compressor on %d cores", megabytes, oldBest / 1000000, oldSize / 1024 / 1024, newBest / 1000000,
+                newSize / 1024 / 1024, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Makes something like a world: region files, which are mostly chunks compressed already with some padding, as
+     * well as level.dat, player data and a map image, adding up to about the given size.
+     */
+    private static Map<String, byte[]> world(File folder, long size, long seed) throws IOException {
+        Random random = new Random(seed);
+        Map<String, byte[]> files = new LinkedHashMap<String, byte[]>();
+        files.put("level.dat", compressible(random, 4000));
+        files.put("icon.png", random(random, 20000));
+        for (int i = 0; i < 8; i++) {
+            files.put("playerdata/player" + i + ".dat", compressible(random, 8000));
+        }
+        long left = size;
+        for (int i = 0; left > 0; i++) {
+            byte[] region = new byte[(int) Math.min(left, 4 * 1024 * 1024)];
+            for (int offset = 0; offset < region.length; offset += 4096) {
+                // About half of each sector is a chunk, which doesn't compress, and the rest is empty
+                int chunk = Math.min(region.length - offset, 2048);
+                System.arraycopy(random(random, chunk), 0, region, offset, chunk);
+            }
+            files.put("region/r." + (i % 16) + "." + (i / 16) + ".mca", region);
+            left -= region.length;
+        }
+        for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            FileHelper.write(new File(folder, file.getKey()), file.getValue());
+        }
+        return files;
+    }
+
+    private static byte[] compressible(Random random, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (random.nextInt(4) == 0 ? random.nextInt(256) : 'a' + (i % 7));
+        }
+        return bytes;
+    }
+
+    private static byte[] random(Random random, int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * How Utils.zip used to zip up a folder.
+     */
+    private static void oldZip(File in, File out) throws IOException {
+        URI base = in.toURI();
+        Deque<File> queue = new LinkedList<File>();
+        queue.push(in);
+        ZipOutputStream zout = new ZipOutputStream(new FileOutputStream(out));
+        try {
+            while (!queue.isEmpty()) {
+                in = queue.pop();
+                for (File kid : in.listFiles()) {
+                    String name = base.relativize(kid.toURI()).getPath();
+                    if (kid.isDirectory()) {
+                        queue.push(kid);
+                        zout.putNextEntry(new ZipEntry(name.endsWith("/") ? name : name + "/"));
+                    } else {
+                        zout.putNextEntry(new ZipEntry(name));
+                        InputStream stream = new FileInputStream(kid);
+                        byte[] buffer = new byte[1024];
+                        int read;
+                        while ((read = stream.read(buffer)) != -1) {
+                            zout.write(buffer, 0, read);
+                        }
+                        stream.close();
+                        zout.closeEntry();
+                    }
+                }
+            }
+        } finally {
+            zout.close();
+        }
+    }
+}
@@ -0,0 +1,304 @@
+/**
+ * Copyright 2013 and onwards by ATLauncher and Contributors
+ *
+ * This work is licensed under the GNU General Public License v3.0.
+ * Link to license: http://www.gnu.org/licenses/gpl-3.0.txt.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+
+import com.atlauncher.utils.Utils;
+import com.atlauncher.utils.ZipCompressor;
+import com.atlauncher.utils.ZipCopier;
+import com.atlauncher.utils.ZipExtractor;
+
+public class TestZipCopier {
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private File dir;
+
+    @Before
+    public void setUp() {
+        this.dir = this.temp.getRoot();
+    }
+
+    @Test
+    public void testRewriteDropsMetaInf() throws IOException {
+        Map<String, byte[]> classes = classes(200, 1);
+        File jar = jar("minecraft.jar", classes, true);
+        ZipFile before = new ZipFile(jar);
+        long modified = before.getEntry("net/minecraft/File0.class").getTime();
+        before.close();
+
+        assertTrue(ZipCopier.rewrite(jar, ZipCopier.WITHOUT_META_INF));
+
+        assertEquals(classes.keySet(), read(jar).keySet());
+        for (Map.Entry<String, byte[]> entry : read(jar).entrySet()) {
+            assertTrue(entry.getKey(), Arrays.equals(classes.get(entry.getKey()), entry.getValue()));
+        }
+        ZipFile zip = new ZipFile(jar);
+        try {
+            assertEquals(modified, zip.getEntry("net/minecraft/File0.class").getTime());
+            assertEquals(ZipEntry.STORED, zip.getEntry("net/minecraft/Stored.class").getMethod());
+            assertNull(zip.getEntry("META-INF/MANIFEST.MF"));
+        } finally {
+            zip.close();
+        }
+        assertFalse(new File(this.dir, "minecraft.jar.tmp").exists());
+
+        // Nothing left to take out, so it's left alone
+        long length = jar.length();
+        assertFalse(ZipCopier.rewrite(jar, ZipCopier.WITHOUT_META_INF));
+        assertEquals(length, jar.length());
+    }
+
+    @Test
+    public void testLaterZipsReplaceEarlierEntries() throws IOException {
+        Map<String, byte[]> base = new LinkedHashMap<String, byte[]>();
+        base.put("a.class", "base a".getBytes("UTF-8"));
+        base.put("b.class", "base b".getBytes("UTF-8"));
+        base.put("c.class", "base c".getBytes("UTF-8"));
+        Map<String, byte[]> mod = new LinkedHashMap<String, byte[]>();
+        mod.put("b.class", "mod b".getBytes("UTF-8"));
+        mod.put("d.class", "mod d".getBytes("UTF-8"));
+        mod.put("skip.txt", "left out".getBytes("UTF-8"));
+        File out = new File(this.dir, "out.jar");
+
+        new ZipCopier().add(jar("base.jar", base, false), null).add(jar("mod.jar", mod, false), new ZipCopier
+                .EntryFilter() {
+            @Override
+            public String rename(String name) {
+                return name.endsWith(".txt") ? null : name;
+            }
+        }).write(out);
+
+        Map<String, byte[]> merged = read(out);
+        assertEquals(Arrays.asList("a.class", "b.class", "c.class", "d.class"), new ArrayList<String>(merged
+                .keySet()));
+        assertEquals("mod b", new String(merged.get("b.class"), "UTF-8"));
+        assertEquals("base c", new String(merged.get("c.class"), "UTF-8"));
+    }
+
+    @Test
+    public void testReplaceMergesIntoOneOfTheZips() throws IOException {
+        Map<String, byte[]> server = classes(50, 3);
+        Map<String, byte[]> first = new LinkedHashMap<String, byte[]>();
+        first.put("net/minecraft/File1.class", "first".getBytes("UTF-8"));
+        first.put("mod/A.class", "first a".getBytes("UTF-8"));
+        Map<String, byte[]> second = new LinkedHashMap<String, byte[]>();
+        second.put("mod/A.class", "second a".getBytes("UTF-8"));
+        File jar = jar("minecraft_server.jar", server, false);
+
+        new ZipCopier().add(jar, null).add(jar("first.jar", first, false), null).add(jar("second.jar", second,
+                false), null).replace(jar);
+
+        Map<String, byte[]> merged = read(jar);
+        assertEquals(server.size() + 1, merged.size());
+        assertEquals("first", new String(merged.get("net/minecraft/File1.class"), "UTF-8"));
+        assertEquals("second a", new String(merged.get("mod/A.class"), "UTF-8"));
+        assertTrue(Arrays.equals(server.get("net/minecraft/File2.class"), merged.get("net/minecraft/File2.class")));
+        assertFalse(new File(this.dir, "minecraft_server.jar.tmp").exists());
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotAZip() throws IOException {
+        File notZip = new File(this.dir, "not.zip");
+        FileOutputStream stream = new FileOutputStream(notZip);
+        stream.write("not a zip file".getBytes("UTF-8"));
+        stream.close();
+        ZipCopier.copy(notZip, new File(this.dir, "out.zip"), null);
+    }
+
+    /**
+     * Compares taking META-INF out of a jar the size of minecraft.jar the way it used to be done, uncompressing and
+     * compressing every entry through 1 KB buffers, with copying the compressed entries.
+     */
+    @Test
+    @Category(Benchmark.class)
+    public void testBenchmark() throws IOException {
+        File jar = jar("minecraft.jar", classes(2000, 2), true);
+
+        long oldBest = Long.MAX_VALUE;
+        long newBest = Long.MAX_VALUE;
+        for (int run = 0; run < 5; run++) {
+            File out = new File(this.dir, "old.jar");
+            long start = System.nanoTime();
+            oldDeleteMetaInf(jar, out);
+            oldBest = Math.min(oldBest, System.nanoTime() - start);
+            out.delete();
+
+            out = new File(this.dir, "new.jar");
+            start = System.nanoTime();
+            ZipCopier.copy(jar, out, ZipCopier.WITHOUT_META_INF);
+            newBest = Math.min(newBest, System.nanoTime() - start);
+            out.delete();
+        }
+        System.out.println(String.format("META-INF: %d KB jar in %d ms recompressing, %d ms copying entries", jar
+                .length() / 1024, oldBest / 1000000, newBest / 1000000));
+    }
+
+    /**
+     * Compares putting jar mods into a server jar the way it used to be done, extracting the server jar and each jar
+     * mod over the top of it then zipping it all back up, with merging them straight into a new jar.
+     */
+    @Test
+    @Category(Benchmark.class)
+    public void testMergeBenchmark() throws IOException {
+        File server = jar("minecraft_server.jar", classes(2000, 4), false);
+        List<File> jarMods = new ArrayList<File>();
+        for (int i = 0; i < 4; i++) {
+            jarMods.add(jar("mod" + i + ".jar", classes(200, 5 + i), false));
+        }
+
+        long oldBest = Long.MAX_VALUE;
+        long newBest = Long.MAX_VALUE;
+        for (int run = 0; run < 5; run++) {
+            File temp = new File(this.dir, "JarTemp");
+            File out = new File(this.dir, "old.jar");
+            long start = System.nanoTime();
+            ZipExtractor.extract(server, temp, null);
+            for (File jarMod : jarMods) {
+                ZipExtractor.extract(jarMod, temp, null);
+            }
+            ZipCompressor.compress(temp, out);
+            oldBest = Math.min(oldBest, System.nanoTime() - start);
+            Utils.delete(temp);
+            out.delete();
+
+            out = new File(this.dir, "new.jar");
+            start = System.nanoTime();
+            ZipCopier copier = new ZipCopier().add(server, null);
+            for (File jarMod : jarMods) {
+                copier.add(jarMod, null);
+            }
+            copier.write(out);
+            newBest = Math.min(newBest, System.nanoTime() - start);
+            out.delete();
+        }
+        System.out.println(String.format("Server jar mods: %d KB jar and %d jar mods in %d ms extracting and " +
+                "zipping, %d ms merging", server.length() / 1024, jarMods.size(), oldBest / 1000000, newBest /
+                1000000));
+    }
+
+    /**
+     * Makes class files of random sizes which compress about as well as real ones do.
+     */
+    private static Map<String, byte[]> classes(int count, long seed) {
+        Random random = new Random(seed);
+        Map<String, byte[]> classes = new LinkedHashMap<String, byte[]>();
+        for (int i = 0; i < count; i++) {
+            byte[] bytes = new byte[random.nextInt(8 * 1024)];
+            for (int j = 0; j < bytes.length; j++) {
+                bytes[j] = (byte) (random.nextInt(4) == 0 ? random.nextInt(256) : 'a' + (j % 7));
+            }
+            classes.put("net/minecraft/File" + i + ".class", bytes);
+        }
+        classes.put("net/minecraft/Stored.class", new byte[]{(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE});
+        return classes;
+    }
+
+    /**
+     * Writes a jar as a JarOutputStream does, with data descriptors after compressed entries, and one stored entry.
+     */
+    private File jar(String name, Map<String, byte[]> entries, boolean signed) throws IOException {
+        File jar = new File(this.dir, name);
+        ZipOutputStream out;
+        if (signed) {
+            Manifest manifest = new Manifest();
+            manifest.getMainAttributes().putValue("Manifest-Version", "1.0");
+            out = new JarOutputStream(new FileOutputStream(jar), manifest);
+            out.putNextEntry(new JarEntry("META-INF/MOJANG_C.SF"));
+            out.write("Signature-Version: 1.0\n".getBytes("UTF-8"));
+            out.closeEntry();
+        } else {
+            out = new ZipOutputStream(new FileOutputStream(jar));
+        }
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            ZipEntry zipEntry = new ZipEntry(entry.getKey());
+            if (entry.getKey().endsWith("Stored.class")) {
+                CRC32 crc = new CRC32();
+                crc.update(entry.getValue());
+                zipEntry.setMethod(ZipEntry.STORED);
+                zipEntry.setSize(entry.getValue().length);
+                zipEntry.setCrc(crc.getValue());
+            }
+            out.putNextEntry(zipEntry);
+            out.write(entry.getValue());
+            out.closeEntry();
+        }
+        out.close();
+        return jar;
+    }
+
+    /**
+     * Reads every entry of a zip file, in the order of its central directory.
+     */
+    private static Map<String, byte[]> read(File file) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+        ZipFile zip = new ZipFile(file);
+        try {
+            List<? extends ZipEntry> list = Collections.list(zip.entries());
+            for (ZipEntry entry : list) {
+                entries.put(entry.getName(), FileHelper.read(zip, entry));
+            }
+        } finally {
+            zip.close();
+        }
+        return entries;
+    }
+
+    /**
+     * How InstanceInstaller.deleteMetaInf used to take META-INF out of a jar.
+     */
+    private static void oldDeleteMetaInf(File inputFile, File outputTmpFile) throws IOException {
+        JarInputStream input = new JarInputStream(new FileInputStream(inputFile));
+        JarOutputStream output = new JarOutputStream(new FileOutputStream(outputTmpFile));
+        JarEntry entry;
+
+        while ((entry = input.getNextJarEntry()) != null) {
+            if (entry.getName().contains("META-INF")) {
+                continue;
+            }
+            output.putNextEntry(entry);
+            byte buffer[] = new byte[1024];
+            int amo;
+            while ((amo = input.read(buffer, 0, 1024)) != -1) {
+                output.write(buffer, 0, amo);
+            }
+            output.closeEntry();
+        }
+
+        input.close();
+        output.close();
+    }
+}
@@ -0,0 +1,187 @@
+/**
+ * Copyright 2013 and onwards by ATLauncher and Contributors
+ *
+ * This work is licensed under the GNU General Public License v3.0.
+ * Link to license: http://www.gnu.org/licenses/gpl-3.0.txt.
+ */
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+
+import com.atlauncher.data.mojang.ExtractRule;
+import com.atlauncher.utils.Utils;
+import com.atlauncher.utils.ZipExtractor;
+import com.google.gson.Gson;
+
+public class TestZipExtractor {
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private File dir;
+
+    @Before
+    public void setUp() {
+        this.dir = this.temp.getRoot();
+    }
+
+    @Test
+    public void testExtractsEverythingInParallel() throws IOException {
+        Map<String, byte[]> files = files(300, 64 * 1024, 1);
+        files.put("META-INF/MANIFEST.MF", "Manifest-Version: 1.0\n".getBytes("UTF-8"));
+        files.put("net/minecraft/src/aux.class", new byte[]{(byte) 0xCA, (byte) 0xFE});
+        files.put(".minecraft", new byte[]{1});
+        File zip = zip(files, "empty/");
+        File out = new File(this.dir, "out");
+
+        ZipExtractor.extract(zip, out, new Gson().fromJson("{\"exclude\":[\"META-INF/\"]}", ExtractRule.class));
+
+        for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            if (file.getKey().startsWith("META-INF/") || file.getKey().endsWith("aux.class") || file.getKey().equals
+                    (".minecraft")) {
+                continue;
+            }
+            assertTrue(file.getKey(), Arrays.equals(file.getValue(), FileHelper.read(new File(out, file.getKey()))));
+        }
+        assertFalse(new File(out, "META-INF").exists());
+        assertFalse(new File(out, ".minecraft").exists());
+        assertFalse(new File(out, "net/minecraft/src/aux.class").exists());
+        assertTrue(Arrays.equals(new byte[]{(byte) 0xCA, (byte) 0xFE}, FileHelper.read(new File(out, "aux_class"))));
+        assertTrue(new File(out, "empty").isDirectory());
+    }
+
+    @Test
+    public void testSmallZipsAndOverwriting() throws IOException {
+        Map<String, byte[]> files = files(3, 100, 2);
+        File zip = zip(files);
+        File out = new File(this.dir, "out");
+        File existing = new File(out, files.keySet().iterator().next());
+        existing.getParentFile().mkdirs();
+        FileOutputStream stream = new FileOutputStream(existing);
+        stream.write(new byte[10000]); // Longer than what replaces it
+        stream.close();
+
+        ZipExtractor.extract(zip, out, null);
+
+        for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            assertTrue(Arrays.equals(file.getValue(), FileHelper.read(new File(out, file.getKey()))));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotAZip() throws IOException {
+        File notZip = new File(this.dir, "not.zip");
+        FileOutputStream stream = new FileOutputStream(notZip);
+        stream.write("not a zip file".getBytes("UTF-8"));
+        stream.close();
+        ZipExtractor.extract(notZip, new File(this.dir, "out"), null);
+    }
+
+    /**
+     * Compares extracting a mod sized zip with lots of small files and a few big ones the way it used to be done, an
+     * entry at a time through 1 KB buffers, with the extractor.
+     */
+    @Test
+    @Category(Benchmark.class)
+    public void testBenchmark() throws IOException {
+        Map<String, byte[]> files = files(2000, 32 * 1024, 3);
+        files.putAll(files(8, 4 * 1024 * 1024, 4));
+        File zip = zip(files);
+
+        long oldBest = Long.MAX_VALUE;
+        long newBest = Long.MAX_VALUE;
+        for (int run = 0; run < 5; run++) {
+            File out = new File(this.dir, "old" + run);
+            long start = System.nanoTime();
+            oldUnzip(zip, out);
+            oldBest = Math.min(oldBest, System.nanoTime() - start);
+            Utils.delete(out);
+
+            out = new File(this.dir, "new" + run);
+            start = System.nanoTime();
+            ZipExtractor.extract(zip, out, null);
+            newBest = Math.min(newBest, System.nanoTime() - start);
+            Utils.delete(out);
+        }
+        System.out.println(String.format("Unzip: %d files (%d MB) in %d ms an entry at a time, %d ms with the " +
+                "extractor on %d cores", files.size(), zip.length() / 1024 / 1024, oldBest / 1000000, newBest /
+                1000000, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Makes files of random sizes, in a few levels of folders, filled with bytes which compress about as well as a
+     * class file does.
+     */
+    private static Map<String, byte[]> files(int count, int maxSize, long seed) {
+        Random random = new Random(seed);
+        Map<String, byte[]> files = new LinkedHashMap<String, byte[]>();
+        for (int i = 0; i < count; i++) {
+            byte[] bytes = new byte[random.nextInt(maxSize + 1)];
+            for (int j = 0; j < bytes.length; j++) {
+                bytes[j] = (byte) (random.nextInt(4) == 0 ? random.nextInt(256) : 'a' + (j % 7));
+            }
+            files.put("pack" + seed + "/folder" + (i % 13) + "/sub" + (i % 5) + "/File" + i + ".class", bytes);
+        }
+        return files;
+    }
+
+    private File zip(Map<String, byte[]> files, String... folders) throws IOException {
+        File zip = new File(this.dir, "test" + this.dir.list().length + ".zip");
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip));
+        for (String folder : folders) {
+            out.putNextEntry(new ZipEntry(folder));
+            out.closeEntry();
+        }
+        for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            out.putNextEntry(new ZipEntry(file.getKey()));
+            out.write(file.getValue());
+            out.closeEntry();
+        }
+        out.close();
+        return zip;
+    }
+
+    /**
+     * How Utils.unzip used to extract files.
+     */
+    private static void oldUnzip(File in, File out) throws IOException {
+        ZipFile zipFile = new ZipFile(in);
+        Enumeration<?> e = zipFile.entries();
+        while (e.hasMoreElements()) {
+            ZipEntry entry = (ZipEntry) e.nextElement();
+            File destinationFilePath = new File(out, entry.getName());
+            destinationFilePath.getParentFile().mkdirs();
+            if (!entry.isDirectory()) {
+                BufferedInputStream bis = new BufferedInputStream(zipFile.getInputStream(entry));
+                int b;
+                byte buffer[] = new byte[1024];
+                BufferedOutputStream bos = new BufferedOutputStream(new FileOutputStream(destinationFilePath), 1024);
+                while ((b = bis.read(buffer, 0, 1024)) != -1) {
+                    bos.write(buffer, 0, b);
+                }
+                bos.close();
+                bis.close();
+            }
+        }
+        zipFile.close();
+    }
+}